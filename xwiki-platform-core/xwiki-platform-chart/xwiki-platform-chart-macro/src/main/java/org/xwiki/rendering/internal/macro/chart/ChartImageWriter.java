@@ -41,6 +41,16 @@
      */
     void writeImage(ImageId imageId, byte[] imageData) throws MacroExecutionException;
 
+    /**
+     * Checks if the image has already been stored, in which case it doesn't need to be generated again.
+     *
+     * @param imageId the image id for the image to look for
+     * @return {@code true} if the image has already been stored, {@code false} otherwise
+     * @throws MacroExecutionException if an error happened when computing the location of the image
+     * @since 9.11RC1
+     */
+    boolean hasImage(ImageId imageId) throws MacroExecutionException;
+
     /**
      * Compute the URL to use to access the stored generate chart image.
      *
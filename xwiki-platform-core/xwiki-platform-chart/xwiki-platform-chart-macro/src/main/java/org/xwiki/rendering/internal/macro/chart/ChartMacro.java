@@ -23,6 +23,9 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -30,7 +33,7 @@
 
 import org.apache.commons.lang3.StringUtils;
 import org.xwiki.chart.ChartGenerator;
-import org.xwiki.chart.ChartGeneratorException;
+import org.xwiki.chart.model.ChartModel;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
@@ -87,6 +90,11 @@ public class ChartMacro extends AbstractMacro<ChartMacroParameters>
     @Named("tmp")
     private ChartImageWriter imageWriter;
 
+    /**
+     * The chart images being generated, used to generate only once the same image requested by concurrent renderings.
+     */
+    private final Map<String, FutureTask<Void>> generating = new ConcurrentHashMap<>();
+
     /**
      * Create and initialize the descriptor of the macro.
      */
@@ -108,9 +116,9 @@ public List<Block> execute(ChartMacroParameters macroParams, String content, Mac
         throws MacroExecutionException
     {
         // Generate the chart image in a temporary location.
-        generateChart(macroParams, content, context);
+        ImageId imageId = generateChart(macroParams, content, context);
 
-        String imageLocation = this.imageWriter.getURL(new ImageId(macroParams));
+        String imageLocation = this.imageWriter.getURL(imageId);
         String title = macroParams.getTitle();
         ResourceReference reference = new ResourceReference(imageLocation, ResourceType.URL);
         ImageBlock imageBlock = new ImageBlock(new ResourceReference(imageLocation, ResourceType.URL), true);
@@ -130,14 +138,16 @@ public List<Block> execute(ChartMacroParameters macroParams, String content, Mac
     }
 
     /**
-     * Builds the chart image according to the specifications passed in.
+     * Builds the chart image according to the specifications passed in, unless the same chart (same data and same
+     * parameters) has already been generated.
      *
      * @param parameters the macro parameters
      * @param content the macro content
      * @param context the macro transformation context, used for example to find out the current document reference
+     * @return the id of the chart image
      * @throws MacroExecutionException if an error occurs while generating / saving the chart image
      */
-    private void generateChart(ChartMacroParameters parameters, String content, MacroTransformationContext context)
+    private ImageId generateChart(ChartMacroParameters parameters, String content, MacroTransformationContext context)
         throws MacroExecutionException
     {
         String source = computeSource(parameters.getSource(), content);
@@ -154,11 +164,55 @@ private void generateChart(ChartMacroParameters parameters, String content, Macr
 
         dataSource.buildDataset(content, sourceParameters, context);
 
+        ChartModel chartModel = dataSource.getChartModel();
+        ImageId imageId = new ImageId(chartModel, sourceParameters);
+        if (!this.imageWriter.hasImage(imageId)) {
+            writeImage(imageId, chartModel, sourceParameters);
+        }
+
+        return imageId;
+    }
+
+    /**
+     * Generates and stores the chart image. If the same image is already being generated by another thread then we
+     * wait for it instead.
+     *
+     * @param imageId the id of the chart image
+     * @param chartModel the chart data
+     * @param sourceParameters the chart parameters
+     * @throws MacroExecutionException if an error occurs while generating / saving the chart image
+     */
+    private void writeImage(ImageId imageId, ChartModel chartModel, Map<String, String> sourceParameters)
+        throws MacroExecutionException
+    {
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            // The image may have been written since we checked.
+            if (!this.imageWriter.hasImage(imageId)) {
+                this.imageWriter.writeImage(imageId, this.chartGenerator.generate(chartModel, sourceParameters));
+            }
+            return null;
+        });
+
+        FutureTask<Void> currentTask = this.generating.putIfAbsent(imageId.getId(), task);
+        if (currentTask == null) {
+            currentTask = task;
+            try {
+                task.run();
+            } finally {
+                this.generating.remove(imageId.getId(), task);
+            }
+        }
+
         try {
-            this.imageWriter.writeImage(new ImageId(parameters),
-                this.chartGenerator.generate(dataSource.getChartModel(), sourceParameters));
-        } catch (ChartGeneratorException e) {
-            throw new MacroExecutionException("Error while rendering chart", e);
+            currentTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MacroExecutionException("Interrupted while waiting for the chart to be rendered", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MacroExecutionException) {
+                throw (MacroExecutionException) e.getCause();
+            }
+            throw new MacroExecutionException("Error while rendering chart", e.getCause());
         }
     }
 
@@ -19,10 +19,24 @@
  */
 package org.xwiki.rendering.internal.macro.chart;
 
-import org.xwiki.rendering.macro.chart.ChartMacroParameters;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.output.NullOutputStream;
+import org.xwiki.chart.model.ChartModel;
 
 /**
- * Compute a unique id for the image that the chart macro generates.
+ * Compute a unique id for the image that the chart macro generates. The id is computed from the data displayed by the
+ * chart and the parameters used to render it so that the same chart always gets the same id, and thus the same image,
+ * as long as its data doesn't change.
  *
  * @version $Id$
  * @since 4.2M1
@@ -30,25 +44,53 @@
 public class ImageId
 {
     /**
-     * @see ImageId#ImageId(org.xwiki.rendering.macro.chart.ChartMacroParameters)
+     * The algorithm used to compute the id.
+     */
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * @see #getId()
      */
-    private ChartMacroParameters macroParameters;
+    private final String id;
 
     /**
-     * @param macroParameters the chart macro parameters
+     * @param chartModel the chart model holding the data to display
+     * @param parameters the parameters used to render the chart
+     * @since 9.11RC1
      */
-    public ImageId(ChartMacroParameters macroParameters)
+    public ImageId(ChartModel chartModel, Map<String, String> parameters)
     {
-        this.macroParameters = macroParameters;
+        this.id = computeId(chartModel, parameters);
     }
 
     /**
-     * Compute a unique id based on the macro parameters.
+     * Compute a unique id based on the chart data and parameters.
      *
      * @return the unique image id used for storing the generated chart image
      */
     public String getId()
     {
-        return String.format("%s", Math.abs(this.macroParameters.hashCode()));
+        return this.id;
+    }
+
+    private String computeId(ChartModel chartModel, Map<String, String> parameters)
+    {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            try (ObjectOutputStream output =
+                new ObjectOutputStream(new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, digest))) {
+                // The model is serializable when it's built by one of our data sources, otherwise we fallback on the
+                // dataset (JFreeChart datasets are serializable).
+                output.writeObject(chartModel instanceof Serializable ? chartModel : chartModel.getDataset());
+                // Sort the parameters so that the order in which they have been specified doesn't matter.
+                output.writeObject(new TreeMap<>(parameters));
+            }
+
+            return Hex.encodeHexString(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            // Some of the data cannot be serialized so we can't know if the chart has changed: use a random id to make
+            // sure the image is always generated.
+            return UUID.randomUUID().toString();
+        }
     }
 }
@@ -20,15 +20,25 @@
 package org.xwiki.rendering.internal.macro.chart;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URLEncoder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
 import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.environment.Environment;
@@ -71,6 +81,27 @@ public class TemporaryChartImageWriter implements ChartImageWriter
      */
     private static final String PAGE = "page";
 
+    /**
+     * The extension of the generated chart images.
+     */
+    private static final String EXTENSION = "png";
+
+    /**
+     * Generated chart images that haven't been used since this number of milliseconds are removed.
+     */
+    private static final long MAX_AGE = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * The maximum size (in bytes) of the generated chart images kept in the temporary directory. The least recently
+     * used images are removed first when this size is exceeded.
+     */
+    private static final long MAX_SIZE = 100L * 1024 * 1024;
+
+    /**
+     * The minimum number of milliseconds between two clean ups of the generated chart images.
+     */
+    private static final long CLEAN_UP_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
     /**
      * Used to get the temporary directory.
      */
@@ -89,21 +120,47 @@ public class TemporaryChartImageWriter implements ChartImageWriter
     @Inject
     private DocumentAccessBridge documentAccessBridge;
 
+    @Inject
+    private Logger logger;
+
+    /**
+     * The date (in milliseconds) after which the generated chart images should be cleaned up.
+     */
+    private final AtomicLong nextCleanUp = new AtomicLong();
+
     @Override
     public void writeImage(ImageId imageId, byte[] imageData) throws MacroExecutionException
     {
         File imageFile = getStorageLocation(imageId);
 
-        FileOutputStream fos = null;
         try {
-            fos = new FileOutputStream(imageFile);
-            fos.write(imageData);
-            fos.close();
+            // Write the image in a separate file first so that a partially written image is never served.
+            File tmpFile = File.createTempFile(imageId.getId(), null, imageFile.getParentFile());
+            try {
+                FileUtils.writeByteArrayToFile(tmpFile, imageData);
+                try {
+                    Files.move(tmpFile.toPath(), imageFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmpFile.toPath(), imageFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmpFile.toPath());
+            }
         } catch (IOException e) {
             throw new MacroExecutionException("Failed to write the generated chart image", e);
-        } finally {
-            IOUtils.closeQuietly(fos);
         }
+
+        cleanUp();
+    }
+
+    @Override
+    public boolean hasImage(ImageId imageId) throws MacroExecutionException
+    {
+        File imageFile = getStorageLocation(imageId);
+
+        // Mark the image as used so that it's not removed by the next clean up. The modification date can't be set if
+        // the image doesn't exist (or has just been removed).
+        return imageFile.setLastModified(System.currentTimeMillis()) && imageFile.isFile();
     }
 
     /**
@@ -128,10 +185,46 @@ protected File getStorageLocation(ImageId imageId) throws MacroExecutionExceptio
             // Should not happen since UTF8 encoding should always be present
             throw new MacroExecutionException("Failed to compute chart image location", e);
         }
-        File locationFile = new File(directory, String.format("%s.png", imageId.getId()));
+        File locationFile = new File(directory, String.format("%s.%s", imageId.getId(), EXTENSION));
         return locationFile;
     }
 
+    /**
+     * Remove the generated chart images that haven't been used for a long time and, if they still take too much space,
+     * the least recently used ones. This is done at most once every {@link #CLEAN_UP_INTERVAL} milliseconds.
+     */
+    private void cleanUp()
+    {
+        long now = System.currentTimeMillis();
+        long next = this.nextCleanUp.get();
+        if (now < next || !this.nextCleanUp.compareAndSet(next, now + CLEAN_UP_INTERVAL)) {
+            // Not yet time or another thread is already taking care of it.
+            return;
+        }
+
+        File root = new File(this.environment.getTemporaryDirectory(), String.format("temp/%s", MODULE_NAME));
+        if (!root.isDirectory()) {
+            return;
+        }
+
+        // The images can be used while we clean up so we need to remember their modification date before sorting them.
+        Map<File, Long> lastUsed = new HashMap<>();
+        for (File image : FileUtils.listFiles(root, new String[] {EXTENSION}, true)) {
+            lastUsed.put(image, image.lastModified());
+        }
+        List<File> images = new ArrayList<>(lastUsed.keySet());
+        // Most recently used first.
+        images.sort(Comparator.<File, Long>comparing(lastUsed::get).reversed());
+
+        long size = 0;
+        for (File image : images) {
+            size += image.length();
+            if ((size > MAX_SIZE || now - lastUsed.get(image) > MAX_AGE) && !image.delete()) {
+                this.logger.debug("Failed to delete the expired chart image [{}].", image);
+            }
+        }
+    }
+
     /**
      * @return the current wiki
      * @throws MacroExecutionException if the current wiki couldn't be found
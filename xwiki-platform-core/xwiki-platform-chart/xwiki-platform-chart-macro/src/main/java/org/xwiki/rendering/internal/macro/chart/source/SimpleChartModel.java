@@ -19,6 +19,7 @@
  */
 package org.xwiki.rendering.internal.macro.chart.source;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,13 +28,19 @@
 import org.xwiki.chart.model.ChartModel;
 
 /**
- * A chart model implementation that simply holds a dataset and axis configurations.
+ * A chart model implementation that simply holds a dataset and axis configurations. It's serializable so that a
+ * unique id can be computed from the chart data.
  *
  * @version $Id$
  * @since 4.2M1
  */
-public class SimpleChartModel implements ChartModel
+public class SimpleChartModel implements ChartModel, Serializable
 {
+    /**
+     * Serialization identifier.
+     */
+    private static final long serialVersionUID = 1L;
+
     /**
      * The dataset.
      */
@@ -19,10 +19,17 @@
  */
 package org.xwiki.rendering.internal.macro.chart;
 
-import org.junit.Test;
-import org.xwiki.rendering.macro.chart.ChartMacroParameters;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.jfree.data.general.DefaultPieDataset;
 import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.chart.ChartGenerator;
+import org.xwiki.chart.model.ChartModel;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * Unit tests for {@link ImageId}.
@@ -32,15 +39,54 @@
  */
 public class ImageIdTest
 {
+    private ChartModel getChartModel(double value)
+    {
+        DefaultPieDataset dataset = new DefaultPieDataset();
+        dataset.setValue("a", value);
+        dataset.setValue("b", 2.0);
+
+        ChartModel chartModel = mock(ChartModel.class);
+        when(chartModel.getDataset()).thenReturn(dataset);
+
+        return chartModel;
+    }
+
+    private Map<String, String> getParameters(String type)
+    {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put(ChartGenerator.TYPE_PARAM, type);
+        parameters.put(ChartGenerator.TITLE_PARAM, null);
+
+        return parameters;
+    }
+
     /**
-     * Verify id are different even when using same parameters (but different instances of parameters).
+     * Verify ids are the same when using the same data and parameters (but different instances).
      */
     @Test
-    public void testGetIdWithSameParametersButDifferentInstances()
+    public void testGetIdWithSameDataAndParametersButDifferentInstances()
     {
-        ChartMacroParameters parameters1 = new ChartMacroParameters();
-        ChartMacroParameters parameters2 = new ChartMacroParameters();
+        Assert.assertEquals(new ImageId(getChartModel(1.0), getParameters("pie")).getId(),
+            new ImageId(getChartModel(1.0), getParameters("pie")).getId());
+    }
 
-        Assert.assertFalse(new ImageId(parameters1).getId().equals(new ImageId(parameters2).getId()));
+    /**
+     * Verify ids are different when the data changes.
+     */
+    @Test
+    public void testGetIdWithDifferentData()
+    {
+        Assert.assertNotEquals(new ImageId(getChartModel(1.0), getParameters("pie")).getId(),
+            new ImageId(getChartModel(3.0), getParameters("pie")).getId());
+    }
+
+    /**
+     * Verify ids are different when the parameters change.
+     */
+    @Test
+    public void testGetIdWithDifferentParameters()
+    {
+        Assert.assertNotEquals(new ImageId(getChartModel(1.0), getParameters("pie")).getId(),
+            new ImageId(getChartModel(1.0), getParameters("pie3D")).getId());
     }
 }
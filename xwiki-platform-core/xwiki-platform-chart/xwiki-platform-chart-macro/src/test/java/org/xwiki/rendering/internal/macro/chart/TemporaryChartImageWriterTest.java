@@ -20,18 +20,22 @@
 package org.xwiki.rendering.internal.macro.chart;
 
 import java.io.File;
+import java.util.Collections;
 
+import org.jfree.data.general.DefaultPieDataset;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.chart.model.ChartModel;
 import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.environment.Environment;
 import org.xwiki.model.ModelContext;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.WikiReference;
-import org.xwiki.rendering.macro.chart.ChartMacroParameters;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 /**
@@ -46,6 +50,17 @@
     public MockitoComponentMockingRule<TemporaryChartImageWriter> componentManager =
         new MockitoComponentMockingRule<TemporaryChartImageWriter>(TemporaryChartImageWriter.class);
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ImageId getImageId()
+    {
+        ChartModel chartModel = mock(ChartModel.class);
+        when(chartModel.getDataset()).thenReturn(new DefaultPieDataset());
+
+        return new ImageId(chartModel, Collections.<String, String>emptyMap());
+    }
+
     @Test
     public void getStorageLocation() throws Exception
     {
@@ -57,7 +72,7 @@ public void getStorageLocation() throws Exception
         when(environment.getTemporaryDirectory()).thenReturn(new File("/tmpdir"));
 
         File location = this.componentManager.getComponentUnderTest().getStorageLocation(
-            new ImageId(new ChartMacroParameters()));
+            getImageId());
         Assert.assertTrue("Got: " + location.toString(),
             location.toString().matches("/tmpdir/temp/chart/wiki/space/page/.*\\.png"));
     }
@@ -73,7 +88,26 @@ public void getURL() throws Exception
         when(dab.getDocumentURL(new DocumentReference("wiki", "space", "page"), "temp", null, null)).thenReturn(
             "temp/Space/Page");
 
-        String location = this.componentManager.getComponentUnderTest().getURL(new ImageId(new ChartMacroParameters()));
+        String location = this.componentManager.getComponentUnderTest().getURL(getImageId());
         Assert.assertTrue("Got: " + location, location.toString().matches("temp/Space/Page/chart/.*\\.png"));
     }
+
+    @Test
+    public void writeImage() throws Exception
+    {
+        ModelContext modelContext = this.componentManager.getInstance(ModelContext.class);
+        when(modelContext.getCurrentEntityReference()).thenReturn(new WikiReference("wiki"));
+
+        Environment environment = this.componentManager.getInstance(Environment.class);
+        when(environment.getTemporaryDirectory()).thenReturn(this.temporaryFolder.getRoot());
+
+        TemporaryChartImageWriter writer = this.componentManager.getComponentUnderTest();
+        ImageId imageId = getImageId();
+        Assert.assertFalse(writer.hasImage(imageId));
+
+        writer.writeImage(imageId, new byte[] {1, 2, 3});
+
+        Assert.assertTrue(writer.hasImage(imageId));
+        Assert.assertEquals(1, writer.getStorageLocation(imageId).getParentFile().list().length);
+    }
 }
@@ -21,7 +21,9 @@
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Stack;
 
@@ -57,6 +59,38 @@
  */
 public abstract class AbstractDocumentTitleDisplayer implements DocumentDisplayer
 {
+    /**
+     * The parsed titles, indexed by their text, keeping only the most recently used ones.
+     *
+     * @version $Id$
+     */
+    private static class TitleCache extends LinkedHashMap<String, XDOM>
+    {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The maximum number of parsed titles kept in memory.
+         */
+        private static final int SIZE = 1000;
+
+        TitleCache()
+        {
+            super(16, 0.75F, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, XDOM> eldest)
+        {
+            return size() > SIZE;
+        }
+    }
+
+    /**
+     * The characters which start a Velocity directive or reference. A title without any of them doesn't need to be
+     * evaluated.
+     */
+    private static final String VELOCITY_CHARACTERS = "#$";
+
     /**
      * The key used to store on the XWiki context map the stack of references to documents whose titles are currently
      * being evaluated (in the current execution context). This stack is used to prevent infinite recursion, which can
@@ -126,6 +160,14 @@ public abstract class AbstractDocumentTitleDisplayer implements DocumentDisplaye
      */
     private ParserUtils parserUtils = new ParserUtils();
 
+    /**
+     * The parsed titles which don't depend on the context: titles without Velocity script and document names. Lots of
+     * titles are displayed in a request (navigation tree, breadcrumbs, livetables, etc.) and the same titles are
+     * displayed again in the next requests so we avoid parsing them each time. The parsed title only depends on its
+     * text so the text is used as key, which works for all the documents, locales and versions having the same title.
+     */
+    private final Map<String, XDOM> titleCache = Collections.synchronizedMap(new TitleCache());
+
     @Override
     public XDOM display(DocumentModelBridge document, DocumentDisplayerParameters parameters)
     {
@@ -158,6 +200,11 @@ private XDOM displayTitle(DocumentModelBridge document, DocumentDisplayerParamet
         String rawTitle = document.getTitle();
         if (!StringUtils.isEmpty(rawTitle)) {
             try {
+                // A title without Velocity script doesn't depend on the context so it doesn't need to be evaluated.
+                if (!StringUtils.containsAny(rawTitle, VELOCITY_CHARACTERS)) {
+                    return getCachedTitle(rawTitle);
+                }
+
                 String title = rawTitle;
                 // Evaluate the title only if the document has script rights, otherwise use the raw title.
                 if (authorizationManager.hasAccess(Right.SCRIPT, document.getContentAuthorReference(),
@@ -204,6 +251,26 @@ protected XDOM parseTitle(String title)
         }
     }
 
+    /**
+     * Parses the given title as plain text, reusing the result of the previous parsing of the same title.
+     *
+     * @param title the title to be parsed, which must not depend on the context
+     * @return the XDOM generated from parsing the title as plain text
+     */
+    private XDOM getCachedTitle(String title)
+    {
+        // The caller can modify the returned XDOM so we never return the cached instance.
+        XDOM xdom = this.titleCache.get(title);
+        if (xdom != null) {
+            return xdom.clone();
+        }
+
+        xdom = parseTitle(title);
+        this.titleCache.put(title, xdom.clone());
+
+        return xdom;
+    }
+
     /**
      * Evaluates the Velocity script from the specified title.
      *
@@ -288,7 +355,7 @@ private XDOM getStaticTitle(DocumentModelBridge document)
             // This document represents a space (it is the home page of a space). Use the space name instead.
             documentName = document.getDocumentReference().getParent().getName();
         }
-        return parseTitle(documentName);
+        return getCachedTitle(documentName);
     }
 
     /**
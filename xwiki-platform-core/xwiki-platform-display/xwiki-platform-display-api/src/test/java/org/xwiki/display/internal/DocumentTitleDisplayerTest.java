@@ -46,13 +46,17 @@
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.Right;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
+import org.xwiki.velocity.VelocityManager;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -111,7 +115,7 @@ public void whenSettingTheContextDocumentTheContextWikiIsAlsoSet() throws Except
         DocumentModelBridge document = mock(DocumentModelBridge.class);
         DocumentReference documentReference = new DocumentReference("wiki", Arrays.asList("Space"), "Page");
         when(document.getDocumentReference()).thenReturn(documentReference);
-        when(document.getTitle()).thenReturn("title");
+        when(document.getTitle()).thenReturn("$title");
 
         XDOM titleXDOM = new XDOM(Arrays.asList(new WordBlock("title")));
 
@@ -141,4 +145,34 @@ public void whenSettingTheContextDocumentTheContextWikiIsAlsoSet() throws Except
         verify(dab).popDocumentFromContext(any());
         verify(modelContext).setCurrentEntityReference(currentWikiReference);
     }
+
+    @Test
+    public void titleWithoutScriptIsNotEvaluatedAndParsedOnce() throws Exception
+    {
+        DocumentModelBridge document = mock(DocumentModelBridge.class);
+        when(document.getDocumentReference()).thenReturn(new DocumentReference("wiki", Arrays.asList("Space"), "Page"));
+        when(document.getTitle()).thenReturn("Static title");
+
+        XDOM titleXDOM = new XDOM(Arrays.asList(new WordBlock("Static title")));
+
+        Parser plainTextParser = this.mocker.getInstance(Parser.class, "plain/1.0");
+        when(plainTextParser.parse(any(StringReader.class))).thenReturn(titleXDOM);
+
+        DocumentDisplayerParameters params = new DocumentDisplayerParameters();
+        params.setTitleDisplayed(true);
+        params.setExecutionContextIsolated(true);
+
+        assertSame(titleXDOM, this.mocker.getComponentUnderTest().display(document, params));
+
+        // The second display reuses the parsed title but returns a copy since the caller can modify it.
+        XDOM secondXDOM = this.mocker.getComponentUnderTest().display(document, params);
+        assertNotSame(titleXDOM, secondXDOM);
+        assertEquals(titleXDOM.getChildren().size(), secondXDOM.getChildren().size());
+        assertEquals("Static title", ((WordBlock) secondXDOM.getChildren().get(0)).getWord());
+
+        verify(plainTextParser).parse(any(StringReader.class));
+        verifyZeroInteractions(this.mocker.<VelocityManager>getInstance(VelocityManager.class));
+        verify(this.mocker.<DocumentAccessBridge>getInstance(DocumentAccessBridge.class), never())
+            .pushDocumentInContext(any(), any());
+    }
 }
@@ -21,8 +21,10 @@
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -62,8 +64,56 @@ public class DefaultRecordableEventDescriptorManager implements RecordableEventD
     @Inject
     private WikiDescriptorManager wikiDescriptorManager;
 
+    @Inject
+    private RecordableEventDescriptorCache cache;
+
+    /**
+     * The descriptors available in a given context, indexed by event type.
+     */
+    private static final class Descriptors
+    {
+        private final List<RecordableEventDescriptor> list;
+
+        private final Map<String, RecordableEventDescriptor> byEventType = new HashMap<>();
+
+        Descriptors(List<RecordableEventDescriptor> list)
+        {
+            this.list = list;
+            for (RecordableEventDescriptor descriptor : list) {
+                this.byEventType.putIfAbsent(descriptor.getEventType(), descriptor);
+            }
+        }
+    }
+
     @Override
     public List<RecordableEventDescriptor> getRecordableEventDescriptors(boolean allWikis) throws EventStreamException
+    {
+        return new ArrayList<>(getDescriptors(allWikis).list);
+    }
+
+    @Override
+    public RecordableEventDescriptor getDescriptorForEventType(String eventType, boolean allWikis)
+            throws EventStreamException
+    {
+        return getDescriptors(allWikis).byEventType.get(eventType);
+    }
+
+    private Descriptors getDescriptors(boolean allWikis) throws EventStreamException
+    {
+        // The context component manager depends on the current wiki
+        String key = String.format("%s:%s", allWikis, wikiDescriptorManager.getCurrentWikiId());
+
+        try {
+            return this.cache.get(key, () -> new Descriptors(loadRecordableEventDescriptors(allWikis)));
+        } catch (EventStreamException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EventStreamException("Failed to get the list of all Recordable Event Descriptors.", e);
+        }
+    }
+
+    private List<RecordableEventDescriptor> loadRecordableEventDescriptors(boolean allWikis)
+        throws EventStreamException
     {
         try {
             // We use an hashSet to be sure we won't store the same descriptor twice (in case the same application
@@ -87,14 +137,6 @@ public List<RecordableEventDescriptor> getRecordableEventDescriptors(boolean all
         }
     }
 
-    @Override
-    public RecordableEventDescriptor getDescriptorForEventType(String eventType, boolean allWikis)
-            throws EventStreamException
-    {
-        return getRecordableEventDescriptors(allWikis).stream().filter(descriptor
-            -> eventType.equals(descriptor.getEventType())).findAny().orElse(null);
-    }
-
     private List<RecordableEventDescriptor> getDescriptorsFromWiki(String wikiId)
             throws ComponentLookupException
     {
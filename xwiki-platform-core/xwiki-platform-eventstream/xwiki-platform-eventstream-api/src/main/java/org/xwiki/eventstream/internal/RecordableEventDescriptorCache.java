@@ -0,0 +1,89 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eventstream.internal;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+
+/**
+ * Keep in memory the lists and indexes of recordable event descriptors computed from the component managers, so that
+ * they don't have to be looked up (in all the wikis) each time an event is triggered. The cache is cleaned by
+ * {@link RecordableEventDescriptorCacheListener} as soon as a descriptor component is registered or unregistered.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = RecordableEventDescriptorCache.class)
+@Singleton
+public class RecordableEventDescriptorCache
+{
+    private final Map<String, Object> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented each time the cache is cleaned, to not store a value computed from outdated descriptors.
+     */
+    private long version;
+
+    /**
+     * @param key the key of the entry
+     * @param loader used to compute the entry when it's not (yet) cached
+     * @param <T> the type of the entry
+     * @return the cached entry
+     * @throws Exception when failing to compute the entry
+     */
+    public <T> T get(String key, Callable<T> loader) throws Exception
+    {
+        T value = (T) this.entries.get(key);
+
+        if (value == null) {
+            long currentVersion = getVersion();
+
+            value = loader.call();
+
+            synchronized (this) {
+                // Don't cache something computed while the descriptors were changing
+                if (this.version == currentVersion) {
+                    this.entries.put(key, value);
+                }
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Remove all the cached entries (e.g. because a descriptor has been added or removed).
+     */
+    public synchronized void removeAll()
+    {
+        this.version++;
+        this.entries.clear();
+    }
+
+    private synchronized long getVersion()
+    {
+        return this.version;
+    }
+}
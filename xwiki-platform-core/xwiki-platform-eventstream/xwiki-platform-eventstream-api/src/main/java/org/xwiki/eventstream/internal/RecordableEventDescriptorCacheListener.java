@@ -0,0 +1,71 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eventstream.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.eventstream.RecordableEventDescriptor;
+import org.xwiki.eventstream.UntypedRecordableEventDescriptor;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Clean the {@link RecordableEventDescriptorCache} when a recordable event descriptor is registered or unregistered
+ * in any component manager (e.g. when an extension is installed or when a document defining an untyped descriptor is
+ * saved).
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component
+@Named(RecordableEventDescriptorCacheListener.NAME)
+@Singleton
+public class RecordableEventDescriptorCacheListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "org.xwiki.eventstream.internal.RecordableEventDescriptorCacheListener";
+
+    @Inject
+    private RecordableEventDescriptorCache cache;
+
+    /**
+     * Default constructor.
+     */
+    public RecordableEventDescriptorCacheListener()
+    {
+        super(NAME, new ComponentDescriptorAddedEvent(RecordableEventDescriptor.class),
+            new ComponentDescriptorRemovedEvent(RecordableEventDescriptor.class),
+            new ComponentDescriptorAddedEvent(UntypedRecordableEventDescriptor.class),
+            new ComponentDescriptorRemovedEvent(UntypedRecordableEventDescriptor.class));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        this.cache.removeAll();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.eventstream.internal;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.eventstream.RecordableEventDescriptor;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultRecordableEventDescriptorManager}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@ComponentList(RecordableEventDescriptorCache.class)
+public class DefaultRecordableEventDescriptorManagerTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<DefaultRecordableEventDescriptorManager> mocker =
+            new MockitoComponentMockingRule<>(DefaultRecordableEventDescriptorManager.class);
+
+    private ComponentManager contextComponentManager;
+
+    private RecordableEventDescriptor descriptor1;
+
+    private RecordableEventDescriptor descriptor2;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.contextComponentManager = this.mocker.getInstance(ComponentManager.class, "context");
+
+        WikiDescriptorManager wikiDescriptorManager = this.mocker.getInstance(WikiDescriptorManager.class);
+        when(wikiDescriptorManager.getCurrentWikiId()).thenReturn("wiki");
+
+        this.descriptor1 = mock(RecordableEventDescriptor.class);
+        when(this.descriptor1.getEventType()).thenReturn("type1");
+        this.descriptor2 = mock(RecordableEventDescriptor.class);
+        when(this.descriptor2.getEventType()).thenReturn("type2");
+
+        when(this.contextComponentManager.getInstanceList(RecordableEventDescriptor.class))
+                .thenReturn(Arrays.asList(this.descriptor1, this.descriptor2));
+    }
+
+    @Test
+    public void getDescriptorForEventType() throws Exception
+    {
+        assertEquals(this.descriptor1, this.mocker.getComponentUnderTest().getDescriptorForEventType("type1", false));
+        assertEquals(this.descriptor2, this.mocker.getComponentUnderTest().getDescriptorForEventType("type2", false));
+        assertNull(this.mocker.getComponentUnderTest().getDescriptorForEventType("type3", false));
+        assertEquals(2, this.mocker.getComponentUnderTest().getRecordableEventDescriptors(false).size());
+
+        // The descriptors are looked up only once
+        verify(this.contextComponentManager, times(1)).getInstanceList(RecordableEventDescriptor.class);
+
+        // Until a descriptor is added or removed
+        this.mocker.<RecordableEventDescriptorCache>getInstance(RecordableEventDescriptorCache.class).removeAll();
+        this.mocker.getComponentUnderTest().getDescriptorForEventType("type1", false);
+
+        verify(this.contextComponentManager, times(2)).getInstanceList(RecordableEventDescriptor.class);
+    }
+}
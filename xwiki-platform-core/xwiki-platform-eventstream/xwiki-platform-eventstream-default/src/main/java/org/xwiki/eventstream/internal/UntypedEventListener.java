@@ -19,7 +19,12 @@
  */
 package org.xwiki.eventstream.internal;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -30,7 +35,6 @@
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.eventstream.UntypedRecordableEvent;
 import org.xwiki.eventstream.UntypedRecordableEventDescriptor;
@@ -46,6 +50,7 @@
 import org.xwiki.script.ScriptContextManager;
 import org.xwiki.template.Template;
 import org.xwiki.template.TemplateManager;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
 
 /**
  * This listener listens to every event occurring on the wiki. When an event happens, it tries to determine if this
@@ -75,6 +80,8 @@ public class UntypedEventListener extends AbstractEventListener
      */
     public static final String SOURCE_BINDING_NAME = "source";
 
+    private static final String CACHE_KEY_PREFIX = "untyped:";
+
     @Inject
     private ObservationManager observationManager;
 
@@ -95,6 +102,12 @@ public class UntypedEventListener extends AbstractEventListener
     @Inject
     private ScriptContextManager scriptContextManager;
 
+    @Inject
+    private RecordableEventDescriptorCache descriptorCache;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
     @Inject
     private Logger logger;
 
@@ -109,31 +122,56 @@ public UntypedEventListener()
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
+        // Get the UntypedEventDescriptors registered in the ComponentManager which are triggered by this event
+        List<UntypedRecordableEventDescriptor> descriptors;
         try {
-            // Get every UntypedEventDescriptor registered in the ComponentManager
-            List<UntypedRecordableEventDescriptor> descriptors =
-                    this.componentManagerProvider.get().getInstanceList(UntypedRecordableEventDescriptor.class);
-
-            // Filter the event descriptors concerned by the event, then create the concerned events
-            for (UntypedRecordableEventDescriptor descriptor : descriptors) {
-                // If the event is expected by our descriptor
-                if (descriptor.getEventTriggers().contains(event.getClass().getCanonicalName())
-                        && this.checkXObjectCondition(descriptor, source)
-                        && this.evaluateVelocityTemplate(
-                        event, source, descriptor.getAuthorReference(), descriptor.getValidationExpression()))
-                {
-                    observationManager.notify(
-                            new DefaultUntypedRecordableEvent(descriptor.getEventType()),
-                            "org.xwiki.platform:xwiki-platform-eventstream-api",
-                            source);
-                }
-            }
-        } catch (ComponentLookupException e) {
+            descriptors = getDescriptorsByTrigger().getOrDefault(event.getClass().getCanonicalName(),
+                    Collections.emptyList());
+        } catch (Exception e) {
             logger.error("Unable to retrieve a list of registered UntypedRecordableEventDescriptor "
                     + "from the ComponentManager.", e);
+            return;
+        }
+
+        // Filter the event descriptors concerned by the event, then create the concerned events
+        for (UntypedRecordableEventDescriptor descriptor : descriptors) {
+            // If the event is expected by our descriptor
+            if (this.checkXObjectCondition(descriptor, source)
+                    && this.evaluateVelocityTemplate(
+                    event, source, descriptor.getAuthorReference(), descriptor.getValidationExpression()))
+            {
+                observationManager.notify(
+                        new DefaultUntypedRecordableEvent(descriptor.getEventType()),
+                        "org.xwiki.platform:xwiki-platform-eventstream-api",
+                        source);
+            }
         }
     }
 
+    /**
+     * Since this listener receives all the events, the descriptors of the current wiki are indexed by event trigger
+     * and cached until a descriptor is added or removed.
+     *
+     * @return the descriptors registered in the current wiki, indexed by event trigger
+     * @throws Exception if the descriptors cannot be retrieved
+     */
+    private Map<String, List<UntypedRecordableEventDescriptor>> getDescriptorsByTrigger() throws Exception
+    {
+        return this.descriptorCache.get(CACHE_KEY_PREFIX + this.wikiDescriptorManager.getCurrentWikiId(), () -> {
+            Map<String, List<UntypedRecordableEventDescriptor>> descriptorsByTrigger = new HashMap<>();
+            for (UntypedRecordableEventDescriptor descriptor
+                : this.componentManagerProvider.get().<UntypedRecordableEventDescriptor>getInstanceList(
+                    UntypedRecordableEventDescriptor.class)) {
+                // A descriptor must be evaluated only once for a given event, even if the trigger is listed twice
+                for (String trigger : new LinkedHashSet<>(descriptor.getEventTriggers())) {
+                    descriptorsByTrigger.computeIfAbsent(trigger, k -> new ArrayList<>()).add(descriptor);
+                }
+            }
+
+            return descriptorsByTrigger;
+        });
+    }
+
     /**
      * Ensure that the given source matches what the descriptor needs.
      * If the source is an instance of XWikiDocument, will check if the document contains the XObject specified in
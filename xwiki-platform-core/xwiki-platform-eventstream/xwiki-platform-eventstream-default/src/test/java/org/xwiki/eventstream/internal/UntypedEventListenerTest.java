@@ -93,6 +93,8 @@ public void setUp() throws Exception
 
         documentReferenceResolver = mocker.registerMockComponent(DocumentReferenceResolver.class);
 
+        mocker.registerComponent(RecordableEventDescriptorCache.class, new RecordableEventDescriptorCache());
+
         // registeredEvent{1, 2, 3, 4, 5, 6} are events that will pass the «Event Triggers» tests
         registeredEvent1 = mock(DocumentUpdatingEvent.class);
         registeredEvent2 = mock(DocumentUpdatedEvent.class);
@@ -213,4 +215,23 @@ public void onEventWithCorrectEventAndBlankXObjectAndIncorrectValidation() throw
 
         verify(this.observationManager, never()).notify(any(), any(), any());
     }
+
+    @Test
+    public void onEventLooksUpDescriptorsOnlyOnce() throws Exception
+    {
+        Object source = mock(Object.class);
+
+        mockUntypedRecordableEventDescriptorManager();
+
+        mocker.getComponentUnderTest().onEvent(registeredEvent3, source, null);
+        mocker.getComponentUnderTest().onEvent(registeredEvent5, source, null);
+
+        verify(this.componentManager, times(1)).getInstanceList(UntypedRecordableEventDescriptor.class);
+
+        // Adding or removing a descriptor cleans the cache
+        mocker.<RecordableEventDescriptorCache>getInstance(RecordableEventDescriptorCache.class).removeAll();
+        mocker.getComponentUnderTest().onEvent(registeredEvent5, source, null);
+
+        verify(this.componentManager, times(2)).getInstanceList(UntypedRecordableEventDescriptor.class);
+    }
 }
@@ -19,12 +19,25 @@
  */
 package org.xwiki.extension.xar.internal.repository;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xwiki.extension.InstalledExtension;
 import org.xwiki.extension.repository.ExtensionRepository;
 import org.xwiki.extension.wrap.WrappingInstalledExtension;
+import org.xwiki.xar.XarEntry;
 import org.xwiki.xar.XarException;
 import org.xwiki.xar.XarPackage;
 
@@ -34,8 +47,22 @@
  */
 public class XarInstalledExtension extends WrappingInstalledExtension<InstalledExtension>
 {
+    /**
+     * The suffix of the file containing the index of the XAR entries, stored next to the XAR file.
+     */
+    private static final String INDEX_SUFFIX = ".index.xml";
+
+    /**
+     * The maximum length of the first line of the index, holding the signature of the indexed XAR file.
+     */
+    private static final int MAX_SIGNATURE_LENGTH = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(XarInstalledExtension.class);
+
     private XarInstalledExtensionRepository repository;
 
+    private Collection<XarEntry> entries;
+
     private XarPackage xarPackage;
 
     public XarInstalledExtension(InstalledExtension installedExtension, XarInstalledExtensionRepository repository)
@@ -44,14 +71,106 @@ public XarInstalledExtension(InstalledExtension installedExtension, XarInstalled
         super(installedExtension);
 
         this.repository = repository;
-        this.xarPackage = new XarPackage(new File(getFile().getAbsolutePath()));
+        this.entries = loadEntries();
+    }
+
+    private Collection<XarEntry> loadEntries() throws IOException, XarException
+    {
+        File file = new File(getFile().getAbsolutePath());
+        File indexFile = getIndexFile();
+
+        // Read the compact index when it's up to date instead of parsing each document of the XAR. The modification
+        // date alone is not enough since the XAR file can be replaced by a file with the same date (e.g. when copying
+        // the permanent directory).
+        if (file.isFile() && indexFile.isFile()) {
+            try (InputStream stream = new BufferedInputStream(new FileInputStream(indexFile))) {
+                if (getSignature(file).equals(readSignature(stream))) {
+                    XarPackage index = new XarPackage();
+                    index.readDescriptor(stream);
+
+                    return Collections.unmodifiableList(new ArrayList<>(index.getPackageFiles()));
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to read the index [{}], the XAR file will be parsed instead: {}", indexFile,
+                    e.getMessage());
+            }
+        }
+
+        XarPackage xar = getXarPackage();
+
+        if (file.isFile()) {
+            try (OutputStream stream = new FileOutputStream(indexFile)) {
+                stream.write((getSignature(file) + '\n').getBytes(StandardCharsets.UTF_8));
+                new XarPackage(xar.getEntries()).write(stream, "UTF-8");
+            } catch (Exception e) {
+                LOGGER.warn("Failed to write the index [{}]: {}", indexFile, e.getMessage());
+
+                deleteIndex();
+            }
+        }
+
+        return xar.getEntries();
+    }
+
+    private File getIndexFile()
+    {
+        return new File(getFile().getAbsolutePath() + INDEX_SUFFIX);
+    }
+
+    private String getSignature(File file)
+    {
+        return file.length() + " " + file.lastModified();
+    }
+
+    private String readSignature(InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream signature = new ByteArrayOutputStream();
+        for (int c = stream.read(); c != -1 && c != '\n' && signature.size() < MAX_SIGNATURE_LENGTH;
+            c = stream.read()) {
+            signature.write(c);
+        }
+
+        return new String(signature.toByteArray(), StandardCharsets.UTF_8);
     }
 
     /**
+     * Delete the index of the XAR entries stored next to the XAR file (e.g. because the extension is not installed
+     * anymore and its XAR file can be removed from the local repository at any time).
+     *
+     * @since 9.11RC1
+     */
+    public void deleteIndex()
+    {
+        File indexFile = getIndexFile();
+        if (indexFile.exists() && !indexFile.delete()) {
+            LOGGER.warn("Failed to delete the index [{}]", indexFile);
+        }
+    }
+
+    /**
+     * @return the entries of the XAR package (with only their reference and default action when they come from the
+     *         index stored next to the XAR file, use {@link #getXarPackage()} to get everything)
+     * @since 9.11RC1
+     */
+    public Collection<XarEntry> getXarEntries()
+    {
+        return this.entries;
+    }
+
+    /**
+     * The XAR file is parsed the first time it's actually needed.
+     * 
+     * @return the parsed XAR package
+     * @throws IOException when failing to read the XAR file
+     * @throws XarException when failing to parse the XAR file
      * @since 5.4M1
      */
-    public XarPackage getXarPackage()
+    public synchronized XarPackage getXarPackage() throws IOException, XarException
     {
+        if (this.xarPackage == null) {
+            this.xarPackage = new XarPackage(new File(getFile().getAbsolutePath()));
+        }
+
         return this.xarPackage;
     }
 
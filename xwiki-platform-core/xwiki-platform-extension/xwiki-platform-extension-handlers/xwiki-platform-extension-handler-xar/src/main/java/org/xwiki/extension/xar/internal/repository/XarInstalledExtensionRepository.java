@@ -22,7 +22,10 @@
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
@@ -53,7 +56,6 @@
 import org.xwiki.extension.xar.job.diff.DocumentVersionReference;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.LocalDocumentReference;
-import org.xwiki.model.reference.WikiReference;
 import org.xwiki.xar.XarEntry;
 import org.xwiki.xar.XarException;
 
@@ -76,15 +78,22 @@ public class XarInstalledExtensionRepository extends AbstractInstalledExtensionR
     private Logger logger;
 
     /**
-     * Index used to find extensions owners of a document installed on a specific wiki.
+     * Index used to find extensions owners of a document installed on specific wikis. The same local reference is
+     * shared by all the wikis and the wikis where each extension is installed are stored as a bitmap of wiki indexes
+     * (see {@link #wikiIndexes}).
      */
-    private Map<DocumentReference, Collection<XarInstalledExtension>> documents = new ConcurrentHashMap<>();
+    private Map<LocalDocumentReference, Map<XarInstalledExtension, BitSet>> documents = new ConcurrentHashMap<>();
 
     /**
      * Index used to find extensions owners of a document installed on root namespace.
      */
     private Map<LocalDocumentReference, Collection<XarInstalledExtension>> rootDocuments = new ConcurrentHashMap<>();
 
+    /**
+     * The index of each wiki in the bitmaps of {@link #documents}.
+     */
+    private Map<String, Integer> wikiIndexes = new ConcurrentHashMap<>();
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -109,54 +118,98 @@ private void pagesUpdated(ExtensionId extensionId, String namespace, boolean add
     {
         XarInstalledExtension installedExtension = (XarInstalledExtension) getInstalledExtension(extensionId);
 
-        pagesUpdated(installedExtension, namespace, add);
+        pagesUpdated(installedExtension, Collections.singleton(namespace), add);
     }
 
-    private void pagesUpdated(XarInstalledExtension installedExtension, String namespace, boolean add)
+    private void pagesUpdated(XarInstalledExtension installedExtension, Collection<String> namespaces, boolean add)
         throws UnsupportedNamespaceException
     {
         if (installedExtension != null) {
-            for (XarEntry xarEntry : installedExtension.getXarPackage().getEntries()) {
+            // Gather the wikis to update
+            BitSet wikis = new BitSet();
+            boolean root = false;
+            for (String namespace : namespaces) {
                 if (namespace != null) {
-                    DocumentReference reference = new DocumentReference(xarEntry,
-                        new WikiReference(XarHandlerUtils.getWikiFromNamespace(namespace)));
-
-                    synchronized (this.documents) {
-                        Collection<XarInstalledExtension> referenceExtensions = this.documents.get(reference);
-                        if (referenceExtensions != null || add) {
-                            Set<XarInstalledExtension> newSet = referenceExtensions != null
-                                ? new LinkedHashSet<>(referenceExtensions) : new LinkedHashSet<>();
-
-                            if (add) {
-                                newSet.add(installedExtension);
-                            } else {
-                                newSet.remove(installedExtension);
-                            }
-
-                            this.documents.put(reference, newSet);
-                        }
-                    }
+                    wikis.set(getWikiIndex(XarHandlerUtils.getWikiFromNamespace(namespace)));
                 } else {
-                    synchronized (this.rootDocuments) {
-                        Collection<XarInstalledExtension> referenceExtensions = this.rootDocuments.get(xarEntry);
-                        if (referenceExtensions != null || add) {
-                            Set<XarInstalledExtension> newSet = referenceExtensions != null
-                                ? new LinkedHashSet<>(referenceExtensions) : new LinkedHashSet<>();
-
-                            if (add) {
-                                newSet.add(installedExtension);
-                            } else {
-                                newSet.remove(installedExtension);
-                            }
-
-                            this.rootDocuments.put(xarEntry, newSet);
-                        }
-                    }
+                    root = true;
+                }
+            }
+
+            for (XarEntry xarEntry : installedExtension.getXarEntries()) {
+                LocalDocumentReference reference = xarEntry.getLocale() == null
+                    ? new LocalDocumentReference(xarEntry, Locale.ROOT) : xarEntry;
+
+                if (!wikis.isEmpty()) {
+                    wikiPagesUpdated(installedExtension, reference, wikis, add);
+                }
+
+                if (root) {
+                    rootPagesUpdated(installedExtension, reference, add);
+                }
+            }
+        }
+    }
+
+    private void wikiPagesUpdated(XarInstalledExtension installedExtension, LocalDocumentReference reference,
+        BitSet wikis, boolean add)
+    {
+        synchronized (this.documents) {
+            Map<XarInstalledExtension, BitSet> referenceExtensions = this.documents.get(reference);
+            if (referenceExtensions != null || add) {
+                // Copy on write since the index is read without lock
+                Map<XarInstalledExtension, BitSet> newMap = referenceExtensions != null
+                    ? new LinkedHashMap<>(referenceExtensions) : new LinkedHashMap<>();
+
+                BitSet extensionWikis = newMap.get(installedExtension);
+                extensionWikis = extensionWikis != null ? (BitSet) extensionWikis.clone() : new BitSet();
+
+                if (add) {
+                    extensionWikis.or(wikis);
+                } else {
+                    extensionWikis.andNot(wikis);
+                }
+
+                if (extensionWikis.isEmpty()) {
+                    newMap.remove(installedExtension);
+                } else {
+                    newMap.put(installedExtension, extensionWikis);
+                }
+
+                if (newMap.isEmpty()) {
+                    this.documents.remove(reference);
+                } else {
+                    this.documents.put(reference, newMap);
+                }
+            }
+        }
+    }
+
+    private void rootPagesUpdated(XarInstalledExtension installedExtension, LocalDocumentReference reference,
+        boolean add)
+    {
+        synchronized (this.rootDocuments) {
+            Collection<XarInstalledExtension> referenceExtensions = this.rootDocuments.get(reference);
+            if (referenceExtensions != null || add) {
+                Set<XarInstalledExtension> newSet = referenceExtensions != null
+                    ? new LinkedHashSet<>(referenceExtensions) : new LinkedHashSet<>();
+
+                if (add) {
+                    newSet.add(installedExtension);
+                } else {
+                    newSet.remove(installedExtension);
                 }
+
+                this.rootDocuments.put(reference, newSet);
             }
         }
     }
 
+    private synchronized int getWikiIndex(String wiki)
+    {
+        return this.wikiIndexes.computeIfAbsent(wiki, key -> this.wikiIndexes.size());
+    }
+
     void updateCachedXarExtension(ExtensionId extensionId)
     {
         InstalledExtension installedExtension = this.installedRepository.getInstalledExtension(extensionId);
@@ -190,6 +243,9 @@ protected void removeCachedXarExtension(ExtensionId extensionId)
 
         if (extension != null) {
             super.removeCachedExtension(extension);
+
+            // The extension is not installed anymore: don't leave its index behind when its XAR file is removed
+            extension.deleteIndex();
         }
     }
 
@@ -203,11 +259,9 @@ private void loadExtensions()
 
                     // Add extension pages to the index
                     if (xarInstalledExtension.getNamespaces() == null) {
-                        pagesUpdated(xarInstalledExtension, null, true);
+                        pagesUpdated(xarInstalledExtension, Collections.singleton(null), true);
                     } else {
-                        for (String namespace : localExtension.getNamespaces()) {
-                            pagesUpdated(xarInstalledExtension, namespace, true);
-                        }
+                        pagesUpdated(xarInstalledExtension, localExtension.getNamespaces(), true);
                     }
                 } catch (Exception e) {
                     this.logger.error("Failed to parse extension [{}]", localExtension.getId(), e);
@@ -237,17 +291,24 @@ public Collection<XarInstalledExtension> getXarInstalledExtensions(DocumentRefer
             }
         }
 
-        Collection<XarInstalledExtension> wikiExtensions = this.documents
-            .get(reference.getLocale() == null ? new DocumentReference(reference, Locale.ROOT) : reference);
-        Collection<XarInstalledExtension> rootExtensions =
-            this.rootDocuments.get(reference.getLocalDocumentReference().getLocale() == null
-                ? new LocalDocumentReference(reference.getLocalDocumentReference(), Locale.ROOT)
-                : reference.getLocalDocumentReference());
+        LocalDocumentReference localReference = reference.getLocalDocumentReference().getLocale() == null
+            ? new LocalDocumentReference(reference.getLocalDocumentReference(), Locale.ROOT)
+            : reference.getLocalDocumentReference();
+
+        Map<XarInstalledExtension, BitSet> wikiExtensions = this.documents.get(localReference);
+        Collection<XarInstalledExtension> rootExtensions = this.rootDocuments.get(localReference);
 
         List<XarInstalledExtension> allExtensions = new ArrayList<>();
 
         if (wikiExtensions != null) {
-            allExtensions.addAll(wikiExtensions);
+            Integer wikiIndex = this.wikiIndexes.get(reference.getWikiReference().getName());
+            if (wikiIndex != null) {
+                for (Map.Entry<XarInstalledExtension, BitSet> entry : wikiExtensions.entrySet()) {
+                    if (entry.getValue().get(wikiIndex)) {
+                        allExtensions.add(entry.getKey());
+                    }
+                }
+            }
         }
 
         if (rootExtensions != null) {
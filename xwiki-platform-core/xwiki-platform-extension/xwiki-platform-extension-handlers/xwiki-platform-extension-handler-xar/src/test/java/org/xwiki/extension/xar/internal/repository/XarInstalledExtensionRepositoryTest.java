@@ -19,9 +19,15 @@
  */
 package org.xwiki.extension.xar.internal.repository;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -31,14 +37,18 @@
 import org.xwiki.extension.repository.search.SearchException;
 import org.xwiki.extension.test.MockitoRepositoryUtilsRule;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.LocalDocumentReference;
 import org.xwiki.test.annotation.AfterComponent;
 import org.xwiki.test.annotation.AllComponents;
 import org.xwiki.test.mockito.MockitoComponentManagerRule;
 import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.xar.XarEntry;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @AllComponents
 public class XarInstalledExtensionRepositoryTest
@@ -96,4 +106,55 @@ public void testInit() throws ResolveException, SearchException
         assertEquals(0, this.installedExtensionRepository
             .getXarInstalledExtensions(new DocumentReference("xwiki", "space", "page", Locale.ENGLISH)).size());
     }
+
+    @Test
+    public void testIndex() throws Exception
+    {
+        XarInstalledExtension xarInstalledExtension =
+            this.installedExtensionRepository.resolve(new ExtensionId("xarinstalledextension", "1.0"));
+
+        // The index has been written next to the XAR file
+        assertTrue(new File(xarInstalledExtension.getFile().getAbsolutePath() + ".index.xml").exists());
+
+        // And is used to get the entries without parsing the XAR
+        XarInstalledExtension indexedExtension =
+            new XarInstalledExtension(xarInstalledExtension.getWrapped(), this.installedExtensionRepository);
+
+        assertEquals(toReferences(xarInstalledExtension.getXarPackage().getEntries()),
+            toReferences(indexedExtension.getXarEntries()));
+    }
+
+    @Test
+    public void testOutdatedIndex() throws Exception
+    {
+        XarInstalledExtension xarInstalledExtension =
+            this.installedExtensionRepository.resolve(new ExtensionId("xarinstalledextension", "1.0"));
+
+        // An index more recent than the XAR file but computed for another XAR file
+        File indexFile = new File(xarInstalledExtension.getFile().getAbsolutePath() + ".index.xml");
+        FileUtils.write(indexFile, "0 0\n<package><infos></infos><files></files></package>", StandardCharsets.UTF_8);
+
+        XarInstalledExtension indexedExtension =
+            new XarInstalledExtension(xarInstalledExtension.getWrapped(), this.installedExtensionRepository);
+
+        // The XAR file is parsed and the index updated
+        assertEquals(toReferences(xarInstalledExtension.getXarPackage().getEntries()),
+            toReferences(indexedExtension.getXarEntries()));
+        assertFalse(FileUtils.readFileToString(indexFile, StandardCharsets.UTF_8).startsWith("0 0\n"));
+
+        indexedExtension.deleteIndex();
+
+        assertFalse(indexFile.exists());
+    }
+
+    private List<LocalDocumentReference> toReferences(Collection<XarEntry> entries)
+    {
+        List<LocalDocumentReference> references = new ArrayList<>();
+        for (XarEntry entry : entries) {
+            references.add(
+                new LocalDocumentReference(entry, entry.getLocale() != null ? entry.getLocale() : Locale.ROOT));
+        }
+
+        return references;
+    }
 }
@@ -56,4 +56,33 @@ public boolean isGenerateInlineSourceMaps()
     {
         return configurationSource.getProperty(CONFIGURATION_PREFIX + "generateInlineSourceMaps", false);
     }
+
+    /**
+     * @return the directory where the result of the compilations is stored, the permanent directory is used when
+     *         {@code null}
+     * @since 9.11RC1
+     */
+    public String getCacheDirectory()
+    {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + "cache.directory", String.class);
+    }
+
+    /**
+     * @return the maximum size (in megabytes) of the stored compilation results, the least recently used results
+     *         being removed first when it's exceeded
+     * @since 9.11RC1
+     */
+    public int getCacheMaxSize()
+    {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + "cache.maxSize", 100);
+    }
+
+    /**
+     * @return whether the other color themes should be compiled in the background when a skin file is compiled
+     * @since 9.11RC1
+     */
+    public boolean isCacheWarmUpEnabled()
+    {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + "cache.warmUp", true);
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.lesscss.internal.cache;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.lesscss.compiler.LESSCompiler;
+import org.xwiki.lesscss.internal.LESSConfiguration;
+import org.xwiki.lesscss.internal.LESSContext;
+import org.xwiki.lesscss.internal.resources.LESSSkinFileResourceReference;
+import org.xwiki.lesscss.resources.LESSResourceReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.util.AbstractXWikiRunnable;
+import com.xpn.xwiki.web.XWikiServletRequestStub;
+
+/**
+ * Compile in the background a skin file for all the color themes of the wiki the first time it is compiled for one of
+ * them, so that the first visitors using the other color themes don't have to wait for the compilation (the results
+ * are kept in the memory cache and in the {@link PersistentLESSCache}).
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = LESSCacheWarmUp.class)
+@Singleton
+public class LESSCacheWarmUp implements Disposable
+{
+    private static final String COLOR_THEMES_QUERY = "select distinct doc.fullName from XWikiDocument doc, "
+        + "BaseObject obj where doc.fullName = obj.name and obj.className in ('ColorThemes.ColorThemeClass', "
+        + "'FlamingoThemesCode.ThemeClass')";
+
+    private static final String COLOR_THEME_PARAMETER = "colorTheme";
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    /**
+     * Lazily loaded since the compiler uses this component.
+     */
+    @Inject
+    private Provider<LESSCompiler> lessCompilerProvider;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private XWikiContextCacheKeyFactory xcontextCacheKeyFactory;
+
+    @Inject
+    private LESSConfiguration lessConfiguration;
+
+    @Inject
+    private LESSContext lessContext;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The compilations already warmed up, to do it only once.
+     */
+    private final Set<String> warmedUp = ConcurrentHashMap.newKeySet();
+
+    /**
+     * A single thread so that the warm up doesn't compete too much with the compilations requested by the users.
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+        new BasicThreadFactory.Builder().namingPattern("LESS cache warm up").daemon(true).build());
+
+    /**
+     * Compile the passed resource for all the color themes of the current wiki in the background, if it's not already
+     * done.
+     *
+     * @param lessResourceReference the resource which has been compiled for the current color theme
+     * @param includeSkinStyle include the main LESS file of the skin
+     * @param useVelocity either or not the resource is parsed by Velocity before compiling it
+     * @param skin the skin for which the resource has been compiled
+     */
+    public void warmUp(LESSResourceReference lessResourceReference, boolean includeSkinStyle, boolean useVelocity,
+        String skin)
+    {
+        // Only the skin files are compiled for each color theme.
+        if (!(lessResourceReference instanceof LESSSkinFileResourceReference) || lessContext.isCacheDisabled()
+            || !lessConfiguration.isCacheWarmUpEnabled()) {
+            return;
+        }
+
+        XWikiContext xcontext = xcontextProvider.get();
+        if (xcontext.getRequest() == null || xcontext.getDoc() == null) {
+            return;
+        }
+
+        String key = String.format("%s:%s:%s:%s:%s:%s", xcontext.getWikiId(), lessResourceReference.serialize(),
+            skin, includeSkinStyle, useVelocity, xcontextCacheKeyFactory.getCacheKey());
+        if (warmedUp.add(key)) {
+            executor.execute(new WarmUp(xcontext.clone(), lessResourceReference, includeSkinStyle, useVelocity, skin));
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        executor.shutdownNow();
+    }
+
+    private class WarmUp extends AbstractXWikiRunnable
+    {
+        private final XWikiContext xcontext;
+
+        private final LESSResourceReference lessResourceReference;
+
+        private final boolean includeSkinStyle;
+
+        private final boolean useVelocity;
+
+        private final String skin;
+
+        WarmUp(XWikiContext xcontext, LESSResourceReference lessResourceReference, boolean includeSkinStyle,
+            boolean useVelocity, String skin)
+        {
+            this.xcontext = xcontext;
+            this.lessResourceReference = lessResourceReference;
+            this.includeSkinStyle = includeSkinStyle;
+            this.useVelocity = useVelocity;
+            this.skin = skin;
+        }
+
+        @Override
+        protected void declareProperties(ExecutionContext executionContext)
+        {
+            xcontext.declareInExecutionContext(executionContext);
+        }
+
+        @Override
+        protected void runInternal()
+        {
+            URL url = xcontext.getURL();
+
+            try {
+                List<String> colorThemes =
+                    queryManager.createQuery(COLOR_THEMES_QUERY, Query.HQL).setWiki(xcontext.getWikiId()).execute();
+
+                for (String colorTheme : colorThemes) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+
+                    // The current color theme is taken from the request.
+                    xcontext.setRequest(new XWikiServletRequestStub(url,
+                        Collections.singletonMap(COLOR_THEME_PARAMETER, new String[] { colorTheme })));
+                    lessCompilerProvider.get().compile(lessResourceReference, includeSkinStyle, useVelocity, skin,
+                        false);
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to compile [{}] for all the color themes. Root cause: [{}]",
+                    lessResourceReference, e.getMessage());
+            }
+        }
+    }
+}
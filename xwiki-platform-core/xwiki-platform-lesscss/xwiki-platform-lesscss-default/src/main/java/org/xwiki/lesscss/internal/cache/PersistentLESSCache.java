@@ -0,0 +1,280 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.lesscss.internal.cache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
+import org.xwiki.lesscss.internal.LESSConfiguration;
+
+/**
+ * Keep the result of the LESS compilations on the disk so that they are reused after a restart and, when the cache
+ * directory is shared, by the other nodes of a cluster. The compilations are identified by a digest of the compiled
+ * LESS code and of the compilation options. Since the compiled code can import skin templates, the digest of the
+ * content of each imported template is stored with the result and checked before reusing it. The total size of the
+ * stored results is bounded, the least recently used results being removed first.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = PersistentLESSCache.class)
+@Singleton
+public class PersistentLESSCache implements Initializable
+{
+    /**
+     * The result of a compilation stored on the disk.
+     *
+     * @version $Id$
+     */
+    public static class Entry
+    {
+        private final Map<String, String> importedDigests;
+
+        private final String css;
+
+        Entry(Map<String, String> importedDigests, String css)
+        {
+            this.importedDigests = importedDigests;
+            this.css = css;
+        }
+
+        /**
+         * @return the digest of the content of the templates imported during the compilation, indexed by template
+         *         name
+         */
+        public Map<String, String> getImportedDigests()
+        {
+            return this.importedDigests;
+        }
+
+        /**
+         * @return the compiled CSS
+         */
+        public String getCss()
+        {
+            return this.css;
+        }
+    }
+
+    private static final String EXTENSION = ".css";
+
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    /**
+     * The results not used for this long are removed at startup.
+     */
+    private static final long MAX_UNUSED_TIME = TimeUnit.DAYS.toMillis(30);
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private LESSConfiguration lessConfiguration;
+
+    @Inject
+    private Logger logger;
+
+    private File cacheDir;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        String configuredDirectory = this.lessConfiguration.getCacheDirectory();
+        if (StringUtils.isNotEmpty(configuredDirectory)) {
+            this.cacheDir = new File(configuredDirectory);
+        } else {
+            this.cacheDir = new File(this.environment.getPermanentDirectory(), "cache/lesscss");
+        }
+        this.cacheDir.mkdirs();
+
+        cleanUp();
+    }
+
+    private void cleanUp()
+    {
+        // Remove the results not used for a long time, and the temporary files left by a crash. Recent temporary
+        // files may be written by another node sharing the directory.
+        long limit = System.currentTimeMillis() - MAX_UNUSED_TIME;
+        File[] files = this.cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.lastModified() < limit && !file.delete()) {
+                    this.logger.debug("Failed to delete the unused LESS compilation result [{}].", file);
+                }
+            }
+        }
+
+        enforceMaxSize();
+    }
+
+    private void enforceMaxSize()
+    {
+        File[] files = this.cacheDir.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        // Take a snapshot of the last access dates since the results can be used while they are sorted.
+        long size = 0;
+        List<Pair<Long, File>> results = new ArrayList<>(files.length);
+        for (File file : files) {
+            size += file.length();
+            results.add(Pair.of(file.lastModified(), file));
+        }
+
+        long maxSize = this.lessConfiguration.getCacheMaxSize() * 1024L * 1024L;
+        if (size > maxSize) {
+            results.sort(Comparator.comparing(Pair::getLeft));
+            for (Pair<Long, File> result : results) {
+                if (size <= maxSize) {
+                    break;
+                }
+                long length = result.getRight().length();
+                if (result.getRight().delete()) {
+                    size -= length;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param lessCode the LESS code to compile
+     * @param skin the skin holding the imported templates
+     * @param inlineSourceMap whether inline sourcemaps are generated
+     * @return the key identifying the compilation
+     */
+    public String getKey(String lessCode, String skin, boolean inlineSourceMap)
+    {
+        // The skin and the option are separated from the code by a character that can't be part of a skin name.
+        return digest(skin + '\0' + inlineSourceMap + '\0' + lessCode);
+    }
+
+    /**
+     * @param content some content
+     * @return the digest of the passed content
+     */
+    public String digest(String content)
+    {
+        return DigestUtils.sha256Hex(content);
+    }
+
+    /**
+     * @param key the key identifying the compilation
+     * @return the stored result of the compilation or {@code null} if there is none
+     */
+    public Entry get(String key)
+    {
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (BufferedReader reader =
+            new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            int importCount = Integer.parseInt(reader.readLine());
+            Map<String, String> importedDigests = new HashMap<>();
+            for (int i = 0; i < importCount; ++i) {
+                String line = reader.readLine();
+                importedDigests.put(StringUtils.substringAfter(line, " "), StringUtils.substringBefore(line, " "));
+            }
+            Entry entry = new Entry(importedDigests, IOUtils.toString(reader));
+
+            // Mark the result as recently used.
+            file.setLastModified(System.currentTimeMillis());
+
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            this.logger.debug("Failed to read the stored LESS compilation result [{}].", file, e);
+
+            return null;
+        }
+    }
+
+    /**
+     * Store the result of a compilation.
+     *
+     * @param key the key identifying the compilation
+     * @param importedContents the content of the templates imported during the compilation, indexed by template name
+     * @param css the compiled CSS
+     */
+    public void set(String key, Map<String, String> importedContents, String css)
+    {
+        File file = getFile(key);
+
+        try {
+            // Write in a separate file first so that a partially written result is never read.
+            File tmpFile = File.createTempFile(key, TEMPORARY_EXTENSION, this.cacheDir);
+            try {
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+                    writer.write(String.valueOf(importedContents.size()));
+                    writer.write('\n');
+                    for (Map.Entry<String, String> imported : importedContents.entrySet()) {
+                        writer.write(digest(imported.getValue()));
+                        writer.write(' ');
+                        writer.write(imported.getKey());
+                        writer.write('\n');
+                    }
+                    writer.write(css);
+                }
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmpFile.toPath());
+            }
+
+            enforceMaxSize();
+        } catch (IOException e) {
+            // Not critical, the code will just be compiled again next time.
+            this.logger.warn("Failed to store the LESS compilation result in [{}]. Root cause: [{}]", file,
+                e.getMessage());
+        }
+    }
+
+    private File getFile(String key)
+    {
+        return new File(this.cacheDir, key + EXTENSION);
+    }
+}
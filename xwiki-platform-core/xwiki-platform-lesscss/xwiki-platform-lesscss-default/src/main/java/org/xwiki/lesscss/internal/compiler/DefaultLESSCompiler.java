@@ -32,8 +32,11 @@
 import org.xwiki.lesscss.compiler.LESSCompiler;
 import org.xwiki.lesscss.compiler.LESSCompilerException;
 import org.xwiki.lesscss.internal.cache.AbstractCachedCompiler;
+import org.xwiki.lesscss.internal.cache.LESSCacheWarmUp;
 import org.xwiki.lesscss.resources.LESSResourceReference;
 
+import com.xpn.xwiki.XWikiContext;
+
 /**
  * Default implementation for {@link org.xwiki.lesscss.compiler.LESSCompiler}. It uses the CachedIntegratedLESSCompiler
  * through the AbstractCachedCompiler to cache the result of the compilation.
@@ -52,6 +55,9 @@ public class DefaultLESSCompiler extends AbstractCachedCompiler<String> implemen
     @Inject
     private CachedLESSCompiler cachedLESSCompiler;
 
+    @Inject
+    private LESSCacheWarmUp warmUp;
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -63,14 +69,21 @@ public void initialize() throws InitializationException
     public String compile(LESSResourceReference lessResourceReference, boolean includeSkinStyle, boolean useVelocity,
                           boolean force) throws LESSCompilerException
     {
-        return super.getResult(lessResourceReference, includeSkinStyle, useVelocity, force);
+        XWikiContext xcontext = xcontextProvider.get();
+        String skin = xcontext.getWiki().getSkin(xcontext);
+        return compile(lessResourceReference, includeSkinStyle, useVelocity, skin, force);
     }
 
     @Override
     public String compile(LESSResourceReference lessResourceReference, boolean includeSkinStyle, boolean useVelocity,
                          String skin, boolean force) throws LESSCompilerException
     {
-        return super.getResult(lessResourceReference, includeSkinStyle, useVelocity, skin, force);
+        String result = super.getResult(lessResourceReference, includeSkinStyle, useVelocity, skin, force);
+
+        // Prepare the same file for the other color themes
+        warmUp.warmUp(lessResourceReference, includeSkinStyle, useVelocity, skin);
+
+        return result;
     }
 
     @Override
@@ -19,6 +19,8 @@
  */
 package org.xwiki.lesscss.internal.compiler.less4j;
 
+import java.util.Map;
+
 import org.xwiki.skin.Resource;
 import org.xwiki.skin.Skin;
 import org.xwiki.template.TemplateManager;
@@ -37,6 +39,12 @@ public abstract class AbstractLESSSource extends LessSource
 
     protected Skin skin;
     
+    /**
+     * The raw (i.e. before executing Velocity) content of the imported templates, indexed by template name, or
+     * {@code null} if it should not be recorded.
+     */
+    protected Map<String, String> importedContents;
+
     private String folder;
 
     /**
@@ -46,10 +54,25 @@ public abstract class AbstractLESSSource extends LessSource
      * @param folder the folder in which the template is located
      */
     public AbstractLESSSource(TemplateManager templateManager, Skin skin, String folder)
+    {
+        this(templateManager, skin, folder, null);
+    }
+
+    /**
+     * @param templateManager the template manager component
+     * @param skin the skin holding the templates
+     * @param folder the folder in which the template is located
+     * @param importedContents where to record the raw (i.e. before executing Velocity) content of the imported
+     *            templates, indexed by template name
+     * @since 9.11RC1
+     */
+    public AbstractLESSSource(TemplateManager templateManager, Skin skin, String folder,
+        Map<String, String> importedContents)
     {
         this.templateManager = templateManager;
         this.skin = skin;
         this.folder = folder;
+        this.importedContents = importedContents;
     }
     
     @Override
@@ -58,7 +81,7 @@ public LessSource relativeSource(String filename) throws FileNotFound
         String template = folder + "/" + filename;
         Resource resource = skin.getResource(template);
         if (resource != null) {
-            return new TemplateLESSSource(templateManager, skin, template);
+            return new TemplateLESSSource(templateManager, skin, template, importedContents);
         }
 
         // The file has not been found
@@ -19,13 +19,25 @@
  */
 package org.xwiki.lesscss.internal.compiler.less4j;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.lesscss.internal.cache.PersistentLESSCache;
+import org.xwiki.lesscss.internal.cache.XWikiContextCacheKeyFactory;
+import org.xwiki.lesscss.internal.colortheme.CurrentColorThemeGetter;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.skin.Skin;
 import org.xwiki.skin.SkinManager;
 import org.xwiki.template.TemplateManager;
 
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
 import com.github.sommeri.less4j.Less4jException;
 import com.github.sommeri.less4j.LessCompiler;
 import com.github.sommeri.less4j.LessSource;
@@ -41,12 +53,29 @@
 @Singleton
 public class Less4jCompiler
 {
+    private static final String DEFAULT_COLOR_THEME = "default";
+
     @Inject
     private TemplateManager templateManager;
     
     @Inject
     private SkinManager skinManager;
 
+    @Inject
+    private PersistentLESSCache persistentCache;
+
+    @Inject
+    private CurrentColorThemeGetter currentColorThemeGetter;
+
+    @Inject
+    private XWikiContextCacheKeyFactory xcontextCacheKeyFactory;
+
+    @Inject
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
     /**
      * Compile the LESS code and get the included files from the skin templates.
      * @param lessCode code to compile
@@ -57,14 +86,108 @@
      */
     public String compile(String lessCode, String skin, boolean inlineSourceMap) throws Less4jException
     {
+        Skin skinObject = skinManager.getSkin(skin);
+
+        // The compilation is the costly part so we reuse the result of a previous compilation when none of its inputs
+        // have changed (even before a restart or on another node).
+        String key = persistentCache.getKey(lessCode, skin, inlineSourceMap);
+        String css = getStoredResult(key, skinObject);
+        if (css != null) {
+            return css;
+        }
+
         LessCompiler lessCompiler = new DefaultLessCompiler();
         LessCompiler.Configuration options = new LessCompiler.Configuration();
         options.setCompressing(true);
         options.getSourceMapConfiguration().setInline(inlineSourceMap);
         options.getSourceMapConfiguration().setIncludeSourcesContent(true);
+        Map<String, String> importedContents = new HashMap<>();
         LessSource lessSource = 
-            new CustomContentLESSSource(lessCode, templateManager, skinManager.getSkin(skin));
+            new CustomContentLESSSource(lessCode, templateManager, skinObject, importedContents);
         LessCompiler.CompilationResult lessResult = lessCompiler.compile(lessSource, options);
-        return lessResult.getCss();
+        css = lessResult.getCss();
+
+        if (addRenderingContext(importedContents)) {
+            persistentCache.set(key, importedContents, css);
+        }
+
+        return css;
+    }
+
+    /**
+     * The main skin template is rendered with Velocity so its raw content is not enough to validate a stored result:
+     * the rendering context is added to it.
+     *
+     * @return {@code false} if the rendering context of the main skin template is unknown
+     */
+    private boolean addRenderingContext(Map<String, String> importedContents)
+    {
+        for (Map.Entry<String, String> imported : importedContents.entrySet()) {
+            if (TemplateLESSSource.isMainSkinTemplate(imported.getKey())) {
+                String renderingContext = getRenderingContext();
+                if (renderingContext == null) {
+                    return false;
+                }
+                imported.setValue(imported.getValue() + '\0' + renderingContext);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return what the rendering of the main skin template depends on besides its raw content: the current color
+     *         theme (and its version), the URL factory used to generate the URLs of the skin files and the XWiki
+     *         version (for the templates it includes), or {@code null} if it cannot be determined
+     */
+    private String getRenderingContext()
+    {
+        XWikiContext xcontext = xcontextProvider.get();
+        String colorTheme = currentColorThemeGetter.getCurrentColorTheme(true, DEFAULT_COLOR_THEME);
+
+        String colorThemeVersion = "";
+        try {
+            XWikiDocument colorThemeDocument =
+                xcontext.getWiki().getDocument(documentReferenceResolver.resolve(colorTheme), xcontext);
+            if (!colorThemeDocument.isNew()) {
+                colorThemeVersion = colorThemeDocument.getVersion() + '@' + colorThemeDocument.getDate().getTime();
+            }
+        } catch (XWikiException e) {
+            return null;
+        }
+
+        return colorTheme + '\0' + colorThemeVersion + '\0' + xcontextCacheKeyFactory.getCacheKey() + '\0'
+            + xcontext.getWiki().getVersion();
+    }
+
+    private String getStoredResult(String key, Skin skin)
+    {
+        PersistentLESSCache.Entry entry = persistentCache.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        // Make sure the imported templates have not been modified since the compilation. Velocity is not executed on
+        // the main skin template: its raw content is checked along with its rendering context.
+        Map<String, String> importedContents = new HashMap<>();
+        for (String templateName : entry.getImportedDigests().keySet()) {
+            try {
+                importedContents.put(templateName,
+                    new TemplateLESSSource(templateManager, skin, templateName).getRawContent());
+            } catch (LessSource.CannotReadFile e) {
+                return null;
+            }
+        }
+        if (!addRenderingContext(importedContents)) {
+            return null;
+        }
+        for (Map.Entry<String, String> imported : importedContents.entrySet()) {
+            String digest = entry.getImportedDigests().get(imported.getKey());
+            if (!persistentCache.digest(imported.getValue()).equals(digest)) {
+                return null;
+            }
+        }
+
+        return entry.getCss();
     }
 }
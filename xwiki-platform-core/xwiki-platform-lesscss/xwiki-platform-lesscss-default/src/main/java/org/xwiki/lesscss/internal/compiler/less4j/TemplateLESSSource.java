@@ -19,6 +19,8 @@
  */
 package org.xwiki.lesscss.internal.compiler.less4j;
 
+import java.util.Map;
+
 import org.apache.commons.lang3.StringUtils;
 import org.xwiki.lesscss.internal.compiler.CachedLESSCompiler;
 import org.xwiki.skin.Skin;
@@ -35,6 +37,8 @@
 public class TemplateLESSSource extends AbstractLESSSource
 {
     private static final String FILE_SEPARATOR = "/";
+
+    private static final String MAIN_SKIN_TEMPLATE = "less/" + CachedLESSCompiler.MAIN_SKIN_STYLE_FILENAME;
     
     private String templateName;
     
@@ -46,7 +50,21 @@ public class TemplateLESSSource extends AbstractLESSSource
      */
     public TemplateLESSSource(TemplateManager templateManager, Skin skin, String templateName)
     {
-        super(templateManager, skin, getParentFolder(templateName));
+        this(templateManager, skin, templateName, null);
+    }
+
+    /**
+     * @param templateManager the template manager component
+     * @param skin the skin holding the template
+     * @param templateName the name of the template
+     * @param importedContents where to record the raw (i.e. before executing Velocity) content of the imported
+     *            templates, indexed by template name
+     * @since 9.11RC1
+     */
+    public TemplateLESSSource(TemplateManager templateManager, Skin skin, String templateName,
+        Map<String, String> importedContents)
+    {
+        super(templateManager, skin, getParentFolder(templateName), importedContents);
         this.templateName = templateName;
     }
 
@@ -74,21 +92,52 @@ public String getContent() throws FileNotFound, CannotReadFile
             // skin might have. Actually we have no way to know which .less.vm are included, without running LESS.
             //
             // That is why we do not execute Velocity on any ".less.vm" file but only on the main skin template.
-            String mainSkinTemplate = "less/" + CachedLESSCompiler.MAIN_SKIN_STYLE_FILENAME;
-            if (mainSkinTemplate.equals(templateName)) {
-                return templateManager.renderFromSkin(templateName, skin);
-            } 
-            
-            // Otherwise, return the raw content
+            String content;
+            if (isMainSkinTemplate(templateName)) {
+                content = templateManager.renderFromSkin(templateName, skin);
+            } else {
+                // Otherwise, return the raw content
+                content = getRawContent();
+            }
+
+            if (importedContents != null) {
+                // The raw content is recorded so that the compilation result can be validated without executing
+                // Velocity again (see Less4jCompiler).
+                importedContents.put(templateName, isMainSkinTemplate(templateName) ? getRawContent() : content);
+            }
+
+            return content;
+        } catch (Exception e) {
+            throw new CannotReadFile();
+        }
+    }
+
+    /**
+     * @return the content of the template, without executing Velocity on it
+     * @throws CannotReadFile if the template cannot be read
+     * @since 9.11RC1
+     */
+    public String getRawContent() throws CannotReadFile
+    {
+        try {
             Template template = templateManager.getTemplate(templateName, skin);
             TemplateContent templateContent = template.getContent();
             return templateContent.getContent();
-            
         } catch (Exception e) {
             throw new CannotReadFile();
         }
     }
 
+    /**
+     * @param templateName the name of a template
+     * @return {@code true} if the template is the main skin file, on which Velocity is executed
+     * @since 9.11RC1
+     */
+    public static boolean isMainSkinTemplate(String templateName)
+    {
+        return MAIN_SKIN_TEMPLATE.equals(templateName);
+    }
+
     @Override
     public byte[] getBytes() throws FileNotFound, CannotReadFile
     {
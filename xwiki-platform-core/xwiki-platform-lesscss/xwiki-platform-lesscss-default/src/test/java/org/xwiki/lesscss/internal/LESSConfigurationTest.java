@@ -25,6 +25,7 @@
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.when;
@@ -62,4 +63,25 @@ public void generateSourceMaps() throws Exception
         boolean b  = mocker.getComponentUnderTest().isGenerateInlineSourceMaps();
         assertTrue(b);
     }
+
+    @Test
+    public void cacheDirectory() throws Exception
+    {
+        when(xwikiPropertiesSource.getProperty("lesscss.cache.directory", String.class)).thenReturn("/cache");
+        assertEquals("/cache", mocker.getComponentUnderTest().getCacheDirectory());
+    }
+
+    @Test
+    public void cacheMaxSize() throws Exception
+    {
+        when(xwikiPropertiesSource.getProperty("lesscss.cache.maxSize", 100)).thenReturn(50);
+        assertEquals(50, mocker.getComponentUnderTest().getCacheMaxSize());
+    }
+
+    @Test
+    public void cacheWarmUp() throws Exception
+    {
+        when(xwikiPropertiesSource.getProperty("lesscss.cache.warmUp", true)).thenReturn(false);
+        assertFalse(mocker.getComponentUnderTest().isCacheWarmUpEnabled());
+    }
 }
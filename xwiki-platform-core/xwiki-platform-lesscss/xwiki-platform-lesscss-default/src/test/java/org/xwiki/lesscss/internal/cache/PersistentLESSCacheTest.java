@@ -0,0 +1,127 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.lesscss.internal.cache;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.environment.Environment;
+import org.xwiki.lesscss.internal.LESSConfiguration;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link PersistentLESSCache}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class PersistentLESSCacheTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public MockitoComponentMockingRule<PersistentLESSCache> mocker =
+        new MockitoComponentMockingRule<>(PersistentLESSCache.class);
+
+    private File permanentDirectory;
+
+    private LESSConfiguration lessConfiguration;
+
+    @Before
+    public void configure() throws Exception
+    {
+        this.permanentDirectory = this.temporaryFolder.newFolder("permanent");
+        Environment environment = this.mocker.getInstance(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(this.permanentDirectory);
+
+        this.lessConfiguration = this.mocker.getInstance(LESSConfiguration.class);
+        when(this.lessConfiguration.getCacheMaxSize()).thenReturn(100);
+    }
+
+    @Test
+    public void getAndSet() throws Exception
+    {
+        PersistentLESSCache cache = this.mocker.getComponentUnderTest();
+        String key = cache.getKey("@import \"variables.less\";", "flamingo", false);
+
+        assertNull(cache.get(key));
+
+        Map<String, String> importedContents = new HashMap<>();
+        importedContents.put("less/variables.less", "@color: red;");
+        importedContents.put("less/sub dir/mixins.less", ".mixin() {}");
+        cache.set(key, importedContents, "a{color:red}\n");
+
+        PersistentLESSCache.Entry entry = cache.get(key);
+        assertEquals("a{color:red}\n", entry.getCss());
+        assertEquals(2, entry.getImportedDigests().size());
+        assertEquals(cache.digest("@color: red;"), entry.getImportedDigests().get("less/variables.less"));
+        assertEquals(cache.digest(".mixin() {}"), entry.getImportedDigests().get("less/sub dir/mixins.less"));
+    }
+
+    @Test
+    public void setIsBoundedBySize() throws Exception
+    {
+        when(this.lessConfiguration.getCacheMaxSize()).thenReturn(1);
+        PersistentLESSCache cache = this.mocker.getComponentUnderTest();
+        String css = StringUtils.repeat('a', 400 * 1024);
+        Map<String, String> importedContents = Collections.emptyMap();
+
+        cache.set("first", importedContents, css);
+        cache.set("second", importedContents, css);
+
+        // The first result is the least recently used
+        File cacheDir = new File(this.permanentDirectory, "cache/lesscss");
+        new File(cacheDir, "first.css").setLastModified(System.currentTimeMillis() - 10000);
+        new File(cacheDir, "second.css").setLastModified(System.currentTimeMillis() - 5000);
+
+        cache.set("third", importedContents, css);
+
+        assertNull(cache.get("first"));
+        assertNotNull(cache.get("second"));
+        assertNotNull(cache.get("third"));
+    }
+
+    @Test
+    public void getKey() throws Exception
+    {
+        PersistentLESSCache cache = this.mocker.getComponentUnderTest();
+
+        String key = cache.getKey("code", "flamingo", false);
+        assertEquals(key, cache.getKey("code", "flamingo", false));
+        assertNotEquals(key, cache.getKey("code", "flamingo", true));
+        assertNotEquals(key, cache.getKey("code", "colibri", false));
+        assertNotEquals(key, cache.getKey("other code", "flamingo", false));
+    }
+}
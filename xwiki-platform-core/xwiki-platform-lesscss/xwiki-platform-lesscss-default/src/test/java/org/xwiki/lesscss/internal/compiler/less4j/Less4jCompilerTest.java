@@ -21,11 +21,18 @@
 
 import java.io.FileInputStream;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Date;
+
+import javax.inject.Provider;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.xwiki.lesscss.internal.cache.PersistentLESSCache;
+import org.xwiki.lesscss.internal.cache.XWikiContextCacheKeyFactory;
+import org.xwiki.lesscss.internal.colortheme.CurrentColorThemeGetter;
 import org.xwiki.skin.Resource;
 import org.xwiki.skin.Skin;
 import org.xwiki.skin.SkinManager;
@@ -35,11 +42,21 @@
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import com.github.sommeri.less4j.Less4jException;
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -47,6 +64,9 @@
  */
 public class Less4jCompilerTest
 {
+    private static final String RAW_STYLE_WITH_CONTEXT = "raw style\0wiki:ColorThemes.Theme\0" + "2.1@42\0context\0"
+        + "9.11";
+
     @Rule
     public MockitoComponentMockingRule<Less4jCompiler> mocker = new MockitoComponentMockingRule<>(Less4jCompiler.class);
 
@@ -55,6 +75,10 @@
     private SkinManager skinManager;
     
     private Skin skin;
+
+    private PersistentLESSCache persistentCache;
+
+    private XWikiDocument colorThemeDocument;
     
     @Before
     public void setUp() throws Exception
@@ -62,6 +86,33 @@ public void setUp() throws Exception
         templateManager = mocker.getInstance(TemplateManager.class);
         skinManager = mocker.getInstance(SkinManager.class);
         skin = mock(Skin.class);
+
+        persistentCache = mocker.getInstance(PersistentLESSCache.class);
+        when(persistentCache.digest(anyString())).then(invocation -> invocation.getArgument(0));
+
+        // Rendering context of the main skin template
+        Provider<XWikiContext> xcontextProvider = mocker.registerMockComponent(XWikiContext.TYPE_PROVIDER);
+        XWikiContext xcontext = mock(XWikiContext.class);
+        when(xcontextProvider.get()).thenReturn(xcontext);
+        XWiki xwiki = mock(XWiki.class);
+        when(xcontext.getWiki()).thenReturn(xwiki);
+        when(xwiki.getVersion()).thenReturn("9.11");
+        when(mocker.getInstance(CurrentColorThemeGetter.class).getCurrentColorTheme(true, "default"))
+            .thenReturn("wiki:ColorThemes.Theme");
+        when(mocker.getInstance(XWikiContextCacheKeyFactory.class).getCacheKey()).thenReturn("context");
+        colorThemeDocument = mock(XWikiDocument.class);
+        when(xwiki.getDocument(any(), eq(xcontext))).thenReturn(colorThemeDocument);
+        when(colorThemeDocument.getVersion()).thenReturn("2.1");
+        when(colorThemeDocument.getDate()).thenReturn(new Date(42));
+    }
+
+    private void mockRawContent(String templateName, String content) throws Exception
+    {
+        Template template = mock(Template.class);
+        when(templateManager.getTemplate(templateName, skin)).thenReturn(template);
+        TemplateContent templateContent = mock(TemplateContent.class);
+        when(template.getContent()).thenReturn(templateContent);
+        when(templateContent.getContent()).thenReturn(content);
     }
     
     @Test
@@ -77,6 +128,7 @@ public void compile() throws Exception
         StringWriter import1source = new StringWriter();
         IOUtils.copy(new FileInputStream(getClass().getResource("/style.less.vm").getFile()), import1source);
         when(templateManager.renderFromSkin("less/style.less.vm", skin)).thenReturn(import1source.toString());
+        mockRawContent("less/style.less.vm", "raw style");
         
         
         // Import 2
@@ -114,6 +166,33 @@ public void compile() throws Exception
         assertEquals(expected.toString(), result);
 
         assertTrue(result2.contains("/*# sourceMappingURL=data:application/json;base64,"));
+
+        // The raw content of the main skin template is stored along with its rendering context
+        verify(persistentCache, times(2)).set(any(), argThat(importedContents -> RAW_STYLE_WITH_CONTEXT
+            .equals(importedContents.get("less/style.less.vm"))), any());
+    }
+
+    @Test
+    public void compileWithStoredResult() throws Exception
+    {
+        when(skinManager.getSkin("skin")).thenReturn(skin);
+        mockRawContent("less/style.less.vm", "raw style");
+        when(persistentCache.getKey("a{color:red}", "skin", false)).thenReturn("key");
+        PersistentLESSCache.Entry entry = mock(PersistentLESSCache.Entry.class);
+        when(entry.getImportedDigests())
+            .thenReturn(Collections.singletonMap("less/style.less.vm", RAW_STYLE_WITH_CONTEXT));
+        when(entry.getCss()).thenReturn("stored");
+        when(persistentCache.get("key")).thenReturn(entry);
+
+        assertEquals("stored", mocker.getComponentUnderTest().compile("a{color:red}", "skin", false));
+
+        // The stored result is validated without executing Velocity
+        verify(templateManager, never()).renderFromSkin(anyString(), any(Skin.class));
+
+        // The color theme has been modified since the compilation
+        when(colorThemeDocument.getVersion()).thenReturn("2.2");
+
+        assertEquals("a{color:red}", mocker.getComponentUnderTest().compile("a{color:red}", "skin", false).trim());
     }
 
     @Test
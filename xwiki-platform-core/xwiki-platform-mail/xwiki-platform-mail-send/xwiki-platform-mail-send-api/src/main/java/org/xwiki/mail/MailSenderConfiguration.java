@@ -23,6 +23,7 @@
 import java.util.Properties;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Represents all XWiki configuration options for the Mail Sending feature.
@@ -96,9 +97,32 @@
     String getScriptServicePermissionCheckerHint();
 
     /**
-     * @return the delay to wait between each mail being sent, in milliseconds. This is done to support mail throttling
-     *         and not considered a spammer by mail servers.
+     * @return the delay to wait between each mail being sent to the same SMTP server, in milliseconds. This is done to
+     *         support mail throttling and not considered a spammer by mail servers.
      * @since 6.4RC1
      */
     long getSendWaitTime();
+
+    /**
+     * @return the number of threads sending mails in parallel, each of them keeping its own connection to the SMTP
+     *         server. Note that the {@link #getSendWaitTime() send wait time} is shared by all the threads sending to
+     *         the same SMTP server.
+     * @since 9.11RC1
+     */
+    @Unstable
+    default int getSendThreadCount()
+    {
+        return 1;
+    }
+
+    /**
+     * @return the maximum number of prepared mails waiting to be sent. When this limit is reached the preparation of
+     *         new mails waits for some of the prepared mails to be sent. A value lower or equal to 0 means no limit.
+     * @since 9.11RC1
+     */
+    @Unstable
+    default int getSendQueueCapacity()
+    {
+        return 0;
+    }
 }
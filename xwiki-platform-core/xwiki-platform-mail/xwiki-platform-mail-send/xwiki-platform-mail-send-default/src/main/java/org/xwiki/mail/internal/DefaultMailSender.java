@@ -19,6 +19,7 @@
  */
 package org.xwiki.mail.internal;
 
+import java.util.Collections;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -32,6 +33,7 @@
 import org.xwiki.mail.MailListener;
 import org.xwiki.mail.MailResult;
 import org.xwiki.mail.MailSender;
+import org.xwiki.mail.MailStatusResult;
 import org.xwiki.mail.internal.thread.MailQueueManager;
 import org.xwiki.mail.internal.thread.PrepareMailQueueItem;
 import org.xwiki.mail.internal.thread.context.Copier;
@@ -85,8 +87,23 @@ public MailResult sendAsynchronously(Iterable<? extends MimeMessage> messages, S
                 ((XWikiContext) executionContext.getProperty(XWikiContext.EXECUTIONCONTEXT_KEY)).getWikiId()));
         }
 
-        this.prepareMailQueueManager.addToQueue(new PrepareMailQueueItem(messages, session, listener, batchId,
-            clonedExecutionContext));
+        boolean queued = this.prepareMailQueueManager.addToQueue(new PrepareMailQueueItem(messages, session,
+            listener, batchId, clonedExecutionContext));
+
+        // The current thread has been interrupted while waiting: the mails will never be prepared, notify the user if
+        // a listener has been provided.
+        if (!queued && listener != null) {
+            listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
+            listener.onPrepareFatalError(
+                new InterruptedException("Interrupted while waiting to add the mails to the prepare queue"),
+                Collections.<String, Object>emptyMap());
+            // Let the waiting processes see an end.
+            MailStatusResult result = listener.getMailStatusResult();
+            if (result instanceof UpdateableMailStatusResult) {
+                ((UpdateableMailStatusResult) result).setTotalSize(0);
+            }
+            listener.onPrepareEnd(Collections.<String, Object>emptyMap());
+        }
 
         return new DefaultMailResult(batchId);
     }
@@ -19,6 +19,8 @@
  */
 package org.xwiki.mail.internal;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -40,7 +42,7 @@ public class MemoryMailStatusResult extends AbstractMailStatusResult
 {
     private abstract class AbstractMailStatusIterator implements Iterator<MailStatus>
     {
-        private final Iterator<MailStatus> it = statusMap.values().iterator();
+        private final Iterator<MailStatus> it = getAll();
         private MailStatus nextStatus;
 
         abstract boolean match(MailStatus status);
@@ -82,9 +84,9 @@ public void remove()
      * The Map's key is the unique message ID.
      *
      * Note that we keep the order in which messages are passed (i.e. the first status result will contain the first
-     * mail sent, etc).
+     * mail sent, etc). The map is synchronized since the statuses are updated by all the mail sender threads.
      */
-    private Map<String, MailStatus> statusMap = new LinkedHashMap<>();
+    private final Map<String, MailStatus> statusMap = Collections.synchronizedMap(new LinkedHashMap<>());
 
     /**
      * Retrieve the status for the given message identifier.
@@ -110,7 +112,10 @@ public void setStatus(MailStatus status)
     @Override
     public Iterator<MailStatus> getAll()
     {
-        return this.statusMap.values().iterator();
+        // Iterate over a copy so that the statuses can still be updated while the caller iterates
+        synchronized (this.statusMap) {
+            return new ArrayList<>(this.statusMap.values()).iterator();
+        }
     }
 
     @Override
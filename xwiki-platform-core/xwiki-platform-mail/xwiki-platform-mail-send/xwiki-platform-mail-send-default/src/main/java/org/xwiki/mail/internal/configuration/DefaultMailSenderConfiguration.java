@@ -95,6 +95,17 @@ public class DefaultMailSenderConfiguration implements MailSenderConfiguration
      */
     private static final long DEFAULT_SEND_WAIT_TIME = 8 * 1000L;
 
+    /**
+     * By default prepared mails are sent one at a time.
+     */
+    private static final int DEFAULT_SEND_THREAD_COUNT = 1;
+
+    /**
+     * By default at most 1000 prepared mails are waiting to be sent, which is enough to keep all the sending threads
+     * busy without having huge mailing lists fully prepared in advance.
+     */
+    private static final int DEFAULT_SEND_QUEUE_CAPACITY = 1000;
+
     private static final String FROM_PROPERTY = "from";
     private static final String BCC_PROPERTY = "bcc";
     private static final String HOST_PROPERTY = "host";
@@ -103,6 +114,8 @@ public class DefaultMailSenderConfiguration implements MailSenderConfiguration
     private static final String PASSWORD_PROPERTY = "password";
     private static final String PROPERTIES_PROPERTY = "properties";
     private static final String SEND_WAIT_TIME = "sendWaitTime";
+    private static final String SEND_THREAD_COUNT = "sendThreadCount";
+    private static final String SEND_QUEUE_CAPACITY = "sendQueueCapacity";
 
     @Inject
     private Logger logger;
@@ -318,4 +331,18 @@ public long getSendWaitTime()
 
         return waitTime;
     }
+
+    @Override
+    public int getSendThreadCount()
+    {
+        // Only configurable in the xwiki properties file since the sending threads are started with the application.
+        return this.xwikiPropertiesSource.getProperty(PREFIX + SEND_THREAD_COUNT, DEFAULT_SEND_THREAD_COUNT);
+    }
+
+    @Override
+    public int getSendQueueCapacity()
+    {
+        // Only configurable in the xwiki properties file since the queue is created with the application.
+        return this.xwikiPropertiesSource.getProperty(PREFIX + SEND_QUEUE_CAPACITY, DEFAULT_SEND_QUEUE_CAPACITY);
+    }
 }
@@ -19,8 +19,9 @@
  */
 package org.xwiki.mail.internal.thread;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles all operations on the Mail Queues.
@@ -32,40 +33,48 @@
 public abstract class AbstractMailQueueManager<T extends MailQueueItem> implements MailQueueManager<T>
 {
     /**
-     * The Mail queue that the mail sender thread will use to send mails. We use a separate thread to allow sending
-     * mail asynchronously.
+     * The Mail queue that the mail threads will use to process mails. We use a separate thread to allow sending mail
+     * asynchronously. The threads waiting for mails are woken up as soon as a mail is added to the queue.
      */
-    private Queue<T> mailQueue = new ConcurrentLinkedQueue<>();
+    private BlockingQueue<T> mailQueue = new LinkedBlockingQueue<>();
 
     /**
      * @return the mail queue containing all pending mails to be sent
      */
-    private Queue<T> getMailQueue()
+    private BlockingQueue<T> getMailQueue()
     {
         return this.mailQueue;
     }
 
-    @Override
-    public void addToQueue(T mailQueueItem)
+    /**
+     * Limit the number of mails that can be waiting on the queue. Should be called before the queue is used.
+     *
+     * @param capacity the maximum number of mails on the queue, lower or equal to 0 for no limit
+     * @since 9.11RC1
+     */
+    protected void setCapacity(int capacity)
     {
-        getMailQueue().add(mailQueueItem);
+        this.mailQueue = new LinkedBlockingQueue<>(capacity > 0 ? capacity : Integer.MAX_VALUE);
     }
 
     @Override
-    public boolean hasMessage()
+    public boolean addToQueue(T mailQueueItem)
     {
-        return !getMailQueue().isEmpty();
-    }
+        try {
+            getMailQueue().put(mailQueueItem);
 
-    @Override
-    public T peekMessage()
-    {
-        return getMailQueue().peek();
+            return true;
+        } catch (InterruptedException e) {
+            // Keep the interrupted status so that the calling thread can stop.
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
     }
 
     @Override
-    public boolean removeMessageFromQueue(T mailQueueItem)
+    public T takeMessage(long timeout, TimeUnit unit) throws InterruptedException
     {
-        return getMailQueue().remove(mailQueueItem);
+        return getMailQueue().poll(timeout, unit);
     }
 }
@@ -19,6 +19,8 @@
  */
 package org.xwiki.mail.internal.thread;
 
+import java.util.concurrent.TimeUnit;
+
 import org.xwiki.component.annotation.Role;
 
 /**
@@ -32,27 +34,23 @@
 public interface MailQueueManager<T extends MailQueueItem>
 {
     /**
-     * Add a mail on the queue for processing.
+     * Add a mail on the queue for processing. If the queue is bounded and full, wait for some space to become
+     * available.
      *
      * @param mailQueueItem the object representing the mail item to add to the queue
+     * @return true if the mail has been added to the queue, false if the calling thread was interrupted while waiting
+     *         (in which case the interrupted status of the thread is kept)
      */
-    void addToQueue(T mailQueueItem);
-
-    /**
-     * @return true if the queue has messages waiting for processing
-     */
-    boolean hasMessage();
-
-    /**
-     * @return the next mail on the queue waiting to be processed
-     */
-    T peekMessage();
+    boolean addToQueue(T mailQueueItem);
 
     /**
-     * Removes the next mail on the queue.
+     * Wait for a mail to be available on the queue and remove it from the queue.
      *
-     * @param mailQueueItem the object representing the mail to remove from the queue
-     * @return true if the removal was successful, false otherwise
+     * @param timeout how long to wait before giving up, in units of {@code unit}
+     * @param unit the unit of the {@code timeout} parameter
+     * @return the next mail on the queue or {@code null} if none became available before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     * @since 9.11RC1
      */
-    boolean removeMessageFromQueue(T mailQueueItem);
+    T takeMessage(long timeout, TimeUnit unit) throws InterruptedException;
 }
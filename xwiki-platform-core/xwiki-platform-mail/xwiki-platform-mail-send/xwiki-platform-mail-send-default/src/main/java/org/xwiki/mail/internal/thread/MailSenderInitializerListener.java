@@ -25,6 +25,7 @@
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.slf4j.Logger;
@@ -33,6 +34,7 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.phase.Disposable;
+import org.xwiki.mail.MailSenderConfiguration;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.event.Event;
 
@@ -68,13 +70,21 @@ public class MailSenderInitializerListener implements EventListener, Disposable
     @Named("prepare")
     private MailRunnable prepareMailRunnable;
 
+    /**
+     * Each Mail Sender Thread has its own runnable (and thus its own connection to the SMTP server).
+     */
     @Inject
     @Named("send")
-    private MailRunnable sendMailRunnable;
+    private Provider<MailRunnable> sendMailRunnableProvider;
+
+    @Inject
+    private MailSenderConfiguration configuration;
 
     private Thread prepareMailThread;
 
-    private Thread sendMailThread;
+    private List<MailRunnable> sendMailRunnables = new ArrayList<>();
+
+    private List<Thread> sendMailThreads = new ArrayList<>();
 
     @Override
     public String getName()
@@ -97,12 +107,17 @@ public void onEvent(Event event, Object o, Object o1)
         this.prepareMailThread.setDaemon(true);
         this.prepareMailThread.start();
 
-        // Step 2: Start the Mail Sender Thread
-        this.sendMailThread = new Thread(this.sendMailRunnable);
-        this.sendMailThread.setName("Mail Sender Thread");
-        this.sendMailThread.setDaemon(true);
-        this.sendMailThread.start();
-
+        // Step 2: Start the Mail Sender Threads
+        int sendThreadCount = Math.max(1, this.configuration.getSendThreadCount());
+        for (int i = 0; i < sendThreadCount; i++) {
+            MailRunnable sendMailRunnable = this.sendMailRunnableProvider.get();
+            Thread sendMailThread = new Thread(sendMailRunnable);
+            sendMailThread.setName(sendThreadCount > 1 ? "Mail Sender Thread " + (i + 1) : "Mail Sender Thread");
+            sendMailThread.setDaemon(true);
+            sendMailThread.start();
+            this.sendMailRunnables.add(sendMailRunnable);
+            this.sendMailThreads.add(sendMailThread);
+        }
     }
 
     /**
@@ -112,16 +127,22 @@ public void onEvent(Event event, Object o, Object o1)
      */
     private void stopMailThreads() throws InterruptedException
     {
-        // Step 1: Stop the Mail Sender Thread
+        // Step 1: Stop the Mail Sender Threads
 
-        if (this.sendMailThread != null) {
-            this.sendMailRunnable.stopProcessing();
+        for (MailRunnable sendMailRunnable : this.sendMailRunnables) {
+            sendMailRunnable.stopProcessing();
+        }
+        for (Thread sendMailThread : this.sendMailThreads) {
             // Make sure the Thread goes out of sleep if it's sleeping so that it stops immediately.
-            this.sendMailThread.interrupt();
+            sendMailThread.interrupt();
+        }
+        for (Thread sendMailThread : this.sendMailThreads) {
             // Wait till the thread goes away
-            this.sendMailThread.join();
-            SHUTDOWN_LOGGER.debug(String.format("Mail Prepare Thread has been stopped"));
+            sendMailThread.join();
+            SHUTDOWN_LOGGER.debug("[{}] has been stopped", sendMailThread.getName());
         }
+        this.sendMailRunnables.clear();
+        this.sendMailThreads.clear();
 
         // Step 2: Stop the Mail Prepare Thread
 
@@ -131,7 +152,7 @@ private void stopMailThreads() throws InterruptedException
             this.prepareMailThread.interrupt();
             // Wait till the thread goes away
             this.prepareMailThread.join();
-            SHUTDOWN_LOGGER.debug(String.format("Mail Sender Thread has been stopped"));
+            SHUTDOWN_LOGGER.debug(String.format("Mail Prepare Thread has been stopped"));
         }
     }
 
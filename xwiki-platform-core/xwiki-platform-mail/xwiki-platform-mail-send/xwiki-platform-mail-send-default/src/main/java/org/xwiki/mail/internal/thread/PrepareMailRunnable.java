@@ -21,6 +21,7 @@
 
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -43,7 +44,7 @@
 import com.xpn.xwiki.XWikiContext;
 
 /**
- * Runnable that regularly check for mail items on a Prepare Queue, and for each mail item there, generate the message
+ * Runnable that waits for mail items on a Prepare Queue, and for each mail item there, generate the message
  * to send and persist it and put that reference on the Send Queue for sending.
  *
  * @version $Id$
@@ -69,19 +70,12 @@ public void run()
     {
         do {
             try {
-                // Handle next message in the queue
-                if (this.prepareMailQueueManager.hasMessage()) {
-                    // Important: only remove the mail item after the message has been created and put on the sender
-                    // queue.
-                    PrepareMailQueueItem mailItem = this.prepareMailQueueManager.peekMessage();
-                    try {
-                        prepareMail(mailItem);
-                    } finally {
-                        this.prepareMailQueueManager.removeMessageFromQueue(mailItem);
-                    }
+                // Wait for the next message in the queue. Note: we don't wait forever in order to check regularly if
+                // the thread should be stopped.
+                PrepareMailQueueItem mailItem = this.prepareMailQueueManager.takeMessage(1L, TimeUnit.SECONDS);
+                if (mailItem != null) {
+                    prepareMail(mailItem);
                 }
-                // Note: a short pause to catch thread interruptions and to be kind on CPU.
-                Thread.sleep(100L);
             } catch (InterruptedException e) {
                 // Thread has been stopped, exit
                 this.logger.debug("Mail Prepare Thread was forcefully stopped", e);
@@ -113,7 +107,8 @@ protected void prepareMail(PrepareMailQueueItem item) throws ExecutionContextExc
 
         try {
             boolean shouldStop = false;
-            while (!shouldStop) {
+            // Stop preparing the remaining mails if the thread has been interrupted.
+            while (!shouldStop && !Thread.currentThread().isInterrupted()) {
                 // Note that we need to have the hasNext() call after the context is ready since the implementation can
                 // need a valid XWiki Context.
                 prepareContext(item.getContext());
@@ -187,9 +182,17 @@ private void prepareSingleMail(MimeMessage mimeMessage, PrepareMailQueueItem ite
 
         // Step 4: Put the MimeMessage id on the Mail Send Queue for sending
         // Extract the wiki id from the context
-        this.sendMailQueueManager.addToQueue(new SendMailQueueItem(message.getUniqueMessageId(),
+        // Note: this waits if there are already too many mails waiting to be sent.
+        boolean queued = this.sendMailQueueManager.addToQueue(new SendMailQueueItem(message.getUniqueMessageId(),
             item.getSession(), listener, item.getBatchId(), extractWikiId(item)));
 
+        // The thread has been interrupted while waiting: the mail will never be sent, notify the user if a listener
+        // has been provided
+        if (!queued && listener != null) {
+            listener.onSendMessageFatalError(message.getUniqueMessageId(),
+                new InterruptedException("Interrupted while waiting to add the mail to the send queue"),
+                Collections.<String, Object>emptyMap());
+        }
     }
 
     private String extractWikiId(PrepareMailQueueItem item)
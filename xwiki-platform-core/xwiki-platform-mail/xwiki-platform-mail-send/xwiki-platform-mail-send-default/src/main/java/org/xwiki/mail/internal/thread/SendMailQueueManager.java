@@ -19,12 +19,18 @@
  */
 package org.xwiki.mail.internal.thread;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.mail.MailSenderConfiguration;
 
 /**
- * Handles all operations on the Send Mail Queue.
+ * Handles all operations on the Send Mail Queue. The queue is bounded (see
+ * {@link MailSenderConfiguration#getSendQueueCapacity()}) so that the preparation of huge mailing lists waits for the
+ * sending threads instead of filling the disk and the memory with prepared mails.
  *
  * @version $Id$
  * @since 6.4
@@ -32,6 +38,14 @@
 @Component
 @Singleton
 public class SendMailQueueManager extends AbstractMailQueueManager<SendMailQueueItem>
-    implements MailQueueManager<SendMailQueueItem>
+    implements MailQueueManager<SendMailQueueItem>, Initializable
 {
+    @Inject
+    private MailSenderConfiguration configuration;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        setCapacity(this.configuration.getSendQueueCapacity());
+    }
 }
@@ -20,17 +20,19 @@
 package org.xwiki.mail.internal.thread;
 
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
-import javax.inject.Singleton;
 import javax.mail.MessagingException;
 import javax.mail.Session;
 import javax.mail.Transport;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.InstantiationStrategy;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextManager;
@@ -41,14 +43,16 @@
 import com.xpn.xwiki.XWikiContext;
 
 /**
- * Runnable that regularly check for mails on a Queue, and for each mail tries to send it.
+ * Runnable that waits for mails on a Queue, and for each mail tries to send it. Several instances can be running in
+ * parallel (see {@link org.xwiki.mail.MailSenderConfiguration#getSendThreadCount()}), each of them keeping its own
+ * connection to the SMTP server.
  *
  * @version $Id$
  * @since 6.4
  */
 @Component
 @Named("send")
-@Singleton
+@InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 public class SendMailRunnable extends AbstractMailRunnable
 {
     @Inject
@@ -64,6 +68,9 @@ public class SendMailRunnable extends AbstractMailRunnable
     @Inject
     private Provider<XWikiContext> contextProvider;
 
+    @Inject
+    private SendMailThrottler throttler;
+
     private Transport currentTransport;
 
     private Session currentSession;
@@ -96,7 +103,7 @@ private void prepareContext() throws ExecutionContextException
     private void prepareContextForQueueItem(SendMailQueueItem mailItem)
     {
         // Set the current wiki in the context. This is needed for example to be able to locate the configuration
-        // properties when processing the mail queue items (in waitSendWaitTime()).
+        // properties when processing the mail queue items (when throttling).
         XWikiContext xcontext = this.contextProvider.get();
         xcontext.setWikiId(mailItem.getWikiId());
     }
@@ -105,24 +112,12 @@ private void runInternal()
     {
         do {
             try {
-                // Handle next message in the queue
-                if (this.sendMailQueueManager.hasMessage()) {
-                    // Important: only remove the mail item from the queue after the mail has been sent as
-                    // otherwise, MailSender.waitTillSent() may return before the mail is actually sent!
-                    SendMailQueueItem mailItem = this.sendMailQueueManager.peekMessage();
-                    try {
-                        sendMail(mailItem);
-                    } finally {
-                        this.sendMailQueueManager.removeMessageFromQueue(mailItem);
-                    }
-                    // Email throttling: Wait before processing the next mail queue item
-                    // Note: it's important that we wait after the previous item has been removed from the queue in
-                    // order to let users know as soon as possible that their mail has been sent (otherwise when sending
-                    // a synchronous mail, the user would have to wait the send wait time!).
-                    waitSendWaitTime();
+                // Wait for the next message in the queue. Note: we don't wait forever in order to check regularly if
+                // the thread should be stopped.
+                SendMailQueueItem mailItem = this.sendMailQueueManager.takeMessage(1L, TimeUnit.SECONDS);
+                if (mailItem != null) {
+                    sendMail(mailItem);
                 }
-                // Note: a short pause to catch thread interruptions and to be kind on CPU.
-                Thread.sleep(50L);
             } catch (InterruptedException e) {
                 // Thread has been stopped, exit
                 this.logger.debug("Mail Sender Thread was forcefully stopped", e);
@@ -138,8 +133,9 @@ private void runInternal()
      * Send the mail.
      *
      * @param item the queue item containing all the data for sending the mail
+     * @throws InterruptedException if interrupted while waiting to send the mail
      */
-    protected void sendMail(SendMailQueueItem item)
+    protected void sendMail(SendMailQueueItem item) throws InterruptedException
     {
         prepareContextForQueueItem(item);
 
@@ -157,7 +153,11 @@ protected void sendMail(SendMailQueueItem item)
         }
 
         try {
-            // Step 2: If the current Session in use is different from the one passed then close
+            // Step 2: Email throttling: wait for the mail server to accept a new mail from us. Note that the wait
+            // time is shared by all the threads sending to the same server.
+            this.throttler.waitForSendSlot(item.getSession());
+
+            // Step 3: If the current Session in use is different from the one passed then close
             // the current Transport, get a new one and reconnect.
             // Also do that every 100 mails sent.
             // TODO: explain why!
@@ -170,16 +170,19 @@ protected void sendMail(SendMailQueueItem item)
                 this.currentTransport.connect();
             }
 
-            // Step 3: Send the mail
+            // Step 4: Send the mail
             // Unlike the static send method, the sendMessage method does not call the saveChanges method on the
             // message; this prevent the MessageID header to be changed.
             this.currentTransport.sendMessage(message, message.getAllRecipients());
             this.count++;
 
-            // Step 4: Notify the user of the success if a listener has been provided
+            // Step 5: Notify the user of the success if a listener has been provided
             if (listener != null) {
                 listener.onSendMessageSuccess(message, Collections.<String, Object>emptyMap());
             }
+        } catch (InterruptedException e) {
+            // The thread is being stopped: the mail stays in the prepared state so that it can be resent later.
+            throw e;
         } catch (Exception e) {
             // An error occurred, notify the user if a listener has been provided.
             if (listener != null) {
@@ -188,12 +191,6 @@ protected void sendMail(SendMailQueueItem item)
         }
     }
 
-    private void waitSendWaitTime() throws InterruptedException
-    {
-        long sendWaitTime = this.configuration.getSendWaitTime();
-        Thread.sleep(sendWaitTime);
-    }
-
     private void closeTransport()
     {
         if (this.currentTransport != null) {
@@ -0,0 +1,83 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail.internal.thread;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.mail.Session;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.mail.MailSenderConfiguration;
+
+/**
+ * Makes sure that the mails sent to the same SMTP server are separated by at least the configured
+ * {@link MailSenderConfiguration#getSendWaitTime() send wait time}, whatever the number of threads sending them.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = SendMailThrottler.class)
+@Singleton
+public class SendMailThrottler
+{
+    @Inject
+    private MailSenderConfiguration configuration;
+
+    /**
+     * The date (in milliseconds) before which no other mail should be sent, for each SMTP server.
+     */
+    private final Map<String, Long> nextSendDates = new HashMap<>();
+
+    /**
+     * Wait until a mail can be sent to the SMTP server of the passed session and reserve the slot for it.
+     *
+     * @param session the session used to send the mail
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void waitForSendSlot(Session session) throws InterruptedException
+    {
+        long sendWaitTime = this.configuration.getSendWaitTime();
+        if (sendWaitTime <= 0) {
+            return;
+        }
+
+        String server = getServer(session);
+        long now = System.currentTimeMillis();
+        long sendDate;
+        synchronized (this.nextSendDates) {
+            Long nextSendDate = this.nextSendDates.get(server);
+            sendDate = nextSendDate != null ? Math.max(now, nextSendDate) : now;
+            this.nextSendDates.put(server, sendDate + sendWaitTime);
+        }
+
+        if (sendDate > now) {
+            Thread.sleep(sendDate - now);
+        }
+    }
+
+    private String getServer(Session session)
+    {
+        // Note: the mails are always sent using the SMTP transport.
+        return session.getProperty("mail.smtp.host") + ':' + session.getProperty("mail.smtp.port");
+    }
+}
@@ -20,9 +20,11 @@
 package org.xwiki.mail.integration;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -51,6 +53,7 @@
 import org.xwiki.environment.internal.StandardEnvironment;
 import org.xwiki.mail.MailListener;
 import org.xwiki.mail.MailSender;
+import org.xwiki.mail.MailState;
 import org.xwiki.mail.MailSenderConfiguration;
 import org.xwiki.mail.MimeBodyPartFactory;
 import org.xwiki.mail.internal.DefaultMailSender;
@@ -64,6 +67,7 @@
 import org.xwiki.mail.internal.thread.PrepareMailRunnable;
 import org.xwiki.mail.internal.thread.SendMailQueueManager;
 import org.xwiki.mail.internal.thread.SendMailRunnable;
+import org.xwiki.mail.internal.thread.SendMailThrottler;
 import org.xwiki.mail.internal.thread.context.Copier;
 import org.xwiki.model.ModelContext;
 import org.xwiki.model.reference.WikiReference;
@@ -77,6 +81,7 @@
 import com.xpn.xwiki.XWikiContext;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.Mockito.*;
 
 /**
@@ -97,6 +102,7 @@
     PrepareMailRunnable.class,
     PrepareMailQueueManager.class,
     SendMailQueueManager.class,
+    SendMailThrottler.class,
     FileSystemMailContentStore.class
 })
 public class JavaIntegrationTest
@@ -335,4 +341,32 @@ protected void updateMessageID() throws MessagingException
 
         assertEquals("<custom@domain>", messages[0].getMessageID());
     }
+
+    @Test
+    public void sendManyMails() throws Exception
+    {
+        Session session = Session.getInstance(this.configuration.getAllProperties());
+
+        // Send more mails than the send queue can hold so that the preparation has to wait for the (2) mail sender
+        // threads.
+        List<MimeMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            MimeMessage message = new MimeMessage(session);
+            message.setRecipient(RecipientType.TO, new InternetAddress("john" + i + "@doe.com"));
+            message.setSubject("subject" + i);
+            message.setText("content" + i);
+            messages.add(message);
+        }
+
+        MailListener memoryMailListener = this.componentManager.getInstance(MailListener.class, "memory");
+        this.sender.sendAsynchronously(messages, session, memoryMailListener);
+
+        // Verify that all the mails have been sent and received (wait maximum 30 seconds).
+        memoryMailListener.getMailStatusResult().waitTillProcessed(30000L);
+        this.mail.waitForIncomingEmail(30000L, 50);
+
+        assertEquals(50, memoryMailListener.getMailStatusResult().getProcessedMailCount());
+        assertFalse(memoryMailListener.getMailStatusResult().getByState(MailState.SEND_ERROR).hasNext());
+        assertEquals(50, this.mail.getReceivedMessages().length);
+    }
 }
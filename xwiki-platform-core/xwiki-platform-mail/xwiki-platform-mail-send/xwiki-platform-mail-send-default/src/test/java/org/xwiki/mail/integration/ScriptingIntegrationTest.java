@@ -58,6 +58,7 @@
 import org.xwiki.mail.internal.thread.PrepareMailRunnable;
 import org.xwiki.mail.internal.thread.SendMailQueueManager;
 import org.xwiki.mail.internal.thread.SendMailRunnable;
+import org.xwiki.mail.internal.thread.SendMailThrottler;
 import org.xwiki.mail.internal.thread.context.Copier;
 import org.xwiki.mail.script.MailSenderScriptService;
 import org.xwiki.mail.script.ScriptMailResult;
@@ -104,6 +105,7 @@
     PrepareMailRunnable.class,
     PrepareMailQueueManager.class,
     SendMailQueueManager.class,
+    SendMailThrottler.class,
     FileSystemMailContentStore.class
 })
 // @formatter:on
@@ -104,6 +104,19 @@ public long getSendWaitTime()
         return 0;
     }
 
+    @Override
+    public int getSendThreadCount()
+    {
+        return 2;
+    }
+
+    @Override
+    public int getSendQueueCapacity()
+    {
+        // Small enough to verify that the mail preparation waits for the mails to be sent.
+        return 5;
+    }
+
     public void setBCCAddresses(List<String> addresses)
     {
         this.bccAddresses = addresses;
@@ -248,7 +248,7 @@ public Object answer(InvocationOnMock invocationOnMock) throws Throwable
                 Object[] args = invocationOnMock.getArguments();
                 SendMailQueueItem item = (SendMailQueueItem) args[0];
                 ((UpdateableMailStatusResult)item.getListener().getMailStatusResult()).incrementCurrentSize();
-                return null;
+                return true;
             }
         }).when(sendMailQueueManager).addToQueue(any(SendMailQueueItem.class));
 
@@ -287,4 +287,47 @@ public Object answer(InvocationOnMock invocationOnMock) throws Throwable
 
         assertEquals("Failure during preparation phase of thread [" + batchId1 + "]", logRule.getMessage(0));
     }
+
+    @Test
+    public void prepareMailWhenSendQueueIsInterrupted() throws Exception
+    {
+        Session session = Session.getDefaultInstance(new Properties());
+
+        MimeMessage message = new MimeMessage(session);
+        message.setText("Content");
+
+        ExecutionContext context = new ExecutionContext();
+        XWikiContext xContext = new XWikiContext();
+        xContext.setWikiId("wiki");
+        context.setProperty(XWikiContext.EXECUTIONCONTEXT_KEY, xContext);
+
+        MemoryMailListener listener = this.mocker.getInstance(MailListener.class, "memory");
+        PrepareMailQueueItem item = new PrepareMailQueueItem(Arrays.asList(message), session, listener,
+            UUID.randomUUID().toString(), context);
+
+        MailContentStore contentStore = this.mocker.getInstance(MailContentStore.class, "filesystem");
+        doAnswer(new Answer<Object>()
+        {
+            @Override
+            public Object answer(InvocationOnMock invocationOnMock) throws Throwable
+            {
+                ((MimeMessage) invocationOnMock.getArguments()[1]).saveChanges();
+                return null;
+            }
+        }).when(contentStore).save(any(String.class), any(ExtendedMimeMessage.class));
+
+        // Simulate a thread interrupted while waiting for some space on the send queue
+        MailQueueManager<SendMailQueueItem> sendMailQueueManager =
+            this.mocker.getInstance(new DefaultParameterizedType(null, MailQueueManager.class,
+                SendMailQueueItem.class));
+        when(sendMailQueueManager.addToQueue(any(SendMailQueueItem.class))).thenReturn(false);
+
+        this.mocker.getComponentUnderTest().prepareMail(item);
+
+        // The mail is reported as failed and the batch is not waiting for it anymore
+        MailStatusResult result = listener.getMailStatusResult();
+        assertTrue(result.isProcessed());
+        assertEquals("InterruptedException: Interrupted while waiting to add the mail to the send queue",
+            result.getByState(MailState.SEND_FATAL_ERROR).next().getErrorSummary());
+    }
 }
@@ -0,0 +1,85 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail.internal.thread;
+
+import java.util.Properties;
+
+import javax.mail.Session;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.mail.MailSenderConfiguration;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SendMailThrottler}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class SendMailThrottlerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<SendMailThrottler> mocker =
+        new MockitoComponentMockingRule<>(SendMailThrottler.class);
+
+    private Session createSession(String host)
+    {
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.host", host);
+        properties.setProperty("mail.smtp.port", "25");
+        return Session.getInstance(properties);
+    }
+
+    @Test
+    public void waitForSendSlotWhenNoWaitTime() throws Exception
+    {
+        Session session = createSession("server");
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            this.mocker.getComponentUnderTest().waitForSendSlot(session);
+        }
+        assertTrue(System.currentTimeMillis() - start < 1000L);
+    }
+
+    @Test
+    public void waitForSendSlotIsPerServer() throws Exception
+    {
+        MailSenderConfiguration configuration = this.mocker.getInstance(MailSenderConfiguration.class);
+        when(configuration.getSendWaitTime()).thenReturn(200L);
+
+        Session session1 = createSession("server1");
+        Session session2 = createSession("server2");
+
+        long start = System.currentTimeMillis();
+        // The first mail sent to each server doesn't wait.
+        this.mocker.getComponentUnderTest().waitForSendSlot(session1);
+        this.mocker.getComponentUnderTest().waitForSendSlot(session2);
+        assertTrue(System.currentTimeMillis() - start < 200L);
+
+        // The second mail sent to the same server waits.
+        this.mocker.getComponentUnderTest().waitForSendSlot(session1);
+        assertTrue(System.currentTimeMillis() - start >= 200L);
+    }
+}
@@ -20,11 +20,11 @@
 package org.xwiki.mail.internal;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
@@ -32,7 +32,6 @@
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.context.Execution;
 import org.xwiki.mail.ExtendedMimeMessage;
-import org.xwiki.mail.MailContentStore;
 import org.xwiki.mail.MailState;
 import org.xwiki.mail.MailStatus;
 import org.xwiki.mail.MailStatusResult;
@@ -43,7 +42,9 @@
 import com.xpn.xwiki.XWikiContext;
 
 /**
- * Saves mail statuses in the database.
+ * Saves mail statuses in the database. The statuses are written by the {@link MailStatusJournal}, asynchronously and in
+ * batches, and the statuses of the mails prepared by this listener are kept in memory until the mails are sent so that
+ * they don't have to be loaded back from the database.
  *
  * @version $Id$
  * @since 6.4M3
@@ -56,23 +57,27 @@ public class DatabaseMailListener extends AbstractMailListener implements Initia
     @Inject
     private Execution execution;
 
-    @Inject
-    @Named("filesystem")
-    private MailContentStore mailContentStore;
-
     @Inject
     @Named("database")
     private MailStatusStore mailStatusStore;
 
+    @Inject
+    private MailStatusJournal journal;
+
     @Inject
     private MailStorageConfiguration configuration;
 
     private DatabaseMailStatusResult mailStatusResult;
 
+    /**
+     * The statuses of the mails prepared but not yet sent, indexed by unique message id.
+     */
+    private Map<String, MailStatus> preparedStatuses = new ConcurrentHashMap<>();
+
     @Override
     public void initialize() throws InitializationException
     {
-        mailStatusResult = new DatabaseMailStatusResult(this.mailStatusStore);
+        mailStatusResult = new DatabaseMailStatusResult(this.mailStatusStore, this.journal);
     }
 
     @Override
@@ -90,7 +95,8 @@ public void onPrepareMessageSuccess(ExtendedMimeMessage message, Map<String, Obj
         MailStatus status = new MailStatus(getBatchId(), message, MailState.PREPARE_SUCCESS);
         status.setWiki(
             ((XWikiContext) execution.getContext().getProperty(XWikiContext.EXECUTIONCONTEXT_KEY)).getWikiId());
-        saveStatus(status, parameters);
+        this.preparedStatuses.put(status.getMessageId(), status);
+        this.journal.save(status);
     }
 
     @Override
@@ -102,7 +108,7 @@ public void onPrepareMessageError(ExtendedMimeMessage message, Exception excepti
         status.setWiki(
             ((XWikiContext) execution.getContext().getProperty(XWikiContext.EXECUTIONCONTEXT_KEY)).getWikiId());
         status.setError(exception);
-        saveStatus(status, parameters);
+        this.journal.save(status);
 
         // This mail will not reach the send queue, so its processing is done now.
         mailStatusResult.incrementCurrentSize();
@@ -133,15 +139,10 @@ public void onSendMessageSuccess(ExtendedMimeMessage message, Map<String, Object
             status = new MailStatus(getBatchId(), message, MailState.SEND_SUCCESS);
         }
 
-        // Since the mail was sent successfully we don't need to keep its serialized content
-        deleteMailContent(status);
-
-        // If the user doesn't want to keep success status, we remove the mail status, otherwise we just update it
-        if (configuration.discardSuccessStatuses()) {
-            deleteStatus(status, parameters);
-        } else {
-            saveStatus(status, parameters);
-        }
+        // Since the mail was sent successfully we don't need to keep its serialized content (it's removed once the
+        // status is written). If the user doesn't want to keep success status, we remove the mail status, otherwise we
+        // just update it.
+        this.journal.saveSent(status, configuration.discardSuccessStatuses());
 
         mailStatusResult.incrementCurrentSize();
     }
@@ -188,7 +189,16 @@ public void onSendMessageError(ExtendedMimeMessage message, Exception exception,
 
     private MailStatus retrieveExistingMailStatus(String uniqueMessageId, MailState state)
     {
-        MailStatus status;
+        // Mails prepared by this listener have their status in memory (sending a given mail ends its processing)
+        MailStatus status = this.preparedStatuses.remove(uniqueMessageId);
+        if (status == null) {
+            // The status might not have been written yet
+            status = this.journal.get(uniqueMessageId);
+        }
+        if (status != null) {
+            return status;
+        }
+
         try {
             status = mailStatusStore.load(uniqueMessageId);
             if (status == null) {
@@ -215,35 +225,7 @@ public MailStatusResult getMailStatusResult()
 
     private void saveStatus(MailStatus status, Map<String, Object> parameters)
     {
-        try {
-            mailStatusStore.save(status, parameters);
-        } catch (MailStoreException e) {
-            // Failed to save the status in the DB, we continue but log an error
-            logger.error("Failed to save mail status [{}] to the database", status, e);
-        }
-    }
-
-    private void deleteStatus(MailStatus status, Map<String, Object> parameters)
-    {
-        try {
-            mailStatusStore.delete(status.getMessageId(), parameters);
-        } catch (MailStoreException e) {
-            // Failed to delete the status in the DB, we continue but log an error
-            logger.error("Failed to delete mail status [{}] from the database", status, e);
-        }
-    }
-
-    private void deleteMailContent(MailStatus currentStatus)
-    {
-        if (currentStatus != null) {
-            try {
-                mailContentStore.delete(currentStatus.getBatchId(), currentStatus.getMessageId());
-            } catch (MailStoreException e) {
-                // Failed to delete saved mail, raise a warning but continue since it's not critical
-                this.logger.warn("Failed to remove previously failing message [{}] (batch id [{}]) from the file "
-                    + "system. Reason [{}].", currentStatus.getMessageId(), currentStatus.getBatchId(),
-                    ExceptionUtils.getRootCauseMessage(e));
-            }
-        }
+        // Note: the parameters are not used by the database store.
+        this.journal.save(status);
     }
 }
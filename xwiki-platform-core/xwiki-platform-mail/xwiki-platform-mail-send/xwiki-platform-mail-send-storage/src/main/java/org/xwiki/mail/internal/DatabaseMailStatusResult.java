@@ -48,6 +48,8 @@ public class DatabaseMailStatusResult extends AbstractMailStatusResult
 
     private MailStatusStore mailStatusStore;
 
+    private MailStatusJournal journal;
+
     private String batchId;
 
     /**
@@ -59,6 +61,20 @@ public DatabaseMailStatusResult(MailStatusStore mailStatusStore)
         this.mailStatusStore = mailStatusStore;
     }
 
+    /**
+     * Constructor initializing the DatabaseMailStatusResult with MailStatusStore and the journal used to write the
+     * statuses.
+     *
+     * @param mailStatusStore the MailStatusStore
+     * @param journal the journal holding the statuses not yet written to the store
+     * @since 9.11RC1
+     */
+    public DatabaseMailStatusResult(MailStatusStore mailStatusStore, MailStatusJournal journal)
+    {
+        this.mailStatusStore = mailStatusStore;
+        this.journal = journal;
+    }
+
     /**
      * Set the batch id of the message statuses to save or load.
      *
@@ -76,6 +92,8 @@ public Iterator<MailStatus> getAll()
             return Collections.emptyIterator();
         }
 
+        flushJournal();
+
         try {
             return this.mailStatusStore.load(Collections.<String, Object>singletonMap(BATCHID_KEY, this.batchId),
                 0, 0, DATE_FIELD, true).iterator();
@@ -103,6 +121,8 @@ private Iterator<MailStatus> getFilteredState(String state)
             return Collections.emptyIterator();
         }
 
+        flushJournal();
+
         try {
             Map<String, Object> filterMap = new HashMap<>();
             filterMap.put(BATCHID_KEY, this.batchId);
@@ -113,4 +133,12 @@ private Iterator<MailStatus> getFilteredState(String state)
             return Collections.emptyIterator();
         }
     }
+
+    private void flushJournal()
+    {
+        // Make sure the statuses are up to date
+        if (this.journal != null) {
+            this.journal.flush();
+        }
+    }
 }
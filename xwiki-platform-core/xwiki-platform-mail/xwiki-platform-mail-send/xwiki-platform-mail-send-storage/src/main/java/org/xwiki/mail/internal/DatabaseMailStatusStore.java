@@ -19,6 +19,8 @@
  */
 package org.xwiki.mail.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -56,6 +58,15 @@ public class DatabaseMailStatusStore implements MailStatusStore
 {
     private static final String ID_PARAMETER_NAME = "id";
 
+    private static final String IDS_PARAMETER_NAME = "ids";
+
+    /**
+     * The maximum number of statuses written to the database before flushing the Hibernate session (and thus the
+     * number of statuses sent to the database in a single JDBC batch) and also the maximum number of ids passed to a
+     * single delete query.
+     */
+    private static final int BATCH_SIZE = 100;
+
     @Inject
     private Logger logger;
 
@@ -99,6 +110,67 @@ public Object doInHibernate(Session session) throws HibernateException, XWikiExc
         }
     }
 
+    /**
+     * Saves and deletes several mail statuses at once, in a single transaction. This is much cheaper than calling
+     * {@link #save(MailStatus, Map)} and {@link #delete(String, Map)} for each status when processing big mail batches.
+     *
+     * @param statuses the mail statuses to save (replacing any previous state of the same messages)
+     * @param deletedMessageIds the unique identifiers of the messages for which to delete the mail status
+     * @throws MailStoreException when an error occurs saving the data
+     * @since 9.11RC1
+     */
+    public void save(final Collection<MailStatus> statuses, final Collection<String> deletedMessageIds)
+        throws MailStoreException
+    {
+        XWikiHibernateBaseStore store = (XWikiHibernateBaseStore) this.hibernateStore;
+
+        XWikiContext xwikiContext = this.contextProvider.get();
+        // Save in the main wiki
+        String currentWiki = xwikiContext.getWikiId();
+        xwikiContext.setWikiId(xwikiContext.getMainXWiki());
+
+        // Delete any previous state of the saved messages along with the deleted messages
+        final List<String> messageIds = new ArrayList<>(statuses.size() + deletedMessageIds.size());
+        for (MailStatus status : statuses) {
+            messageIds.add(status.getMessageId());
+        }
+        messageIds.addAll(deletedMessageIds);
+
+        try {
+            store.executeWrite(xwikiContext, new XWikiHibernateBaseStore.HibernateCallback<Object>()
+            {
+                @Override
+                public Object doInHibernate(Session session) throws HibernateException, XWikiException
+                {
+                    String queryString =
+                        String.format("delete from %s where mail_id in (:ids)", MailStatus.class.getName());
+                    for (int i = 0; i < messageIds.size(); i += BATCH_SIZE) {
+                        session.createQuery(queryString).setParameterList(IDS_PARAMETER_NAME,
+                            messageIds.subList(i, Math.min(i + BATCH_SIZE, messageIds.size()))).executeUpdate();
+                    }
+
+                    int count = 0;
+                    for (MailStatus status : statuses) {
+                        session.save(status);
+                        if (++count % BATCH_SIZE == 0) {
+                            // Send the inserts to the database and don't keep the saved statuses in the session
+                            session.flush();
+                            session.clear();
+                        }
+                    }
+                    return null;
+                }
+            });
+
+            this.logger.debug("Saved [{}] and deleted [{}] mail statuses", statuses.size(), deletedMessageIds.size());
+        } catch (Exception e) {
+            throw new MailStoreException(String.format("Failed to save [%s] and delete [%s] mail statuses in the "
+                + "database.", statuses.size(), deletedMessageIds.size()), e);
+        } finally {
+            xwikiContext.setWikiId(currentWiki);
+        }
+    }
+
     @Override
     public MailStatus load(String uniqueMessageId) throws MailStoreException
     {
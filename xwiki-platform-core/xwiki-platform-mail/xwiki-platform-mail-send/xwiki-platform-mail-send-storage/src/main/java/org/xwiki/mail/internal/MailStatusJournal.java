@@ -0,0 +1,316 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.mail.MailContentStore;
+import org.xwiki.mail.MailStatus;
+import org.xwiki.mail.MailStatusStore;
+import org.xwiki.mail.MailStoreException;
+
+/**
+ * Keeps the mail status changes in memory and writes them to the {@link MailStatusStore} asynchronously, in batches
+ * (every {@value #FLUSH_SIZE} changes or every {@value #FLUSH_INTERVAL} milliseconds). Only the last change of a given
+ * message is written. The changes which could not be written are kept and written again at the next flush.
+ * <p>
+ * The serialized content of a sent mail is deleted from the {@link MailContentStore} only once its final status has
+ * been written, so that a mail whose status is still "prepared" in the database can always be resent by the
+ * {@link org.xwiki.mail.MailResender} after a crash. The "prepared" status of a mail which is sent before the next
+ * flush is never written: it's replaced by the final status of the mail, which keeps the writes of a given message in
+ * order without having to flush.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = MailStatusJournal.class)
+@Singleton
+public class MailStatusJournal implements Initializable, Disposable
+{
+    /**
+     * The number of pending changes which triggers a flush.
+     */
+    private static final int FLUSH_SIZE = 100;
+
+    /**
+     * The maximum time (in milliseconds) a change stays in memory.
+     */
+    private static final long FLUSH_INTERVAL = 1000L;
+
+    private static final Map<String, Object> NO_PARAMETERS = Collections.emptyMap();
+
+    /**
+     * A pending mail status change.
+     */
+    private static final class Change
+    {
+        private final MailStatus status;
+
+        private final boolean deleteStatus;
+
+        private final boolean deleteContent;
+
+        Change(MailStatus status, boolean deleteStatus, boolean deleteContent)
+        {
+            this.status = status;
+            this.deleteStatus = deleteStatus;
+            this.deleteContent = deleteContent;
+        }
+    }
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    @Named("database")
+    private MailStatusStore mailStatusStore;
+
+    @Inject
+    @Named("filesystem")
+    private MailContentStore mailContentStore;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    /**
+     * The pending changes, indexed by unique message id.
+     */
+    private Map<String, Change> changes = new LinkedHashMap<>();
+
+    private ScheduledExecutorService executor;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern("Mail Status Journal").daemon(true).build());
+
+        // The statuses are written from the journal thread which needs its own execution context.
+        this.executor.execute(this::prepareContext);
+        this.executor.scheduleWithFixedDelay(this::write, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private void prepareContext()
+    {
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+        } catch (ExecutionContextException e) {
+            this.logger.error("Failed to initialize the mail status journal's execution context", e);
+        }
+    }
+
+    /**
+     * Record a new state for a mail.
+     *
+     * @param status the mail status to save (a copy is recorded so the passed instance can still be modified)
+     */
+    public void save(MailStatus status)
+    {
+        add(new Change(copy(status), false, false));
+    }
+
+    /**
+     * Record the final state of a mail which has been sent and remove its serialized content once the state has been
+     * written.
+     *
+     * @param status the mail status
+     * @param discardStatus {@code true} if the status should be deleted instead of being saved
+     */
+    public void saveSent(MailStatus status, boolean discardStatus)
+    {
+        add(new Change(copy(status), discardStatus, true));
+    }
+
+    /**
+     * @param uniqueMessageId the unique identifier of the message
+     * @return a copy of the mail status waiting to be written for the passed message, {@code null} if there's none
+     */
+    public MailStatus get(String uniqueMessageId)
+    {
+        Change change;
+        synchronized (this) {
+            change = this.changes.get(uniqueMessageId);
+        }
+
+        return change != null && !change.deleteStatus ? copy(change.status) : null;
+    }
+
+    /**
+     * The journal thread writes the statuses while the mail sender threads keep modifying theirs, so the journal works
+     * on its own copies.
+     */
+    private static MailStatus copy(MailStatus status)
+    {
+        MailStatus copy = new MailStatus();
+        copy.setMessageId(status.getMessageId());
+        copy.setBatchId(status.getBatchId());
+        copy.setState(status.getState());
+        copy.setDate(status.getDate());
+        copy.setRecipients(status.getRecipients());
+        copy.setType(status.getType());
+        copy.setErrorSummary(status.getErrorSummary());
+        copy.setErrorDescription(status.getErrorDescription());
+        copy.setWiki(status.getWiki());
+
+        return copy;
+    }
+
+    /**
+     * Write all the pending changes and wait for them to be written.
+     */
+    public void flush()
+    {
+        try {
+            this.executor.submit(this::write).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            this.logger.error("Failed to write the pending mail statuses", e.getCause());
+        }
+    }
+
+    private void add(Change change)
+    {
+        boolean full;
+        synchronized (this) {
+            // Only the last state of a message matters
+            this.changes.remove(change.status.getMessageId());
+            this.changes.put(change.status.getMessageId(), change);
+            full = this.changes.size() == FLUSH_SIZE;
+        }
+
+        if (full) {
+            this.executor.execute(this::write);
+        }
+    }
+
+    private void write()
+    {
+        Map<String, Change> pendingChanges;
+        synchronized (this) {
+            if (this.changes.isEmpty()) {
+                return;
+            }
+            pendingChanges = this.changes;
+            this.changes = new LinkedHashMap<>();
+        }
+
+        List<MailStatus> savedStatuses = new ArrayList<>();
+        List<String> deletedMessageIds = new ArrayList<>();
+        for (Change change : pendingChanges.values()) {
+            if (change.deleteStatus) {
+                deletedMessageIds.add(change.status.getMessageId());
+            } else {
+                savedStatuses.add(change.status);
+            }
+        }
+
+        try {
+            writeStatuses(savedStatuses, deletedMessageIds);
+        } catch (Exception e) {
+            // Don't delete the mail content since we're not sure the status has been updated
+            this.logger.error("Failed to write [{}] mail statuses to the database", pendingChanges.size(), e);
+            retry(pendingChanges);
+            return;
+        }
+
+        for (Change change : pendingChanges.values()) {
+            if (change.deleteContent) {
+                deleteMailContent(change.status);
+            }
+        }
+    }
+
+    /**
+     * Put back the changes which failed to be written, unless a more recent change has been recorded in the meantime.
+     */
+    private void retry(Map<String, Change> failedChanges)
+    {
+        synchronized (this) {
+            Map<String, Change> retriedChanges = new LinkedHashMap<>(failedChanges);
+            for (Change change : this.changes.values()) {
+                Change failedChange = retriedChanges.remove(change.status.getMessageId());
+                // Keep deleting the mail content if the failed change was going to do it.
+                boolean deleteContent = change.deleteContent || failedChange != null && failedChange.deleteContent;
+                retriedChanges.put(change.status.getMessageId(),
+                    new Change(change.status, change.deleteStatus, deleteContent));
+            }
+            this.changes = retriedChanges;
+        }
+    }
+
+    private void writeStatuses(List<MailStatus> savedStatuses, List<String> deletedMessageIds)
+        throws MailStoreException
+    {
+        if (this.mailStatusStore instanceof DatabaseMailStatusStore) {
+            ((DatabaseMailStatusStore) this.mailStatusStore).save(savedStatuses, deletedMessageIds);
+        } else {
+            for (MailStatus status : savedStatuses) {
+                this.mailStatusStore.save(status, NO_PARAMETERS);
+            }
+            for (String messageId : deletedMessageIds) {
+                this.mailStatusStore.delete(messageId, NO_PARAMETERS);
+            }
+        }
+    }
+
+    private void deleteMailContent(MailStatus status)
+    {
+        try {
+            this.mailContentStore.delete(status.getBatchId(), status.getMessageId());
+        } catch (MailStoreException e) {
+            // Failed to delete saved mail, raise a warning but continue since it's not critical
+            this.logger.warn("Failed to remove previously failing message [{}] (batch id [{}]) from the file "
+                + "system. Reason [{}].", status.getMessageId(), status.getBatchId(),
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        // Don't lose the pending changes on a clean shutdown
+        flush();
+        this.executor.shutdown();
+    }
+}
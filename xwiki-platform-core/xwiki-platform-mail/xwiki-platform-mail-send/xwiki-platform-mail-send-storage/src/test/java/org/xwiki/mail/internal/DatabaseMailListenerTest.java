@@ -26,18 +26,17 @@
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.mail.ExtendedMimeMessage;
-import org.xwiki.mail.MailContentStore;
 import org.xwiki.mail.MailListener;
 import org.xwiki.mail.MailState;
 import org.xwiki.mail.MailStatus;
 import org.xwiki.mail.MailStatusStore;
+import org.xwiki.mail.MailStorageConfiguration;
 import org.xwiki.mail.MailStoreException;
 import org.xwiki.test.AllLogRule;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
@@ -46,9 +45,10 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.argThat;
-import static org.mockito.Mockito.doThrow;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -95,43 +95,41 @@ public void setUp() throws Exception
     @Test
     public void onPrepareSuccess() throws Exception
     {
-        MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
+        MailStatusJournal journal = this.mocker.getInstance(MailStatusJournal.class);
 
         MailListener listener = this.mocker.getComponentUnderTest();
         listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
         listener.onPrepareMessageSuccess(this.message, Collections.<String, Object>emptyMap());
 
-        verify(mailStatusStore).save(argThat(new isSameMailStatus(MailState.PREPARE_SUCCESS, "mywiki")), anyMap());
+        verify(journal).save(argThat(new isSameMailStatus(MailState.PREPARE_SUCCESS, "mywiki")));
     }
 
     @Test
     public void onPrepareError() throws Exception
     {
-        MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
+        MailStatusJournal journal = this.mocker.getInstance(MailStatusJournal.class);
 
         MailListener listener = this.mocker.getComponentUnderTest();
         listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
         listener.onPrepareMessageError(this.message, new Exception("Error"), Collections.<String, Object>emptyMap());
 
-        verify(mailStatusStore).save(argThat(new isSameMailStatus(MailState.PREPARE_ERROR, "mywiki")), anyMap());
+        verify(journal).save(argThat(new isSameMailStatus(MailState.PREPARE_ERROR, "mywiki")));
     }
 
     @Test
-    public void onPrepareWhenSaveFails() throws Exception
+    public void onSendMessageSuccessAfterPrepareSuccess() throws Exception
     {
         MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
-        doThrow(new MailStoreException("error")).when(mailStatusStore).save(any(MailStatus.class), anyMap());
+        MailStatusJournal journal = this.mocker.getInstance(MailStatusJournal.class);
 
         MailListener listener = this.mocker.getComponentUnderTest();
         listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
         listener.onPrepareMessageSuccess(this.message, Collections.<String, Object>emptyMap());
+        listener.onSendMessageSuccess(this.message, Collections.<String, Object>emptyMap());
 
-        ArgumentCaptor<MailStatus> statusCapture = ArgumentCaptor.forClass(MailStatus.class);
-        verify(mailStatusStore).save(statusCapture.capture(), anyMap());
-
-        assertEquals("Failed to save mail status [messageId = [" + this.messageId + "], batchId = ["
-            + this.batchId + "], state = [prepare_success], date = [" + statusCapture.getValue().getDate() + "], "
-            + "recipients = [<null>], type = [type], wiki = [mywiki]] to the database", this.logRule.getMessage(0));
+        // The status of the prepared mail is kept in memory
+        verify(mailStatusStore, never()).load(this.messageId);
+        verify(journal).saveSent(argThat(new isSameMailStatus(MailState.SEND_SUCCESS, "mywiki")), eq(false));
     }
 
     @Test
@@ -142,56 +140,53 @@ public void onSendMessageSuccess() throws Exception
         status.setWiki("otherwiki");
         when(mailStatusStore.load(this.messageId)).thenReturn(status);
 
+        MailStorageConfiguration configuration = this.mocker.getInstance(MailStorageConfiguration.class);
+        when(configuration.discardSuccessStatuses()).thenReturn(true);
+
         MailListener listener = this.mocker.getComponentUnderTest();
         listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
         listener.onSendMessageSuccess(this.message, Collections.<String, Object>emptyMap());
 
         verify(mailStatusStore).load(this.messageId);
-        verify(mailStatusStore).save(argThat(new isSameMailStatus(MailState.SEND_SUCCESS, "otherwiki")), anyMap());
-
-        MailContentStore mailContentStore = this.mocker.getInstance(MailContentStore.class, "filesystem");
-        verify(mailContentStore).delete(this.batchId, this.messageId);
+        MailStatusJournal journal = this.mocker.getInstance(MailStatusJournal.class);
+        verify(journal).saveSent(argThat(new isSameMailStatus(MailState.SEND_SUCCESS, "otherwiki")), eq(true));
     }
 
     @Test
-    public void onSuccessWhenStatusLoadFails() throws Exception
+    public void onSendMessageSuccessWhenStatusNotWrittenYet() throws Exception
     {
-        MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
-        when(mailStatusStore.load(this.messageId)).thenThrow(new MailStoreException("error"));
+        MailStatus status = new MailStatus(this.batchId, this.message, MailState.PREPARE_SUCCESS);
+        status.setWiki("otherwiki");
+        MailStatusJournal journal = this.mocker.getInstance(MailStatusJournal.class);
+        when(journal.get(this.messageId)).thenReturn(status);
 
         MailListener listener = this.mocker.getComponentUnderTest();
         listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
         listener.onSendMessageSuccess(this.message, Collections.<String, Object>emptyMap());
 
-        assertEquals("Error when looking for a previous mail status for message [" + this.messageId + "] of batch ["
-            + batchId + "] and state [send_success].", this.logRule.getMessage(0));
-        assertEquals("Forcing a new mail status for message [" + this.messageId + "] of batch [" + batchId
-            + "] to send_success state.", this.logRule.getMessage(1));
-
-        // Verify that save and delete happened
-        verify(mailStatusStore).save(any(MailStatus.class), anyMap());
-        MailContentStore mailContentStore = this.mocker.getInstance(MailContentStore.class, "filesystem");
-        verify(mailContentStore).delete(any(), any());
+        MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
+        verify(mailStatusStore, never()).load(this.messageId);
+        verify(journal).saveSent(argThat(new isSameMailStatus(MailState.SEND_SUCCESS, "otherwiki")), eq(false));
     }
 
     @Test
-    public void onSuccessWhenMailContentDeletionFails() throws Exception
+    public void onSuccessWhenStatusLoadFails() throws Exception
     {
         MailStatusStore mailStatusStore = this.mocker.getInstance(MailStatusStore.class, "database");
-        MailStatus status = new MailStatus(this.batchId, this.message, MailState.PREPARE_SUCCESS);
-        status.setWiki("otherwiki");
-        when(mailStatusStore.load(this.messageId)).thenReturn(status);
-
-        MailContentStore mailContentStore = this.mocker.getInstance(MailContentStore.class, "filesystem");
-        doThrow(new MailStoreException("error")).when(mailContentStore).delete(this.batchId, this.messageId);
+        when(mailStatusStore.load(this.messageId)).thenThrow(new MailStoreException("error"));
 
         MailListener listener = this.mocker.getComponentUnderTest();
         listener.onPrepareBegin(batchId, Collections.<String, Object>emptyMap());
         listener.onSendMessageSuccess(this.message, Collections.<String, Object>emptyMap());
 
-        assertEquals("Failed to remove previously failing message [" + this.messageId + "] (batch id ["
-                + this.batchId + "]) from the file system. Reason [MailStoreException: error].",
-            this.logRule.getMessage(0));
+        assertEquals("Error when looking for a previous mail status for message [" + this.messageId + "] of batch ["
+            + batchId + "] and state [send_success].", this.logRule.getMessage(0));
+        assertEquals("Forcing a new mail status for message [" + this.messageId + "] of batch [" + batchId
+            + "] to send_success state.", this.logRule.getMessage(1));
+
+        // Verify that the status is still saved (and thus the mail content deleted)
+        MailStatusJournal journal = this.mocker.getInstance(MailStatusJournal.class);
+        verify(journal).saveSent(any(MailStatus.class), anyBoolean());
     }
 
     @Test
@@ -207,7 +202,8 @@ public void onSendMessageError() throws Exception
         listener.onSendMessageError(this.message, new Exception("Error"), Collections.<String, Object>emptyMap());
 
         verify(mailStatusStore).load(this.messageId);
-        verify(mailStatusStore).save(argThat(new isSameMailStatus(MailState.SEND_ERROR, "otherwiki")), anyMap());
+        MailStatusJournal journal = this.mocker.getInstance(MailStatusJournal.class);
+        verify(journal).save(argThat(new isSameMailStatus(MailState.SEND_ERROR, "otherwiki")));
     }
 
     @Test
@@ -223,7 +219,8 @@ public void onSendMessageFatalError() throws Exception
         listener.onSendMessageFatalError(this.messageId, new Exception("Error"), Collections.<String, Object>emptyMap());
 
         verify(mailStatusStore).load(this.messageId);
-        verify(mailStatusStore).save(argThat(new isSameMailStatus(MailState.SEND_FATAL_ERROR, "otherwiki")), anyMap());
+        MailStatusJournal journal = this.mocker.getInstance(MailStatusJournal.class);
+        verify(journal).save(argThat(new isSameMailStatus(MailState.SEND_FATAL_ERROR, "otherwiki")));
     }
 
     /**
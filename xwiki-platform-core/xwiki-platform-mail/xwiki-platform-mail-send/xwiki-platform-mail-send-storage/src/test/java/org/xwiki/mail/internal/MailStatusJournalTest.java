@@ -0,0 +1,168 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.mail.internal;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.slf4j.Logger;
+import org.xwiki.mail.ExtendedMimeMessage;
+import org.xwiki.mail.MailContentStore;
+import org.xwiki.mail.MailState;
+import org.xwiki.mail.MailStatus;
+import org.xwiki.mail.MailStatusStore;
+import org.xwiki.mail.MailStoreException;
+import org.xwiki.test.AllLogRule;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for {@link MailStatusJournal}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class MailStatusJournalTest
+{
+    @Rule
+    public AllLogRule logRule = new AllLogRule();
+
+    @Rule
+    public MockitoComponentMockingRule<MailStatusJournal> mocker =
+        new MockitoComponentMockingRule<>(MailStatusJournal.class, Arrays.asList(Logger.class));
+
+    private MailStatus status;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        ExtendedMimeMessage message = new ExtendedMimeMessage();
+        message.setHeader("Message-ID", "<1128820400.0.1419205781342.JavaMail.contact@xwiki.org>");
+        this.status = new MailStatus("batchId", message, MailState.PREPARE_SUCCESS);
+    }
+
+    @Test
+    public void saveOnlyWritesTheLastState() throws Exception
+    {
+        MailStatusJournal journal = this.mocker.getComponentUnderTest();
+        journal.save(this.status);
+        assertEquals("prepare_success", journal.get(this.status.getMessageId()).getState());
+
+        this.status.setState(MailState.SEND_SUCCESS);
+        journal.saveSent(this.status, false);
+
+        journal.flush();
+
+        assertNull(journal.get(this.status.getMessageId()));
+        MailStatusStore store = this.mocker.getInstance(MailStatusStore.class, "database");
+        verify(store, times(1)).save(any(MailStatus.class), anyMap());
+        verify(store).save(argThat(isStatus("send_success")), anyMap());
+
+        // The mail content is removed once the status is written
+        MailContentStore contentStore = this.mocker.getInstance(MailContentStore.class, "filesystem");
+        verify(contentStore).delete("batchId", this.status.getMessageId());
+    }
+
+    @Test
+    public void saveSentWhenDiscardingStatus() throws Exception
+    {
+        MailStatusJournal journal = this.mocker.getComponentUnderTest();
+        journal.save(this.status);
+        journal.saveSent(this.status, true);
+
+        // A discarded status is not returned anymore
+        assertNull(journal.get(this.status.getMessageId()));
+
+        journal.flush();
+
+        MailStatusStore store = this.mocker.getInstance(MailStatusStore.class, "database");
+        verify(store, never()).save(any(MailStatus.class), anyMap());
+        verify(store).delete(eq(this.status.getMessageId()), anyMap());
+        MailContentStore contentStore = this.mocker.getInstance(MailContentStore.class, "filesystem");
+        verify(contentStore).delete("batchId", this.status.getMessageId());
+    }
+
+    @Test
+    public void saveRecordsACopy() throws Exception
+    {
+        MailStatusJournal journal = this.mocker.getComponentUnderTest();
+        journal.save(this.status);
+
+        // The sender thread keeps modifying its status
+        this.status.setState(MailState.SEND_ERROR);
+        this.status.setError(new Exception("error"));
+
+        MailStatus recordedStatus = journal.get(this.status.getMessageId());
+        assertNotSame(this.status, recordedStatus);
+        assertEquals("prepare_success", recordedStatus.getState());
+        assertNull(recordedStatus.getErrorSummary());
+
+        journal.flush();
+
+        MailStatusStore store = this.mocker.getInstance(MailStatusStore.class, "database");
+        verify(store).save(argThat(isStatus("prepare_success")), anyMap());
+    }
+
+    @Test
+    public void flushWhenWriteFails() throws Exception
+    {
+        MailStatusStore store = this.mocker.getInstance(MailStatusStore.class, "database");
+        doThrow(new MailStoreException("error")).doNothing().when(store).save(any(MailStatus.class), anyMap());
+
+        MailStatusJournal journal = this.mocker.getComponentUnderTest();
+        this.status.setState(MailState.SEND_SUCCESS);
+        journal.saveSent(this.status, false);
+        journal.flush();
+
+        assertEquals("Failed to write [1] mail statuses to the database", this.logRule.getMessage(0));
+
+        // The mail content is kept so that the mail can be resent
+        MailContentStore contentStore = this.mocker.getInstance(MailContentStore.class, "filesystem");
+        verify(contentStore, never()).delete(anyString(), anyString());
+
+        // The change is written again at the next flush
+        assertEquals("send_success", journal.get(this.status.getMessageId()).getState());
+        journal.flush();
+
+        verify(store, times(2)).save(argThat(isStatus("send_success")), anyMap());
+        assertNull(journal.get(this.status.getMessageId()));
+        verify(contentStore).delete("batchId", this.status.getMessageId());
+    }
+
+    private ArgumentMatcher<MailStatus> isStatus(String state)
+    {
+        return status -> this.status.getMessageId().equals(status.getMessageId()) && state.equals(status.getState());
+    }
+}
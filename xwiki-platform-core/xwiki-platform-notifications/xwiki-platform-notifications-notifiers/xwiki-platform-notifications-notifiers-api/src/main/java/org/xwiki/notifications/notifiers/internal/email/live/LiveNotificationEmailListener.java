@@ -19,8 +19,6 @@
  */
 package org.xwiki.notifications.notifiers.internal.email.live;
 
-import java.util.List;
-
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -31,7 +29,6 @@
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.context.concurrent.ExecutionContextRunnable;
 import org.xwiki.eventstream.EventStreamException;
-import org.xwiki.eventstream.RecordableEventDescriptor;
 import org.xwiki.eventstream.RecordableEventDescriptorManager;
 import org.xwiki.eventstream.events.EventStreamAddedEvent;
 import org.xwiki.notifications.NotificationConfiguration;
@@ -120,21 +117,15 @@ public void onEvent(Event event, Object o, Object o1)
             try {
                 org.xwiki.eventstream.Event eventStreamEvent = (org.xwiki.eventstream.Event) o;
 
-                // We can’t directly store a list of RecordableEventDescriptors as some of them can be
-                // dynamically defined at runtime.
-                List<RecordableEventDescriptor> descriptorList =
-                        this.recordableEventDescriptorManager.getRecordableEventDescriptors(true);
-
-                // Try to match one of the given descriptors with the current event.
-                for (RecordableEventDescriptor descriptor : descriptorList) {
-                    // Find a descriptor that corresponds to the given event
-                    if (descriptor.getEventType().equals(eventStreamEvent.getType()))
-                    {
-                        // Add the event to the live notification email queue
-                        this.liveNotificationEmailManager.addEvent(eventStreamEvent);
+                // Find a descriptor that corresponds to the given event (the descriptors are indexed by event type
+                // and kept up to date by the descriptor manager since some of them are dynamically defined at
+                // runtime)
+                if (this.recordableEventDescriptorManager.getDescriptorForEventType(eventStreamEvent.getType(),
+                        true) != null) {
+                    // Add the event to the live notification email queue
+                    this.liveNotificationEmailManager.addEvent(eventStreamEvent);
 
-                        this.startNotificationThread();
-                    }
+                    this.startNotificationThread();
                 }
 
             } catch (EventStreamException e) {
@@ -21,7 +21,6 @@
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
-import java.util.Arrays;
 
 import org.junit.After;
 import org.junit.Before;
@@ -95,8 +94,8 @@ public void testOnEvent() throws Exception
 
         RecordableEventDescriptor eventDescriptor = mock(RecordableEventDescriptor.class);
         when(eventDescriptor.getEventType()).thenReturn("eventType");
-        when(this.recordableEventDescriptorManager.getRecordableEventDescriptors(true))
-                .thenReturn(Arrays.asList(eventDescriptor));
+        when(this.recordableEventDescriptorManager.getDescriptorForEventType("eventType", true))
+                .thenReturn(eventDescriptor);
         when(eventStreamEvent.getType()).thenReturn("eventType");
 
         when(this.notificationConfiguration.areEmailsEnabled()).thenReturn(true);
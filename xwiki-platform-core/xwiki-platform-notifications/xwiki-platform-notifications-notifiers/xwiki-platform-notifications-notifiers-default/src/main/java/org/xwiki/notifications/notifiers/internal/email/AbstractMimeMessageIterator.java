@@ -107,7 +107,7 @@ public abstract class AbstractMimeMessageIterator implements Iterator<MimeMessag
     @Inject
     private MailTemplateImageAttachmentsExtractor mailTemplateImageAttachmentsExtractor;
 
-    private NotificationUserIterator userIterator;
+    private Iterator<DocumentReference> userIterator;
 
     private Map<String, Object> factoryParameters = new HashMap<>();
 
@@ -130,7 +130,7 @@ public abstract class AbstractMimeMessageIterator implements Iterator<MimeMessag
      * @param factoryParameters parameters for the email factory
      * @param templateReference reference to the mail template
      */
-    protected void initialize(NotificationUserIterator userIterator, Map<String, Object> factoryParameters,
+    protected void initialize(Iterator<DocumentReference> userIterator, Map<String, Object> factoryParameters,
             DocumentReference templateReference)
     {
         this.userIterator = userIterator;
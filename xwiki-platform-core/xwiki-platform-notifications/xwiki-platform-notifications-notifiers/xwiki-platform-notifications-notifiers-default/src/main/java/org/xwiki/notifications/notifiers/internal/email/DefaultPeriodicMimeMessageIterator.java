@@ -19,8 +19,13 @@
  */
 package org.xwiki.notifications.notifiers.internal.email;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -37,6 +42,9 @@
 
 /**
  * Default implementation of {@link PeriodicMimeMessageIterator}.
+ * <p>
+ * The events of the users are retrieved by chunks of users so that the work which is common to several users (e.g.
+ * reading the events matching the same preferences) is done only once.
  *
  * @version $Id$
  * @since 9.10RC1
@@ -46,23 +54,80 @@
 public class DefaultPeriodicMimeMessageIterator extends AbstractMimeMessageIterator
         implements PeriodicMimeMessageIterator
 {
+    /**
+     * Number of users for which the events are retrieved together.
+     */
+    private static final int USERS_CHUNK_SIZE = 50;
+
+    private static final int EXPECTED_COUNT = Integer.MAX_VALUE / 4;
+
     @Inject
     private NotificationManager notificationManager;
 
     private Date lastTrigger;
 
+    private Iterator<DocumentReference> userIterator;
+
+    private Deque<DocumentReference> usersChunk = new ArrayDeque<>();
+
+    private Map<String, List<CompositeEvent>> chunkEvents = new HashMap<>();
+
     @Override
     public void initialize(NotificationUserIterator userIterator, Map<String, Object> factoryParameters,
             Date lastTrigger, DocumentReference templateReference)
     {
         this.lastTrigger = lastTrigger;
-        super.initialize(userIterator, factoryParameters, templateReference);
+        this.userIterator = userIterator;
+        super.initialize(new Iterator<DocumentReference>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return !usersChunk.isEmpty() || DefaultPeriodicMimeMessageIterator.this.userIterator.hasNext();
+            }
+
+            @Override
+            public DocumentReference next()
+            {
+                if (usersChunk.isEmpty()) {
+                    retrieveNextChunk();
+                }
+
+                return usersChunk.pop();
+            }
+        }, factoryParameters, templateReference);
     }
 
+    private void retrieveNextChunk()
+    {
+        List<String> userIds = new ArrayList<>(USERS_CHUNK_SIZE);
+        while (this.usersChunk.size() < USERS_CHUNK_SIZE && this.userIterator.hasNext()) {
+            DocumentReference user = this.userIterator.next();
+            this.usersChunk.add(user);
+            userIds.add(serializer.serialize(user));
+        }
+
+        try {
+            this.chunkEvents = notificationManager.getEvents(userIds, NotificationFormat.EMAIL, EXPECTED_COUNT, null,
+                    lastTrigger);
+        } catch (NotificationException e) {
+            // The events will be retrieved for each user separately
+            logger.warn("Failed to get the events of [{}] users at once: [{}].", userIds.size(), e.getMessage());
+            this.chunkEvents = new HashMap<>();
+        }
+    }
+
+    @Override
     protected List<CompositeEvent> retrieveCompositeEventList(DocumentReference user) throws NotificationException
     {
-        return notificationManager.getEvents(serializer.serialize(user),
-                NotificationFormat.EMAIL, false, Integer.MAX_VALUE / 4, null,
+        String userId = serializer.serialize(user);
+
+        List<CompositeEvent> events = this.chunkEvents.remove(userId);
+        if (events != null) {
+            return events;
+        }
+
+        return notificationManager.getEvents(userId, NotificationFormat.EMAIL, false, EXPECTED_COUNT, null,
                 lastTrigger, Collections.emptyList());
     }
 }
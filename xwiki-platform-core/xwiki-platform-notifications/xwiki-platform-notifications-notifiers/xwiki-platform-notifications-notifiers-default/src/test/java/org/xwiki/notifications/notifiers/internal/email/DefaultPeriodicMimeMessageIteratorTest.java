@@ -21,8 +21,9 @@
 
 import java.lang.reflect.Type;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.mail.internet.InternetAddress;
@@ -49,6 +50,10 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -109,18 +114,19 @@ public void test() throws Exception
         when(documentAccessBridge.getProperty(userB, userClass, 0, "email")).thenReturn("bad email");
         when(documentAccessBridge.getProperty(userC, userClass, 0, "email")).thenReturn("userC@xwiki.org");
         when(serializer.serialize(userA)).thenReturn("xwiki:XWiki.UserA");
-        when(serializer.serialize(userB)).thenReturn("xwiki:XWiki.UserA");
+        when(serializer.serialize(userB)).thenReturn("xwiki:XWiki.UserB");
         when(serializer.serialize(userC)).thenReturn("xwiki:XWiki.UserC");
 
         CompositeEvent event1 = mock(CompositeEvent.class);
         CompositeEvent event2 = mock(CompositeEvent.class);
 
-        when(notificationManager.getEvents("xwiki:XWiki.UserA", NotificationFormat.EMAIL, false,
-                Integer.MAX_VALUE / 4, null, new Date(0L), Collections.emptyList()))
-                .thenReturn(Arrays.asList(event1));
-        when(notificationManager.getEvents("xwiki:XWiki.UserC", NotificationFormat.EMAIL, false,
-                Integer.MAX_VALUE / 4, null, new Date(0L), Collections.emptyList()))
-                .thenReturn(Arrays.asList(event2));
+        Map<String, List<CompositeEvent>> events = new HashMap<>();
+        events.put("xwiki:XWiki.UserA", Arrays.asList(event1));
+        events.put("xwiki:XWiki.UserB", Arrays.asList(mock(CompositeEvent.class)));
+        events.put("xwiki:XWiki.UserC", Arrays.asList(event2));
+        when(notificationManager.getEvents(
+                Arrays.asList("xwiki:XWiki.UserA", "xwiki:XWiki.UserB", "xwiki:XWiki.UserC"),
+                NotificationFormat.EMAIL, Integer.MAX_VALUE / 4, null, new Date(0L))).thenReturn(events);
 
         MimeMessage message = mock(MimeMessage.class);
         when(factory.createMessage(templateReference, factoryParameters)).thenReturn(message, message);
@@ -160,8 +166,9 @@ public void test() throws Exception
         // End
         assertFalse(iterator.hasNext());
 
-        // Verify
-        verify(serializer, never()).serialize(userB);
+        // Verify: the events of all users have been retrieved at once
+        verify(notificationManager, never()).getEvents(anyString(), any(NotificationFormat.class), anyBoolean(),
+                anyInt(), any(), any(), anyList());
 
         assertEquals(iterator, iterator.iterator());
     }
@@ -19,8 +19,11 @@
  */
 package org.xwiki.notifications.sources;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.notifications.CompositeEvent;
@@ -97,6 +100,37 @@ List<CompositeEvent> getEvents(String userId, boolean onlyUnread, int expectedCo
     List<CompositeEvent> getEvents(String userId, NotificationFormat format, boolean onlyUnread, int expectedCount,
             Date untilDate, Date fromDate, List<String> blackList) throws NotificationException;
 
+    /**
+     * Return events to display as notifications concerning each of the specified users. The result for each user is
+     * the same as the one of
+     * {@link #getEvents(String, NotificationFormat, boolean, int, Date, Date, List)} (with all events, read or not,
+     * and no blacklist) but an implementation can share the work between users (e.g. read only once the events
+     * matching several users) which makes it more efficient when a lot of users need to be handled together (e.g. to
+     * send periodic emails).
+     *
+     * @param userIds ids of the users
+     * @param format format of the notifications
+     * @param expectedCount the maximum events to return for each user
+     * @param untilDate do not return events happened after this date
+     * @param fromDate do not return events happened before this date
+     * @return the matching events for each user, indexed by user id
+     * @throws NotificationException if error happens
+     *
+     * @since 9.11RC1
+     */
+    @Unstable
+    default Map<String, List<CompositeEvent>> getEvents(List<String> userIds, NotificationFormat format,
+            int expectedCount, Date untilDate, Date fromDate) throws NotificationException
+    {
+        Map<String, List<CompositeEvent>> results = new LinkedHashMap<>();
+        for (String userId : userIds) {
+            results.put(userId,
+                    getEvents(userId, format, false, expectedCount, untilDate, fromDate, Collections.emptyList()));
+        }
+
+        return results;
+    }
+
     /**
      * Return the number of events to display as notifications concerning the specified user.
      *
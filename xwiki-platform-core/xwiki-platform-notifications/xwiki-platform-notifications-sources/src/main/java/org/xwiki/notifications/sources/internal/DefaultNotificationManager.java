@@ -20,9 +20,15 @@
 package org.xwiki.notifications.sources.internal;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -39,11 +45,21 @@
 import org.xwiki.notifications.NotificationFormat;
 import org.xwiki.notifications.filters.NotificationFilter;
 import org.xwiki.notifications.filters.NotificationFilterManager;
+import org.xwiki.notifications.filters.expression.AndNode;
+import org.xwiki.notifications.filters.expression.EventProperty;
+import org.xwiki.notifications.filters.expression.ExpressionNode;
+import org.xwiki.notifications.filters.expression.InNode;
+import org.xwiki.notifications.filters.expression.NotNode;
+import org.xwiki.notifications.filters.expression.PropertyValueNode;
+import org.xwiki.notifications.filters.expression.StringValueNode;
+import org.xwiki.notifications.filters.expression.generics.AbstractOperatorNode;
+import org.xwiki.notifications.filters.expression.generics.AbstractValueNode;
 import org.xwiki.notifications.internal.SimilarityCalculator;
 import org.xwiki.notifications.preferences.NotificationPreference;
 import org.xwiki.notifications.preferences.NotificationPreferenceManager;
 import org.xwiki.notifications.sources.NotificationManager;
 import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.Right;
 
@@ -57,6 +73,22 @@
 @Singleton
 public class DefaultNotificationManager implements NotificationManager
 {
+    /**
+     * The maximum number of events loaded at once for several users.
+     */
+    private static final int SHARED_BATCH_SIZE = 1000;
+
+    /**
+     * The maximum number of events kept in memory for several users. The users needing more events get them with
+     * their own queries.
+     */
+    private static final int MAX_SHARED_EVENTS = 10000;
+
+    /**
+     * How long the events loaded for a chunk of users can be reused for the next chunks.
+     */
+    private static final long SHARED_EVENTS_LIFESPAN = TimeUnit.MINUTES.toMillis(10);
+
     @Inject
     private EventStream eventStream;
 
@@ -81,6 +113,14 @@ public class DefaultNotificationManager implements NotificationManager
     @Inject
     private NotificationFilterManager notificationFilterManager;
 
+    @Inject
+    private EventExpressionEvaluator expressionEvaluator;
+
+    /**
+     * The events loaded for the last chunk of users, reused by the next chunks when possible.
+     */
+    private SharedEvents lastSharedEvents;
+
     /**
      * For internal use, avoid to give more than 7 parameters to methods.
      */
@@ -176,6 +216,259 @@ public List<CompositeEvent> getEvents(String userId, NotificationFormat format,
         );
     }
 
+    @Override
+    public Map<String, List<CompositeEvent>> getEvents(List<String> userIds, NotificationFormat format,
+            int expectedCount, Date untilDate, Date fromDate) throws NotificationException
+    {
+        Map<String, List<CompositeEvent>> results = new LinkedHashMap<>();
+
+        try {
+            // The conditions of the query expression of each user
+            Map<String, List<ExpressionNode>> usersConditions = new LinkedHashMap<>();
+            for (String userId : userIds) {
+                results.put(userId, new ArrayList<>());
+
+                ExpressionNode expression = queryGenerator.generateQueryExpression(
+                        documentReferenceResolver.resolve(userId), format, false, untilDate, fromDate,
+                        Collections.emptyList());
+                if (expression != null) {
+                    usersConditions.put(userId, getConditions(expression));
+                }
+            }
+
+            // The conditions shared by all the users (e.g. the dates or the hidden events) are checked by one query
+            // executed for all of them, the other conditions (e.g. the user's own events, the watched locations) are
+            // evaluated in memory on the events returned by this shared query
+            SharedEvents sharedEvents = getSharedEvents(getSharedConditions(usersConditions.values()), expectedCount);
+            for (Map.Entry<String, List<ExpressionNode>> user : usersConditions.entrySet()) {
+                Parameters parameters = new Parameters(documentReferenceResolver.resolve(user.getKey()), format,
+                        false, expectedCount, untilDate, fromDate, new ArrayList<>());
+                List<ExpressionNode> userConditions = new ArrayList<>(user.getValue());
+                userConditions.removeAll(sharedEvents.conditions);
+
+                List<CompositeEvent> userResults = results.get(user.getKey());
+                if (usersConditions.size() > 1 && !sharedEvents.conditions.isEmpty()
+                        && userConditions.stream().allMatch(expressionEvaluator::canEvaluate)) {
+                    if (!getEvents(userResults, parameters, sharedEvents, userConditions)) {
+                        // There were too many events to keep them all in memory
+                        userResults.clear();
+                        getEvents(userResults, parameters);
+                    }
+                } else {
+                    getEvents(userResults, parameters);
+                }
+            }
+        } catch (NotificationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new NotificationException("Fail to get the list of notifications.", e);
+        }
+
+        return results;
+    }
+
+    /**
+     * @return the conditions that must all be true for an event to match the given expression
+     */
+    private List<ExpressionNode> getConditions(ExpressionNode expression)
+    {
+        List<ExpressionNode> conditions = new ArrayList<>();
+        if (expression instanceof OrderByNode) {
+            conditions.addAll(getConditions(((OrderByNode) expression).getQuery()));
+        } else if (expression instanceof AndNode) {
+            conditions.addAll(getConditions(((AndNode) expression).getLeftOperand()));
+            conditions.addAll(getConditions(((AndNode) expression).getRightOperand()));
+        } else {
+            conditions.add(expression);
+        }
+
+        return conditions;
+    }
+
+    private List<ExpressionNode> getSharedConditions(Collection<List<ExpressionNode>> usersConditions)
+    {
+        List<ExpressionNode> sharedConditions = null;
+        for (List<ExpressionNode> userConditions : usersConditions) {
+            if (sharedConditions == null) {
+                sharedConditions = new ArrayList<>(userConditions);
+            } else {
+                sharedConditions.retainAll(userConditions);
+            }
+        }
+
+        return sharedConditions != null ? sharedConditions : Collections.emptyList();
+    }
+
+    /**
+     * Reuse the events loaded for the previous chunk of users if they match less conditions than the ones shared by
+     * the users of this chunk (the additional conditions being evaluated in memory).
+     */
+    private synchronized SharedEvents getSharedEvents(List<ExpressionNode> sharedConditions, int expectedCount)
+    {
+        // Because the users might not be able to see all the events because of the rights, we take from the database
+        // more events than expected and we will filter afterwards.
+        int batchSize = (int) Math.min(expectedCount * 2L, SHARED_BATCH_SIZE);
+
+        SharedEvents previous = this.lastSharedEvents;
+        if (previous != null && previous.batchSize == batchSize && !previous.conditions.isEmpty()
+                && System.currentTimeMillis() - previous.creationDate < SHARED_EVENTS_LIFESPAN
+                && sharedConditions.containsAll(previous.conditions)
+                && sharedConditions.stream().filter(condition -> !previous.conditions.contains(condition))
+                        .allMatch(expressionEvaluator::canEvaluate)) {
+            return previous;
+        }
+
+        this.lastSharedEvents = new SharedEvents(sharedConditions, batchSize);
+
+        return this.lastSharedEvents;
+    }
+
+    /**
+     * @return {@code false} if not all the events matching the user could be checked because there were too many
+     */
+    private boolean getEvents(List<CompositeEvent> results, Parameters parameters, SharedEvents sharedEvents,
+            List<ExpressionNode> userConditions) throws NotificationException, QueryException
+    {
+        for (int i = 0; sharedEvents.hasBatch(i); i++) {
+            List<Event> batch = filterEvents(sharedEvents.getBatch(i), userConditions);
+
+            if (recordEvents(results, batch, parameters)) {
+                return true;
+            }
+        }
+
+        return sharedEvents.isComplete();
+    }
+
+    /**
+     * @return the events matching all the passed conditions
+     */
+    private List<Event> filterEvents(List<Event> events, List<ExpressionNode> conditions) throws QueryException
+    {
+        List<Event> matchingEvents = new ArrayList<>();
+        Set<String> undecidedIds = new HashSet<>();
+        for (Event event : events) {
+            Boolean matches = matches(event, conditions);
+            if (matches == null) {
+                undecidedIds.add(event.getId());
+                matchingEvents.add(event);
+            } else if (matches) {
+                matchingEvents.add(event);
+            }
+        }
+
+        if (!undecidedIds.isEmpty()) {
+            // The result depends on how the database compares strings so let it decide
+            Collection<AbstractValueNode> values = new ArrayList<>();
+            undecidedIds.forEach(id -> values.add(new StringValueNode(id)));
+            AbstractOperatorNode node = new InNode(new PropertyValueNode(EventProperty.ID), values);
+            for (ExpressionNode condition : conditions) {
+                node = node.and((AbstractOperatorNode) condition);
+            }
+            Set<String> matchingIds = new HashSet<>(getEventsIds(
+                    eventStream.searchEvents(queryGenerator.generateQuery(node))));
+
+            matchingEvents.removeIf(
+                event -> undecidedIds.contains(event.getId()) && !matchingIds.contains(event.getId()));
+        }
+
+        return matchingEvents;
+    }
+
+    /**
+     * @return {@code true} if the event matches all the conditions, {@code false} if it doesn't and {@code null} if
+     *         the database is needed to know
+     */
+    private Boolean matches(Event event, List<ExpressionNode> conditions)
+    {
+        Boolean result = Boolean.TRUE;
+        for (ExpressionNode condition : conditions) {
+            Boolean matches = expressionEvaluator.matches(condition, event);
+            if (Boolean.FALSE.equals(matches)) {
+                return Boolean.FALSE;
+            } else if (matches == null) {
+                result = null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The events matching the conditions shared by several users, loaded by batches when a user first needs them.
+     */
+    private class SharedEvents
+    {
+        private final List<ExpressionNode> conditions;
+
+        private final AbstractOperatorNode condition;
+
+        private final int batchSize;
+
+        private final long creationDate = System.currentTimeMillis();
+
+        private final List<List<Event>> batches = new ArrayList<>();
+
+        private final Set<String> loadedIds = new HashSet<>();
+
+        private int offset;
+
+        private boolean complete;
+
+        SharedEvents(List<ExpressionNode> conditions, int batchSize)
+        {
+            AbstractOperatorNode node = null;
+            for (ExpressionNode condition : conditions) {
+                node = node == null ? (AbstractOperatorNode) condition : node.and((AbstractOperatorNode) condition);
+            }
+            this.conditions = conditions;
+            this.condition = node;
+            this.batchSize = batchSize;
+        }
+
+        synchronized boolean hasBatch(int index) throws QueryException
+        {
+            while (index >= this.batches.size()) {
+                if (this.complete || this.offset >= MAX_SHARED_EVENTS) {
+                    return false;
+                }
+
+                loadBatch();
+            }
+
+            return true;
+        }
+
+        synchronized List<Event> getBatch(int index)
+        {
+            return this.batches.get(index);
+        }
+
+        /**
+         * @return {@code true} if all the events matching the conditions have been loaded
+         */
+        synchronized boolean isComplete()
+        {
+            return this.complete;
+        }
+
+        private void loadBatch() throws QueryException
+        {
+            Query query = queryGenerator.generateQuery(
+                    new OrderByNode(this.condition, new PropertyValueNode(EventProperty.DATE), OrderByNode.Order.DESC));
+            query.setLimit(this.batchSize);
+            query.setOffset(this.offset);
+
+            List<Event> events = eventStream.searchEvents(query);
+            this.offset += events.size();
+            this.complete = events.size() < this.batchSize;
+
+            // The events created since the previous batch shift the results: skip the events already loaded
+            this.batches.add(events.stream().filter(event -> this.loadedIds.add(event.getId()))
+                    .collect(Collectors.toList()));
+        }
+    }
+
     @Override
     public long getEventsCount(String userId, boolean onlyUnread, int maxCount) throws NotificationException
     {
@@ -215,24 +508,8 @@ private List<CompositeEvent> getEvents(List<CompositeEvent> results, Parameters
             List<Event> batch = eventStream.searchEvents(query);
 
             // Add to the results the events the user has the right to see
-            for (Event event : batch) {
-                DocumentReference document = event.getDocument();
-                // Don't record events concerning a doc the user cannot see
-                if (document != null && !authorizationManager.hasAccess(Right.VIEW, parameters.userReference,
-                        document)) {
-                    continue;
-                }
-
-                if (filterEvent(event, parameters.userReference, parameters.format)) {
-                    continue;
-                }
-
-                // Record this event
-                recordEvent(results, event);
-                // If the expected count is reached, stop now
-                if (results.size() >= parameters.expectedCount) {
-                    return results;
-                }
+            if (recordEvents(results, batch, parameters)) {
+                return results;
             }
 
             // If we haven't get the expected number of events, perform a new batch
@@ -247,6 +524,37 @@ private List<CompositeEvent> getEvents(List<CompositeEvent> results, Parameters
         }
     }
 
+    /**
+     * Record the events of the batch that the user is allowed to see and that are not filtered.
+     *
+     * @return {@code true} if the expected count has been reached
+     */
+    private boolean recordEvents(List<CompositeEvent> results, List<Event> batch, Parameters parameters)
+            throws NotificationException
+    {
+        for (Event event : batch) {
+            DocumentReference document = event.getDocument();
+            // Don't record events concerning a doc the user cannot see
+            if (document != null && !authorizationManager.hasAccess(Right.VIEW, parameters.userReference,
+                    document)) {
+                continue;
+            }
+
+            if (filterEvent(event, parameters.userReference, parameters.format)) {
+                continue;
+            }
+
+            // Record this event
+            recordEvent(results, event);
+            // If the expected count is reached, stop now
+            if (results.size() >= parameters.expectedCount) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     private boolean filterEvent(Event event, DocumentReference user, NotificationFormat format)
             throws NotificationException
     {
@@ -0,0 +1,354 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.text.Normalizer;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.eventstream.Event;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.notifications.filters.expression.AndNode;
+import org.xwiki.notifications.filters.expression.BooleanValueNode;
+import org.xwiki.notifications.filters.expression.DateValueNode;
+import org.xwiki.notifications.filters.expression.EntityReferenceNode;
+import org.xwiki.notifications.filters.expression.EqualsNode;
+import org.xwiki.notifications.filters.expression.EventProperty;
+import org.xwiki.notifications.filters.expression.ExpressionNode;
+import org.xwiki.notifications.filters.expression.GreaterThanNode;
+import org.xwiki.notifications.filters.expression.InNode;
+import org.xwiki.notifications.filters.expression.LesserThanNode;
+import org.xwiki.notifications.filters.expression.NotEqualsNode;
+import org.xwiki.notifications.filters.expression.NotNode;
+import org.xwiki.notifications.filters.expression.OrNode;
+import org.xwiki.notifications.filters.expression.PropertyValueNode;
+import org.xwiki.notifications.filters.expression.StartsWith;
+import org.xwiki.notifications.filters.expression.StringValueNode;
+import org.xwiki.notifications.filters.expression.generics.AbstractBinaryOperatorNode;
+import org.xwiki.notifications.filters.expression.generics.AbstractNode;
+import org.xwiki.notifications.filters.expression.generics.AbstractValueNode;
+
+/**
+ * Evaluate an {@link ExpressionNode} against an {@link Event} already loaded in memory, with the same semantic as the
+ * HQL query generated by {@link ExpressionNodeToHQLConverter}: the properties are compared using the values stored in
+ * the database for the event and a comparison involving a missing value is neither true nor false (as in SQL).
+ * <p>
+ * How the database compares strings depends on its collation (e.g. MySQL ignores the case, the accents and the
+ * trailing spaces by default while other databases don't). When the result of a string comparison could change with
+ * the collation (e.g. the strings only differ by their case) the expression is not evaluated and the database has to
+ * be used instead.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = EventExpressionEvaluator.class)
+@Singleton
+public class EventExpressionEvaluator
+{
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    /**
+     * The wildcards of the LIKE operator used for {@link StartsWith}.
+     */
+    private static final Pattern LIKE_WILDCARDS = Pattern.compile("[%_]");
+
+    /**
+     * The result of an expression.
+     */
+    private enum Result
+    {
+        TRUE,
+
+        FALSE,
+
+        /**
+         * The result of a comparison with a missing value (as the SQL {@code NULL}).
+         */
+        UNKNOWN,
+
+        /**
+         * The result depends on the collation of the database.
+         */
+        UNDECIDED
+    }
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    @Named("compactwiki")
+    private EntityReferenceSerializer<String> compactSerializer;
+
+    /**
+     * @param node the expression to check
+     * @return {@code true} if the given expression can be evaluated by {@link #matches(ExpressionNode, Event)}
+     */
+    public boolean canEvaluate(ExpressionNode node)
+    {
+        if (node instanceof AndNode || node instanceof OrNode) {
+            AbstractBinaryOperatorNode operator = (AbstractBinaryOperatorNode) node;
+            return canEvaluate(operator.getLeftOperand()) && canEvaluate(operator.getRightOperand());
+        } else if (node instanceof NotNode) {
+            return canEvaluate(((NotNode) node).getOperand());
+        } else if (isComparison(node)) {
+            AbstractBinaryOperatorNode operator = (AbstractBinaryOperatorNode) node;
+            return canEvaluateValue(operator.getLeftOperand()) && canEvaluateValue(operator.getRightOperand());
+        } else if (node instanceof InNode) {
+            InNode inNode = (InNode) node;
+            return canEvaluateValue(inNode.getLeftOperand())
+                && inNode.getValues().stream().allMatch(this::canEvaluateValue);
+        }
+
+        return false;
+    }
+
+    /**
+     * @param node the expression to evaluate (it must be supported, see {@link #canEvaluate(ExpressionNode)})
+     * @param event the event to test
+     * @return {@code true} if the event matches the expression, {@code false} if it doesn't and {@code null} if it
+     *         depends on how the database compares strings, in which case the database should be used to know
+     */
+    public Boolean matches(ExpressionNode node, Event event)
+    {
+        switch (evaluate(node, event)) {
+            case TRUE:
+                return Boolean.TRUE;
+            case UNDECIDED:
+                return null;
+            default:
+                return Boolean.FALSE;
+        }
+    }
+
+    private boolean isComparison(ExpressionNode node)
+    {
+        return node instanceof EqualsNode || node instanceof NotEqualsNode || node instanceof StartsWith
+            || node instanceof GreaterThanNode || node instanceof LesserThanNode;
+    }
+
+    private boolean canEvaluateValue(AbstractNode node)
+    {
+        if (node instanceof PropertyValueNode) {
+            EventProperty property = ((PropertyValueNode) node).getContent();
+            // The hidden flag and the priority are not exposed by the events
+            return property != EventProperty.HIDDEN && property != EventProperty.IMPORTANCE;
+        }
+
+        return node instanceof StringValueNode || node instanceof EntityReferenceNode
+            || node instanceof DateValueNode || node instanceof BooleanValueNode;
+    }
+
+    private Result evaluate(ExpressionNode node, Event event)
+    {
+        if (node instanceof AndNode) {
+            return and(evaluate(((AndNode) node).getLeftOperand(), event),
+                evaluate(((AndNode) node).getRightOperand(), event));
+        } else if (node instanceof OrNode) {
+            Result left = evaluate(((OrNode) node).getLeftOperand(), event);
+            Result right = evaluate(((OrNode) node).getRightOperand(), event);
+            return not(and(not(left), not(right)));
+        } else if (node instanceof NotNode) {
+            return not(evaluate(((NotNode) node).getOperand(), event));
+        } else if (node instanceof InNode) {
+            return in((InNode) node, event);
+        }
+
+        return compare((AbstractBinaryOperatorNode) node, event);
+    }
+
+    private Result and(Result left, Result right)
+    {
+        if (left == Result.FALSE || right == Result.FALSE) {
+            return Result.FALSE;
+        } else if (left == Result.UNDECIDED || right == Result.UNDECIDED) {
+            return Result.UNDECIDED;
+        } else if (left == Result.UNKNOWN || right == Result.UNKNOWN) {
+            return Result.UNKNOWN;
+        }
+
+        return Result.TRUE;
+    }
+
+    private Result not(Result value)
+    {
+        if (value == Result.TRUE) {
+            return Result.FALSE;
+        } else if (value == Result.FALSE) {
+            return Result.TRUE;
+        }
+
+        return value;
+    }
+
+    private Result valueOf(boolean value)
+    {
+        return value ? Result.TRUE : Result.FALSE;
+    }
+
+    private Result in(InNode node, Event event)
+    {
+        Object value = getValue(node.getLeftOperand(), event);
+        if (value == null) {
+            return Result.UNKNOWN;
+        }
+
+        Result result = Result.FALSE;
+        for (AbstractValueNode candidate : node.getValues()) {
+            Object candidateValue = getValue(candidate, event);
+            if (Objects.equals(value, candidateValue)) {
+                return Result.TRUE;
+            } else if (value instanceof String && candidateValue instanceof String
+                && normalize((String) value).equals(normalize((String) candidateValue))) {
+                result = Result.UNDECIDED;
+            }
+        }
+
+        return result;
+    }
+
+    private Result compare(AbstractBinaryOperatorNode node, Event event)
+    {
+        Object left = getValue(node.getLeftOperand(), event);
+        Object right = getValue(node.getRightOperand(), event);
+        if (left == null || right == null) {
+            return Result.UNKNOWN;
+        }
+
+        if (node instanceof StartsWith) {
+            return startsWith(left.toString(), right.toString());
+        }
+
+        int comparison;
+        if (left instanceof Date && right instanceof Date) {
+            comparison = ((Date) left).compareTo((Date) right);
+        } else {
+            comparison = left.toString().compareTo(right.toString());
+            if (comparison != 0 && Integer.signum(comparison) != Integer
+                .signum(normalize(left.toString()).compareTo(normalize(right.toString())))) {
+                // Equal or ordered differently when ignoring the case, the accents or the trailing spaces
+                return Result.UNDECIDED;
+            }
+        }
+
+        if (node instanceof EqualsNode) {
+            return valueOf(comparison == 0);
+        } else if (node instanceof NotEqualsNode) {
+            return valueOf(comparison != 0);
+        } else if (node instanceof GreaterThanNode) {
+            return valueOf(comparison >= 0);
+        } else {
+            return valueOf(comparison <= 0);
+        }
+    }
+
+    private Result startsWith(String value, String prefix)
+    {
+        if (value.startsWith(prefix)) {
+            return Result.TRUE;
+        } else if (normalize(value).startsWith(normalize(prefix)) || LIKE_WILDCARDS.matcher(prefix).find()) {
+            return Result.UNDECIDED;
+        }
+
+        return Result.FALSE;
+    }
+
+    /**
+     * @return the passed string without what the usual case and accent insensitive collations ignore
+     */
+    private String normalize(String value)
+    {
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) == ' ') {
+            end--;
+        }
+
+        String normalized = Normalizer.normalize(value.substring(0, end), Normalizer.Form.NFKD);
+        normalized = DIACRITICS.matcher(normalized).replaceAll("");
+
+        return normalized.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+
+    private Object getValue(AbstractNode node, Event event)
+    {
+        if (node instanceof PropertyValueNode) {
+            return getProperty(((PropertyValueNode) node).getContent(), event);
+        } else if (node instanceof StringValueNode) {
+            return ((StringValueNode) node).getContent();
+        } else if (node instanceof EntityReferenceNode) {
+            return this.serializer.serialize(((EntityReferenceNode) node).getContent());
+        } else if (node instanceof DateValueNode) {
+            return ((DateValueNode) node).getContent();
+        } else if (node instanceof BooleanValueNode) {
+            return ((BooleanValueNode) node).getContent();
+        }
+
+        return null;
+    }
+
+    private Object getProperty(EventProperty property, Event event)
+    {
+        // Use the same representation as the one stored in the database, see EventConverter in the activity stream
+        switch (property) {
+            case ID:
+                return event.getId();
+            case GROUP_ID:
+                return event.getGroupId();
+            case STREAM:
+                return event.getStream();
+            case DATE:
+                return event.getDate();
+            case APPLICATION:
+                return event.getApplication();
+            case BODY:
+                return event.getBody();
+            case TYPE:
+                return event.getType();
+            case PAGE:
+                return serializeRelatively(event.getDocument(), event);
+            case SPACE:
+                return serializeRelatively(event.getSpace(), event);
+            case TITLE:
+                return event.getTitle();
+            case USER:
+                return event.getUser() != null ? this.serializer.serialize(event.getUser()) : null;
+            case WIKI:
+                return event.getWiki() != null ? this.serializer.serialize(event.getWiki()) : null;
+            case URL:
+                return event.getUrl() != null ? event.getUrl().toString() : null;
+            case DOCUMENT_VERSION:
+                return event.getDocumentVersion();
+            default:
+                return null;
+        }
+    }
+
+    private String serializeRelatively(EntityReference reference, Event event)
+    {
+        return reference != null ? this.compactSerializer.serialize(reference, event.getWiki()) : null;
+    }
+}
@@ -19,6 +19,8 @@
  */
 package org.xwiki.notifications.sources.internal;
 
+import java.util.Objects;
+
 import org.xwiki.notifications.filters.expression.PropertyValueNode;
 import org.xwiki.notifications.filters.expression.generics.AbstractOperatorNode;
 
@@ -88,6 +90,21 @@ public Order getOrder()
         return order;
     }
 
+    @Override
+    public boolean equals(Object o)
+    {
+        return (o instanceof OrderByNode
+                && Objects.equals(query, ((OrderByNode) o).query)
+                && Objects.equals(property, ((OrderByNode) o).property)
+                && order == ((OrderByNode) o).order);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(query, property, order);
+    }
+
     @Override
     public String toString()
     {
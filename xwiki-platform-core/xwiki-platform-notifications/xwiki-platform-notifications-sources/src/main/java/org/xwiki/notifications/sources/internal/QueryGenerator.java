@@ -113,9 +113,22 @@ public Query generateQuery(DocumentReference user, NotificationFormat format, bo
             Date endDate,
             Date startDate, List<String> blackList) throws NotificationException, QueryException
     {
-        ExpressionNodeToHQLConverter.HQLQuery result = hqlConverter.parse(
-                generateQueryExpression(user, format, onlyUnread, endDate, startDate, blackList)
-        );
+        return generateQuery(generateQueryExpression(user, format, onlyUnread, endDate, startDate, blackList));
+    }
+
+    /**
+     * Generate the query corresponding to an expression previously generated with
+     * {@link #generateQueryExpression(DocumentReference, NotificationFormat, boolean, Date, Date, List)}.
+     *
+     * @param expression the expression to convert
+     * @return the query to execute
+     * @throws QueryException if error happens
+     *
+     * @since 9.11RC1
+     */
+    public Query generateQuery(ExpressionNode expression) throws QueryException
+    {
+        ExpressionNodeToHQLConverter.HQLQuery result = hqlConverter.parse(expression);
         if (result.getQuery().isEmpty()) {
             return null;
         }
@@ -171,7 +184,7 @@ public ExpressionNode generateQueryExpression(DocumentReference user, Notificati
         }
 
         // Condition 2: handle other preferences
-        AbstractOperatorNode preferencesNode = handleEventPreferences(user, preferences);
+        AbstractOperatorNode preferencesNode = handleEventPreferences(user, preferences, startDate);
 
         // Condition 3: handle exclusive global notification filters
         AbstractOperatorNode globalExclusiveFiltersNode = handleExclusiveGlobalFilters(user, format);
@@ -221,11 +234,12 @@ public ExpressionNode generateQueryExpression(DocumentReference user, Notificati
      *
      * @param user the current user
      * @param preferences a list of the user preferences
+     * @param startDate the global start date, if any
      * @return a list of maps that contains query parameters
      * @throws NotificationException if an error occurred
      */
     private AbstractOperatorNode handleEventPreferences(DocumentReference user,
-            List<NotificationPreference> preferences) throws NotificationException
+            List<NotificationPreference> preferences, Date startDate) throws NotificationException
     {
         AbstractOperatorNode preferencesNode = null;
 
@@ -243,7 +257,7 @@ private AbstractOperatorNode handleEventPreferences(DocumentReference user,
                     ),
                     new GreaterThanNode(
                             value(EventProperty.DATE),
-                            value(preference.getStartDate())
+                            value(getPreferenceStartDate(preference, startDate))
                     )
             );
 
@@ -270,6 +284,18 @@ private AbstractOperatorNode handleEventPreferences(DocumentReference user,
         return preferencesNode;
     }
 
+    private Date getPreferenceStartDate(NotificationPreference preference, Date startDate)
+    {
+        // The events are already required to have happened after the global start date so a preference start date
+        // before it has no effect. Using the global start date instead keeps the same results but produces the same
+        // expression for all the users having the same preferences (which allows to share the query between them).
+        if (startDate != null && preference.getStartDate().before(startDate)) {
+            return startDate;
+        }
+
+        return preference.getStartDate();
+    }
+
     /**
      * Generate a part of the query using each of the {@link NotificationFilter} retrieved from the
      * {@link NotificationFilterManager}. Each {@link NotificationFilter} is called without any associated
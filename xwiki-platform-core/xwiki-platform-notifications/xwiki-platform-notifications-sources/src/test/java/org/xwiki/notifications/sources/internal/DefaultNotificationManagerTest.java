@@ -23,6 +23,7 @@
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -32,9 +33,13 @@
 import org.xwiki.eventstream.EventStream;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.notifications.CompositeEvent;
 import org.xwiki.notifications.NotificationException;
 import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.expression.BooleanValueNode;
+import org.xwiki.notifications.filters.expression.EventProperty;
+import org.xwiki.notifications.filters.expression.ExpressionNode;
 import org.xwiki.notifications.internal.SimilarityCalculator;
 import org.xwiki.notifications.preferences.NotificationPreference;
 import org.xwiki.notifications.preferences.NotificationPreferenceManager;
@@ -42,6 +47,7 @@
 import org.xwiki.query.Query;
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.Right;
+import org.xwiki.test.annotation.BeforeComponent;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
@@ -54,13 +60,16 @@
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
+import static org.xwiki.notifications.filters.expression.generics.ExpressionBuilder.value;
 
 /**
  * @version $Id$
  */
-@ComponentList(SimilarityCalculator.class)
+@ComponentList({SimilarityCalculator.class, EventExpressionEvaluator.class})
 public class DefaultNotificationManagerTest
 {
     @Rule
@@ -73,10 +82,19 @@
     private DocumentReferenceResolver<String> documentReferenceResolver;
     private NotificationPreferenceManager notificationPreferenceManager;
     private AuthorizationManager authorizationManager;
+    private EntityReferenceSerializer<String> serializer;
 
     private DocumentReference userReference = new DocumentReference("xwiki", "XWiki", "UserA");
     private Query query;
     private Date startDate;
+    private int eventCounter;
+
+    @BeforeComponent
+    public void registerComponents() throws Exception
+    {
+        serializer = mocker.registerMockComponent(EntityReferenceSerializer.TYPE_STRING);
+        mocker.registerMockComponent(EntityReferenceSerializer.TYPE_STRING, "compactwiki");
+    }
 
     @Before
     public void setUp() throws Exception
@@ -143,13 +161,167 @@ public void getEventsWith2Queries() throws Exception
         assertEquals(event5, results.get(1).getEvents().get(0));
     }
 
+    @Test
+    public void getEventsForSeveralUsers() throws Exception
+    {
+        DocumentReference userB = new DocumentReference("xwiki", "XWiki", "UserB");
+        DocumentReference userC = new DocumentReference("xwiki", "XWiki", "UserC");
+        when(documentReferenceResolver.resolve("xwiki:XWiki.UserB")).thenReturn(userB);
+        when(documentReferenceResolver.resolve("xwiki:XWiki.UserC")).thenReturn(userC);
+        when(serializer.serialize(userReference)).thenReturn("xwiki:XWiki.UserA");
+        when(serializer.serialize(userB)).thenReturn("xwiki:XWiki.UserB");
+        when(serializer.serialize(userC)).thenReturn("xwiki:XWiki.UserC");
+
+        // UserA and UserB have the default configuration: they only differ by the exclusion of their own events.
+        // UserC has no preference at all.
+        when(queryGenerator.generateQueryExpression(eq(userReference), eq(NotificationFormat.EMAIL),
+                eq(false), isNull(), eq(startDate), eq(Collections.emptyList())))
+                .thenReturn(createDefaultExpression("xwiki:XWiki.UserA"));
+        when(queryGenerator.generateQueryExpression(eq(userB), eq(NotificationFormat.EMAIL),
+                eq(false), isNull(), eq(startDate), eq(Collections.emptyList())))
+                .thenReturn(createDefaultExpression("xwiki:XWiki.UserB"));
+        when(queryGenerator.generateQueryExpression(eq(userC), eq(NotificationFormat.EMAIL),
+                eq(false), isNull(), eq(startDate), eq(Collections.emptyList()))).thenReturn(null);
+        when(queryGenerator.generateQuery(any(ExpressionNode.class))).thenReturn(query);
+
+        Event event1 = createMockedEvent();
+        Event event2 = createMockedEvent();
+        Event event3 = createMockedEvent();
+        DocumentReference doc1 = new DocumentReference("xwiki", "Main", "WebHome");
+        DocumentReference doc2 = new DocumentReference("xwiki", "PrivateSpace", "WebHome");
+        DocumentReference doc3 = new DocumentReference("xwiki", "Sandbox", "WebHome");
+        when(event1.getDocument()).thenReturn(doc1);
+        when(event2.getDocument()).thenReturn(doc2);
+        when(event3.getDocument()).thenReturn(doc3);
+        when(event1.getUser()).thenReturn(userReference);
+        when(event2.getUser()).thenReturn(userC);
+        when(event3.getUser()).thenReturn(userB);
+        when(event1.getType()).thenReturn("create");
+        when(event2.getType()).thenReturn("create");
+        when(event3.getType()).thenReturn("create");
+
+        when(authorizationManager.hasAccess(eq(Right.VIEW), any(DocumentReference.class),
+                any(DocumentReference.class))).thenReturn(true);
+        when(authorizationManager.hasAccess(Right.VIEW, userB, doc2)).thenReturn(false);
+
+        when(eventStream.searchEvents(query)).thenReturn(Arrays.asList(event1, event2, event3));
+
+        // Test
+        Map<String, List<CompositeEvent>> results = mocker.getComponentUnderTest().getEvents(
+                Arrays.asList("xwiki:XWiki.UserA", "xwiki:XWiki.UserB", "xwiki:XWiki.UserC"),
+                NotificationFormat.EMAIL, 10, null, startDate);
+
+        // Verify
+        assertEquals(3, results.size());
+        assertEquals(2, results.get("xwiki:XWiki.UserA").size());
+        assertEquals(event2, results.get("xwiki:XWiki.UserA").get(0).getEvents().get(0));
+        assertEquals(event3, results.get("xwiki:XWiki.UserA").get(1).getEvents().get(0));
+        assertEquals(1, results.get("xwiki:XWiki.UserB").size());
+        assertEquals(event1, results.get("xwiki:XWiki.UserB").get(0).getEvents().get(0));
+        assertTrue(results.get("xwiki:XWiki.UserC").isEmpty());
+
+        // The events have been read with only one query for UserA and UserB, which does not depend on the user
+        verify(eventStream, times(1)).searchEvents(query);
+        verify(queryGenerator).generateQuery(new OrderByNode(
+                value(EventProperty.DATE).greaterThan(value(startDate))
+                        .and(value(EventProperty.TYPE).eq(value("create")))
+                        .and(value(EventProperty.HIDDEN).notEq(new BooleanValueNode(true))),
+                value(EventProperty.DATE), OrderByNode.Order.DESC));
+        verify(query).setLimit(20);
+    }
+
+    private ExpressionNode createDefaultExpression(String user)
+    {
+        // The expression generated for a user who only receives the "create" events, except their own events
+        return new OrderByNode(
+                value(EventProperty.DATE).greaterThan(value(startDate))
+                        .and(value(EventProperty.TYPE).eq(value("create"))
+                                .and(value(EventProperty.USER).notEq(value(user))))
+                        .and(value(EventProperty.HIDDEN).notEq(new BooleanValueNode(true))),
+                value(EventProperty.DATE), OrderByNode.Order.DESC);
+    }
+
     private Event createMockedEvent()
     {
         Event event = mock(Event.class);
+        when(event.getId()).thenReturn("event" + (++eventCounter));
         when(event.getDate()).thenReturn(new Date(1L));
         return event;
     }
 
+    private void mockUsers(DocumentReference... users)
+    {
+        for (DocumentReference user : users) {
+            String userId = "xwiki:XWiki." + user.getName();
+            when(documentReferenceResolver.resolve(userId)).thenReturn(user);
+            when(serializer.serialize(user)).thenReturn(userId);
+            when(queryGenerator.generateQueryExpression(eq(user), eq(NotificationFormat.EMAIL),
+                    eq(false), isNull(), eq(startDate), eq(Collections.emptyList())))
+                    .thenReturn(createDefaultExpression(userId));
+        }
+    }
+
+    @Test
+    public void getEventsForSeveralChunksOfUsers() throws Exception
+    {
+        DocumentReference userB = new DocumentReference("xwiki", "XWiki", "UserB");
+        DocumentReference userC = new DocumentReference("xwiki", "XWiki", "UserC");
+        mockUsers(userReference, userB, userC);
+        when(queryGenerator.generateQuery(any(ExpressionNode.class))).thenReturn(query);
+
+        Event event = createMockedEvent();
+        when(event.getType()).thenReturn("create");
+        when(event.getUser()).thenReturn(userC);
+        when(eventStream.searchEvents(query)).thenReturn(Arrays.asList(event));
+
+        // Test
+        Map<String, List<CompositeEvent>> results = mocker.getComponentUnderTest().getEvents(
+                Arrays.asList("xwiki:XWiki.UserA", "xwiki:XWiki.UserB"), NotificationFormat.EMAIL, 10, null,
+                startDate);
+        Map<String, List<CompositeEvent>> nextResults = mocker.getComponentUnderTest().getEvents(
+                Arrays.asList("xwiki:XWiki.UserB", "xwiki:XWiki.UserC"), NotificationFormat.EMAIL, 10, null,
+                startDate);
+
+        // Verify
+        assertEquals(event, results.get("xwiki:XWiki.UserA").get(0).getEvents().get(0));
+        assertEquals(event, nextResults.get("xwiki:XWiki.UserB").get(0).getEvents().get(0));
+        assertTrue(nextResults.get("xwiki:XWiki.UserC").isEmpty());
+
+        // The events loaded for the first chunk of users are reused for the next one
+        verify(eventStream, times(1)).searchEvents(query);
+    }
+
+    @Test
+    public void getEventsForSeveralUsersWhenTheDatabaseCollationMatters() throws Exception
+    {
+        DocumentReference userB = new DocumentReference("xwiki", "XWiki", "UserB");
+        mockUsers(userReference, userB);
+        Query checkQuery = mock(Query.class);
+        when(queryGenerator.generateQuery(any(ExpressionNode.class))).thenReturn(checkQuery);
+        when(queryGenerator.generateQuery(any(OrderByNode.class))).thenReturn(query);
+
+        // The user of the event only differs by its case from UserA
+        Event event = createMockedEvent();
+        DocumentReference lowerCaseUser = new DocumentReference("xwiki", "XWiki", "usera");
+        when(serializer.serialize(lowerCaseUser)).thenReturn("xwiki:XWiki.usera");
+        when(event.getType()).thenReturn("create");
+        when(event.getUser()).thenReturn(lowerCaseUser);
+        when(eventStream.searchEvents(query)).thenReturn(Arrays.asList(event));
+
+        // The database ignores the case
+        when(eventStream.searchEvents(checkQuery)).thenReturn(Collections.emptyList());
+
+        // Test
+        Map<String, List<CompositeEvent>> results = mocker.getComponentUnderTest().getEvents(
+                Arrays.asList("xwiki:XWiki.UserA", "xwiki:XWiki.UserB"), NotificationFormat.EMAIL, 10, null,
+                startDate);
+
+        // Verify
+        assertTrue(results.get("xwiki:XWiki.UserA").isEmpty());
+        assertEquals(event, results.get("xwiki:XWiki.UserB").get(0).getEvents().get(0));
+        verify(eventStream, times(1)).searchEvents(checkQuery);
+    }
+
     @Test
     public void getEventsWhenNoPreferences() throws Exception
     {
@@ -0,0 +1,163 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.eventstream.Event;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.notifications.filters.expression.BooleanValueNode;
+import org.xwiki.notifications.filters.expression.EntityReferenceNode;
+import org.xwiki.notifications.filters.expression.EventProperty;
+import org.xwiki.notifications.filters.expression.StringValueNode;
+import org.xwiki.notifications.filters.expression.generics.AbstractValueNode;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.xwiki.notifications.filters.expression.generics.ExpressionBuilder.not;
+import static org.xwiki.notifications.filters.expression.generics.ExpressionBuilder.value;
+
+/**
+ * Unit tests for {@link EventExpressionEvaluator}.
+ *
+ * @version $Id$
+ */
+public class EventExpressionEvaluatorTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<EventExpressionEvaluator> mocker =
+            new MockitoComponentMockingRule<>(EventExpressionEvaluator.class);
+
+    private EventExpressionEvaluator evaluator;
+
+    private Event event;
+
+    private WikiReference wiki = new WikiReference("xwiki");
+
+    private DocumentReference document = new DocumentReference("xwiki", "Space", "Page");
+
+    private DocumentReference user = new DocumentReference("xwiki", "XWiki", "UserA");
+
+    @Before
+    public void setUp() throws Exception
+    {
+        EntityReferenceSerializer<String> serializer = mocker.getInstance(EntityReferenceSerializer.TYPE_STRING);
+        EntityReferenceSerializer<String> compactSerializer =
+                mocker.getInstance(EntityReferenceSerializer.TYPE_STRING, "compactwiki");
+        evaluator = mocker.getComponentUnderTest();
+
+        event = mock(Event.class);
+        when(event.getType()).thenReturn("update");
+        when(event.getDate()).thenReturn(new Date(100));
+        when(event.getWiki()).thenReturn(wiki);
+        when(event.getSpace()).thenReturn(document.getLastSpaceReference());
+        when(event.getDocument()).thenReturn(document);
+        when(event.getUser()).thenReturn(user);
+
+        when(serializer.serialize(wiki)).thenReturn("xwiki");
+        when(serializer.serialize(user)).thenReturn("xwiki:XWiki.UserA");
+        when(compactSerializer.serialize(document, wiki)).thenReturn("Space.Page");
+        when(compactSerializer.serialize(document.getLastSpaceReference(), wiki)).thenReturn("Space");
+    }
+
+    @Test
+    public void matchesComparisons()
+    {
+        assertTrue(evaluator.matches(value(EventProperty.TYPE).eq(value("update")), event));
+        assertFalse(evaluator.matches(value(EventProperty.TYPE).notEq(value("update")), event));
+        assertTrue(evaluator.matches(value(EventProperty.PAGE).startsWith(value("Space.")), event));
+        assertTrue(evaluator.matches(value(EventProperty.SPACE).eq(value("Space")), event));
+        assertTrue(evaluator.matches(value(EventProperty.WIKI).eq(new EntityReferenceNode(wiki)), event));
+        assertTrue(evaluator.matches(value(EventProperty.USER).notEq(value("xwiki:XWiki.UserB")), event));
+        assertTrue(evaluator.matches(value(EventProperty.DATE).greaterThan(value(new Date(100))), event));
+        assertFalse(evaluator.matches(value(EventProperty.DATE).lesserThan(value(new Date(99))), event));
+        assertTrue(evaluator.matches(value(EventProperty.TYPE).inStrings(Arrays.asList("create", "update")), event));
+    }
+
+    @Test
+    public void matchesOperators()
+    {
+        assertTrue(evaluator.matches(
+                value(EventProperty.TYPE).eq(value("create")).or(value(EventProperty.TYPE).eq(value("update"))),
+                event));
+        assertFalse(evaluator.matches(
+                value(EventProperty.TYPE).eq(value("update")).and(value(EventProperty.PAGE).eq(value("Other"))),
+                event));
+        assertTrue(evaluator.matches(not(value(EventProperty.TYPE).eq(value("create"))), event));
+    }
+
+    @Test
+    public void matchesWithMissingValue()
+    {
+        // As in SQL, comparing a missing value is neither true nor false
+        assertFalse(evaluator.matches(value(EventProperty.TITLE).eq(value("title")), event));
+        assertFalse(evaluator.matches(value(EventProperty.TITLE).notEq(value("title")), event));
+        assertFalse(evaluator.matches(not(value(EventProperty.TITLE).eq(value("title"))), event));
+        assertTrue(evaluator.matches(
+                value(EventProperty.TITLE).eq(value("title")).or(value(EventProperty.TYPE).eq(value("update"))),
+                event));
+    }
+
+    @Test
+    public void matchesWhenTheDatabaseCollationMatters()
+    {
+        // The result depends on whether the database ignores the case, the accents or the trailing spaces
+        assertNull(evaluator.matches(value(EventProperty.TYPE).eq(value("Update")), event));
+        assertNull(evaluator.matches(value(EventProperty.TYPE).notEq(value("updat\u00e9")), event));
+        assertNull(evaluator.matches(value(EventProperty.TYPE).eq(value("update ")), event));
+        assertNull(evaluator.matches(value(EventProperty.PAGE).startsWith(value("space.")), event));
+        assertNull(evaluator.matches(value(EventProperty.TYPE).inStrings(Arrays.asList("create", "UPDATE")), event));
+        assertNull(evaluator.matches(value(EventProperty.TYPE).greaterThan(value("Z")), event));
+        assertNull(evaluator.matches(not(value(EventProperty.TYPE).eq(value("Update"))), event));
+
+        // But not always
+        assertTrue(evaluator.matches(value(EventProperty.TYPE).notEq(value("Create")), event));
+        assertFalse(evaluator.matches(value(EventProperty.TYPE).eq(value("Update"))
+                .and(value(EventProperty.TYPE).eq(value("create"))), event));
+        assertTrue(evaluator.matches(value(EventProperty.TYPE).eq(value("Update"))
+                .or(value(EventProperty.TYPE).eq(value("update"))), event));
+    }
+
+    @Test
+    public void canEvaluate()
+    {
+        assertTrue(evaluator.canEvaluate(not(value(EventProperty.USER).eq(value("xwiki:XWiki.UserA")))));
+        assertTrue(evaluator.canEvaluate(value(EventProperty.WIKI).eq(new EntityReferenceNode(wiki))
+                .and(value(EventProperty.SPACE).startsWith(new StringValueNode("Space")))));
+
+        // The events do not expose these properties
+        assertFalse(evaluator.canEvaluate(value(EventProperty.HIDDEN).notEq(new BooleanValueNode(true))));
+        assertFalse(evaluator.canEvaluate(value(EventProperty.TYPE).eq(value("update"))
+                .and(value(EventProperty.IMPORTANCE).in(Arrays.<AbstractValueNode>asList(value("10"))))));
+
+        // Nodes with no in memory equivalent
+        assertFalse(evaluator.canEvaluate(not(new InListOfReadEventsNode(user))));
+    }
+}
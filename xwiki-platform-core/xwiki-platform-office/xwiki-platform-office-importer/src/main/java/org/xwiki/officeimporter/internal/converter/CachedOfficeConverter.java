@@ -0,0 +1,392 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.officeimporter.internal.converter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.artofsolving.jodconverter.document.DocumentFormatRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.officeimporter.converter.OfficeConverter;
+import org.xwiki.officeimporter.converter.OfficeConverterException;
+
+/**
+ * {@link OfficeConverter} that keeps the result of the conversions on the disk so that the same office file is not sent
+ * to the office server again, even after a restart. The conversions are identified by a digest of the input files and
+ * of the input and output file names, computed while the input files are copied on the disk. The least recently used
+ * conversions are removed when the cache exceeds its maximum size or when they have not been used for longer than
+ * the maximum age. Concurrent conversions of the same input are performed only once.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class CachedOfficeConverter implements OfficeConverter
+{
+    /**
+     * The logger to log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachedOfficeConverter.class);
+
+    /**
+     * The extension of the files holding the result of the conversions.
+     */
+    private static final String EXTENSION = ".zip";
+
+    /**
+     * The extension of the input files and of the files in which the result of the conversions is written before being
+     * moved in the cache.
+     */
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    /**
+     * The converter used when the result of a conversion is not cached.
+     */
+    private final OfficeConverter converter;
+
+    /**
+     * The directory where the result of the conversions is stored.
+     */
+    private final File cacheDir;
+
+    /**
+     * The maximum size (in bytes) of the stored conversions.
+     */
+    private final long maxSize;
+
+    /**
+     * The time (in milliseconds) after which a stored conversion which has not been used is removed.
+     */
+    private final long maxAge;
+
+    /**
+     * The stored conversions, indexed by their key, from the least recently used to the most recently used.
+     */
+    private final LinkedHashMap<String, CachedConversion> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The size (in bytes) of the stored conversions.
+     */
+    private long size;
+
+    /**
+     * The conversions in progress, used to perform only once the same conversion requested concurrently.
+     */
+    private final Map<String, FutureTask<Map<String, byte[]>>> converting = new ConcurrentHashMap<>();
+
+    /**
+     * A conversion stored on the disk.
+     */
+    private static final class CachedConversion
+    {
+        /**
+         * The size (in bytes) of the file holding the conversion.
+         */
+        private final long size;
+
+        /**
+         * The last time the conversion was used.
+         */
+        private long lastUsed;
+
+        CachedConversion(long size, long lastUsed)
+        {
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    /**
+     * Creates a new {@link CachedOfficeConverter} instance.
+     *
+     * @param converter the converter to use when the result of a conversion is not cached
+     * @param cacheDir the directory where to store the result of the conversions
+     * @param maxSize the maximum size (in bytes) of the stored conversions
+     * @param maxAge the time (in milliseconds) after which a stored conversion which has not been used is removed
+     */
+    public CachedOfficeConverter(OfficeConverter converter, File cacheDir, long maxSize, long maxAge)
+    {
+        this.converter = converter;
+        this.cacheDir = cacheDir;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+
+        load();
+    }
+
+    private void load()
+    {
+        this.cacheDir.mkdirs();
+
+        // Remove the files that were being written when the server stopped.
+        File[] temporaryFiles = this.cacheDir.listFiles((dir, name) -> name.endsWith(TEMPORARY_EXTENSION));
+        if (temporaryFiles != null) {
+            for (File temporaryFile : temporaryFiles) {
+                temporaryFile.delete();
+            }
+        }
+
+        File[] files = this.cacheDir.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files != null) {
+            // Least recently used first.
+            Map<File, Long> lastUsed = new HashMap<>();
+            for (File file : files) {
+                lastUsed.put(file, file.lastModified());
+            }
+            List<File> sortedFiles = new ArrayList<>(lastUsed.keySet());
+            sortedFiles.sort(Comparator.comparing(lastUsed::get));
+
+            synchronized (this.entries) {
+                for (File file : sortedFiles) {
+                    String key = file.getName().substring(0, file.getName().length() - EXTENSION.length());
+                    this.entries.put(key, new CachedConversion(file.length(), lastUsed.get(file)));
+                    this.size += file.length();
+                }
+                evict();
+            }
+        }
+    }
+
+    @Override
+    public Map<String, byte[]> convert(Map<String, InputStream> inputStreams, String inputFileName,
+        String outputFileName) throws OfficeConverterException
+    {
+        if (null == inputStreams.get(inputFileName)) {
+            // Let the converter report the error.
+            return this.converter.convert(inputStreams, inputFileName, outputFileName);
+        }
+
+        // The input files are copied on the disk (where the office server needs them anyway) rather than loaded in
+        // memory to compute the key.
+        Map<String, File> inputs = new HashMap<>();
+        try {
+            String key = copy(inputStreams, inputFileName, outputFileName, inputs);
+
+            Map<String, byte[]> result = get(key);
+            if (result == null) {
+                result = convert(key, inputs, inputFileName, outputFileName);
+            }
+
+            // The callers are allowed to modify the returned map.
+            return new HashMap<>(result);
+        } finally {
+            for (File input : inputs.values()) {
+                input.delete();
+            }
+        }
+    }
+
+    private Map<String, byte[]> convert(String key, Map<String, File> inputs, String inputFileName,
+        String outputFileName) throws OfficeConverterException
+    {
+        FutureTask<Map<String, byte[]>> task = new FutureTask<>(() -> {
+            Map<String, InputStream> inputStreams = new HashMap<>();
+            try {
+                for (Map.Entry<String, File> input : inputs.entrySet()) {
+                    inputStreams.put(input.getKey(), new FileInputStream(input.getValue()));
+                }
+                Map<String, byte[]> output = this.converter.convert(inputStreams, inputFileName, outputFileName);
+                put(key, output);
+                return output;
+            } finally {
+                inputStreams.values().forEach(IOUtils::closeQuietly);
+            }
+        });
+
+        FutureTask<Map<String, byte[]>> currentTask = this.converting.putIfAbsent(key, task);
+        if (currentTask == null) {
+            currentTask = task;
+            try {
+                task.run();
+            } finally {
+                this.converting.remove(key, task);
+            }
+        }
+
+        try {
+            return currentTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OfficeConverterException("Interrupted while waiting for the conversion.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OfficeConverterException) {
+                throw (OfficeConverterException) e.getCause();
+            }
+            throw new OfficeConverterException("Error while performing conversion.", e.getCause());
+        }
+    }
+
+    /**
+     * Copies the input files in the cache directory and computes the key of the conversion at the same time.
+     *
+     * @return the key of the conversion
+     */
+    private String copy(Map<String, InputStream> inputStreams, String inputFileName, String outputFileName,
+        Map<String, File> inputs) throws OfficeConverterException
+    {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // The file names are separated by a character that can't be part of a file name.
+            digest.update((inputFileName + '\0' + outputFileName + '\0').getBytes(StandardCharsets.UTF_8));
+            // Use the same order whatever the order of the given map.
+            for (Map.Entry<String, InputStream> entry : new TreeMap<>(inputStreams).entrySet()) {
+                digest.update((entry.getKey() + '\0').getBytes(StandardCharsets.UTF_8));
+
+                File input = File.createTempFile("input", TEMPORARY_EXTENSION, this.cacheDir);
+                inputs.put(entry.getKey(), input);
+                long length;
+                try (OutputStream output = new FileOutputStream(input)) {
+                    length = IOUtils.copyLarge(new DigestInputStream(entry.getValue(), digest), output);
+                }
+
+                digest.update(("\0" + length + '\0').getBytes(StandardCharsets.UTF_8));
+            }
+
+            return Hex.encodeHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new OfficeConverterException("Failed to compute the conversion key.", e);
+        } catch (IOException e) {
+            throw new OfficeConverterException("Failed to read the input files.", e);
+        }
+    }
+
+    private Map<String, byte[]> get(String key)
+    {
+        File file = getFile(key);
+
+        synchronized (this.entries) {
+            // Don't use the expired conversions.
+            evict();
+
+            // Mark the conversion as recently used.
+            CachedConversion conversion = this.entries.get(key);
+            if (conversion == null) {
+                return null;
+            }
+            conversion.lastUsed = System.currentTimeMillis();
+            file.setLastModified(conversion.lastUsed);
+        }
+
+        Map<String, byte[]> result = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new FileInputStream(file))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                result.put(entry.getName(), IOUtils.toByteArray(zip));
+            }
+        } catch (IOException e) {
+            // The file has probably been removed in the mean time. Convert again.
+            LOGGER.debug("Failed to read the cached conversion [{}].", file, e);
+
+            return null;
+        }
+
+        return result;
+    }
+
+    private void put(String key, Map<String, byte[]> output)
+    {
+        File file = getFile(key);
+
+        try {
+            // Write in a separate file first so that a partially written conversion is never read.
+            File tmpFile = File.createTempFile(key, TEMPORARY_EXTENSION, this.cacheDir);
+            try {
+                try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(tmpFile))) {
+                    for (Map.Entry<String, byte[]> artifact : output.entrySet()) {
+                        zip.putNextEntry(new ZipEntry(artifact.getKey()));
+                        zip.write(artifact.getValue());
+                        zip.closeEntry();
+                    }
+                }
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmpFile.toPath());
+            }
+        } catch (IOException e) {
+            // Not critical, the conversion will just be performed again next time.
+            LOGGER.warn("Failed to cache the conversion result in [{}]. Root cause: [{}]", file, e.getMessage());
+
+            return;
+        }
+
+        synchronized (this.entries) {
+            CachedConversion previous =
+                this.entries.put(key, new CachedConversion(file.length(), System.currentTimeMillis()));
+            this.size += file.length() - (previous != null ? previous.size : 0);
+            evict();
+        }
+    }
+
+    private void evict()
+    {
+        long expirationTime = System.currentTimeMillis() - this.maxAge;
+        Iterator<Map.Entry<String, CachedConversion>> iterator = this.entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, CachedConversion> entry = iterator.next();
+            // The entries are ordered from the least recently used so the following ones are not expired either.
+            if (this.size <= this.maxSize && entry.getValue().lastUsed >= expirationTime) {
+                break;
+            }
+
+            File file = getFile(entry.getKey());
+            if (!file.delete() && file.exists()) {
+                LOGGER.debug("Failed to delete the cached conversion [{}].", file);
+            }
+            this.size -= entry.getValue().size;
+            iterator.remove();
+        }
+    }
+
+    private File getFile(String key)
+    {
+        return new File(this.cacheDir, key + EXTENSION);
+    }
+
+    @Override
+    public DocumentFormatRegistry getFormatRegistry()
+    {
+        return this.converter.getFormatRegistry();
+    }
+}
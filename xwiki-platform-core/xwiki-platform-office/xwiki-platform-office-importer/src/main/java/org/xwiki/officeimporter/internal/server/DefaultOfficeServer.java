@@ -21,6 +21,7 @@
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -32,8 +33,11 @@
 import org.artofsolving.jodconverter.office.OfficeManager;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
 import org.xwiki.environment.Environment;
 import org.xwiki.officeimporter.converter.OfficeConverter;
+import org.xwiki.officeimporter.internal.converter.CachedOfficeConverter;
 import org.xwiki.officeimporter.internal.converter.DefaultOfficeConverter;
 import org.xwiki.officeimporter.server.OfficeServer;
 import org.xwiki.officeimporter.server.OfficeServerConfiguration;
@@ -54,6 +58,21 @@ public class DefaultOfficeServer implements OfficeServer
      */
     private static final String DOCUMENT_FORMATS_PATH = "/document-formats.js";
 
+    /**
+     * The path, relative to the permanent directory, where the result of the conversions is cached.
+     */
+    private static final String CACHE_PATH = "cache/officeconverter";
+
+    /**
+     * The maximum size (in bytes) of the cached conversions.
+     */
+    private static final long CACHE_MAX_SIZE = 500L * 1024 * 1024;
+
+    /**
+     * The time (in milliseconds) after which a cached conversion which has not been used is removed.
+     */
+    private static final long CACHE_MAX_AGE = TimeUnit.DAYS.toMillis(30);
+
     /**
      * The office server configuration.
      */
@@ -72,6 +91,12 @@ public class DefaultOfficeServer implements OfficeServer
     @Inject
     private Logger logger;
 
+    /**
+     * Used to know if the result of the conversions should be cached.
+     */
+    @Inject
+    private Execution execution;
+
     /**
      * Internal {@link OfficeManager} used to control / connect the office server.
      */
@@ -92,6 +117,11 @@ public class DefaultOfficeServer implements OfficeServer
      */
     private OfficeConverter converter;
 
+    /**
+     * Used for carrying out the document conversion tasks whose result should be kept on the disk.
+     */
+    private OfficeConverter cachedConverter;
+
     /**
      * Default constructor.
      */
@@ -163,6 +193,10 @@ public void initialize() throws OfficeServerException
 
         File workDir = this.environment.getTemporaryDirectory();
         this.converter = new DefaultOfficeConverter(this.jodConverter, workDir);
+        // Sending an office file to the office server is costly: keep the result of the conversions on the disk for
+        // the office files that are displayed again and again.
+        this.cachedConverter = new CachedOfficeConverter(this.converter,
+            new File(this.environment.getPermanentDirectory(), CACHE_PATH), CACHE_MAX_SIZE, CACHE_MAX_AGE);
     }
 
     @Override
@@ -209,6 +243,12 @@ public void stop() throws OfficeServerException
     @Override
     public OfficeConverter getConverter()
     {
+        ExecutionContext context = this.execution.getContext();
+        if (this.cachedConverter != null && context != null
+            && Boolean.TRUE.equals(context.getProperty(CACHED_CONVERSIONS_PROPERTY))) {
+            return this.cachedConverter;
+        }
+
         return this.converter;
     }
 
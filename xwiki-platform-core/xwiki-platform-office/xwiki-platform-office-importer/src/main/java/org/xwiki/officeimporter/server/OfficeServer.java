@@ -21,6 +21,7 @@
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.officeimporter.converter.OfficeConverter;
+import org.xwiki.stability.Unstable;
 
 /**
  * Component interface for managing the office server connection / process.
@@ -31,6 +32,16 @@
 @Role
 public interface OfficeServer
 {
+    /**
+     * The name of the execution context property which, when set to {@code true}, makes {@link #getConverter()} return
+     * a converter that keeps the result of the conversions on the disk. This is meant for the conversions of office
+     * files that are displayed again and again (e.g. by the office viewer) rather than imported once.
+     *
+     * @since 9.11RC1
+     */
+    @Unstable
+    String CACHED_CONVERSIONS_PROPERTY = "officeimporter.cachedConversions";
+
     /**
      * Enumeration used to represent the office server state.
      */
@@ -0,0 +1,186 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.officeimporter.internal.converter;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.officeimporter.converter.OfficeConverter;
+import org.xwiki.officeimporter.converter.OfficeConverterException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link CachedOfficeConverter}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class CachedOfficeConverterTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final long MAX_AGE = 60000;
+
+    private OfficeConverter converter = mock(OfficeConverter.class);
+
+    private File cacheDir;
+
+    @Before
+    public void configure() throws Exception
+    {
+        this.cacheDir = this.temporaryFolder.newFolder("cache");
+
+        // Stub converter that "converts" the input file by prefixing its content.
+        when(this.converter.convert(any(), anyString(), anyString())).then(invocation -> {
+            Map<String, InputStream> inputStreams = invocation.getArgument(0);
+            String inputFileName = invocation.getArgument(1);
+            String outputFileName = invocation.getArgument(2);
+            Map<String, byte[]> output = new HashMap<>();
+            output.put(outputFileName,
+                ("converted " + IOUtils.toString(inputStreams.get(inputFileName), "UTF-8")).getBytes("UTF-8"));
+            output.put("image.png", new byte[] {1, 2, 3});
+            return output;
+        });
+    }
+
+    private CachedOfficeConverter createCachedConverter(long maxSize)
+    {
+        return new CachedOfficeConverter(this.converter, this.cacheDir, maxSize, MAX_AGE);
+    }
+
+    private Map<String, byte[]> convert(OfficeConverter cachedConverter, String content)
+        throws OfficeConverterException
+    {
+        Map<String, InputStream> inputStreams =
+            Collections.singletonMap("test.doc", new ByteArrayInputStream(content.getBytes()));
+        return cachedConverter.convert(inputStreams, "test.doc", "test.html");
+    }
+
+    @Test
+    public void convertOnlyOnce() throws Exception
+    {
+        CachedOfficeConverter cachedConverter = createCachedConverter(1024);
+
+        Map<String, byte[]> output = convert(cachedConverter, "content");
+        assertArrayEquals("converted content".getBytes(), output.get("test.html"));
+
+        // Callers are allowed to modify the result.
+        output.remove("test.html");
+
+        output = convert(cachedConverter, "content");
+        assertEquals(2, output.size());
+        assertArrayEquals("converted content".getBytes(), output.get("test.html"));
+        assertArrayEquals(new byte[] {1, 2, 3}, output.get("image.png"));
+
+        // A different content means a different conversion.
+        assertArrayEquals("converted other".getBytes(), convert(cachedConverter, "other").get("test.html"));
+
+        verify(this.converter, times(2)).convert(any(), anyString(), anyString());
+    }
+
+    @Test
+    public void convertAfterRestart() throws Exception
+    {
+        convert(createCachedConverter(1024), "content");
+
+        Map<String, byte[]> output = convert(createCachedConverter(1024), "content");
+        assertArrayEquals("converted content".getBytes(), output.get("test.html"));
+
+        verify(this.converter, times(1)).convert(any(), anyString(), anyString());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception
+    {
+        CachedOfficeConverter cachedConverter = createCachedConverter(1024);
+        convert(cachedConverter, "first");
+        long entrySize = this.cacheDir.listFiles()[0].length();
+
+        // Keep room for two conversions only.
+        cachedConverter = createCachedConverter(entrySize * 2 + entrySize / 2);
+        convert(cachedConverter, "second");
+        // Use the first conversion so that the second one becomes the least recently used.
+        convert(cachedConverter, "first");
+        convert(cachedConverter, "third");
+
+        assertEquals(2, this.cacheDir.listFiles().length);
+        verify(this.converter, times(3)).convert(any(), anyString(), anyString());
+
+        convert(cachedConverter, "first");
+        verify(this.converter, times(3)).convert(any(), anyString(), anyString());
+        convert(cachedConverter, "second");
+        verify(this.converter, times(4)).convert(any(), anyString(), anyString());
+    }
+
+    @Test
+    public void evictExpired() throws Exception
+    {
+        convert(createCachedConverter(1024), "first");
+        convert(createCachedConverter(1024), "second");
+        assertEquals(2, this.cacheDir.listFiles().length);
+
+        // The conversions that have not been used for a while are removed.
+        for (File file : this.cacheDir.listFiles()) {
+            file.setLastModified(System.currentTimeMillis() - MAX_AGE * 2);
+        }
+        CachedOfficeConverter cachedConverter = createCachedConverter(1024);
+        assertEquals(0, this.cacheDir.listFiles().length);
+
+        convert(cachedConverter, "first");
+        verify(this.converter, times(3)).convert(any(), anyString(), anyString());
+    }
+
+    @Test
+    public void convertFailure() throws Exception
+    {
+        doThrow(new OfficeConverterException("failure")).when(this.converter).convert(any(), anyString(),
+            anyString());
+
+        CachedOfficeConverter cachedConverter = createCachedConverter(1024);
+        try {
+            convert(cachedConverter, "content");
+            fail();
+        } catch (OfficeConverterException expected) {
+            assertEquals("failure", expected.getMessage());
+        }
+
+        assertEquals(0, this.cacheDir.listFiles().length);
+    }
+}
@@ -47,6 +47,8 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
 import org.xwiki.model.reference.AttachmentReference;
 import org.xwiki.model.reference.AttachmentReferenceResolver;
 import org.xwiki.model.reference.DocumentReference;
@@ -154,6 +156,12 @@ public class DefaultOfficeResourceViewer implements OfficeResourceViewer, Initia
     @Inject
     private ConverterManager converter;
 
+    /**
+     * Used to ask for the conversions to be kept on the disk.
+     */
+    @Inject
+    private Execution execution;
+
     /**
      * The logger to log.
      */
@@ -278,6 +286,15 @@ private XDOMOfficeDocument createXDOM(DocumentReference ownerDocument, ResourceR
     private XDOMOfficeDocument createXDOM(DocumentReference ownerDocument, InputStream officeFileStream,
         String officeFileName, Map<String, ?> parameters) throws Exception
     {
+        // The viewed office files are displayed again and again so keep the result of their conversion on the disk,
+        // where it survives the eviction of the views from the cache and the restarts.
+        ExecutionContext context = this.execution.getContext();
+        Object cachedConversions = null;
+        if (context != null) {
+            cachedConversions = context.getProperty(OfficeServer.CACHED_CONVERSIONS_PROPERTY);
+            context.setProperty(OfficeServer.CACHED_CONVERSIONS_PROPERTY, true);
+        }
+
         try {
             if (isPresentation(officeFileName)) {
                 return this.presentationBuilder.build(officeFileStream, officeFileName, ownerDocument);
@@ -287,6 +304,14 @@ private XDOMOfficeDocument createXDOM(DocumentReference ownerDocument, InputStre
             }
         } finally {
             IOUtils.closeQuietly(officeFileStream);
+
+            if (context != null) {
+                if (cachedConversions != null) {
+                    context.setProperty(OfficeServer.CACHED_CONVERSIONS_PROPERTY, cachedConversions);
+                } else {
+                    context.removeProperty(OfficeServer.CACHED_CONVERSIONS_PROPERTY);
+                }
+            }
         }
     }
 
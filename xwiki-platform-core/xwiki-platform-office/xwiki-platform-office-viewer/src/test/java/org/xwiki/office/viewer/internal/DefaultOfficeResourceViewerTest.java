@@ -40,6 +40,8 @@
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
 import org.xwiki.model.reference.AttachmentReference;
 import org.xwiki.model.reference.AttachmentReferenceResolver;
 import org.xwiki.model.reference.DocumentReference;
@@ -241,6 +243,40 @@ public void testViewExistingOfficeAttachmentWithCacheMiss() throws Exception
         verify(attachmentCache).set(eq(CACHE_KEY), notNull(AttachmentOfficeDocumentView.class));
     }
 
+    /**
+     * Tests that the conversions performed to create a view are kept on the disk.
+     * 
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testViewWithCachedConversions() throws Exception
+    {
+        ExecutionContext context = new ExecutionContext();
+        Execution execution = mocker.getInstance(Execution.class);
+        when(execution.getContext()).thenReturn(context);
+
+        when(documentAccessBridge.getAttachmentReferences(ATTACHMENT_REFERENCE.getDocumentReference())).thenReturn(
+            Arrays.asList(ATTACHMENT_REFERENCE));
+        when(documentAccessBridge.getAttachmentVersion(ATTACHMENT_REFERENCE)).thenReturn(ATTACHMENT_VERSION);
+
+        ByteArrayInputStream attachmentContent = new ByteArrayInputStream(new byte[256]);
+        when(documentAccessBridge.getAttachmentContent(ATTACHMENT_REFERENCE)).thenReturn(attachmentContent);
+
+        XDOMOfficeDocument xdomOfficeDocument =
+            new XDOMOfficeDocument(new XDOM(new ArrayList<Block>()), new HashMap<String, byte[]>(), mocker);
+        when(officeDocumentBuilder.build(attachmentContent, ATTACHMENT_REFERENCE.getName(),
+            ATTACHMENT_REFERENCE.getDocumentReference(), false)).then(invocation -> {
+                assertEquals(true, context.getProperty(OfficeServer.CACHED_CONVERSIONS_PROPERTY));
+                return xdomOfficeDocument;
+            });
+
+        mocker.getComponentUnderTest().createView(ATTACHMENT_RESOURCE_REFERENCE, DEFAULT_VIEW_PARAMETERS);
+
+        verify(attachmentCache).set(eq(CACHE_KEY), notNull(AttachmentOfficeDocumentView.class));
+        // The other conversions (e.g. imports) are not cached.
+        assertNull(context.getProperty(OfficeServer.CACHED_CONVERSIONS_PROPERTY));
+    }
+
     /**
      * Tests creating a view for an office attachment which has already been viewed and cached.
      * 
@@ -182,6 +182,7 @@
 import com.xpn.xwiki.internal.XWikiCfgConfigurationSource;
 import com.xpn.xwiki.internal.XWikiConfigDelegate;
 import com.xpn.xwiki.internal.XWikiInitializerJob;
+import com.xpn.xwiki.internal.cache.rendering.RenderingDependencyRecorder;
 import com.xpn.xwiki.internal.event.XObjectPropertyAddedEvent;
 import com.xpn.xwiki.internal.event.XObjectPropertyDeletedEvent;
 import com.xpn.xwiki.internal.event.XObjectPropertyEvent;
@@ -401,6 +402,8 @@ public class XWiki implements EventListener
 
     private EditConfiguration editConfiguration;
 
+    private RenderingDependencyRecorder renderingDependencyRecorder;
+
     private ObservationManager observationManager;
 
     private Provider<XWikiContext> xcontextProvider;
@@ -438,6 +441,23 @@ private ConfigurationSource getConfiguration()
         return this.xwikicfg;
     }
 
+    private RenderingDependencyRecorder getRenderingDependencyRecorder()
+    {
+        if (this.renderingDependencyRecorder == null) {
+            this.renderingDependencyRecorder = Utils.getComponent(RenderingDependencyRecorder.class);
+        }
+
+        return this.renderingDependencyRecorder;
+    }
+
+    private void recordRenderingDependency(DocumentReference documentReference, XWikiContext context)
+    {
+        // Avoid looking up the component when nothing is being recorded
+        if (RenderingDependencyRecorder.isRecording(context)) {
+            getRenderingDependencyRecorder().record(documentReference, context);
+        }
+    }
+
     private ConfigurationSource getWikiConfiguration()
     {
         if (this.wikiConfiguration == null) {
@@ -1847,6 +1867,9 @@ public XWikiDocument getDocument(EntityReference reference, XWikiContext context
      */
     public XWikiDocument getDocument(XWikiDocument doc, XWikiContext context) throws XWikiException
     {
+        // Make sure the cached rendering results are invalidated when the document is modified
+        recordRenderingDependency(doc.getDocumentReference(), context);
+
         String currentWiki = context.getWikiId();
         try {
             context.setWikiId(doc.getDocumentReference().getWikiReference().getName());
@@ -5653,6 +5676,9 @@ public boolean exists(DocumentReference documentReference, XWikiContext context)
     {
         String currentWiki = context.getWikiId();
 
+        // The cached rendering results are invalidated when the document is created or deleted
+        recordRenderingDependency(documentReference, context);
+
         try {
             XWikiDocument doc = new XWikiDocument(documentReference, documentReference.getLocale());
 
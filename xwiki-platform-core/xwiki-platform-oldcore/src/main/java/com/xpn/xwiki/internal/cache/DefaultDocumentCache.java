@@ -21,8 +21,12 @@
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
@@ -33,6 +37,9 @@
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
@@ -45,9 +52,8 @@
 import com.xpn.xwiki.doc.XWikiDocument;
 
 /**
- * Specialized cache component related to documents. It automatically clean the cache when the document is related.
- * <p>
- * TODO: add support for dependencies
+ * Specialized cache component related to documents. It automatically clean the cache when the document is related or
+ * when one of the documents the cached data depends on is modified.
  *
  * @param <C> the type of the data stored in the cache
  * @version $Id$
@@ -63,6 +69,11 @@
     private static final List<Event> EVENTS = Arrays.<Event>asList(new DocumentCreatedEvent(),
         new DocumentUpdatedEvent(), new DocumentDeletedEvent());
 
+    /**
+     * The maximum number of mapped cache entries when the cache is not limited in size.
+     */
+    private static final int DEFAULT_MAX_MAPPED_ENTRIES = 10000;
+
     /**
      * Used to listen to document modification events.
      *
@@ -90,6 +101,32 @@ public void onEvent(Event event, Object source, Object data)
         }
     }
 
+    /**
+     * Used to forget the documents related to the entries removed from the cache (e.g. evicted or expired).
+     *
+     * @version $Id$
+     */
+    private class EntryListener implements CacheEntryListener<C>
+    {
+        @Override
+        public void cacheEntryAdded(CacheEntryEvent<C> event)
+        {
+            // Mapping is done when setting the entry.
+        }
+
+        @Override
+        public void cacheEntryRemoved(CacheEntryEvent<C> event)
+        {
+            unmap(event.getEntry().getKey());
+        }
+
+        @Override
+        public void cacheEntryModified(CacheEntryEvent<C> event)
+        {
+            // Mapping is done when setting the entry.
+        }
+    }
+
     /**
      * The listener used to listen to document modification events.
      */
@@ -119,9 +156,22 @@ public void onEvent(Event event, Object source, Object data)
     private Cache<C> cache;
 
     /**
-     * The cache used to follow multiple cache entries related to the same document.
+     * The keys of the cache entries related to each document. The sets are only modified while being mapped so that
+     * they can safely be used once removed from the map.
+     */
+    private final Map<String, Set<String>> mapping = new ConcurrentHashMap<>();
+
+    /**
+     * The documents related to each cache entry, used to clean {@link #mapping} when an entry is removed.
      */
-    private Cache<Collection<String>> mappingCache;
+    private final Map<String, Set<String>> reverseMapping = new ConcurrentHashMap<>();
+
+    /**
+     * The number of mapped cache entries above which the entries which are not in the cache anymore are forgotten.
+     * The cache is not required to notify the removal of the entries (e.g. expired ones) so the mapping could grow
+     * forever otherwise.
+     */
+    private volatile int maxMappedEntries = DEFAULT_MAX_MAPPED_ENTRIES;
 
     /**
      * The identifier of the cache and event listener.
@@ -134,11 +184,12 @@ public void create(CacheConfiguration cacheConfiguration) throws CacheException
         this.name = cacheConfiguration.getConfigurationId();
 
         this.cache = this.cacheManager.createNewCache(cacheConfiguration);
+        this.cache.addCacheEntryListener(new EntryListener());
 
-        CacheConfiguration mappingCacheConfiguration = (CacheConfiguration) cacheConfiguration.clone();
-        mappingCacheConfiguration.setConfigurationId(cacheConfiguration.getConfigurationId() + ".mapping");
-
-        this.mappingCache = this.cacheManager.createNewCache(mappingCacheConfiguration);
+        Object eviction = cacheConfiguration.get(LRUEvictionConfiguration.CONFIGURATIONID);
+        if (eviction instanceof LRUEvictionConfiguration && ((LRUEvictionConfiguration) eviction).getMaxEntries() > 0) {
+            this.maxMappedEntries = 2 * ((LRUEvictionConfiguration) eviction).getMaxEntries();
+        }
 
         this.observationManager.addListener(this.listener);
     }
@@ -153,20 +204,76 @@ public C get(DocumentReference documentReference, Object... extensions)
 
     @Override
     public void set(C data, DocumentReference documentReference, Object... extensions)
+    {
+        set(data, Collections.<DocumentReference>emptySet(), documentReference, extensions);
+    }
+
+    @Override
+    public void set(C data, Collection<DocumentReference> dependencies, DocumentReference documentReference,
+        Object... extensions)
     {
         String key = getKey(documentReference, extensions);
-        this.cache.set(key, data);
 
-        String documentReferenceString = this.serializer.serialize(documentReference);
+        Set<String> documents = new HashSet<>();
+        documents.add(this.serializer.serialize(documentReference));
+        for (DocumentReference dependency : dependencies) {
+            documents.add(this.serializer.serialize(dependency));
+        }
 
-        Collection<String> keys = this.mappingCache.get(documentReferenceString);
+        // Forget the documents of the entry we replace.
+        unmap(key);
 
-        if (keys == null) {
-            keys = new HashSet<String>();
-            this.mappingCache.set(documentReferenceString, keys);
+        if (this.reverseMapping.size() >= this.maxMappedEntries) {
+            unmapRemovedEntries();
         }
 
-        keys.add(key);
+        this.reverseMapping.put(key, documents);
+        for (String document : documents) {
+            this.mapping.compute(document, (k, keys) -> {
+                Set<String> newKeys = keys != null ? keys : new HashSet<>();
+                newKeys.add(key);
+                return newKeys;
+            });
+        }
+
+        this.cache.set(key, data);
+    }
+
+    /**
+     * Forget the documents related to the passed cache entry.
+     *
+     * @param key the key of the cache entry
+     */
+    private void unmap(String key)
+    {
+        Set<String> documents = this.reverseMapping.remove(key);
+
+        if (documents != null) {
+            for (String document : documents) {
+                this.mapping.computeIfPresent(document, (k, keys) -> {
+                    keys.remove(key);
+                    return keys.isEmpty() ? null : keys;
+                });
+            }
+        }
+    }
+
+    /**
+     * Forget the documents related to the entries which have been removed from the cache without notification.
+     */
+    private synchronized void unmapRemovedEntries()
+    {
+        // Another thread might just have done it.
+        if (this.reverseMapping.size() >= this.maxMappedEntries) {
+            for (String key : this.reverseMapping.keySet()) {
+                if (this.cache.get(key) == null) {
+                    unmap(key);
+                }
+            }
+
+            // Don't check the entries again at each new entry if they are all still in the cache.
+            this.maxMappedEntries = Math.max(this.maxMappedEntries, 2 * this.reverseMapping.size());
+        }
     }
 
     /**
@@ -210,13 +317,7 @@ public void remove(C data, DocumentReference documentReference, Object... extens
         String key = getKey(documentReference, extensions);
         this.cache.remove(key);
 
-        String documentReferenceString = this.serializer.serialize(documentReference);
-
-        Collection<String> keys = this.mappingCache.get(documentReferenceString);
-
-        if (keys != null) {
-            keys.remove(key);
-        }
+        unmap(key);
     }
 
     @Override
@@ -225,9 +326,8 @@ public void removeAll()
         if (this.cache != null) {
             this.cache.removeAll();
         }
-        if (this.mappingCache != null) {
-            this.mappingCache.removeAll();
-        }
+        this.mapping.clear();
+        this.reverseMapping.clear();
     }
 
     @Override
@@ -235,14 +335,14 @@ public void removeAll(DocumentReference documentReference)
     {
         String documentReferenceString = this.serializer.serialize(documentReference);
 
-        Collection<String> keys = this.mappingCache.get(documentReferenceString);
+        Set<String> keys = this.mapping.remove(documentReferenceString);
 
         if (keys != null) {
             for (String key : keys) {
                 this.cache.remove(key);
-            }
 
-            this.mappingCache.remove(documentReferenceString);
+                unmap(key);
+            }
         }
     }
 
@@ -250,6 +350,7 @@ public void removeAll(DocumentReference documentReference)
     public void dispose()
     {
         this.cache.dispose();
-        this.mappingCache.dispose();
+        this.mapping.clear();
+        this.reverseMapping.clear();
     }
 }
@@ -19,10 +19,13 @@
  */
 package com.xpn.xwiki.internal.cache.rendering;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.xwiki.model.reference.DocumentReference;
+
 /**
  * Cached item including any extensions.
  *
@@ -42,6 +45,20 @@
     public Map<RenderingCacheAware, UsedExtension> extensions = new HashMap<RenderingCacheAware,
         CachedItem.UsedExtension>();
 
+    /**
+     * The documents read while rendering the content.
+     *
+     * @since 9.11RC1
+     */
+    public Set<DocumentReference> dependencies = Collections.emptySet();
+
+    /**
+     * The time (in milliseconds) it took to render the content.
+     *
+     * @since 9.11RC1
+     */
+    public long renderingTime;
+
     /**
      * Extension used in cached item.
      *
@@ -23,6 +23,7 @@
 import java.net.URLEncoder;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -31,6 +32,7 @@
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
@@ -42,6 +44,7 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.internal.cache.DocumentCache;
 import com.xpn.xwiki.internal.cache.rendering.CachedItem.UsedExtension;
+import com.xpn.xwiki.internal.cache.rendering.RenderingDependencyRecorder.Recording;
 import com.xpn.xwiki.plugin.XWikiPluginInterface;
 import com.xpn.xwiki.plugin.XWikiPluginManager;
 
@@ -93,6 +96,14 @@ public class DefaultRenderingCache implements RenderingCache, Initializable
     @Inject
     private DocumentCache<CachedItem> cache;
 
+    /**
+     * Used to find the documents read while rendering a document.
+     */
+    @Inject
+    private RenderingDependencyRecorder recorder;
+
+    private final RenderingCacheStatistics statistics = new RenderingCacheStatistics();
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -128,8 +139,20 @@ public String getRenderedContent(DocumentReference documentReference, String sou
                         getRequestParameters(context));
                 if (cachedItem != null) {
                     renderedContent = restoreCachedItem(context, cachedItem);
+
+                    this.statistics.hit(cachedItem.renderingTime);
+
+                    // A document including this document depends on the same documents.
+                    this.recorder.record(documentReference, context);
+                    this.recorder.record(cachedItem.dependencies, context);
                 }
             }
+
+            if (renderedContent == null) {
+                this.statistics.miss();
+
+                this.recorder.startRecording(getRecordingKey(documentReference, source), context);
+            }
         }
 
         return renderedContent;
@@ -140,11 +163,36 @@ public void setRenderedContent(DocumentReference documentReference, String sourc
         XWikiContext context)
     {
         if (this.configuration.isCached(documentReference)) {
-            this.cache.set(buildCachedItem(context, renderedContent), documentReference, source, getAction(context),
+            CachedItem cachedItem = buildCachedItem(context, renderedContent);
+
+            Recording recording = this.recorder.stopRecording(getRecordingKey(documentReference, source), context);
+            if (recording != null) {
+                cachedItem.dependencies = recording.getDependencies();
+                cachedItem.renderingTime = recording.getDuration();
+            }
+
+            this.cache.set(cachedItem, cachedItem.dependencies, documentReference, source, getAction(context),
                 context.getLanguage(), getRequestParameters(context));
         }
     }
 
+    @Override
+    public RenderingCacheStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * @param documentReference the reference of the document being rendered
+     * @param source the source to render
+     * @return the key identifying the recording of the documents read while rendering the passed source
+     */
+    private Object getRecordingKey(DocumentReference documentReference, String source)
+    {
+        // The rendering result is retrieved with the translation reference but stored with the document reference.
+        return new ImmutablePair<>(new DocumentReference(documentReference, (Locale) null), source);
+    }
+
     /**
      * Create cached item with all dependencies.
      *
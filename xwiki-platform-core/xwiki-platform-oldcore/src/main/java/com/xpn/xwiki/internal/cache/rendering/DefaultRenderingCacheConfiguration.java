@@ -64,7 +64,8 @@ public class DefaultRenderingCacheConfiguration implements RenderingCacheConfigu
     private static final String PROPNAME_DURATION = PREFIX + "duration";
 
     /**
-     * The default time to live of the elements in the cache.
+     * The default time to live of the elements in the cache. The entries are removed when the documents they were
+     * produced from are modified but not when the result of a query they display changes, so keep it short.
      */
     private static final int PROPVALUE_DURATION = 300;
 
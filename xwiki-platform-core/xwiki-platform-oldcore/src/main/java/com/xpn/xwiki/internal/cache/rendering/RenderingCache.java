@@ -65,4 +65,10 @@ void setRenderedContent(DocumentReference documentReference, String source, Stri
      * Flushes whole rendering cache.
      */
     void flushWholeCache();
+
+    /**
+     * @return the usage statistics of the cache (hit ratio, saved rendering time)
+     * @since 9.11RC1
+     */
+    RenderingCacheStatistics getStatistics();
 }
@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.rendering;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Flush the whole rendering cache when a document is modified that can affect the rendering without being read while
+ * rendering (the translation bundles and wiki macros are loaded once and then kept in memory).
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component
+@Named(RenderingCacheFlushListener.NAME)
+@Singleton
+public class RenderingCacheFlushListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "com.xpn.xwiki.internal.cache.rendering.RenderingCacheFlushListener";
+
+    /**
+     * The classes of the objects indicating that the document is used without being read while rendering.
+     */
+    private static final List<LocalDocumentReference> CLASSES = Arrays.asList(
+        new LocalDocumentReference(XWiki.SYSTEM_SPACE, "TranslationDocumentClass"),
+        new LocalDocumentReference(XWiki.SYSTEM_SPACE, "WikiMacroClass"));
+
+    /**
+     * Lazily loaded to avoid creating the cache before it's actually needed.
+     */
+    @Inject
+    private Provider<RenderingCache> cacheProvider;
+
+    /**
+     * Default constructor.
+     */
+    public RenderingCacheFlushListener()
+    {
+        super(NAME, new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        XWikiDocument document = (XWikiDocument) source;
+
+        if (isUsedWithoutBeingRead(document) || isUsedWithoutBeingRead(document.getOriginalDocument())) {
+            this.cacheProvider.get().flushWholeCache();
+        }
+    }
+
+    private boolean isUsedWithoutBeingRead(XWikiDocument document)
+    {
+        if (document != null) {
+            for (LocalDocumentReference classReference : CLASSES) {
+                if (document.getXObject(classReference) != null) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
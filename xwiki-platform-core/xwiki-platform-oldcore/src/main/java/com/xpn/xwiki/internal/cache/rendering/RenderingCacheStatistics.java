@@ -0,0 +1,98 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.rendering;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Usage statistics of the rendering cache, for the documents for which it's enabled.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class RenderingCacheStatistics
+{
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong savedTime = new AtomicLong();
+
+    /**
+     * Called when a rendering result is found in the cache.
+     *
+     * @param renderingTime the time (in milliseconds) it took to produce the cached rendering result
+     */
+    void hit(long renderingTime)
+    {
+        this.hits.incrementAndGet();
+        this.savedTime.addAndGet(renderingTime);
+    }
+
+    /**
+     * Called when a rendering result is not found in the cache.
+     */
+    void miss()
+    {
+        this.misses.incrementAndGet();
+    }
+
+    /**
+     * @return the number of rendering results found in the cache
+     */
+    public long getHits()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of rendering results not found in the cache
+     */
+    public long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the proportion (between 0 and 1) of rendering results found in the cache
+     */
+    public double getHitRatio()
+    {
+        long currentHits = getHits();
+        long total = currentHits + getMisses();
+
+        return total > 0 ? (double) currentHits / total : 0;
+    }
+
+    /**
+     * @return the time (in milliseconds) that would have been spent rendering the results found in the cache
+     */
+    public long getSavedTime()
+    {
+        return this.savedTime.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("hits: %d, misses: %d, hit ratio: %.1f%%, saved rendering time: %d ms", getHits(),
+            getMisses(), getHitRatio() * 100, getSavedTime());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.rendering;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Record the documents read while a document is being rendered so that the cached rendering result can be removed
+ * from the cache when any of them is modified. The recordings are stored in the XWiki context and can be nested (a
+ * document rendering another cached document): the documents read by a nested recording are also added to the
+ * enclosing one.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = RenderingDependencyRecorder.class)
+@Singleton
+public class RenderingDependencyRecorder
+{
+    /**
+     * The name of the XWiki context property holding the stack of current recordings.
+     */
+    private static final String CONTEXT_KEY = "renderingcache.recordings";
+
+    /**
+     * The documents read while rendering a document.
+     *
+     * @version $Id$
+     */
+    public static class Recording
+    {
+        private final Object key;
+
+        private final long start = System.nanoTime();
+
+        private final Set<DocumentReference> dependencies = new HashSet<>();
+
+        /**
+         * @param key identify the recording
+         */
+        Recording(Object key)
+        {
+            this.key = key;
+        }
+
+        /**
+         * @return the references (without locale) of the documents read during the recording
+         */
+        public Set<DocumentReference> getDependencies()
+        {
+            return this.dependencies;
+        }
+
+        /**
+         * @return the time (in milliseconds) elapsed since the beginning of the recording
+         */
+        public long getDuration()
+        {
+            return (System.nanoTime() - this.start) / 1000000;
+        }
+    }
+
+    /**
+     * Start recording the documents read in the current context.
+     *
+     * @param key identify the recording, used to stop it
+     * @param context the XWiki context
+     */
+    public void startRecording(Object key, XWikiContext context)
+    {
+        Deque<Recording> recordings = getRecordings(context);
+        if (recordings == null) {
+            recordings = new ArrayDeque<>();
+            context.put(CONTEXT_KEY, recordings);
+        }
+
+        recordings.push(new Recording(key));
+    }
+
+    /**
+     * Stop the recording identified by the passed key. The recordings started after it and not stopped (e.g. because
+     * the rendering failed) are stopped too and their documents are added to it.
+     *
+     * @param key identify the recording
+     * @param context the XWiki context
+     * @return the stopped recording or {@code null} if no recording was started with the passed key
+     */
+    public Recording stopRecording(Object key, XWikiContext context)
+    {
+        Deque<Recording> recordings = getRecordings(context);
+        if (recordings == null || !isRecording(recordings, key)) {
+            return null;
+        }
+
+        Recording recording = recordings.pop();
+        while (!recording.key.equals(key)) {
+            Set<DocumentReference> dependencies = recording.dependencies;
+            recording = recordings.pop();
+            recording.dependencies.addAll(dependencies);
+        }
+
+        if (recordings.isEmpty()) {
+            context.remove(CONTEXT_KEY);
+        } else {
+            recordings.peek().dependencies.addAll(recording.dependencies);
+        }
+
+        return recording;
+    }
+
+    /**
+     * Add a document to the current recording, if any.
+     *
+     * @param documentReference the reference of the read document
+     * @param context the XWiki context
+     */
+    public void record(DocumentReference documentReference, XWikiContext context)
+    {
+        Deque<Recording> recordings = getRecordings(context);
+        if (recordings != null && !recordings.isEmpty()) {
+            // The translations of a document are modified through the document.
+            recordings.peek().dependencies.add(documentReference.getLocale() != null
+                ? new DocumentReference(documentReference, (Locale) null) : documentReference);
+        }
+    }
+
+    /**
+     * Add several documents to the current recording, if any (e.g. the dependencies of a cached rendering result).
+     *
+     * @param documentReferences the references of the read documents
+     * @param context the XWiki context
+     */
+    public void record(Collection<DocumentReference> documentReferences, XWikiContext context)
+    {
+        Deque<Recording> recordings = getRecordings(context);
+        if (recordings != null && !recordings.isEmpty()) {
+            recordings.peek().dependencies.addAll(documentReferences);
+        }
+    }
+
+    /**
+     * @param context the XWiki context
+     * @return {@code true} if documents are being recorded in the passed context
+     */
+    public static boolean isRecording(XWikiContext context)
+    {
+        return context != null && context.get(CONTEXT_KEY) != null;
+    }
+
+    private boolean isRecording(Deque<Recording> recordings, Object key)
+    {
+        for (Recording recording : recordings) {
+            if (recording.key.equals(key)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Deque<Recording> getRecordings(XWikiContext context)
+    {
+        return context != null ? (Deque<Recording>) context.get(CONTEXT_KEY) : null;
+    }
+}
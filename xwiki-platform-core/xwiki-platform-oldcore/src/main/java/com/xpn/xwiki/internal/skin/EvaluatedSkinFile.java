@@ -0,0 +1,87 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.util.Date;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * The result of the Velocity evaluation of a skin file (CSS, JavaScript, etc.).
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class EvaluatedSkinFile
+{
+    private final byte[] content;
+
+    private final boolean dynamic;
+
+    private final String entityTag;
+
+    private final Date date;
+
+    /**
+     * @param content the evaluated content
+     * @param dynamic {@code true} if the evaluation actually modified the content (i.e. the file contains Velocity
+     *            code), {@code false} otherwise
+     */
+    public EvaluatedSkinFile(byte[] content, boolean dynamic)
+    {
+        this.content = content;
+        this.dynamic = dynamic;
+        this.entityTag = '"' + DigestUtils.md5Hex(content) + '"';
+        this.date = new Date();
+    }
+
+    /**
+     * @return the evaluated content
+     */
+    public byte[] getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * @return {@code true} if the evaluation actually modified the content (i.e. the file contains Velocity code),
+     *         {@code false} otherwise
+     */
+    public boolean isDynamic()
+    {
+        return this.dynamic;
+    }
+
+    /**
+     * @return the (quoted) entity tag computed from the evaluated content
+     */
+    public String getEntityTag()
+    {
+        return this.entityTag;
+    }
+
+    /**
+     * @return the date when the file has been evaluated
+     */
+    public Date getDate()
+    {
+        return this.date;
+    }
+}
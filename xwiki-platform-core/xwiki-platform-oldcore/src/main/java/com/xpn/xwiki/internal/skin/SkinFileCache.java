@@ -0,0 +1,315 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.script.ScriptContext;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+import org.xwiki.script.ScriptContextManager;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.web.XWikiRequest;
+
+/**
+ * Cache the result of the Velocity evaluation of the skin files served by the {@code skin} action.
+ * <p>
+ * The key of an entry is made of the skin file location and version, of the context elements a skin file generally
+ * depends on (wiki, skin, color theme, locale and user) and of the values of the request parameters and headers
+ * actually read by the skin file during its evaluation (e.g. the {@code User-Agent} header). Entries are removed when a document holding a skin, a color theme or the wiki
+ * preferences is modified.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = SkinFileCache.class)
+@Singleton
+public class SkinFileCache implements Initializable
+{
+    private static final String COLOR_THEME = "colorTheme";
+
+    private static final String REQUEST = "request";
+
+    private static final List<LocalDocumentReference> INVALIDATING_CLASSES = Arrays.asList(
+        WikiSkinUtils.SKINCLASS_REFERENCE, new LocalDocumentReference("ColorThemes", "ColorThemeClass"),
+        new LocalDocumentReference("FlamingoThemesCode", "ThemeClass"),
+        new LocalDocumentReference("XWiki", "XWikiPreferences"));
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    @Named("all")
+    private ConfigurationSource allConfiguration;
+
+    @Inject
+    private ObservationManager observation;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private ScriptContextManager scriptContextManager;
+
+    private Cache<EvaluatedSkinFile> cache;
+
+    /**
+     * The names of the request parameters and headers read by each skin file (identified by its location, version and
+     * context).
+     */
+    private Cache<RequestDependencies> parametersCache;
+
+    /**
+     * Incremented each time a skin related document of the wiki is modified, so that the entries computed before are
+     * not used anymore.
+     */
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    /**
+     * The request parameters and headers read by a skin file.
+     */
+    private static final class RequestDependencies
+    {
+        private final Set<String> parameters;
+
+        private final Set<String> headers;
+
+        RequestDependencies(Set<String> parameters, Set<String> headers)
+        {
+            this.parameters = parameters;
+            this.headers = headers;
+        }
+    }
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        // Initialize cache
+        try {
+            this.cache = this.cacheManager.createNewCache(new LRUCacheConfiguration("skinfiles", 500, 86400));
+            this.parametersCache =
+                this.cacheManager.createNewCache(new LRUCacheConfiguration("skinfiles.parameters", 500, 86400));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to initialize cache", e);
+        }
+
+        // Initialize listener
+        this.observation.addListener(new AbstractEventListener("skinfiles", new DocumentUpdatedEvent(),
+            new DocumentDeletedEvent(), new DocumentCreatedEvent())
+        {
+            @Override
+            public void onEvent(Event event, Object source, Object data)
+            {
+                XWikiDocument document = (XWikiDocument) source;
+
+                if (isInvalidating(document) || isInvalidating(document.getOriginalDocument())) {
+                    invalidate(document.getDocumentReference().getWikiReference().getName());
+                }
+            }
+        });
+    }
+
+    private boolean isInvalidating(XWikiDocument document)
+    {
+        if (document != null) {
+            for (LocalDocumentReference classReference : INVALIDATING_CLASSES) {
+                if (document.getXObject(classReference) != null) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void invalidate(String wikiId)
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+
+        if (xcontext == null || xcontext.isMainWiki(wikiId)) {
+            // The skins and color themes of the main wiki can be used by all the wikis.
+            this.cache.removeAll();
+            this.parametersCache.removeAll();
+        } else {
+            this.generations.merge(wikiId, 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Return the evaluation of the passed skin file in the current context, evaluating it only if it's not cached.
+     *
+     * @param source the location of the skin file (file path or reference of the attachment or object property)
+     * @param version the version of the skin file (last modification date, document or attachment version)
+     * @param evaluator evaluate the skin file
+     * @return the evaluated skin file
+     */
+    public EvaluatedSkinFile get(String source, String version, Supplier<EvaluatedSkinFile> evaluator)
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+        XWikiRequest request = xcontext.getRequest();
+
+        String fileKey = getFileKey(source, version, xcontext);
+
+        RequestDependencies dependencies = this.parametersCache.get(fileKey);
+        if (dependencies != null) {
+            EvaluatedSkinFile skinFile = this.cache.get(getKey(fileKey, dependencies, request));
+            if (skinFile != null) {
+                return skinFile;
+            }
+        }
+
+        // Remember the request parameters and headers read during the evaluation.
+        SkinFileRequest skinFileRequest = request != null ? new SkinFileRequest(request) : null;
+        EvaluatedSkinFile skinFile = evaluate(evaluator, skinFileRequest, xcontext);
+
+        // A skin file can read different parameters depending on the values of the parameters it has already read.
+        Set<String> allParameters = new TreeSet<>();
+        Set<String> allHeaders = new TreeSet<>();
+        if (skinFileRequest != null) {
+            allParameters.addAll(skinFileRequest.getReadParameters());
+            allHeaders.addAll(skinFileRequest.getReadHeaders());
+        }
+        if (dependencies != null) {
+            allParameters.addAll(dependencies.parameters);
+            allHeaders.addAll(dependencies.headers);
+        }
+        RequestDependencies allDependencies = new RequestDependencies(allParameters, allHeaders);
+        this.parametersCache.set(fileKey, allDependencies);
+        this.cache.set(getKey(fileKey, allDependencies, request), skinFile);
+
+        return skinFile;
+    }
+
+    private EvaluatedSkinFile evaluate(Supplier<EvaluatedSkinFile> evaluator, SkinFileRequest request,
+        XWikiContext xcontext)
+    {
+        if (request == null) {
+            return evaluator.get();
+        }
+
+        XWikiRequest currentRequest = xcontext.getRequest();
+        ScriptContext scriptContext = this.scriptContextManager.getScriptContext();
+        Object currentScriptRequest = scriptContext.getAttribute(REQUEST, ScriptContext.ENGINE_SCOPE);
+
+        xcontext.setRequest(request);
+        scriptContext.setAttribute(REQUEST, request, ScriptContext.ENGINE_SCOPE);
+
+        try {
+            return evaluator.get();
+        } finally {
+            xcontext.setRequest(currentRequest);
+            scriptContext.setAttribute(REQUEST, currentScriptRequest, ScriptContext.ENGINE_SCOPE);
+        }
+    }
+
+    private String getFileKey(String source, String version, XWikiContext xcontext)
+    {
+        XWikiRequest request = xcontext.getRequest();
+
+        String colorTheme = request != null ? request.getParameter(COLOR_THEME) : null;
+        if (StringUtils.isEmpty(colorTheme)) {
+            colorTheme = this.allConfiguration.getProperty(COLOR_THEME, String.class);
+        }
+
+        StringBuilder key = new StringBuilder();
+        append(key, source);
+        append(key, version);
+        append(key, xcontext.getWikiId());
+        append(key, this.generations.get(xcontext.getWikiId()));
+        append(key, xcontext.getWiki().getSkin(xcontext));
+        append(key, colorTheme);
+        append(key, xcontext.getLocale());
+        // The skin files are evaluated with the rights and preferences of the current user.
+        append(key, xcontext.getUserReference());
+
+        return key.toString();
+    }
+
+    private String getKey(String fileKey, RequestDependencies dependencies, XWikiRequest request)
+    {
+        StringBuilder key = new StringBuilder(fileKey);
+
+        if (request != null) {
+            if (dependencies.parameters.contains(SkinFileRequest.ALL_PARAMETERS)) {
+                append(key, request.getQueryString());
+            } else {
+                for (String parameter : dependencies.parameters) {
+                    append(key, parameter);
+                    append(key, Arrays.toString(request.getParameterValues(parameter)));
+                }
+            }
+
+            Collection<String> headers = dependencies.headers;
+            if (headers.contains(SkinFileRequest.ALL_HEADERS)) {
+                headers = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                headers.addAll(toList(request.getHeaderNames()));
+            }
+            for (String header : headers) {
+                append(key, header.toLowerCase(Locale.ROOT));
+                append(key, toList(request.getHeaders(header)));
+            }
+        }
+
+        return key.toString();
+    }
+
+    private List<String> toList(Enumeration<String> enumeration)
+    {
+        return enumeration != null ? Collections.list(enumeration) : Collections.<String>emptyList();
+    }
+
+    private void append(StringBuilder key, Object value)
+    {
+        // Prefix each element with its length to avoid any ambiguity
+        String stringValue = String.valueOf(value);
+        key.append(stringValue.length()).append(':').append(stringValue);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+import com.xpn.xwiki.web.XWikiRequest;
+import com.xpn.xwiki.web.XWikiServletRequest;
+
+/**
+ * Remember which request parameters and headers are read while evaluating a skin file, so that the result of the
+ * evaluation is cached only for the values of these parameters and headers.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class SkinFileRequest extends XWikiServletRequest
+{
+    /**
+     * The name used to indicate that the evaluation depends on all the request parameters (e.g. because it listed
+     * them).
+     */
+    public static final String ALL_PARAMETERS = "*";
+
+    /**
+     * The name used to indicate that the evaluation depends on all the request headers.
+     */
+    public static final String ALL_HEADERS = ALL_PARAMETERS;
+
+    private static final String COOKIE_HEADER = "cookie";
+
+    private final Set<String> parameters = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> headers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param request the wrapped request
+     */
+    public SkinFileRequest(XWikiRequest request)
+    {
+        super(request);
+    }
+
+    /**
+     * @return the names of the parameters read through this request, {@link #ALL_PARAMETERS} if all of them have been
+     *         accessed
+     */
+    public Set<String> getReadParameters()
+    {
+        return this.parameters;
+    }
+
+    /**
+     * @return the lower case names of the headers read through this request, {@link #ALL_HEADERS} if all of them have
+     *         been accessed
+     */
+    public Set<String> getReadHeaders()
+    {
+        return this.headers;
+    }
+
+    @Override
+    public String get(String name)
+    {
+        return getParameter(name);
+    }
+
+    @Override
+    public String getParameter(String name)
+    {
+        read(name);
+
+        return super.getParameter(name);
+    }
+
+    @Override
+    public String[] getParameterValues(String name)
+    {
+        read(name);
+
+        return super.getParameterValues(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap()
+    {
+        read(ALL_PARAMETERS);
+
+        return super.getParameterMap();
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames()
+    {
+        read(ALL_PARAMETERS);
+
+        return super.getParameterNames();
+    }
+
+    @Override
+    public String getQueryString()
+    {
+        read(ALL_PARAMETERS);
+
+        return super.getQueryString();
+    }
+
+    @Override
+    public String getHeader(String name)
+    {
+        readHeader(name);
+
+        return super.getHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name)
+    {
+        readHeader(name);
+
+        return super.getHeaders(name);
+    }
+
+    @Override
+    public int getIntHeader(String name)
+    {
+        readHeader(name);
+
+        return super.getIntHeader(name);
+    }
+
+    @Override
+    public long getDateHeader(String name)
+    {
+        readHeader(name);
+
+        return super.getDateHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames()
+    {
+        readHeader(ALL_HEADERS);
+
+        return super.getHeaderNames();
+    }
+
+    @Override
+    public Cookie[] getCookies()
+    {
+        readHeader(COOKIE_HEADER);
+
+        return super.getCookies();
+    }
+
+    @Override
+    public HttpServletRequest getHttpServletRequest()
+    {
+        // The parameters and headers can't be tracked anymore.
+        read(ALL_PARAMETERS);
+        readHeader(ALL_HEADERS);
+
+        return super.getHttpServletRequest();
+    }
+
+    private void read(String name)
+    {
+        if (name != null) {
+            this.parameters.add(name);
+        }
+    }
+
+    private void readHeader(String name)
+    {
+        if (name != null) {
+            // Header names are case insensitive.
+            this.headers.add(name.toLowerCase(Locale.ROOT));
+        }
+    }
+}
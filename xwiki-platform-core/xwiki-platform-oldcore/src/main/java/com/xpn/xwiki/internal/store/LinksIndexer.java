@@ -0,0 +1,379 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.store.XWikiStoreInterface;
+
+/**
+ * Update the links stored for the saved documents in a background thread, so that extracting them (which requires
+ * parsing the content) doesn't slow down the save. When a document is saved several times before its links are
+ * updated, only its last version is used. The stored links are eventually consistent: the code reading them should
+ * call {@link #waitForLinks(String, long)} first (as the Hibernate store does when loading the back-links).
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = LinksIndexer.class)
+@Singleton
+public class LinksIndexer implements Initializable, Disposable, Runnable
+{
+    /**
+     * The maximum number of documents waiting for their links to be updated. The saved documents are kept in memory
+     * until then so the links are updated during the save when the queue is full.
+     */
+    private static final int MAX_QUEUE_SIZE = 1000;
+
+    /**
+     * How long to wait for the queued documents to be processed when the component is disposed.
+     */
+    private static final long DISPOSE_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * How long to wait for the links of a deleted document to be written when they are being updated.
+     */
+    private static final long REMOVE_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * A document waiting for its links to be updated.
+     */
+    private static final class Entry
+    {
+        private final XWikiDocument document;
+
+        private final String wiki;
+
+        /**
+         * Tell in which order the documents have been queued. A document queued again keeps the sequence of its first
+         * save so that the code waiting for the links of this first save keeps waiting.
+         */
+        private final long sequence;
+
+        Entry(XWikiDocument document, long sequence)
+        {
+            this.document = document;
+            this.wiki = document.getDocumentReference().getWikiReference().getName();
+            this.sequence = sequence;
+        }
+    }
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    @Named("hibernate")
+    private Provider<XWikiStoreInterface> storeProvider;
+
+    @Inject
+    private ExecutionContextManager ecim;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The documents waiting for their links to be updated, indexed by document identifier, in the order they were
+     * queued. Also used to synchronize the access to {@link #current} and {@link #lastSequence}.
+     */
+    private final Map<Long, Entry> queue = new LinkedHashMap<>();
+
+    /**
+     * The document whose links are being updated.
+     */
+    private Entry current;
+
+    private long lastSequence;
+
+    private Thread thread;
+
+    private volatile boolean disposed;
+
+    /**
+     * {@code true} when the thread has stopped processing the queue.
+     */
+    private volatile boolean stopped;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.thread = new Thread(this);
+        this.thread.setName("XWiki links indexer thread");
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.NORM_PRIORITY - 1);
+        this.thread.start();
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        synchronized (this.queue) {
+            // The thread stops once the queue is empty.
+            this.disposed = true;
+            this.queue.notifyAll();
+        }
+
+        try {
+            this.thread.join(DISPOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (this.thread.isAlive()) {
+            this.thread.interrupt();
+
+            synchronized (this.queue) {
+                this.logger.warn("The links of [{}] documents have not been updated.", this.queue.size());
+            }
+        }
+    }
+
+    /**
+     * Queue the update of the links of a document.
+     *
+     * @param document the saved document, which must not be modified anymore
+     * @return {@code false} if the document could not be queued (because the queue is full or the component is
+     *         disposed), in which case the caller is responsible for updating the links
+     */
+    public boolean index(XWikiDocument document)
+    {
+        synchronized (this.queue) {
+            Entry queued = this.queue.get(document.getId());
+            if (queued != null) {
+                // Replace the queued version with the one which has just been saved, at the same place in the queue.
+                this.queue.put(document.getId(), new Entry(document, queued.sequence));
+            } else if (this.disposed || this.queue.size() >= MAX_QUEUE_SIZE) {
+                return false;
+            } else {
+                this.queue.put(document.getId(), new Entry(document, ++this.lastSequence));
+            }
+
+            this.queue.notifyAll();
+        }
+
+        return true;
+    }
+
+    /**
+     * Cancel the update of the links of a document (because it has been deleted). If the links of the document are
+     * being updated, wait for the update to be done so that the links written by it can be deleted with the document.
+     *
+     * @param document the document
+     */
+    public void remove(XWikiDocument document)
+    {
+        long end = System.currentTimeMillis() + REMOVE_TIMEOUT;
+
+        synchronized (this.queue) {
+            if (this.queue.remove(document.getId()) != null) {
+                this.queue.notifyAll();
+            }
+
+            while (this.current != null && this.current.document.getId() == document.getId()) {
+                long remaining = end - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    this.logger.warn("The links of the deleted document [{}] are still being updated.",
+                        document.getDocumentReferenceWithLocale());
+                    break;
+                }
+
+                try {
+                    this.queue.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait until the links of the documents saved before the call are up to date, for the code which relies on the
+     * stored links (backlinks) being right.
+     *
+     * @param timeout the maximum time to wait, in milliseconds
+     * @return {@code true} if the links are up to date, {@code false} if the timeout expired before
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public boolean waitForLinks(long timeout) throws InterruptedException
+    {
+        return waitForLinks(null, timeout);
+    }
+
+    /**
+     * Wait until the links of the documents of a wiki saved before the call are up to date, for the code which relies
+     * on the stored links (backlinks) of this wiki being right. The documents of the other wikis are not waited for.
+     *
+     * @param wiki the identifier of the wiki, {@code null} for all the wikis
+     * @param timeout the maximum time to wait, in milliseconds
+     * @return {@code true} if the links are up to date, {@code false} if the timeout expired before
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public boolean waitForLinks(String wiki, long timeout) throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + timeout;
+
+        synchronized (this.queue) {
+            long sequence = this.lastSequence;
+
+            while (isQueued(wiki, sequence)) {
+                if (this.stopped) {
+                    return false;
+                }
+
+                long remaining = end - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                this.queue.wait(remaining);
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isQueued(String wiki, long sequence)
+    {
+        if (this.current != null && matches(this.current, wiki, sequence)) {
+            return true;
+        }
+
+        for (Entry entry : this.queue.values()) {
+            // The queue is ordered by sequence.
+            if (entry.sequence > sequence) {
+                break;
+            }
+            if (matches(entry, wiki, sequence)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean matches(Entry entry, String wiki, long sequence)
+    {
+        return entry.sequence <= sequence && (wiki == null || wiki.equals(entry.wiki));
+    }
+
+    @Override
+    public void run()
+    {
+        this.logger.debug("Start links indexer thread");
+
+        while (true) {
+            Entry entry;
+            try {
+                entry = take();
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            if (entry == null) {
+                // Disposed and nothing left to update.
+                break;
+            }
+
+            try {
+                updateLinks(entry.document);
+            } catch (Throwable e) {
+                this.logger.error("Failed to update the links of document [{}]",
+                    entry.document.getDocumentReferenceWithLocale(), e);
+            } finally {
+                synchronized (this.queue) {
+                    this.current = null;
+                    this.queue.notifyAll();
+                }
+            }
+        }
+
+        synchronized (this.queue) {
+            this.stopped = true;
+            this.queue.notifyAll();
+        }
+
+        this.logger.debug("Stop links indexer thread");
+    }
+
+    /**
+     * @return the next document to update, or {@code null} if the component is disposed and the queue is empty
+     */
+    private Entry take() throws InterruptedException
+    {
+        synchronized (this.queue) {
+            while (this.queue.isEmpty()) {
+                if (this.disposed) {
+                    return null;
+                }
+
+                this.queue.wait();
+            }
+
+            Iterator<Entry> iterator = this.queue.values().iterator();
+            this.current = iterator.next();
+            iterator.remove();
+
+            return this.current;
+        }
+    }
+
+    private void updateLinks(XWikiDocument document) throws Exception
+    {
+        try {
+            this.ecim.initialize(new ExecutionContext());
+
+            XWikiContext xcontext = this.xcontextProvider.get();
+            xcontext.setWikiId(document.getDocumentReference().getWikiReference().getName());
+            xcontext.setDoc(document);
+
+            XWikiStoreInterface store = this.storeProvider.get();
+
+            // The document might have been deleted in the meantime.
+            if (store.exists(document, xcontext)) {
+                store.saveLinks(document, xcontext, true);
+            }
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+}
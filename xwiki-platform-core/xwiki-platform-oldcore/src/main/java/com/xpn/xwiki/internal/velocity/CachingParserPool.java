@@ -0,0 +1,217 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.velocity;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.io.IOUtils;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.runtime.ParserPool;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.directive.Macro;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.Parser;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+/**
+ * Velocity {@link ParserPool} which keeps in memory the parsed (and initialized) scripts so that the same script
+ * (e.g. the content of a {@code velocity} macro in a sheet) is not parsed again each time it's executed. Only the
+ * rendering of the cached tree with the current Velocity context is then needed, like for the templates loaded by the
+ * Velocity resource loaders.
+ * <p>
+ * The scripts are identified by the name of the template (which is also the Velocity macros namespace) and a hash of
+ * their content. A tree is never shared between two templates since the nodes remember the template they have been
+ * parsed for. The Velocity macros defined in a script are registered by the parser so they are registered again in
+ * the template namespace each time the cached tree is returned.
+ * <p>
+ * The maximum number of scripts kept in memory can be configured with the {@value #CACHE_SIZE_PROPERTY} Velocity
+ * property.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class CachingParserPool implements ParserPool
+{
+    /**
+     * The Velocity property indicating the maximum number of parsed scripts to keep in memory.
+     */
+    public static final String CACHE_SIZE_PROPERTY = "parser.cache.size";
+
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+
+    private static final String MACRO_DIRECTIVE = "macro";
+
+    /**
+     * A parsed script.
+     */
+    private static final class ParsedScript
+    {
+        private final SimpleNode tree;
+
+        /**
+         * The {@code #macro} directives of the script, in the order they have been registered by the parser.
+         */
+        private final List<ASTDirective> macros;
+
+        ParsedScript(SimpleNode tree, List<ASTDirective> macros)
+        {
+            this.tree = tree;
+            this.macros = macros;
+        }
+    }
+
+    /**
+     * Parser looking for the script in the cache before actually parsing it.
+     */
+    private final class CachingParser extends Parser
+    {
+        private final Parser parser;
+
+        CachingParser(RuntimeServices rsvc, Parser parser)
+        {
+            super(rsvc);
+
+            this.parser = parser;
+        }
+
+        @Override
+        public SimpleNode parse(Reader reader, String templateName) throws ParseException
+        {
+            String script;
+            try {
+                script = IOUtils.toString(reader);
+            } catch (IOException e) {
+                throw new ParseException("Failed to read the template [" + templateName + "]: " + e.getMessage());
+            }
+
+            String key = templateName + ':' + DigestUtils.sha256Hex(script);
+
+            ParsedScript parsedScript = scripts.get(key);
+            if (parsedScript != null) {
+                registerMacros(parsedScript, templateName);
+            } else {
+                SimpleNode tree = this.parser.parse(new StringReader(script), templateName);
+
+                // Initialize the tree before sharing it, like it's done for the templates cached by Velocity.
+                initialize(tree, templateName);
+
+                List<ASTDirective> macros = new ArrayList<>();
+                collectMacros(tree, macros);
+
+                parsedScript = new ParsedScript(tree, macros);
+                scripts.put(key, parsedScript);
+            }
+
+            return parsedScript.tree;
+        }
+    }
+
+    private RuntimeServices runtimeServices;
+
+    private BlockingQueue<Parser> parsers;
+
+    private Map<String, ParsedScript> scripts;
+
+    @Override
+    public void initialize(RuntimeServices rsvc)
+    {
+        this.runtimeServices = rsvc;
+
+        int poolSize = rsvc.getInt(RuntimeConstants.PARSER_POOL_SIZE, RuntimeConstants.NUMBER_OF_PARSERS);
+        this.parsers = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; ++i) {
+            this.parsers.offer(createParser());
+        }
+
+        this.scripts =
+            Collections.synchronizedMap(new LRUMap<>(rsvc.getInt(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE)));
+    }
+
+    @Override
+    public Parser get()
+    {
+        // Velocity is not using the pool when it returns null so we create a parser ourself to always use the cache.
+        Parser parser = this.parsers.poll();
+
+        return parser != null ? parser : createParser();
+    }
+
+    @Override
+    public void put(Parser parser)
+    {
+        this.parsers.offer(parser);
+    }
+
+    private Parser createParser()
+    {
+        return new CachingParser(this.runtimeServices, this.runtimeServices.createNewParser());
+    }
+
+    private void initialize(SimpleNode tree, String templateName) throws ParseException
+    {
+        InternalContextAdapterImpl ica = new InternalContextAdapterImpl(new VelocityContext());
+        ica.pushCurrentTemplateName(templateName);
+        try {
+            tree.init(ica, this.runtimeServices);
+        } catch (TemplateInitException e) {
+            throw new ParseException("Failed to initialize the template [" + templateName + "]: " + e.getMessage());
+        } finally {
+            ica.popCurrentTemplateName();
+        }
+    }
+
+    private void collectMacros(Node node, List<ASTDirective> macros)
+    {
+        if (node instanceof ASTDirective && MACRO_DIRECTIVE.equals(((ASTDirective) node).getDirectiveName())) {
+            macros.add((ASTDirective) node);
+        }
+
+        for (int i = 0; i < node.jjtGetNumChildren(); ++i) {
+            collectMacros(node.jjtGetChild(i), macros);
+        }
+    }
+
+    private void registerMacros(ParsedScript parsedScript, String templateName) throws ParseException
+    {
+        for (ASTDirective macro : parsedScript.macros) {
+            try {
+                Macro.processAndRegister(this.runtimeServices, macro.getFirstToken(), macro, templateName);
+            } catch (IOException e) {
+                throw new ParseException("Failed to register the macros of the template [" + templateName + "]: "
+                    + e.getMessage());
+            }
+        }
+    }
+}
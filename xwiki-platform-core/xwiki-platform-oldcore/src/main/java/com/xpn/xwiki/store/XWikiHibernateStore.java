@@ -35,8 +35,10 @@
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -88,6 +90,7 @@
 import com.xpn.xwiki.doc.XWikiLock;
 import com.xpn.xwiki.doc.XWikiSpace;
 import com.xpn.xwiki.internal.render.OldRendering;
+import com.xpn.xwiki.internal.store.LinksIndexer;
 import com.xpn.xwiki.monitor.api.MonitorPlugin;
 import com.xpn.xwiki.objects.BaseCollection;
 import com.xpn.xwiki.objects.BaseElement;
@@ -116,6 +119,11 @@
 @Singleton
 public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWikiStoreInterface
 {
+    /**
+     * How long to wait for the links of the saved documents to be up to date before loading back-links.
+     */
+    private static final long LINKS_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
     @Inject
     private Logger logger;
 
@@ -164,6 +172,9 @@ public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWik
     @Inject
     private Provider<OldRendering> oldRenderingProvider;
 
+    @Inject
+    private Provider<LinksIndexer> linksIndexerProvider;
+
     @Inject
     private ComponentManager componentManager;
 
@@ -609,10 +620,13 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
             }
 
             // Verify if the document already exists
-            Query query =
-                session.createQuery("select xwikidoc.id from XWikiDocument as xwikidoc where xwikidoc.id = :id");
+            Query query = session.createQuery(
+                "select xwikidoc.id, xwikidoc.version from XWikiDocument as xwikidoc where xwikidoc.id = :id");
             query.setLong("id", doc.getId());
-            if (query.uniqueResult() == null) {
+            Object[] storedDocumentInfo = (Object[]) query.uniqueResult();
+            // The document as it's currently stored, if known, to save only the objects and properties which changed
+            XWikiDocument storedDocument = null;
+            if (storedDocumentInfo == null) {
                 if (doc.isContentDirty() || doc.isMetaDataDirty()) {
                     // Reset the creationDate to reflect the date of the first save, not the date of the object creation
                     doc.setCreationDate(new Date());
@@ -622,12 +636,16 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
                 session.update(doc);
                 // TODO: this is slower!! How can it be improved?
                 // session.saveOrUpdate(doc);
+
+                storedDocument = getStoredDocument(doc, (String) storedDocumentInfo[1]);
             }
 
             // Remove objects planned for removal
+            Set<Long> removedObjects = new HashSet<>();
             if (doc.getXObjectsToRemove().size() > 0) {
                 for (BaseObject removedObject : doc.getXObjectsToRemove()) {
                     deleteXWikiCollection(removedObject, context, false, false);
+                    removedObjects.add(removedObject.getId());
                 }
                 doc.setXObjectsToRemove(new ArrayList<BaseObject>());
             }
@@ -648,13 +666,18 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
                             if (StringUtils.isEmpty(obj.getGuid())) {
                                 obj.setGuid(null);
                             }
-                            saveXWikiCollection(obj, context, false);
+                            // The stored state of an object replacing a removed one is not known anymore
+                            saveXWikiCollection(obj, removedObjects.contains(obj.getId()) ? null : storedDocument,
+                                context, false);
                         }
                     }
                 }
             }
 
-            if (context.getWiki().hasBacklinks(context)) {
+            // The links are updated in the background when the document is saved in its own transaction (otherwise
+            // it might not be committed yet when they are updated)
+            boolean backlinks = context.getWiki().hasBacklinks(context);
+            if (backlinks && !bTransaction) {
                 try {
                     saveLinks(doc, context, true);
                 } catch (Exception e) {
@@ -674,6 +697,17 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
 
             // We need to ensure that the saved document becomes the original document
             doc.setOriginalDocument(doc.clone());
+
+            // The original document is not supposed to be modified anymore
+            if (backlinks && bTransaction && !this.linksIndexerProvider.get().index(doc.getOriginalDocument())) {
+                // Too many documents are waiting for their links to be updated
+                try {
+                    saveLinks(doc, context, true);
+                } catch (Exception e) {
+                    this.logger.error("Failed to save links for document [{}]", doc.getDocumentReferenceWithLocale(),
+                        e);
+                }
+            }
         } catch (Exception e) {
             Object[] args = { this.defaultEntityReferenceSerializer.serialize(doc.getDocumentReference()) };
             throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
@@ -693,6 +727,25 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
         }
     }
 
+    /**
+     * @param document the document being saved
+     * @param storedVersion the version of the document currently stored
+     * @return the document as it was loaded, if it's still the one stored, {@code null} otherwise
+     */
+    private XWikiDocument getStoredDocument(XWikiDocument document, String storedVersion)
+    {
+        XWikiDocument originalDocument = document.getOriginalDocument();
+
+        // The document may have been saved by someone else since it was loaded
+        if (originalDocument != null && originalDocument != document && !originalDocument.isNew()
+            && originalDocument.getId() == document.getId()
+            && StringUtils.equals(originalDocument.getVersion(), storedVersion)) {
+            return originalDocument;
+        }
+
+        return null;
+    }
+
     private void updateXWikiSpaceTable(XWikiDocument document, Session session)
     {
         if (document.getLocale().equals(Locale.ROOT)) {
@@ -1059,6 +1112,7 @@ public void deleteXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext) throws
 
             // deleting XWikiLinks
             if (context.getWiki().hasBacklinks(context)) {
+                this.linksIndexerProvider.get().remove(doc);
                 deleteLinks(doc.getId(), context, true);
             }
 
@@ -1172,6 +1226,20 @@ private void checkObjectClassIsLocal(BaseCollection object, XWikiContext context
     @Deprecated
     public void saveXWikiCollection(BaseCollection object, XWikiContext inputxcontext, boolean bTransaction)
         throws XWikiException
+    {
+        saveXWikiCollection(object, null, inputxcontext, bTransaction);
+    }
+
+    /**
+     * @param object the object to save
+     * @param storedDocument the document as it's currently stored, used to write only what changed and to avoid
+     *            asking the database if the object and its properties exist, or {@code null} if it's not known
+     * @param inputxcontext the XWiki context
+     * @param bTransaction if a new transaction should be created
+     * @throws XWikiException when failing to save the object
+     */
+    void saveXWikiCollection(BaseCollection object, XWikiDocument storedDocument, XWikiContext inputxcontext,
+        boolean bTransaction) throws XWikiException
     {
         XWikiContext context = getXWikiContext(inputxcontext);
 
@@ -1191,22 +1259,39 @@ public void saveXWikiCollection(BaseCollection object, XWikiContext inputxcontex
             }
             Session session = getSession(context);
 
+            // Find the object as it's currently stored
+            boolean storedStateKnown = false;
+            BaseObject storedObject = null;
+            if (!stats && storedDocument != null) {
+                storedObject = getStoredObject((BaseObject) object, storedDocument);
+                // The stored object can't be compared if the same instance is being saved
+                storedStateKnown = storedObject != object;
+            }
+
             // Verify if the property already exists
             Query query;
-            if (stats) {
-                query = session
-                    .createQuery("select obj.id from " + object.getClass().getName() + " as obj where obj.id = :id");
+            boolean exists;
+            if (storedStateKnown) {
+                exists = storedObject != null;
             } else {
-                query = session.createQuery("select obj.id from BaseObject as obj where obj.id = :id");
+                if (stats) {
+                    query = session.createQuery(
+                        "select obj.id from " + object.getClass().getName() + " as obj where obj.id = :id");
+                } else {
+                    query = session.createQuery("select obj.id from BaseObject as obj where obj.id = :id");
+                }
+                query.setLong("id", object.getId());
+                exists = query.uniqueResult() != null;
             }
-            query.setLong("id", object.getId());
-            if (query.uniqueResult() == null) {
+            if (!exists) {
                 if (stats) {
                     session.save(object);
                 } else {
                     session.save("com.xpn.xwiki.objects.BaseObject", object);
                 }
-            } else {
+            } else if (!storedStateKnown
+                || !StringUtils.equals(storedObject.getGuid(), ((BaseObject) object).getGuid())) {
+                // Only the GUID of a stored object can change, the rest is part of its identifier
                 if (stats) {
                     session.update(object);
                 } else {
@@ -1238,6 +1323,8 @@ public void saveXWikiCollection(BaseCollection object, XWikiContext inputxcontex
             if (object.getXClassReference() != null) {
                 // Remove all existing properties
                 if (object.getFieldsToRemove().size() > 0) {
+                    // The stored state of a property replacing a removed one is not known anymore
+                    storedStateKnown = false;
                     for (int i = 0; i < object.getFieldsToRemove().size(); i++) {
                         BaseProperty prop = (BaseProperty) object.getFieldsToRemove().get(i);
                         if (!handledProps.contains(prop.getName())) {
@@ -1260,7 +1347,13 @@ public void saveXWikiCollection(BaseCollection object, XWikiContext inputxcontex
 
                     String pname = prop.getName();
                     if (pname != null && !pname.trim().equals("") && !handledProps.contains(pname)) {
-                        saveXWikiPropertyInternal(prop, context, false);
+                        if (storedStateKnown) {
+                            BaseProperty storedProperty =
+                                storedObject != null ? (BaseProperty) storedObject.getField(pname) : null;
+                            saveXWikiPropertyInternal(prop, storedProperty != prop, storedProperty, context, false);
+                        } else {
+                            saveXWikiPropertyInternal(prop, context, false);
+                        }
                     }
                 }
             }
@@ -1285,6 +1378,13 @@ public void saveXWikiCollection(BaseCollection object, XWikiContext inputxcontex
         }
     }
 
+    private BaseObject getStoredObject(BaseObject object, XWikiDocument storedDocument)
+    {
+        BaseObject storedObject = storedDocument.getXObject(object.getXClassReference(), object.getNumber());
+
+        return storedObject != null && storedObject.getId() == object.getId() ? storedObject : null;
+    }
+
     /**
      * @deprecated This is internal to XWikiHibernateStore and may be removed in the future.
      */
@@ -1585,6 +1685,21 @@ private void loadXWikiProperty(PropertyInterface property, XWikiContext context,
 
     private void saveXWikiPropertyInternal(final PropertyInterface property, final XWikiContext context,
         final boolean runInOwnTransaction) throws XWikiException
+    {
+        saveXWikiPropertyInternal(property, false, null, context, runInOwnTransaction);
+    }
+
+    /**
+     * @param property the property to save
+     * @param storedStateKnown {@code true} if the stored property is known, in which case the database is not queried
+     * @param storedProperty the property as it's currently stored, {@code null} if it's not stored
+     * @param context the XWiki context
+     * @param runInOwnTransaction if a new transaction should be created
+     * @throws XWikiException when failing to save the property
+     */
+    private void saveXWikiPropertyInternal(final PropertyInterface property, final boolean storedStateKnown,
+        final BaseProperty storedProperty, final XWikiContext context, final boolean runInOwnTransaction)
+        throws XWikiException
     {
         // Clone runInOwnTransaction so the value passed is not altered.
         boolean bTransaction = runInOwnTransaction;
@@ -1596,17 +1711,29 @@ private void saveXWikiPropertyInternal(final PropertyInterface property, final X
 
             final Session session = this.getSession(context);
 
-            Query query = session.createQuery(
-                "select prop.classType from BaseProperty as prop " + "where prop.id.id = :id and prop.id.name= :name");
-            query.setLong("id", property.getId());
-            query.setString("name", property.getName());
+            Query query;
+            String oldClassType;
+            boolean modified = true;
+            if (storedStateKnown) {
+                oldClassType = storedProperty != null ? storedProperty.getClassType() : null;
+                modified = storedProperty == null
+                    || !Objects.equals(storedProperty.getValue(), ((BaseProperty) property).getValue());
+            } else {
+                query = session.createQuery("select prop.classType from BaseProperty as prop "
+                    + "where prop.id.id = :id and prop.id.name= :name");
+                query.setLong("id", property.getId());
+                query.setString("name", property.getName());
 
-            String oldClassType = (String) query.uniqueResult();
+                oldClassType = (String) query.uniqueResult();
+            }
             String newClassType = ((BaseProperty) property).getClassType();
             if (oldClassType == null) {
                 session.save(property);
             } else if (oldClassType.equals(newClassType)) {
-                session.update(property);
+                // There's nothing to write if the value did not change since the document was loaded
+                if (modified) {
+                    session.update(property);
+                }
             } else {
                 // The property type has changed. We cannot simply update its value because the new value and the old
                 // value are stored in different tables (we're using joined-subclass to map different property types).
@@ -2000,6 +2127,12 @@ public List<DocumentReference> loadBacklinks(DocumentReference documentReference
         // or add some new column for the XWikiLink table in the database.
         Set<DocumentReference> backlinkReferences = new HashSet<DocumentReference>();
 
+        if (bTransaction) {
+            // The links of the saved documents are updated asynchronously (see LinksIndexer). Don't wait when called
+            // inside a transaction since it might hold locks needed to update the links.
+            waitForLinks(documentReference, context.getWikiId());
+        }
+
         try {
             if (bTransaction) {
                 checkHibernate(context);
@@ -2037,6 +2170,19 @@ public List<DocumentReference> loadBacklinks(DocumentReference documentReference
         return new ArrayList<DocumentReference>(backlinkReferences);
     }
 
+    private void waitForLinks(DocumentReference documentReference, String wiki)
+    {
+        try {
+            // Only the links stored in the current wiki, where the back-links are looked for, matter.
+            if (!this.linksIndexerProvider.get().waitForLinks(wiki, LINKS_TIMEOUT)) {
+                this.logger.warn("The links of some documents are still not up to date. The back-links of document [{}]"
+                    + " might be incomplete.", documentReference);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * @deprecated since 2.2M2 use {@link #loadBacklinks(DocumentReference, boolean, XWikiContext)}
      */
@@ -2068,9 +2214,6 @@ public void saveLinks(XWikiDocument doc, XWikiContext inputxcontext, boolean bTr
             }
             Session session = getSession(context);
 
-            // need to delete existing links before saving the page's one
-            deleteLinks(doc.getId(), context, bTransaction);
-
             // necessary to blank links from doc
             context.remove("links");
 
@@ -2093,15 +2236,31 @@ public void saveLinks(XWikiDocument doc, XWikiContext inputxcontext, boolean bTr
                 links.add(wikiLink);
             }
 
-            // Save the links.
+            // Verify that the link reference isn't larger than 255 characters (and truncate it if that's the case)
+            // since otherwise that would lead to a DB error that would result in a fatal error, and the user would
+            // have a hard time understanding why his page failed to be saved.
+            Set<XWikiLink> newLinks = new LinkedHashSet<>();
             for (XWikiLink wikiLink : links) {
-                // Verify that the link reference isn't larger than 255 characters (and truncate it if that's the case)
-                // since otherwise that would lead to a DB error that would result in a fatal error, and the user would
-                // have a hard time understanding why his page failed to be saved.
                 wikiLink.setLink(StringUtils.substring(wikiLink.getLink(), 0, 255));
+                newLinks.add(wikiLink);
+            }
 
+            // Only write the differences with the stored links.
+            Query query = session.createQuery("from XWikiLink as link where link.id.docId = :docId");
+            query.setLong("docId", doc.getId());
+            for (Object storedLink : query.list()) {
+                if (!newLinks.remove(storedLink)) {
+                    session.delete(storedLink);
+                }
+            }
+            for (XWikiLink wikiLink : newLinks) {
                 session.save(wikiLink);
             }
+
+            if (bTransaction) {
+                endTransaction(context, true);
+                bTransaction = false;
+            }
         } catch (Exception e) {
             throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
                 XWikiException.ERROR_XWIKI_STORE_HIBERNATE_SAVING_LINKS, "Exception while saving links", e);
@@ -21,9 +21,11 @@
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -39,6 +41,8 @@
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.skin.EvaluatedSkinFile;
+import com.xpn.xwiki.internal.skin.SkinFileCache;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.user.api.XWikiRightService;
 import com.xpn.xwiki.util.Util;
@@ -278,18 +282,23 @@ private boolean renderFileFromFilesystem(String path, XWikiContext context) thro
                     // Evaluate the content with the rights of the superadmin user, since this is a filesystem file.
                     DocumentReference superadminUserReference = new DocumentReference(context.getMainXWiki(),
                         XWiki.SYSTEM_SPACE, XWikiRightService.SUPERADMIN_USER);
-                    String evaluatedContent = evaluateVelocity(rawContent, path, superadminUserReference, context);
+                    Date lastModified = context.getWiki().getResourceLastModificationDate(path);
+                    EvaluatedSkinFile evaluatedFile = evaluateSkinFile(rawContent, path,
+                        String.valueOf(lastModified != null ? lastModified.getTime() : null), superadminUserReference,
+                        context);
 
-                    byte[] newdata = evaluatedContent.getBytes(ENCODING);
                     // If the content contained velocity code, then it should not be cached
-                    if (Arrays.equals(newdata, data)) {
-                        modified = context.getWiki().getResourceLastModificationDate(path);
-                    } else {
-                        modified = new Date();
-                        data = newdata;
+                    modified = evaluatedFile.isDynamic() ? evaluatedFile.getDate() : lastModified;
+
+                    try {
+                        writeEvaluatedSkinFile(evaluatedFile, mimetype, modified, context);
+                    } catch (IOException e) {
+                        throw new XWikiException(XWikiException.MODULE_XWIKI_APP,
+                            XWikiException.ERROR_XWIKI_APP_SEND_RESPONSE_EXCEPTION, "Exception while sending response",
+                            e);
                     }
 
-                    response.setCharacterEncoding(ENCODING);
+                    return true;
                 } else {
                     modified = context.getWiki().getResourceLastModificationDate(path);
                 }
@@ -342,7 +351,12 @@ public boolean renderFileFromObjectField(String filename, XWikiDocument doc, fin
                     new ObjectPropertyReference(filename, object.getReference());
 
                 // Evaluate the content with the rights of the document's author.
-                content = evaluateVelocity(content, propertyReference, doc.getAuthorReference(), context);
+                EvaluatedSkinFile evaluatedFile =
+                    evaluateSkinFile(content, propertyReference, doc.getVersion(), doc.getAuthorReference(), context);
+
+                writeEvaluatedSkinFile(evaluatedFile, mimetype, doc.getDate(), context);
+
+                return true;
             }
 
             // Prepare the response.
@@ -364,13 +378,50 @@ public boolean renderFileFromObjectField(String filename, XWikiDocument doc, fin
         return false;
     }
 
-    private String evaluateVelocity(String content, EntityReference reference, DocumentReference author,
-        XWikiContext context)
+    private EvaluatedSkinFile evaluateSkinFile(String content, EntityReference reference, String version,
+        DocumentReference author, XWikiContext context) throws IOException
     {
         EntityReferenceSerializer<String> serializer = Utils.getComponent(EntityReferenceSerializer.TYPE_STRING);
         String namespace = serializer.serialize(reference);
 
-        return evaluateVelocity(content, namespace, author, context);
+        return evaluateSkinFile(content, namespace, version, author, context);
+    }
+
+    /**
+     * Evaluate the passed skin file content, or reuse the result of a previous evaluation of the same version of the
+     * file in the same context.
+     */
+    private EvaluatedSkinFile evaluateSkinFile(String content, String namespace, String version,
+        DocumentReference author, XWikiContext context) throws IOException
+    {
+        return Utils.getComponent(SkinFileCache.class).get(namespace, version, () -> {
+            String evaluatedContent = evaluateVelocity(content, namespace, author, context);
+            return new EvaluatedSkinFile(evaluatedContent.getBytes(StandardCharsets.UTF_8),
+                !evaluatedContent.equals(content));
+        });
+    }
+
+    /**
+     * Send the passed evaluated skin file, or a 304 (Not Modified) response if the client already has it.
+     */
+    private void writeEvaluatedSkinFile(EvaluatedSkinFile evaluatedFile, String mimetype, Date modified,
+        XWikiContext context) throws IOException
+    {
+        XWikiResponse response = context.getResponse();
+        response.setHeader("ETag", evaluatedFile.getEntityTag());
+
+        String ifNoneMatch = context.getRequest().getHeader("If-None-Match");
+        if (ifNoneMatch != null && ifNoneMatch.contains(evaluatedFile.getEntityTag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        } else {
+            // The evaluated content is always encoded in UTF-8
+            response.setCharacterEncoding(ENCODING);
+
+            // Write the content to the response's output stream.
+            byte[] data = evaluatedFile.getContent();
+            setupHeaders(response, mimetype, modified, data.length);
+            response.getOutputStream().write(data);
+        }
     }
 
     private String evaluateVelocity(final String content, final String namespace, final DocumentReference author,
@@ -418,16 +469,10 @@ public boolean renderFileFromAttachment(String filename, XWikiDocument doc, XWik
                 String velocityCode = new String(data, ENCODING);
 
                 // Evaluate the content with the rights of the document's author.
-                String evaluatedContent =
-                    evaluateVelocity(velocityCode, attachment.getReference(), doc.getAuthorReference(), context);
-
-                // Prepare the response.
-                response.setCharacterEncoding(ENCODING);
+                EvaluatedSkinFile evaluatedFile = evaluateSkinFile(velocityCode, attachment.getReference(),
+                    attachment.getVersion(), doc.getAuthorReference(), context);
 
-                // Write the content to the response's output stream.
-                data = evaluatedContent.getBytes(ENCODING);
-                setupHeaders(response, mimetype, attachment.getDate(), data.length);
-                response.getOutputStream().write(data);
+                writeEvaluatedSkinFile(evaluatedFile, mimetype, attachment.getDate(), context);
             } else {
                 // Otherwise, return the raw content.
                 setupHeaders(response, mimetype, attachment.getDate(), attachment.getContentSize(context));
@@ -19,6 +19,8 @@
  */
 package com.xpn.xwiki.internal.cache;
 
+import java.util.Arrays;
+
 import org.junit.Assert;
 
 import org.jmock.Expectations;
@@ -102,4 +104,16 @@ public void testEventBasedCleanup() throws Exception
         Assert.assertNull(this.cache.get(this.document.getDocumentReference()));
         Assert.assertNull(this.cache.get(this.document.getDocumentReference(), "ext1", "ext2"));
     }
+
+    @Test
+    public void testDependencyBasedCleanup() throws Exception
+    {
+        DocumentReference dependency = new DocumentReference("wiki", "space", "dependency");
+        this.cache.set("data", Arrays.asList(dependency), this.document.getDocumentReference());
+
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+        observationManager.notify(new DocumentUpdatedEvent(dependency), new XWikiDocument(dependency), getContext());
+
+        Assert.assertNull(this.cache.get(this.document.getDocumentReference()));
+    }
 }
@@ -137,6 +137,40 @@ public void testGetSetRenderedContent() throws Exception
             getContext()));
     }
 
+    @Test
+    public void testInvalidationWhenDependencyIsModified() throws Exception
+    {
+        getConfigurationSource().setProperty("core.renderingcache.documents",
+            Collections.singletonList(this.document.getPrefixedFullName()));
+
+        XWikiDocument includedDocument = new XWikiDocument(new DocumentReference("wiki", "space", "included"));
+        includedDocument.setOriginalDocument(includedDocument.clone());
+        RenderingDependencyRecorder recorder = getComponentManager().getInstance(RenderingDependencyRecorder.class);
+
+        Assert.assertNull(this.renderingCache.getRenderedContent(this.document.getDocumentReference(), "source",
+            getContext()));
+        // Simulate the loading of a document by the rendering.
+        recorder.record(includedDocument.getDocumentReferenceWithLocale(), getContext());
+        this.renderingCache.setRenderedContent(this.document.getDocumentReference(), "source", "renderedContent",
+            getContext());
+
+        Assert.assertFalse(RenderingDependencyRecorder.isRecording(getContext()));
+        Assert.assertEquals("renderedContent",
+            this.renderingCache.getRenderedContent(this.document.getDocumentReference(), "source", getContext()));
+
+        RenderingCacheStatistics statistics = this.renderingCache.getStatistics();
+        Assert.assertEquals(1, statistics.getHits());
+        Assert.assertEquals(1, statistics.getMisses());
+        Assert.assertEquals(0.5, statistics.getHitRatio(), 0);
+
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+        observationManager.notify(new DocumentUpdatedEvent(includedDocument.getDocumentReference()),
+            includedDocument, getContext());
+
+        Assert.assertNull(this.renderingCache.getRenderedContent(this.document.getDocumentReference(), "source",
+            getContext()));
+    }
+
 
     private static class TestRenderingCacheAware extends XWikiDefaultPlugin implements RenderingCacheAware {
         public TestRenderingCacheAware(String name, String className, XWikiContext context) {
@@ -0,0 +1,251 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.inject.Provider;
+import javax.script.ScriptContext;
+import javax.script.SimpleScriptContext;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.script.ScriptContextManager;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.web.XWikiRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SkinFileCache}.
+ *
+ * @version $Id$
+ */
+public class SkinFileCacheTest
+{
+    private static final String FILE = "/skins/flamingo/style.css";
+
+    @Rule
+    public MockitoComponentMockingRule<SkinFileCache> mocker =
+        new MockitoComponentMockingRule<>(SkinFileCache.class);
+
+    private XWikiContext xcontext = mock(XWikiContext.class);
+
+    private XWikiRequest request = mock(XWikiRequest.class);
+
+    private ScriptContext scriptContext = new SimpleScriptContext();
+
+    private AtomicInteger evaluations = new AtomicInteger();
+
+    /**
+     * Evaluate a skin file which depends on the "size" request parameter.
+     */
+    private Supplier<EvaluatedSkinFile> evaluator = () -> {
+        this.evaluations.incrementAndGet();
+        XWikiRequest currentRequest =
+            (XWikiRequest) this.scriptContext.getAttribute("request", ScriptContext.ENGINE_SCOPE);
+        return new EvaluatedSkinFile(("size: " + currentRequest.getParameter("size")).getBytes(), true);
+    };
+
+    @BeforeComponent
+    public void configureComponents() throws Exception
+    {
+        CacheManager cacheManager = this.mocker.registerMockComponent(CacheManager.class);
+        when(cacheManager.createNewCache(any(CacheConfiguration.class))).then(invocation -> createCache());
+
+        ScriptContextManager scriptContextManager = this.mocker.registerMockComponent(ScriptContextManager.class);
+        when(scriptContextManager.getScriptContext()).thenReturn(this.scriptContext);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Cache<T> createCache()
+    {
+        Map<String, T> entries = new HashMap<>();
+        Cache<T> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> entries.get(invocation.getArgument(0)));
+        doAnswer(invocation -> entries.put(invocation.getArgument(0), invocation.getArgument(1))).when(cache)
+            .set(anyString(), any());
+        doAnswer(invocation -> {
+            entries.clear();
+            return null;
+        }).when(cache).removeAll();
+
+        return cache;
+    }
+
+    @Before
+    public void configure() throws Exception
+    {
+        XWiki xwiki = mock(XWiki.class);
+        when(this.xcontext.getWiki()).thenReturn(xwiki);
+        when(this.xcontext.getWikiId()).thenReturn("wiki");
+        when(this.xcontext.isMainWiki("xwiki")).thenReturn(true);
+        when(this.xcontext.getLocale()).thenReturn(Locale.FRENCH);
+        when(this.xcontext.getUserReference()).thenReturn(new DocumentReference("wiki", "XWiki", "User"));
+        when(this.xcontext.getRequest()).thenReturn(this.request);
+        when(xwiki.getSkin(this.xcontext)).thenReturn("XWiki.DefaultSkin");
+
+        this.scriptContext.setAttribute("request", this.request, ScriptContext.ENGINE_SCOPE);
+
+        Provider<XWikiContext> xcontextProvider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(xcontextProvider.get()).thenReturn(this.xcontext);
+    }
+
+    private String evaluate(String version) throws Exception
+    {
+        return new String(this.mocker.getComponentUnderTest().get(FILE, version, this.evaluator).getContent());
+    }
+
+    private void setUserAgent(String userAgent)
+    {
+        when(this.request.getHeader("User-Agent")).thenReturn(userAgent);
+        when(this.request.getHeaders("user-agent"))
+            .then(invocation -> Collections.enumeration(Arrays.asList(userAgent)));
+    }
+
+    @Test
+    public void get() throws Exception
+    {
+        when(this.request.getParameter("size")).thenReturn("10");
+        when(this.request.getParameterValues("size")).thenReturn(new String[] { "10" });
+
+        assertEquals("size: 10", evaluate("1"));
+        // The request script binding is restored after the evaluation.
+        assertEquals(this.request, this.scriptContext.getAttribute("request", ScriptContext.ENGINE_SCOPE));
+
+        // Same file, same context
+        assertEquals("size: 10", evaluate("1"));
+        assertEquals(1, this.evaluations.get());
+
+        // Different parameter and header not read by the file
+        when(this.request.getParameterValues("other")).thenReturn(new String[] { "value" });
+        when(this.request.getQueryString()).thenReturn("size=10&other=value");
+        setUserAgent("Other");
+        assertEquals("size: 10", evaluate("1"));
+        assertEquals(1, this.evaluations.get());
+
+        // Different user
+        when(this.xcontext.getUserReference()).thenReturn(new DocumentReference("wiki", "XWiki", "Other"));
+        assertEquals("size: 10", evaluate("1"));
+        assertEquals(2, this.evaluations.get());
+
+        // New version of the file
+        assertEquals("size: 10", evaluate("2"));
+        assertEquals(3, this.evaluations.get());
+
+        // Different value of a parameter read by the file
+        when(this.request.getParameter("size")).thenReturn("20");
+        when(this.request.getParameterValues("size")).thenReturn(new String[] { "20" });
+        assertEquals("size: 20", evaluate("1"));
+        assertEquals(4, this.evaluations.get());
+
+        // Different color theme
+        when(this.request.getParameter("colorTheme")).thenReturn("ColorThemes.Charcoal");
+        assertEquals("size: 20", evaluate("1"));
+        assertEquals(5, this.evaluations.get());
+    }
+
+    @Test
+    public void getWithHeader() throws Exception
+    {
+        // A skin file which depends on the browser.
+        Supplier<EvaluatedSkinFile> browserEvaluator = () -> {
+            this.evaluations.incrementAndGet();
+            XWikiRequest currentRequest =
+                (XWikiRequest) this.scriptContext.getAttribute("request", ScriptContext.ENGINE_SCOPE);
+            return new EvaluatedSkinFile(("browser: " + currentRequest.getHeader("User-Agent")).getBytes(), true);
+        };
+
+        setUserAgent("MSIE 9.0");
+        assertEquals("browser: MSIE 9.0",
+            new String(this.mocker.getComponentUnderTest().get(FILE, "1", browserEvaluator).getContent()));
+        assertEquals("browser: MSIE 9.0",
+            new String(this.mocker.getComponentUnderTest().get(FILE, "1", browserEvaluator).getContent()));
+        assertEquals(1, this.evaluations.get());
+
+        // Another browser
+        setUserAgent("Firefox");
+        assertEquals("browser: Firefox",
+            new String(this.mocker.getComponentUnderTest().get(FILE, "1", browserEvaluator).getContent()));
+        assertEquals(2, this.evaluations.get());
+    }
+
+    @Test
+    public void invalidateOnSkinUpdate() throws Exception
+    {
+        ArgumentCaptor<EventListener> listenerCaptor = ArgumentCaptor.forClass(EventListener.class);
+        this.mocker.getComponentUnderTest();
+        verify(this.mocker.<ObservationManager>getInstance(ObservationManager.class))
+            .addListener(listenerCaptor.capture());
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        XWikiDocument originalDocument = mock(XWikiDocument.class);
+        when(document.getOriginalDocument()).thenReturn(originalDocument);
+        when(document.getDocumentReference()).thenReturn(new DocumentReference("wiki", "ColorThemes", "Theme"));
+
+        evaluate("1");
+
+        // A document unrelated to skins
+        listenerCaptor.getValue().onEvent(new DocumentUpdatedEvent(), document, null);
+        evaluate("1");
+        assertEquals(1, this.evaluations.get());
+
+        // A color theme of the current wiki
+        when(document.getXObject(new LocalDocumentReference("ColorThemes", "ColorThemeClass")))
+            .thenReturn(new BaseObject());
+        listenerCaptor.getValue().onEvent(new DocumentUpdatedEvent(), document, null);
+        evaluate("1");
+        assertEquals(2, this.evaluations.get());
+
+        // A color theme of the main wiki
+        when(document.getDocumentReference()).thenReturn(new DocumentReference("xwiki", "ColorThemes", "Theme"));
+        listenerCaptor.getValue().onEvent(new DocumentUpdatedEvent(), document, null);
+        evaluate("1");
+        assertEquals(3, this.evaluations.get());
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.store.XWikiStoreInterface;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link LinksIndexer}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class LinksIndexerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<LinksIndexer> mocker = new MockitoComponentMockingRule<>(LinksIndexer.class);
+
+    private XWikiContext xcontext = mock(XWikiContext.class);
+
+    private XWikiStoreInterface store = mock(XWikiStoreInterface.class);
+
+    @Before
+    public void configure() throws Exception
+    {
+        Provider<XWikiContext> xcontextProvider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(xcontextProvider.get()).thenReturn(this.xcontext);
+
+        Provider<XWikiStoreInterface> storeProvider = this.mocker.registerMockComponent(
+            new DefaultParameterizedType(null, Provider.class, XWikiStoreInterface.class), "hibernate");
+        when(storeProvider.get()).thenReturn(this.store);
+    }
+
+    private XWikiDocument createDocument(String name, long id) throws Exception
+    {
+        return createDocument("wiki", name, id);
+    }
+
+    private XWikiDocument createDocument(String wiki, String name, long id) throws Exception
+    {
+        XWikiDocument document = mock(XWikiDocument.class, name);
+        when(document.getId()).thenReturn(id);
+        when(document.getDocumentReference()).thenReturn(new DocumentReference(wiki, "Space", name));
+        when(this.store.exists(document, this.xcontext)).thenReturn(true);
+
+        return document;
+    }
+
+    @Test
+    public void indexMergesTheVersionsOfADocument() throws Exception
+    {
+        XWikiDocument first = createDocument("First", 1);
+        XWikiDocument secondV1 = createDocument("Second", 2);
+        XWikiDocument secondV2 = createDocument("Second", 2);
+
+        // Block the indexing of the first document to queue the others in the meantime.
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(this.store).saveLinks(first, this.xcontext, true);
+
+        LinksIndexer indexer = this.mocker.getComponentUnderTest();
+        indexer.index(first);
+        started.await();
+
+        indexer.index(secondV1);
+        indexer.index(secondV2);
+
+        assertFalse(indexer.waitForLinks(100));
+
+        release.countDown();
+
+        assertTrue(indexer.waitForLinks(10000));
+
+        verify(this.xcontext, times(2)).setWikiId("wiki");
+        verify(this.store).saveLinks(secondV2, this.xcontext, true);
+        verify(this.store, never()).saveLinks(secondV1, this.xcontext, true);
+    }
+
+    @Test
+    public void waitForLinksWhenDocumentIsQueuedAgain() throws Exception
+    {
+        XWikiDocument first = createDocument("First", 1);
+        XWikiDocument secondV1 = createDocument("Second", 2);
+        XWikiDocument secondV2 = createDocument("Second", 2);
+
+        LinksIndexer indexer = this.mocker.getComponentUnderTest();
+        AtomicBoolean upToDate = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                upToDate.set(indexer.waitForLinks(10000));
+            } catch (InterruptedException e) {
+                // The test fails.
+            }
+        });
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(this.store).saveLinks(first, this.xcontext, true);
+        AtomicBoolean waitingDuringUpdate = new AtomicBoolean();
+        doAnswer(invocation -> {
+            waitingDuringUpdate.set(waiter.isAlive());
+            return null;
+        }).when(this.store).saveLinks(secondV2, this.xcontext, true);
+
+        indexer.index(first);
+        started.await();
+        indexer.index(secondV1);
+
+        waiter.start();
+        while (waiter.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(10);
+        }
+
+        // Saved again while the links of the first version are waited for.
+        indexer.index(secondV2);
+
+        release.countDown();
+        waiter.join(10000);
+
+        assertTrue(upToDate.get());
+        assertTrue(waitingDuringUpdate.get());
+        verify(this.store, never()).saveLinks(secondV1, this.xcontext, true);
+    }
+
+    @Test
+    public void indexWhenQueueIsFull() throws Exception
+    {
+        // Create the documents before the indexer thread uses the store.
+        XWikiDocument[] documents = new XWikiDocument[1002];
+        for (int i = 0; i <= 1001; i++) {
+            documents[i] = createDocument("Page" + i, i);
+        }
+        XWikiDocument first = documents[0];
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(this.store).saveLinks(first, this.xcontext, true);
+
+        LinksIndexer indexer = this.mocker.getComponentUnderTest();
+        assertTrue(indexer.index(first));
+        started.await();
+
+        for (int i = 1; i <= 1000; i++) {
+            assertTrue(indexer.index(documents[i]));
+        }
+
+        // The caller has to update the links itself.
+        assertFalse(indexer.index(documents[1001]));
+
+        // But a queued document can still be saved again.
+        assertTrue(indexer.index(documents[1]));
+
+        release.countDown();
+
+        assertTrue(indexer.waitForLinks(10000));
+    }
+
+    @Test
+    public void disposeUpdatesTheQueuedDocuments() throws Exception
+    {
+        XWikiDocument first = createDocument("First", 1);
+        XWikiDocument second = createDocument("Second", 2);
+        XWikiDocument third = createDocument("Third", 3);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(this.store).saveLinks(first, this.xcontext, true);
+
+        LinksIndexer indexer = this.mocker.getComponentUnderTest();
+        indexer.index(first);
+        started.await();
+        indexer.index(second);
+
+        Thread disposer = new Thread(() -> {
+            try {
+                indexer.dispose();
+            } catch (Exception e) {
+                // The test fails.
+            }
+        });
+        disposer.start();
+        while (disposer.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(10);
+        }
+
+        release.countDown();
+        disposer.join(10000);
+
+        verify(this.store).saveLinks(second, this.xcontext, true);
+
+        // The documents saved after the dispose are not queued anymore.
+        assertFalse(indexer.index(third));
+    }
+
+    @Test
+    public void indexDeletedDocument() throws Exception
+    {
+        XWikiDocument document = createDocument("Deleted", 1);
+        when(this.store.exists(document, this.xcontext)).thenReturn(false);
+
+        LinksIndexer indexer = this.mocker.getComponentUnderTest();
+        indexer.index(document);
+
+        assertTrue(indexer.waitForLinks(10000));
+
+        verify(this.store, never()).saveLinks(any(XWikiDocument.class), any(XWikiContext.class), anyBoolean());
+    }
+
+    @Test
+    public void waitForLinksOfAWiki() throws Exception
+    {
+        XWikiDocument other = createDocument("otherwiki", "Other", 1);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(this.store).saveLinks(other, this.xcontext, true);
+
+        LinksIndexer indexer = this.mocker.getComponentUnderTest();
+        indexer.index(other);
+        started.await();
+
+        // The documents of the other wikis are not waited for.
+        assertTrue(indexer.waitForLinks("wiki", 10000));
+        assertFalse(indexer.waitForLinks("otherwiki", 100));
+        assertFalse(indexer.waitForLinks(100));
+
+        release.countDown();
+
+        assertTrue(indexer.waitForLinks("otherwiki", 10000));
+    }
+
+    @Test
+    public void removeWaitsForTheCurrentUpdate() throws Exception
+    {
+        XWikiDocument document = createDocument("Deleted", 1);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean updated = new AtomicBoolean();
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            updated.set(true);
+            return null;
+        }).when(this.store).saveLinks(document, this.xcontext, true);
+
+        LinksIndexer indexer = this.mocker.getComponentUnderTest();
+        indexer.index(document);
+        started.await();
+
+        Thread remover = new Thread(() -> indexer.remove(document));
+        remover.start();
+        while (remover.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(10);
+        }
+
+        // The links written by the update are deleted with the document, after the update.
+        release.countDown();
+        remover.join(10000);
+
+        assertTrue(updated.get());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.velocity;
+
+import java.io.StringWriter;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+
+/**
+ * Measures the time needed to render a big sheet many times with and without {@link CachingParserPool}. This is not a
+ * unit test (the timings depend too much on the machine running it) and it must be executed manually.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public final class CachingParserPoolBenchmark
+{
+    private static final int WARM_UP_RENDERINGS = 10;
+
+    private static final int RENDERINGS = 100;
+
+    private static final String TEMPLATE_NAME = "sheet";
+
+    private CachingParserPoolBenchmark()
+    {
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args the arguments (not used)
+     * @throws Exception if the rendering fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String script = CachingParserPoolTest.createLargeSheet();
+
+        long uncachedTime = render(createRuntime(false), script);
+        long cachedTime = render(createRuntime(true), script);
+
+        System.out.println(String.format("Rendering the sheet [%s] times took [%s] ms with the cache and [%s] ms "
+            + "without the cache.", RENDERINGS, cachedTime / 1000000, uncachedTime / 1000000));
+    }
+
+    private static RuntimeInstance createRuntime(boolean cache) throws Exception
+    {
+        RuntimeInstance runtimeInstance = new RuntimeInstance();
+        if (cache) {
+            runtimeInstance.setProperty(RuntimeConstants.PARSER_POOL_CLASS, CachingParserPool.class.getName());
+        }
+        runtimeInstance.setProperty(RuntimeConstants.VM_PERM_INLINE_LOCAL, Boolean.TRUE);
+        runtimeInstance.init();
+
+        return runtimeInstance;
+    }
+
+    private static long render(RuntimeInstance runtimeInstance, String script) throws Exception
+    {
+        for (int i = 0; i < WARM_UP_RENDERINGS; ++i) {
+            evaluate(runtimeInstance, script);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < RENDERINGS; ++i) {
+            evaluate(runtimeInstance, script);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private static void evaluate(RuntimeInstance runtimeInstance, String script) throws Exception
+    {
+        VelocityContext context = new VelocityContext();
+        context.put("name", "World");
+
+        runtimeInstance.evaluate(context, new StringWriter(), TEMPLATE_NAME, script);
+    }
+}
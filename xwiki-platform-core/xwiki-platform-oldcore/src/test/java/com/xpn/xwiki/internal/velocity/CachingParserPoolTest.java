@@ -0,0 +1,171 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.velocity;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.Parser;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for {@link CachingParserPool}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class CachingParserPoolTest
+{
+    private RuntimeInstance runtime;
+
+    /**
+     * The number of scripts actually parsed by the Velocity parsers.
+     */
+    private AtomicInteger parseCount = new AtomicInteger();
+
+    @Before
+    public void before() throws Exception
+    {
+        this.runtime = createRuntime(true);
+    }
+
+    private RuntimeInstance createRuntime(boolean cache) throws Exception
+    {
+        RuntimeInstance runtimeInstance = new RuntimeInstance()
+        {
+            @Override
+            public Parser createNewParser()
+            {
+                return new Parser(this)
+                {
+                    @Override
+                    public SimpleNode parse(Reader reader, String templateName) throws ParseException
+                    {
+                        parseCount.incrementAndGet();
+                        return super.parse(reader, templateName);
+                    }
+                };
+            }
+        };
+        if (cache) {
+            runtimeInstance.setProperty(RuntimeConstants.PARSER_POOL_CLASS, CachingParserPool.class.getName());
+        }
+        runtimeInstance.setProperty(RuntimeConstants.VM_PERM_INLINE_LOCAL, Boolean.TRUE);
+        runtimeInstance.init();
+
+        return runtimeInstance;
+    }
+
+    private String evaluate(RuntimeInstance runtimeInstance, String namespace, String script) throws Exception
+    {
+        VelocityContext context = new VelocityContext();
+        context.put("name", "World");
+
+        StringWriter writer = new StringWriter();
+        runtimeInstance.evaluate(context, writer, namespace, script);
+
+        return writer.toString();
+    }
+
+    @Test
+    public void parseIsCached() throws Exception
+    {
+        String script = "Hello $name";
+
+        assertSame(this.runtime.parse(new StringReader(script), "namespace"),
+            this.runtime.parse(new StringReader(script), "namespace"));
+        assertNotSame(this.runtime.parse(new StringReader(script), "namespace"),
+            this.runtime.parse(new StringReader(script), "other namespace"));
+        assertNotSame(this.runtime.parse(new StringReader(script), "namespace"),
+            this.runtime.parse(new StringReader("Bye $name"), "namespace"));
+
+        assertEquals("Hello World", evaluate(this.runtime, "namespace", script));
+        assertEquals("Hello World", evaluate(this.runtime, "namespace", script));
+    }
+
+    @Test
+    public void macrosAreRegisteredInTheirNamespace() throws Exception
+    {
+        String script = "#macro(hello $who)Hello $who#end#hello($name)";
+
+        assertEquals("Hello World", evaluate(this.runtime, "namespace", script));
+
+        // The namespace is cleaned before each evaluation so the macro must be registered again from the cache.
+        assertEquals("Hello World", evaluate(this.runtime, "namespace", script));
+
+        assertEquals("#hello($name)", evaluate(this.runtime, "other namespace", "#hello($name)"));
+    }
+
+    /**
+     * Render a big sheet many times with and without the cache.
+     */
+    @Test
+    public void renderLargeSheetRepeatedly() throws Exception
+    {
+        String script = createLargeSheet();
+
+        RuntimeInstance uncachedRuntime = createRuntime(false);
+        this.parseCount.set(0);
+        String expected = evaluate(uncachedRuntime, "sheet", script);
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(expected, evaluate(uncachedRuntime, "sheet", script));
+        }
+        // Without the cache the sheet is parsed each time it's rendered.
+        assertEquals(11, this.parseCount.get());
+
+        this.parseCount.set(0);
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(expected, evaluate(this.runtime, "sheet", script));
+        }
+        // With the cache the sheet is parsed only the first time.
+        assertEquals(1, this.parseCount.get());
+        assertSame(this.runtime.parse(new StringReader(script), "sheet"),
+            this.runtime.parse(new StringReader(script), "sheet"));
+        assertEquals(1, this.parseCount.get());
+    }
+
+    /**
+     * @return a big sheet, with a lot of directives and a macro
+     */
+    static String createLargeSheet()
+    {
+        StringBuilder sheet = new StringBuilder();
+        sheet.append("#macro(displayProperty $property)<dt>$property</dt><dd>$!value</dd>#end\n");
+        for (int i = 0; i < 500; ++i) {
+            sheet.append("#set ($value = \"$name $i\")\n");
+            sheet.append("#if ($value.length() > 0 && $name != 'nobody')#displayProperty(\"property").append(i)
+                .append("\")#else\n#foreach ($item in [1..3])$item #end\n#end\n");
+        }
+
+        return sheet.toString();
+    }
+}
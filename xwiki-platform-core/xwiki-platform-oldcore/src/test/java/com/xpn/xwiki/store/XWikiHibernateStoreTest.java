@@ -20,6 +20,7 @@
 package com.xpn.xwiki.store;
 
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -56,7 +57,9 @@
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -268,6 +271,147 @@ public void saveObjectWithPropertyTypeChange() throws Exception
         verify(session).save(property);
     }
 
+    private BaseProperty mockProperty(BaseObject object, String name, Class<?> type, Object value)
+    {
+        BaseProperty property = mock(BaseProperty.class, name);
+        when(property.getName()).thenReturn(name);
+        when(property.getClassType()).thenReturn(type.getName());
+        when(property.getValue()).thenReturn(value);
+        when(object.getField(name)).thenReturn(property);
+
+        return property;
+    }
+
+    /**
+     * Save an object of a document whose stored state is known: only the modified properties are written.
+     */
+    @Test
+    public void saveObjectWithStoredDocument() throws Exception
+    {
+        DocumentReference classReference = new DocumentReference("myWiki", "mySpace", "myClass");
+        when(xcontext.getWikiId()).thenReturn(classReference.getWikiReference().getName());
+        when(xcontext.get("hibsession")).thenReturn(session);
+
+        BaseObject object = mock(BaseObject.class);
+        when(object.getXClassReference()).thenReturn(classReference);
+        when(object.getNumber()).thenReturn(1);
+        when(object.getId()).thenReturn(42L);
+        when(object.getGuid()).thenReturn("guid");
+        when(object.getPropertyList()).thenReturn(Arrays.asList("title", "content", "tags", "type"));
+        BaseProperty title = mockProperty(object, "title", StringProperty.class, "new title");
+        BaseProperty content = mockProperty(object, "content", LargeStringProperty.class, "content");
+        BaseProperty tags = mockProperty(object, "tags", StringProperty.class, "tag");
+        BaseProperty type = mockProperty(object, "type", LargeStringProperty.class, "type");
+
+        BaseObject storedObject = mock(BaseObject.class);
+        when(storedObject.getId()).thenReturn(42L);
+        when(storedObject.getGuid()).thenReturn("guid");
+        mockProperty(storedObject, "title", StringProperty.class, "title");
+        mockProperty(storedObject, "content", LargeStringProperty.class, "content");
+        mockProperty(storedObject, "type", StringProperty.class, "type");
+
+        XWikiDocument storedDocument = mock(XWikiDocument.class);
+        when(storedDocument.getXObject(classReference, 1)).thenReturn(storedObject);
+
+        Query oldPropertyQuery = mock(Query.class);
+        when(session.createQuery("select prop from " + StringProperty.class.getName()
+            + " as prop where prop.id.id = :id and prop.id.name= :name")).thenReturn(oldPropertyQuery);
+        BaseProperty oldProperty = mock(BaseProperty.class);
+        when(oldPropertyQuery.uniqueResult()).thenReturn(oldProperty);
+
+        store.saveXWikiCollection(object, storedDocument, xcontext, false);
+
+        // The object and its properties are known to exist.
+        verify(session, never()).createQuery("select obj.id from BaseObject as obj where obj.id = :id");
+        verify(session, never()).createQuery(
+            "select prop.classType from BaseProperty as prop where prop.id.id = :id and prop.id.name= :name");
+
+        // The object itself did not change.
+        verify(session, never()).update("com.xpn.xwiki.objects.BaseObject", object);
+        verify(session, never()).save("com.xpn.xwiki.objects.BaseObject", object);
+
+        verify(session).update(title);
+        verify(session, never()).update(content);
+        verify(session, never()).save(content);
+        verify(session).save(tags);
+        verify(session).delete(oldProperty);
+        verify(session).save(type);
+    }
+
+    /**
+     * Count the statements sent to the database when saving a document with many objects of which a single field
+     * changed, with and without knowing the stored document.
+     */
+    @Test
+    public void saveObjectsStatementCount() throws Exception
+    {
+        DocumentReference classReference = new DocumentReference("myWiki", "mySpace", "myClass");
+        when(xcontext.getWikiId()).thenReturn(classReference.getWikiReference().getName());
+        when(xcontext.get("hibsession")).thenReturn(session);
+
+        int objectCount = 20;
+        int propertyCount = 10;
+        List<String> propertyNames = new ArrayList<>();
+        for (int i = 0; i < propertyCount; i++) {
+            propertyNames.add("property" + i);
+        }
+
+        XWikiDocument storedDocument = mock(XWikiDocument.class);
+        List<BaseObject> objects = new ArrayList<>();
+        for (int number = 0; number < objectCount; number++) {
+            BaseObject object = mock(BaseObject.class);
+            when(object.getXClassReference()).thenReturn(classReference);
+            when(object.getNumber()).thenReturn(number);
+            when(object.getId()).thenReturn((long) number);
+            when(object.getGuid()).thenReturn("guid" + number);
+            when(object.getPropertyList()).thenReturn(propertyNames);
+            objects.add(object);
+
+            BaseObject storedObject = mock(BaseObject.class);
+            when(storedObject.getId()).thenReturn((long) number);
+            when(storedObject.getGuid()).thenReturn("guid" + number);
+            when(storedDocument.getXObject(classReference, number)).thenReturn(storedObject);
+
+            for (String propertyName : propertyNames) {
+                // A single field is modified
+                mockProperty(object, propertyName, StringProperty.class,
+                    number == 0 && propertyName.equals("property0") ? "new value" : "value");
+                mockProperty(storedObject, propertyName, StringProperty.class, "value");
+            }
+        }
+
+        // The stored document is known: only the modified field is written
+        for (BaseObject object : objects) {
+            store.saveXWikiCollection(object, storedDocument, xcontext, false);
+        }
+
+        assertEquals(1, countStatements());
+
+        // Without the stored document, each object and property is looked up and written
+        Query objectQuery = mock(Query.class);
+        when(session.createQuery("select obj.id from BaseObject as obj where obj.id = :id")).thenReturn(objectQuery);
+        when(objectQuery.uniqueResult()).thenReturn(1L);
+        Query classTypeQuery = mock(Query.class);
+        when(session.createQuery("select prop.classType from BaseProperty as prop "
+            + "where prop.id.id = :id and prop.id.name= :name")).thenReturn(classTypeQuery);
+        when(classTypeQuery.uniqueResult()).thenReturn(StringProperty.class.getName());
+        clearInvocations(session);
+
+        for (BaseObject object : objects) {
+            store.saveXWikiCollection(object, null, xcontext, false);
+        }
+
+        assertEquals(objectCount * (2 + 2 * propertyCount), countStatements());
+    }
+
+    private long countStatements()
+    {
+        List<String> statements = Arrays.asList("createQuery", "save", "update", "delete");
+
+        return mockingDetails(session).getInvocations().stream()
+            .filter(invocation -> statements.contains(invocation.getMethod().getName())).count();
+    }
+
     @Test
     public void existsWithRootLocale() throws Exception
     {
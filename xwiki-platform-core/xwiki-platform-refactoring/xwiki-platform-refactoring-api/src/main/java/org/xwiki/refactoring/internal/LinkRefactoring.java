@@ -19,6 +19,8 @@
  */
 package org.xwiki.refactoring.internal;
 
+import java.util.Map;
+
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.DocumentReference;
 
@@ -41,6 +43,17 @@
     void renameLinks(DocumentReference documentReference, DocumentReference oldLinkTarget,
         DocumentReference newLinkTarget);
 
+    /**
+     * Renames the links from the content of the specified document, for several link targets at once, so that the
+     * document is modified only once.
+     * 
+     * @param documentReference the document whose content needs to be updated
+     * @param renamedLinkTargets the link targets that need to be replaced, mapped to the new link targets
+     * @since 9.11RC1
+     */
+    void renameLinks(DocumentReference documentReference,
+        Map<DocumentReference, DocumentReference> renamedLinkTargets);
+
     /**
      * Updates the relative links from the content of a document after it has been renamed or moved. This ensures that
      * the links from the content of the renamed/moved document are relative to the new reference.
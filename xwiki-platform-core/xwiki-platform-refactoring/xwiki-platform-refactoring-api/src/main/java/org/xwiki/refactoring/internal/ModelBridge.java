@@ -19,6 +19,7 @@
  */
 package org.xwiki.refactoring.internal;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -91,6 +92,14 @@
      */
     List<DocumentReference> getBackLinkedReferences(DocumentReference reference, String wikiId);
 
+    /**
+     * @param references document references
+     * @param wikiId where to look for links
+     * @return the list of documents from the specified wiki that have links to at least one of the specified documents
+     * @since 9.11RC1
+     */
+    List<DocumentReference> getBackLinkedReferences(Collection<DocumentReference> references, String wikiId);
+
     /**
      * @param spaceReference a space reference
      * @return the list of all the documents from the specified space and its nested spaces
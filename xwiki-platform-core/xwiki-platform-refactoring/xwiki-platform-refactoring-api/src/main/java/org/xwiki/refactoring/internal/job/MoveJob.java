@@ -20,9 +20,11 @@
 package org.xwiki.refactoring.internal.job;
 
 import java.util.Collection;
-import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -67,6 +69,12 @@ public class MoveJob extends AbstractEntityJob<MoveRequest, EntityJobStatus<Move
     @Inject
     private WikiDescriptorManager wikiDescriptorManager;
 
+    /**
+     * The moved documents (old reference to new reference). The links targeting them are updated once all the
+     * documents have been moved, so that a document linking to several of them is modified only once.
+     */
+    private final Map<DocumentReference, DocumentReference> movedReferences = new LinkedHashMap<>();
+
     @Override
     public String getType()
     {
@@ -77,7 +85,22 @@ public String getType()
     protected void runInternal() throws Exception
     {
         if (this.request.getDestination() != null) {
-            super.runInternal();
+            this.movedReferences.clear();
+
+            this.progressManager.pushLevelProgress(2, this);
+
+            try {
+                // Step 1: Move the entities.
+                this.progressManager.startStep(this);
+                super.runInternal();
+                this.progressManager.endStep(this);
+
+                // Step 2: Update the links that target the moved documents.
+                this.progressManager.startStep(this);
+                updateBackLinks();
+            } finally {
+                this.progressManager.popLevelProgress(this);
+            }
         }
     }
 
@@ -266,10 +289,10 @@ private void updateLinks(DocumentReference oldReference, DocumentReference newRe
         this.progressManager.pushLevelProgress(2, this);
 
         try {
-            // Step 1: Update the links that target the old reference to point to the new reference.
+            // Step 1: Remember to update the links that target the old reference to point to the new reference.
             this.progressManager.startStep(this);
             if (this.request.isDeleteSource()) {
-                updateBackLinks(oldReference, newReference);
+                this.movedReferences.put(oldReference, newReference);
             }
             this.progressManager.endStep(this);
 
@@ -281,9 +304,16 @@ private void updateLinks(DocumentReference oldReference, DocumentReference newRe
         }
     }
 
-    private void updateBackLinks(DocumentReference oldReference, DocumentReference newReference)
+    private void updateBackLinks()
     {
-        Collection<String> wikiIds = Collections.singleton(oldReference.getWikiReference().getName());
+        if (this.movedReferences.isEmpty()) {
+            return;
+        }
+
+        Collection<String> wikiIds = new LinkedHashSet<>();
+        for (DocumentReference oldReference : this.movedReferences.keySet()) {
+            wikiIds.add(oldReference.getWikiReference().getName());
+        }
         if (this.request.isUpdateLinksOnFarm()) {
             try {
                 wikiIds = this.wikiDescriptorManager.getAllIds();
@@ -299,7 +329,7 @@ private void updateBackLinks(DocumentReference oldReference, DocumentReference n
             }
             for (String wikiId : wikiIds) {
                 this.progressManager.startStep(this);
-                updateBackLinks(oldReference, newReference, wikiId);
+                updateBackLinks(wikiId);
                 this.progressManager.endStep(this);
             }
         } finally {
@@ -309,18 +339,19 @@ private void updateBackLinks(DocumentReference oldReference, DocumentReference n
         }
     }
 
-    private void updateBackLinks(DocumentReference oldReference, DocumentReference newReference, String wikiId)
+    private void updateBackLinks(String wikiId)
     {
-        this.logger.info("Updating the back-links for document [{}] in wiki [{}].", oldReference, wikiId);
+        this.logger.info("Updating the back-links for documents [{}] in wiki [{}].", this.movedReferences.keySet(),
+            wikiId);
         List<DocumentReference> backlinkDocumentReferences =
-            this.modelBridge.getBackLinkedReferences(oldReference, wikiId);
+            this.modelBridge.getBackLinkedReferences(this.movedReferences.keySet(), wikiId);
         this.progressManager.pushLevelProgress(backlinkDocumentReferences.size(), this);
 
         try {
             for (DocumentReference backlinkDocumentReference : backlinkDocumentReferences) {
                 this.progressManager.startStep(this);
                 if (hasAccess(Right.EDIT, backlinkDocumentReference)) {
-                    this.linkRefactoring.renameLinks(backlinkDocumentReference, oldReference, newReference);
+                    this.linkRefactoring.renameLinks(backlinkDocumentReference, this.movedReferences);
                 }
                 this.progressManager.endStep(this);
             }
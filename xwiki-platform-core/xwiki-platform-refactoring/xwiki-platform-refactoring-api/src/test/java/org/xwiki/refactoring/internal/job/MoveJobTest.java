@@ -21,6 +21,7 @@
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.junit.Rule;
@@ -157,7 +158,7 @@ public void moveDocumentToSpace() throws Exception
         when(this.modelBridge.exists(oldReference)).thenReturn(true);
 
         DocumentReference backLinkReference = new DocumentReference("wiki", "Three", "BackLink");
-        when(this.modelBridge.getBackLinkedReferences(oldReference, "wiki"))
+        when(this.modelBridge.getBackLinkedReferences(Collections.singleton(oldReference), "wiki"))
             .thenReturn(Arrays.asList(backLinkReference));
 
         DocumentReference newReference = new DocumentReference("wiki", "Two", "Page");
@@ -175,7 +176,7 @@ public void moveDocumentToSpace() throws Exception
         run(request);
 
         LinkRefactoring linkRefactoring = getMocker().getInstance(LinkRefactoring.class);
-        verify(linkRefactoring).renameLinks(backLinkReference, oldReference, newReference);
+        verify(linkRefactoring).renameLinks(backLinkReference, Collections.singletonMap(oldReference, newReference));
         verify(linkRefactoring).updateRelativeLinks(oldReference, newReference);
 
         verify(this.modelBridge).setContextUserReference(userReference);
@@ -198,10 +199,12 @@ public void updateLinksOnFarm() throws Exception
         when(wikiDescriptorManager.getAllIds()).thenReturn(Arrays.asList("foo", "bar"));
 
         DocumentReference aliceReference = new DocumentReference("foo", "Alice", "BackLink");
-        when(this.modelBridge.getBackLinkedReferences(oldReference, "foo")).thenReturn(Arrays.asList(aliceReference));
+        when(this.modelBridge.getBackLinkedReferences(Collections.singleton(oldReference), "foo"))
+            .thenReturn(Arrays.asList(aliceReference));
 
         DocumentReference bobReference = new DocumentReference("bar", "Bob", "BackLink");
-        when(this.modelBridge.getBackLinkedReferences(oldReference, "bar")).thenReturn(Arrays.asList(bobReference));
+        when(this.modelBridge.getBackLinkedReferences(Collections.singleton(oldReference), "bar"))
+            .thenReturn(Arrays.asList(bobReference));
 
         MoveRequest request = createRequest(oldReference, newReference.getParent());
         request.setCheckRights(false);
@@ -212,8 +215,46 @@ public void updateLinksOnFarm() throws Exception
         assertEquals(RefactoringJobs.GROUP, job.getGroupPath().toString());
 
         LinkRefactoring linkRefactoring = getMocker().getInstance(LinkRefactoring.class);
-        verify(linkRefactoring).renameLinks(aliceReference, oldReference, newReference);
-        verify(linkRefactoring).renameLinks(bobReference, oldReference, newReference);
+        Map<DocumentReference, DocumentReference> renamedLinkTargets =
+            Collections.singletonMap(oldReference, newReference);
+        verify(linkRefactoring).renameLinks(aliceReference, renamedLinkTargets);
+        verify(linkRefactoring).renameLinks(bobReference, renamedLinkTargets);
+    }
+
+    @Test
+    public void updateBackLinksOncePerDocument() throws Exception
+    {
+        SpaceReference oldSpace = new SpaceReference("wiki", "One");
+        DocumentReference oldAlice = new DocumentReference("Alice", oldSpace);
+        DocumentReference oldBob = new DocumentReference("Bob", oldSpace);
+        when(this.modelBridge.getDocumentReferences(oldSpace)).thenReturn(Arrays.asList(oldAlice, oldBob));
+        when(this.modelBridge.exists(oldAlice)).thenReturn(true);
+        when(this.modelBridge.exists(oldBob)).thenReturn(true);
+
+        SpaceReference newParent = new SpaceReference("wiki", "Two");
+        DocumentReference newAlice = new DocumentReference("wiki", Arrays.asList("Two", "One"), "Alice");
+        DocumentReference newBob = new DocumentReference("wiki", Arrays.asList("Two", "One"), "Bob");
+        when(this.modelBridge.copy(oldAlice, newAlice)).thenReturn(true);
+        when(this.modelBridge.copy(oldBob, newBob)).thenReturn(true);
+
+        Map<DocumentReference, DocumentReference> renamedLinkTargets = new LinkedHashMap<>();
+        renamedLinkTargets.put(oldAlice, newAlice);
+        renamedLinkTargets.put(oldBob, newBob);
+
+        DocumentReference backLinkReference = new DocumentReference("wiki", "Three", "BackLink");
+        when(this.modelBridge.getBackLinkedReferences(renamedLinkTargets.keySet(), "wiki"))
+            .thenReturn(Arrays.asList(backLinkReference));
+
+        MoveRequest request = createRequest(oldSpace, newParent);
+        request.setCheckRights(false);
+        request.setInteractive(false);
+        run(request);
+
+        LinkRefactoring linkRefactoring = getMocker().getInstance(LinkRefactoring.class);
+        verify(linkRefactoring).renameLinks(backLinkReference, renamedLinkTargets);
+        verify(linkRefactoring, never()).renameLinks(any(DocumentReference.class), any(DocumentReference.class),
+            any(DocumentReference.class));
+        verify(this.modelBridge, times(1)).getBackLinkedReferences(anyCollection(), anyString());
     }
 
     @Test
@@ -288,6 +329,7 @@ public void copyDocument() throws Exception
         LinkRefactoring linkRefactoring = getMocker().getInstance(LinkRefactoring.class);
         verify(linkRefactoring, never()).renameLinks(any(DocumentReference.class), any(DocumentReference.class),
             any(DocumentReference.class));
+        verify(linkRefactoring, never()).renameLinks(any(DocumentReference.class), anyMap());
         verify(linkRefactoring).updateRelativeLinks(sourceReference, copyReference);
 
         verify(this.modelBridge, never()).delete(any(DocumentReference.class));
@@ -19,8 +19,12 @@
  */
 package org.xwiki.refactoring.internal;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -105,6 +109,13 @@ public class DefaultLinkRefactoring implements LinkRefactoring
     @Override
     public void renameLinks(DocumentReference documentReference, DocumentReference oldLinkTarget,
         DocumentReference newLinkTarget)
+    {
+        renameLinks(documentReference, Collections.singletonMap(oldLinkTarget, newLinkTarget));
+    }
+
+    @Override
+    public void renameLinks(DocumentReference documentReference,
+        Map<DocumentReference, DocumentReference> renamedLinkTargets)
     {
         boolean popLevelProgress = false;
         try {
@@ -117,17 +128,17 @@ public void renameLinks(DocumentReference documentReference, DocumentReference o
 
             // Update the default locale instance.
             this.progressManager.startStep(this);
-            renameLinks(document, oldLinkTarget, newLinkTarget);
+            renameLinks(document, renamedLinkTargets);
             this.progressManager.endStep(this);
 
             // Update the translations.
             for (Locale locale : locales) {
                 this.progressManager.startStep(this);
-                renameLinks(document.getTranslatedDocument(locale, xcontext), oldLinkTarget, newLinkTarget);
+                renameLinks(document.getTranslatedDocument(locale, xcontext), renamedLinkTargets);
                 this.progressManager.endStep(this);
             }
         } catch (XWikiException e) {
-            this.logger.error("Failed to rename the links that target [{}] from [{}].", oldLinkTarget,
+            this.logger.error("Failed to rename the links that target [{}] from [{}].", renamedLinkTargets.keySet(),
                 documentReference, e);
         } finally {
             if (popLevelProgress) {
@@ -136,7 +147,7 @@ public void renameLinks(DocumentReference documentReference, DocumentReference o
         }
     }
 
-    private void renameLinks(XWikiDocument document, DocumentReference oldTarget, DocumentReference newTarget)
+    private void renameLinks(XWikiDocument document, Map<DocumentReference, DocumentReference> renamedTargets)
         throws XWikiException
     {
         DocumentReference currentDocumentReference = document.getDocumentReference();
@@ -153,30 +164,37 @@ private void renameLinks(XWikiDocument document, DocumentReference oldTarget, Do
         XDOM xdom = document.getXDOM();
         List<Block> blocks = linkedResourceHelper.getBlocks(xdom);
 
-        boolean modified = false;
+        // All the links are renamed before saving so that the document is saved only once.
+        Set<DocumentReference> oldTargets = new LinkedHashSet<>();
         for (Block block : blocks) {
             try {
-                modified |= renameLink(block, currentDocumentReference, oldTarget, newTarget);
+                DocumentReference oldTarget = renameLink(block, currentDocumentReference, renamedTargets);
+                if (oldTarget != null) {
+                    oldTargets.add(oldTarget);
+                }
             } catch (IllegalArgumentException e) {
                 continue;
             }
         }
 
-        if (modified) {
+        if (!oldTargets.isEmpty()) {
             document.setContent(xdom);
             saveDocumentPreservingContentAuthor(document, "Renamed back-links.", false);
-            this.logger.info("The links from [{}] that were targeting [{}] have been updated to target [{}].",
-                document.getDocumentReferenceWithLocale(), oldTarget, newTarget);
+            for (DocumentReference oldTarget : oldTargets) {
+                this.logger.info("The links from [{}] that were targeting [{}] have been updated to target [{}].",
+                    document.getDocumentReferenceWithLocale(), oldTarget, renamedTargets.get(oldTarget));
+            }
         } else {
             this.logger.info("No back-links to update in [{}].", currentDocumentReference);
         }
     }
 
-    private boolean renameLink(Block block, DocumentReference currentDocumentReference, DocumentReference oldTarget,
-        DocumentReference newTarget) throws IllegalArgumentException
+    /**
+     * @return the old target of the link, if it has been renamed, {@code null} otherwise
+     */
+    private DocumentReference renameLink(Block block, DocumentReference currentDocumentReference,
+        Map<DocumentReference, DocumentReference> renamedTargets) throws IllegalArgumentException
     {
-        boolean modified = false;
-
         ResourceReference resourceReference = linkedResourceHelper.getResourceReference(block);
         if (resourceReference == null) {
             // Skip invalid blocks.
@@ -197,6 +215,13 @@ private boolean renameLink(Block block, DocumentReference currentDocumentReferen
         // Resolve the document of the reference.
         DocumentReference linkTargetDocumentReference =
             defaultReferenceDocumentReferenceResolver.resolve(linkEntityReference);
+
+        // If the link targets an old (renamed) document reference, we must update it.
+        DocumentReference newTarget = renamedTargets.get(linkTargetDocumentReference);
+        if (newTarget == null) {
+            return null;
+        }
+
         EntityReference newTargetReference = newTarget;
         ResourceType newResourceType = resourceType;
 
@@ -214,18 +239,14 @@ private boolean renameLink(Block block, DocumentReference currentDocumentReferen
             }
         }
 
-        // If the link targets the old (renamed) document reference, we must update it.
-        if (linkTargetDocumentReference.equals(oldTarget)) {
-            modified = true;
-            String newReferenceString =
-                this.compactEntityReferenceSerializer.serialize(newTargetReference, currentDocumentReference);
+        String newReferenceString =
+            this.compactEntityReferenceSerializer.serialize(newTargetReference, currentDocumentReference);
 
-            // Update the reference in the XDOM.
-            linkedResourceHelper.setResourceReferenceString(block, newReferenceString);
-            linkedResourceHelper.setResourceType(block, newResourceType);
-        }
+        // Update the reference in the XDOM.
+        linkedResourceHelper.setResourceReferenceString(block, newReferenceString);
+        linkedResourceHelper.setResourceType(block, newResourceType);
 
-        return modified;
+        return linkTargetDocumentReference;
     }
 
     @Override
@@ -20,9 +20,13 @@
 package org.xwiki.refactoring.internal;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import javax.inject.Inject;
@@ -42,6 +46,7 @@
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.LocalDocumentReference;
 import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryManager;
 
@@ -52,6 +57,7 @@
 import com.xpn.xwiki.doc.XWikiDeletedDocument;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.internal.parentchild.ParentChildConfiguration;
+import com.xpn.xwiki.internal.store.LinksIndexer;
 
 /**
  * Default implementation of {@link ModelBridge} based on the old XWiki model.
@@ -75,6 +81,16 @@ public class DefaultModelBridge implements ModelBridge
     private static final LocalDocumentReference REDIRECT_CLASS_REFERENCE =
         new LocalDocumentReference(XWiki.SYSTEM_SPACE, "RedirectClass");
 
+    /**
+     * How long to wait for the links of the saved documents to be up to date before looking for back-links.
+     */
+    private static final long LINKS_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * The maximum number of links to look for in a single back-links query.
+     */
+    private static final int MAX_LINKS_PER_QUERY = 500;
+
     @Inject
     private Logger logger;
 
@@ -124,6 +140,9 @@ public class DefaultModelBridge implements ModelBridge
     @Inject
     private Execution execution;
 
+    @Inject
+    private LinksIndexer linksIndexer;
+
     @Override
     public boolean create(DocumentReference documentReference)
     {
@@ -237,6 +256,7 @@ public boolean exists(DocumentReference reference)
     @Override
     public List<DocumentReference> getBackLinkedReferences(DocumentReference documentReference, String wikiId)
     {
+        // The store waits for the links of the saved documents to be up to date.
         XWikiContext xcontext = this.xcontextProvider.get();
         String previousWikiId = xcontext.getWikiId();
         try {
@@ -251,6 +271,54 @@ public List<DocumentReference> getBackLinkedReferences(DocumentReference documen
         }
     }
 
+    @Override
+    public List<DocumentReference> getBackLinkedReferences(Collection<DocumentReference> references, String wikiId)
+    {
+        waitForLinks(references, wikiId);
+
+        try {
+            List<String> links = new ArrayList<>(references.size());
+            for (DocumentReference reference : references) {
+                links.add(this.localEntityReferenceSerializer.serialize(reference));
+            }
+
+            // Use the same query for all the documents so that the documents linking to several of them are found
+            // once. The list of links is split to avoid a too large statement.
+            String statement =
+                "select distinct backlink.fullName from XWikiLink as backlink where backlink.id.link in (:links)";
+            WikiReference wikiReference = new WikiReference(wikiId);
+            Set<DocumentReference> backlinkReferences = new LinkedHashSet<>();
+            for (int i = 0; i < links.size(); i += MAX_LINKS_PER_QUERY) {
+                Query query = this.queryManager.createQuery(statement, Query.HQL);
+                query.setWiki(wikiId);
+                query.bindValue("links", links.subList(i, Math.min(i + MAX_LINKS_PER_QUERY, links.size())));
+                for (Object fullName : query.execute()) {
+                    backlinkReferences
+                        .add(this.explicitDocumentReferenceResolver.resolve((String) fullName, wikiReference));
+                }
+            }
+
+            return new ArrayList<>(backlinkReferences);
+        } catch (Exception e) {
+            this.logger.error("Failed to retrieve the back-links for documents [{}] on wiki [{}].", references, wikiId,
+                e);
+            return Collections.emptyList();
+        }
+    }
+
+    private void waitForLinks(Collection<DocumentReference> references, String wikiId)
+    {
+        // The links of the saved documents (including the ones saved by the refactoring) are updated asynchronously.
+        try {
+            if (!this.linksIndexer.waitForLinks(wikiId, LINKS_TIMEOUT)) {
+                this.logger.warn("The links of some documents are still not up to date. The back-links of [{}] might"
+                    + " be incomplete.", references);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public List<DocumentReference> getDocumentReferences(SpaceReference spaceReference)
     {
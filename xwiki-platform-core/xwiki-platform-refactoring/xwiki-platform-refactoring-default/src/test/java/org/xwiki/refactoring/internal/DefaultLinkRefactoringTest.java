@@ -240,6 +240,52 @@ public void renameLinks() throws Exception
         verifyDocumentSave(document, "Renamed back-links.", false);
     }
 
+    @Test
+    public void renameSeveralLinkTargets() throws Exception
+    {
+        DocumentReference documentReference = new DocumentReference("wiki", "Space", "Page");
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(this.xcontext.getWiki().getDocument(documentReference, this.xcontext)).thenReturn(document);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getSyntax()).thenReturn(Syntax.XWIKI_2_1);
+        this.mocker.registerMockComponent(BlockRenderer.class, Syntax.XWIKI_2_1.toIdString());
+
+        DocumentReference aliceOldTarget = new DocumentReference("wiki", "A", "Alice");
+        DocumentReference aliceNewTarget = new DocumentReference("wiki", "X", "Alice");
+        DocumentReference bobOldTarget = new DocumentReference("wiki", "A", "Bob");
+        DocumentReference bobNewTarget = new DocumentReference("wiki", "X", "Bob");
+        Map<DocumentReference, DocumentReference> renamedLinkTargets = new HashMap<>();
+        renamedLinkTargets.put(aliceOldTarget, aliceNewTarget);
+        renamedLinkTargets.put(bobOldTarget, bobNewTarget);
+
+        XDOM xdom = mock(XDOM.class);
+        when(document.getXDOM()).thenReturn(xdom);
+
+        ResourceReference aliceLinkReference = new ResourceReference("A.Alice", ResourceType.DOCUMENT);
+        LinkBlock aliceLinkBlock = new LinkBlock(Collections.<Block>emptyList(), aliceLinkReference, false);
+        ResourceReference bobLinkReference = new ResourceReference("A.Bob", ResourceType.DOCUMENT);
+        LinkBlock bobLinkBlock = new LinkBlock(Collections.<Block>emptyList(), bobLinkReference, false);
+        when(xdom.getBlocks(any(), eq(Block.Axes.DESCENDANT)))
+            .thenReturn(Arrays.<Block>asList(aliceLinkBlock, bobLinkBlock));
+
+        when(this.resourceReferenceResolver.resolve(aliceLinkReference, null, documentReference))
+            .thenReturn(aliceOldTarget);
+        when(this.defaultReferenceDocumentReferenceResolver.resolve(aliceOldTarget)).thenReturn(aliceOldTarget);
+        when(this.compactEntityReferenceSerializer.serialize(aliceNewTarget, documentReference)).thenReturn("X.Alice");
+
+        when(this.resourceReferenceResolver.resolve(bobLinkReference, null, documentReference))
+            .thenReturn(bobOldTarget);
+        when(this.defaultReferenceDocumentReferenceResolver.resolve(bobOldTarget)).thenReturn(bobOldTarget);
+        when(this.compactEntityReferenceSerializer.serialize(bobNewTarget, documentReference)).thenReturn("X.Bob");
+
+        this.mocker.getComponentUnderTest().renameLinks(documentReference, renamedLinkTargets);
+
+        assertEquals("X.Alice", aliceLinkBlock.getReference().getReference());
+        assertEquals("X.Bob", bobLinkBlock.getReference().getReference());
+        // The document is saved only once.
+        verifyDocumentSave(document, "Renamed back-links.", false);
+    }
+
     @Test
     public void renameNonTerminalDocumentLinks() throws Exception
     {
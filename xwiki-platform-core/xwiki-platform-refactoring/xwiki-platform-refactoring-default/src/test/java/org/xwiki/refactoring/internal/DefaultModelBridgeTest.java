@@ -36,6 +36,7 @@
 import org.xwiki.model.reference.EntityReferenceProvider;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryManager;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
@@ -45,6 +46,7 @@
 import com.xpn.xwiki.doc.XWikiDeletedDocument;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.internal.parentchild.ParentChildConfiguration;
+import com.xpn.xwiki.internal.store.LinksIndexer;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.store.XWikiRecycleBinStoreInterface;
 import com.xpn.xwiki.user.api.XWikiRightService;
@@ -58,6 +60,7 @@
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -350,6 +353,41 @@ public void getBackLinkedReferences() throws Exception
         verify(this.xcontext).setWikiId("carol");
     }
 
+    @Test
+    public void getBackLinkedReferencesForSeveralDocuments() throws Exception
+    {
+        DocumentReference alice = new DocumentReference("foo", "Users", "Alice");
+        DocumentReference bob = new DocumentReference("foo", "Users", "Bob");
+
+        EntityReferenceSerializer<String> localEntityReferenceSerializer =
+            this.mocker.getInstance(EntityReferenceSerializer.TYPE_STRING, "local");
+        when(localEntityReferenceSerializer.serialize(alice)).thenReturn("Users.Alice");
+        when(localEntityReferenceSerializer.serialize(bob)).thenReturn("Users.Bob");
+
+        Query query = mock(Query.class);
+        QueryManager queryManager = this.mocker.getInstance(QueryManager.class);
+        when(queryManager.createQuery(any(), any())).thenReturn(query);
+        when(query.execute()).thenReturn(Arrays.<Object>asList("Some.Page"));
+
+        WikiReference wikiReference = new WikiReference("bar");
+        DocumentReference backLink = new DocumentReference("bar", "Some", "Page");
+        DocumentReferenceResolver<String> explicitDocumentReferenceResolver =
+            this.mocker.getInstance(DocumentReferenceResolver.TYPE_STRING, "explicit");
+        when(explicitDocumentReferenceResolver.resolve("Some.Page", wikiReference)).thenReturn(backLink);
+
+        LinksIndexer linksIndexer = this.mocker.getInstance(LinksIndexer.class);
+        when(linksIndexer.waitForLinks(eq("bar"), anyLong())).thenReturn(true);
+
+        assertEquals(Arrays.asList(backLink),
+            this.mocker.getComponentUnderTest().getBackLinkedReferences(Arrays.asList(alice, bob), "bar"));
+
+        // A single query is used for all the documents.
+        verify(queryManager).createQuery(any(), any());
+        verify(query).setWiki("bar");
+        verify(query).bindValue("links", Arrays.asList("Users.Alice", "Users.Bob"));
+        verify(linksIndexer).waitForLinks(eq("bar"), anyLong());
+    }
+
     @Test
     public void restoreDeletedDocument() throws Exception
     {
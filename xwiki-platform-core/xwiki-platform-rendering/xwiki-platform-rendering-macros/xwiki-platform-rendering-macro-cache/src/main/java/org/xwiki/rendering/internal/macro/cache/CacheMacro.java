@@ -19,9 +19,14 @@
  */
 package org.xwiki.rendering.internal.macro.cache;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -33,6 +38,9 @@
 import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MetaDataBlock;
+import org.xwiki.rendering.block.match.MetadataBlockMatcher;
+import org.xwiki.rendering.listener.MetaData;
 import org.xwiki.rendering.macro.AbstractMacro;
 import org.xwiki.rendering.macro.MacroContentParser;
 import org.xwiki.rendering.macro.MacroExecutionException;
@@ -83,11 +91,39 @@ public class CacheMacro extends AbstractMacro<CacheMacroParameters>
     @Named("plain/1.0")
     private BlockRenderer plainTextBlockRenderer;
 
+    /**
+     * Used to remove the cached content when the documents it has been computed from are modified.
+     */
+    @Inject
+    private CacheMacroDependencies dependencies;
+
     /**
      * Map of all caches. There's one cache per timeToLive/maxEntry combination since currently we cannot set these
      * configuration values at the cache entry level but only for the whole cache.
      */
-    private Map<CacheKey, Cache<List<Block>>> contentCacheMap = new ConcurrentHashMap<>();
+    private Map<CacheKey, Cache<CachedContent>> contentCacheMap = new ConcurrentHashMap<>();
+
+    /**
+     * The content being computed, indexed by cache and key, used to compute only once the same content requested
+     * concurrently.
+     */
+    private final Map<String, ComputingTask> computing = new ConcurrentHashMap<>();
+
+    /**
+     * The computation of a content, which remembers the thread computing it.
+     */
+    private static final class ComputingTask extends FutureTask<CachedContent>
+    {
+        /**
+         * The thread computing the content.
+         */
+        private final Thread owner = Thread.currentThread();
+
+        ComputingTask(Callable<CachedContent> callable)
+        {
+            super(callable);
+        }
+    }
 
     /**
      * Create and initialize the descriptor of the macro.
@@ -122,17 +158,104 @@ public List<Block> execute(CacheMacroParameters parameters, String content, Macr
             cacheKey = content;
         }
 
-        Cache<List<Block>> contentCache = getContentCache(parameters.getTimeToLive(), parameters.getMaxEntries());
-        List<Block> result = contentCache.get(cacheKey);
+        // Expired content is kept in the cache during the stale time to live.
+        Cache<CachedContent> contentCache = getContentCache(
+            parameters.getTimeToLive() + Math.max(parameters.getStaleTimeToLive(), 0), parameters.getMaxEntries());
+        CachedContent result = contentCache.get(cacheKey);
         if (result == null) {
+            result = compute(contentCache, cacheKey, content, context);
+        } else if (result.isExpired(parameters.getTimeToLive()) && result.startRefresh()) {
+            // The content has expired but can still be used: refresh it while the other requests keep using the
+            // expired content.
+            try {
+                result = compute(contentCache, cacheKey, content, context);
+            } catch (MacroExecutionException e) {
+                result.cancelRefresh();
+                throw e;
+            }
+        }
+
+        return result.getBlocks();
+    }
+
+    /**
+     * Compute the content and put it in the cache. If the same content is already being computed by another thread
+     * then we wait for it instead. If it is being computed by the current thread (i.e. a nested cache macro uses the
+     * same key) then it's computed again directly since waiting would never end.
+     *
+     * @param contentCache the cache where to put the content
+     * @param cacheKey the key of the content in the cache
+     * @param content the content to compute
+     * @param context the macro transformation context
+     * @return the computed content
+     * @throws MacroExecutionException if the content cannot be computed
+     */
+    private CachedContent compute(Cache<CachedContent> contentCache, String cacheKey, String content,
+        MacroTransformationContext context) throws MacroExecutionException
+    {
+        Callable<CachedContent> computation = () -> {
             // Run the parser for the syntax on the content
             // We run the current transformation on the cache macro content. We need to do this since we want to cache
             // the XDOM resulting from the execution of Macros because that's where lengthy processing happens.
-            result = this.contentParser.parse(content, context, true, context.isInline()).getChildren();
+            List<Block> blocks = this.contentParser.parse(content, context, true, context.isInline()).getChildren();
+            CachedContent result = new CachedContent(blocks, getDependencies(blocks, context));
             contentCache.set(cacheKey, result);
+            this.dependencies.add(contentCache, cacheKey, result);
+            return result;
+        };
+
+        ComputingTask task = new ComputingTask(computation);
+        String taskKey = System.identityHashCode(contentCache) + ":" + cacheKey;
+        ComputingTask currentTask = this.computing.putIfAbsent(taskKey, task);
+        // A nested cache macro using the same key is computed by the thread which is already computing it.
+        if (currentTask == null || currentTask.owner == Thread.currentThread()) {
+            currentTask = task;
+            try {
+                task.run();
+            } finally {
+                this.computing.remove(taskKey, task);
+            }
+        }
+
+        try {
+            return currentTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MacroExecutionException("Interrupted while waiting for the content to be computed", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MacroExecutionException) {
+                throw (MacroExecutionException) e.getCause();
+            }
+            throw new MacroExecutionException("Failed to compute the content to cache", e.getCause());
+        }
+    }
+
+    /**
+     * @param blocks the result of the execution of the cache macro content
+     * @param context the macro transformation context
+     * @return the serialized references of the documents the content has been computed from: the document holding the
+     *         cache macro and the documents included in the content
+     */
+    private Set<String> getDependencies(List<Block> blocks, MacroTransformationContext context)
+    {
+        Set<String> documents = new HashSet<>();
+
+        MetadataBlockMatcher sourceMatcher = new MetadataBlockMatcher(MetaData.SOURCE);
+        if (context.getCurrentMacroBlock() != null) {
+            MetaDataBlock source = context.getCurrentMacroBlock().getFirstBlock(sourceMatcher, Block.Axes.ANCESTOR);
+            if (source != null) {
+                documents.add((String) source.getMetaData().getMetaData(MetaData.SOURCE));
+            }
+        }
+        for (Block block : blocks) {
+            // The included content is wrapped in a meta data block indicating its source document.
+            List<MetaDataBlock> sources = block.getBlocks(sourceMatcher, Block.Axes.DESCENDANT_OR_SELF);
+            for (MetaDataBlock source : sources) {
+                documents.add((String) source.getMetaData().getMetaData(MetaData.SOURCE));
+            }
         }
 
-        return result;
+        return documents;
     }
 
     /**
@@ -148,11 +271,25 @@ public List<Block> execute(CacheMacroParameters parameters, String content, Macr
      * @return the matching cache (a new cache is created if no existing one is found)
      * @throws MacroExecutionException in case we fail to create the new cache
      */
-    Cache<List<Block>> getContentCache(int lifespan, int maxEntries) throws MacroExecutionException
+    Cache<CachedContent> getContentCache(int lifespan, int maxEntries) throws MacroExecutionException
     {
         CacheKey cacheKey = new CacheKey(lifespan, maxEntries);
-        Cache<List<Block>> contentCache = this.contentCacheMap.get(cacheKey);
+        Cache<CachedContent> contentCache = this.contentCacheMap.get(cacheKey);
+        if (contentCache == null) {
+            contentCache = createContentCache(cacheKey);
+        }
+
+        return contentCache;
+    }
+
+    private synchronized Cache<CachedContent> createContentCache(CacheKey cacheKey) throws MacroExecutionException
+    {
+        // Make sure the same content cache is used by all the threads (to compute the same content only once).
+        Cache<CachedContent> contentCache = this.contentCacheMap.get(cacheKey);
         if (contentCache == null) {
+            int lifespan = cacheKey.getTimeToLive();
+            int maxEntries = cacheKey.getMaxEntries();
+
             // Create Cache
             LRUCacheConfiguration configuration =
                 new LRUCacheConfiguration(String.format("cacheMacro.%s", cacheKey.toString()), maxEntries);
@@ -163,6 +300,7 @@ Cache<List<Block>> getContentCache(int lifespan, int maxEntries) throws MacroExe
             } catch (CacheException e) {
                 throw new MacroExecutionException("Failed to create content cache", e);
             }
+            contentCache.addCacheEntryListener(this.dependencies);
 
             this.contentCacheMap.put(cacheKey, contentCache);
         }
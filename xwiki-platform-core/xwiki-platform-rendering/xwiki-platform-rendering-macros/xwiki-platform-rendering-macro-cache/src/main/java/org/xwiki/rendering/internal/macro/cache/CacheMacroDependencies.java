@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.cache;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.component.annotation.Component;
+
+/**
+ * Keep track of the documents each cached content has been computed from, in order to remove the cached content when
+ * one of these documents is modified.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = CacheMacroDependencies.class)
+@Singleton
+public class CacheMacroDependencies implements CacheEntryListener<CachedContent>
+{
+    /**
+     * The cache entries (cache and key) indexed by the serialized reference of the documents they depend on.
+     */
+    private final Map<String, Set<Pair<Cache<CachedContent>, String>>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Remember the documents the passed cache entry depends on.
+     *
+     * @param cache the cache holding the entry
+     * @param key the key of the cache entry
+     * @param content the cached content
+     */
+    public void add(Cache<CachedContent> cache, String key, CachedContent content)
+    {
+        Pair<Cache<CachedContent>, String> entry = new ImmutablePair<>(cache, key);
+        for (String dependency : content.getDependencies()) {
+            this.entries.compute(dependency, (document, documentEntries) -> {
+                Set<Pair<Cache<CachedContent>, String>> result =
+                    documentEntries != null ? documentEntries : new HashSet<>();
+                result.add(entry);
+                return result;
+            });
+        }
+    }
+
+    /**
+     * Remove from the caches the content that depends on the specified document.
+     *
+     * @param document the serialized reference of the document that has been modified
+     */
+    public void invalidate(String document)
+    {
+        Set<Pair<Cache<CachedContent>, String>> documentEntries = this.entries.remove(document);
+        if (documentEntries != null) {
+            for (Pair<Cache<CachedContent>, String> entry : documentEntries) {
+                entry.getLeft().remove(entry.getRight());
+            }
+        }
+    }
+
+    @Override
+    public void cacheEntryAdded(CacheEntryEvent<CachedContent> event)
+    {
+        // Dependencies are added explicitly since we need the content to be computed first.
+    }
+
+    @Override
+    public void cacheEntryRemoved(CacheEntryEvent<CachedContent> event)
+    {
+        CachedContent content = event.getEntry().getValue();
+        if (content != null) {
+            Pair<Cache<CachedContent>, String> entry =
+                new ImmutablePair<>(event.getCache(), event.getEntry().getKey());
+            for (String dependency : content.getDependencies()) {
+                this.entries.computeIfPresent(dependency, (document, documentEntries) -> {
+                    documentEntries.remove(entry);
+                    return documentEntries.isEmpty() ? null : documentEntries;
+                });
+            }
+        }
+    }
+
+    @Override
+    public void cacheEntryModified(CacheEntryEvent<CachedContent> event)
+    {
+        // Dependencies are added explicitly since we need the content to be computed first.
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.cache;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.xwiki.rendering.block.Block;
+
+/**
+ * The content cached by the cache macro, along with the date when it has been computed and the documents it has been
+ * computed from.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class CachedContent
+{
+    /**
+     * @see #getBlocks()
+     */
+    private final List<Block> blocks;
+
+    /**
+     * @see #getDependencies()
+     */
+    private final Set<String> dependencies;
+
+    /**
+     * The date (in milliseconds) when the content has been computed.
+     */
+    private final long date;
+
+    /**
+     * Used to make sure the content is refreshed by a single thread once expired.
+     */
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    /**
+     * @param blocks see {@link #getBlocks()}
+     * @param dependencies see {@link #getDependencies()}
+     */
+    public CachedContent(List<Block> blocks, Set<String> dependencies)
+    {
+        this.blocks = blocks;
+        this.dependencies = dependencies;
+        this.date = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the result of the execution of the cache macro content
+     */
+    public List<Block> getBlocks()
+    {
+        return this.blocks;
+    }
+
+    /**
+     * @return the serialized references of the documents the content has been computed from
+     */
+    public Set<String> getDependencies()
+    {
+        return this.dependencies;
+    }
+
+    /**
+     * @param timeToLive the number of seconds the content is considered fresh
+     * @return {@code true} if the content has been computed more than the specified number of seconds ago
+     */
+    public boolean isExpired(int timeToLive)
+    {
+        return System.currentTimeMillis() - this.date > timeToLive * 1000L;
+    }
+
+    /**
+     * @return {@code true} if the caller is in charge of refreshing the content, {@code false} if another thread is
+     *         already doing it
+     */
+    public boolean startRefresh()
+    {
+        return this.refreshing.compareAndSet(false, true);
+    }
+
+    /**
+     * Allow another thread to refresh the content (e.g. because the refresh failed).
+     */
+    public void cancelRefresh()
+    {
+        this.refreshing.set(false);
+    }
+}
@@ -44,6 +44,11 @@
      */
     private int maxEntries = 1000;
 
+    /**
+     * @see #getStaleTimeToLive()
+     */
+    private int staleLifespan;
+
     /**
      * @return the optional unique id to use to cache the content. If not defined then use the content itself as the id
      *         but this doesn't guarantee unicity since the same content could be located on several pages with
@@ -97,4 +102,26 @@ public void setMaxEntries(int maxEntries)
     {
         this.maxEntries = maxEntries;
     }
+
+    /**
+     * @return the number of seconds, after the content has expired, during which the expired content is still returned
+     *         while a single request computes it again; {@code 0} (the default) means that the requests wait for the
+     *         content to be computed again
+     * @since 9.11RC1
+     */
+    public int getStaleTimeToLive()
+    {
+        return this.staleLifespan;
+    }
+
+    /**
+     * @param staleLifespan refer to {@link #getStaleTimeToLive()}
+     * @since 9.11RC1
+     */
+    @PropertyDescription("the number of seconds, after the content has expired, during which the expired content is "
+        + "still displayed while it's being computed again")
+    public void setStaleTimeToLive(int staleLifespan)
+    {
+        this.staleLifespan = staleLifespan;
+    }
 }
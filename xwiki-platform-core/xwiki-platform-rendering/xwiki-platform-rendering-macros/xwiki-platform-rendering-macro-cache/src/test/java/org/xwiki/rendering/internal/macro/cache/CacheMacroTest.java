@@ -20,11 +20,18 @@
 package org.xwiki.rendering.internal.macro.cache;
 
 import java.io.StringWriter;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.ObservationManager;
 import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.internal.transformation.macro.MacroTransformation;
+import org.xwiki.rendering.listener.MetaData;
 import org.xwiki.rendering.macro.Macro;
 import org.xwiki.rendering.macro.cache.CacheMacroParameters;
 import org.xwiki.rendering.macro.script.ScriptMockSetup;
@@ -215,6 +222,77 @@ public void executeWithDifferentMaxEntries() throws Exception
         assertFalse(result2.equals(result1));
     }
 
+    @Test
+    public void executeAfterSourceDocumentUpdate() throws Exception
+    {
+        CacheMacroParameters params = new CacheMacroParameters();
+        params.setId("id");
+        MacroTransformationContext context = createMacroTransformationContext();
+
+        // The cache macro is located in the wiki:Space.Page document.
+        MacroBlock macroBlock = new MacroBlock("cache", Collections.<String, String>emptyMap(), false);
+        XDOM xdom = new XDOM(Collections.<Block>singletonList(macroBlock));
+        xdom.getMetaData().addMetaData(MetaData.SOURCE, "wiki:Space.Page");
+        context.setCurrentMacroBlock(macroBlock);
+
+        List<Block> result1 = this.cacheMacro.execute(params, "content1", context);
+        assertEquals(result1, this.cacheMacro.execute(params, "content2", context));
+
+        // Modifying another document doesn't change anything.
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+        observationManager.notify(new DocumentUpdatedEvent(new DocumentReference("wiki", "Space", "Other")), null);
+        assertEquals(result1, this.cacheMacro.execute(params, "content2", context));
+
+        // Modifying the document holding the cache macro invalidates the cached content.
+        observationManager.notify(new DocumentUpdatedEvent(new DocumentReference("wiki", "Space", "Page")), null);
+        List<Block> result2 = this.cacheMacro.execute(params, "content2", context);
+        assertFalse(result2.equals(result1));
+    }
+
+    @Test
+    public void executeWithStaleTimeToLive() throws Exception
+    {
+        CacheMacroParameters params = new CacheMacroParameters();
+        MacroTransformationContext context = createMacroTransformationContext();
+
+        params.setId("id");
+        params.setMaxEntries(10);
+        params.setTimeToLive(0);
+        params.setStaleTimeToLive(100);
+        List<Block> result1 = this.cacheMacro.execute(params, "content1", context);
+
+        // The content has expired but another request is already refreshing it: the expired content is returned.
+        Thread.sleep(10);
+        CachedContent cachedContent = this.cacheMacro.getContentCache(100, 10).get("id");
+        assertTrue(cachedContent.startRefresh());
+        assertEquals(result1, this.cacheMacro.execute(params, "content2", context));
+
+        // The content has expired and nobody is refreshing it: it is computed again.
+        cachedContent.cancelRefresh();
+        List<Block> result2 = this.cacheMacro.execute(params, "content2", context);
+        assertFalse(result2.equals(result1));
+    }
+
+    @Test(timeout = 10000)
+    public void executeWithNestedMacroHavingTheSameId() throws Exception
+    {
+        CacheMacroParameters params = new CacheMacroParameters();
+        params.setId("id");
+        MacroTransformationContext context = createMacroTransformationContext();
+
+        // The nested cache macro uses the same cache and the same key than the one being computed.
+        List<Block> result = this.cacheMacro.execute(params, "{{cache id=\"id\"}}inner{{/cache}}", context);
+
+        String expected = "beginDocument\n"
+            + "beginMacroMarkerStandalone [cache] [id=id] [inner]\n"
+            + "beginParagraph\n"
+            + "onWord [inner]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [cache] [id=id] [inner]\n"
+            + "endDocument";
+        assertBlocks(expected, result, this.rendererFactory);
+    }
+
     private MacroTransformationContext createMacroTransformationContext() throws Exception
     {
         MacroTransformation macroTransformation = getComponentManager().getInstance(Transformation.class, "macro");
@@ -51,4 +51,18 @@ public String getStyle()
     {
         return this.configuration.getProperty(PREFIX + "style", String.class);
     }
+
+    @Override
+    public int getInterpreterPoolSize()
+    {
+        // Each interpreter loads its own copy of Pygments so we don't want too many of them by default.
+        return this.configuration.getProperty(PREFIX + "interpreterPoolSize",
+            Math.min(Runtime.getRuntime().availableProcessors(), 4));
+    }
+
+    @Override
+    public int getCacheSize()
+    {
+        return this.configuration.getProperty(PREFIX + "cacheSize", 1000);
+    }
 }
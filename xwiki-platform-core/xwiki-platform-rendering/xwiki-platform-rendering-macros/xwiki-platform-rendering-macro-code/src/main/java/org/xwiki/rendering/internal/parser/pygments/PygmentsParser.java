@@ -23,20 +23,33 @@
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import javax.script.SimpleScriptContext;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.rendering.block.Block;
@@ -50,6 +63,10 @@
 
 /**
  * Highlight provided source using Pygments.
+ * <p>
+ * Running Pygments in Jython is expensive so the highlighted code is cached (by language, content and style) and the
+ * Python interpreters are created once and then reused, several of them being available to highlight different
+ * snippets at the same time.
  * 
  * @version $Id$
  * @since 1.7RC1
@@ -59,8 +76,24 @@
 // component.
 @Component(roles = {HighlightParser.class })
 @Singleton
-public class PygmentsParser extends AbstractHighlightParser implements Initializable
+public class PygmentsParser extends AbstractHighlightParser implements Initializable, Disposable
 {
+    /**
+     * A Python interpreter with the Pygments script compiled for it.
+     */
+    private static class PygmentsInterpreter
+    {
+        private final ScriptEngine engine;
+
+        private final CompiledScript compiledScript;
+
+        PygmentsInterpreter(ScriptEngine engine, CompiledScript compiledScript)
+        {
+            this.engine = engine;
+            this.compiledScript = compiledScript;
+        }
+    }
+
     /**
      * The name of the style variable in Python code.
      */
@@ -91,6 +124,11 @@ public class PygmentsParser extends AbstractHighlightParser implements Initializ
      */
     private static final String ENGINE_ID = "python";
 
+    /**
+     * The code used to initialize the Pygments interpreters (load the Pygments modules and the most common lexer).
+     */
+    private static final String WARM_UP_CODE = "public class Test {}";
+
     /**
      * The syntax identifier.
      */
@@ -109,20 +147,43 @@ public class PygmentsParser extends AbstractHighlightParser implements Initializ
     @Inject
     private PygmentsParserConfiguration configuration;
 
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private Logger logger;
+
     /**
-     * The JSR223 Script Engine we use to evaluate Python scripts.
+     * Used to create the JSR223 Script Engines we use to evaluate Python scripts.
      */
-    private ScriptEngine engine;
+    private ScriptEngineManager scriptEngineManager;
 
     /**
      * The Python script used to manipulate Pygments.
      */
     private String script;
 
+    /**
+     * The Python interpreters which are not currently used.
+     */
+    private final BlockingQueue<PygmentsInterpreter> interpreters = new LinkedBlockingQueue<>();
+
+    /**
+     * The number of Python interpreters created or being created.
+     */
+    private int interpreterCount;
+
+    /**
+     * The highlighted code, indexed by language, style and content digest.
+     */
+    private Cache<List<Block>> cache;
+
+    private Thread warmUpThread;
+
     @Override
     public void initialize() throws InitializationException
     {
-        ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
+        this.scriptEngineManager = new ScriptEngineManager();
 
         // Get the script
         InputStream is = getClass().getResourceAsStream("/pygments/code.py");
@@ -138,15 +199,114 @@ public void initialize() throws InitializationException
             throw new InitializationException("Failed to find resource /pygments/code.py resource");
         }
 
-        // Get the Python engine
-        this.engine = scriptEngineManager.getEngineByName(ENGINE_ID);
-
-        if (this.engine == null) {
-            throw new InitializationException("Failed to find engine for Python script language");
+        // Create the first Python interpreter
+        reserveInterpreter();
+        try {
+            this.interpreters.add(createInterpreter());
+        } catch (Exception e) {
+            throw new InitializationException("Failed to initialize the Python interpreter", e);
         }
 
         String highlightSyntaxId = getSyntaxId() + "-highlight";
         this.syntax = new Syntax(new SyntaxType(highlightSyntaxId, highlightSyntaxId), "1.0");
+
+        LRUCacheConfiguration cacheConfiguration =
+            new LRUCacheConfiguration("rendering.macro.code.pygments", this.configuration.getCacheSize());
+        try {
+            this.cache = this.cacheManager.createNewLocalCache(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the highlighted code cache", e);
+        }
+
+        // Create the other interpreters in the background so that they are ready when several snippets have to be
+        // highlighted at the same time.
+        this.warmUpThread = new Thread(this::createInterpreters, "Pygments interpreters initialization");
+        this.warmUpThread.setDaemon(true);
+        this.warmUpThread.start();
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.warmUpThread.interrupt();
+
+        this.cache.dispose();
+    }
+
+    private PygmentsInterpreter createInterpreter() throws ScriptException, ParseException
+    {
+        ScriptEngine engine = this.scriptEngineManager.getEngineByName(ENGINE_ID);
+
+        if (engine == null) {
+            throw new ScriptException("Failed to find engine for Python script language");
+        }
+
+        CompiledScript compiledScript = null;
+        if (engine instanceof Compilable) {
+            compiledScript = ((Compilable) engine).compile(this.script);
+        }
+
+        PygmentsInterpreter interpreter = new PygmentsInterpreter(engine, compiledScript);
+
+        // Load Pygments
+        highlight(interpreter, "java", WARM_UP_CODE, this.configuration.getStyle());
+
+        return interpreter;
+    }
+
+    private void createInterpreters()
+    {
+        while (!Thread.currentThread().isInterrupted() && reserveInterpreter()) {
+            try {
+                this.interpreters.add(createInterpreter());
+            } catch (Exception e) {
+                cancelInterpreterReservation();
+
+                this.logger.warn("Failed to initialize a Python interpreter. Root cause: [{}]", e.getMessage());
+
+                break;
+            }
+        }
+    }
+
+    private synchronized boolean reserveInterpreter()
+    {
+        if (this.interpreterCount < this.configuration.getInterpreterPoolSize() || this.interpreterCount == 0) {
+            this.interpreterCount++;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private synchronized void cancelInterpreterReservation()
+    {
+        this.interpreterCount--;
+    }
+
+    /**
+     * @return an available interpreter, waiting for one if all of them are used
+     */
+    private PygmentsInterpreter takeInterpreter() throws ScriptException, ParseException, InterruptedException
+    {
+        PygmentsInterpreter interpreter = this.interpreters.poll();
+
+        if (interpreter == null) {
+            if (reserveInterpreter()) {
+                try {
+                    interpreter = createInterpreter();
+                } catch (ScriptException | ParseException | RuntimeException e) {
+                    cancelInterpreterReservation();
+
+                    throw e;
+                }
+            } else {
+                interpreter = this.interpreters.take();
+            }
+        }
+
+        return interpreter;
     }
 
     @Override
@@ -169,11 +329,41 @@ public List<Block> highlight(String syntaxId, Reader source) throws ParseExcepti
             return Collections.emptyList();
         }
 
+        String style = this.configuration.getStyle();
+        String cacheKey = String.format("%s:%s:%s", syntaxId, style, DigestUtils.sha256Hex(code));
+
+        List<Block> blocks = this.cache.get(cacheKey);
+        if (blocks == null) {
+            blocks = highlight(syntaxId, code, style);
+
+            this.cache.set(cacheKey, blocks);
+        }
+
+        // The returned blocks are going to be modified (at least their parent) so we can't return the cached ones.
+        List<Block> result = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            result.add(block.clone());
+        }
+
+        return result;
+    }
+
+    private List<Block> highlight(String syntaxId, String code, String style) throws ParseException
+    {
         List<Block> blocks;
         try {
-            blocks = highlight(syntaxId, code);
+            PygmentsInterpreter interpreter = takeInterpreter();
+            try {
+                blocks = highlight(interpreter, syntaxId, code, style);
+            } finally {
+                this.interpreters.add(interpreter);
+            }
         } catch (ScriptException e) {
             throw new ParseException("Failed to highlight code", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new ParseException("Interrupted while waiting for a Python interpreter", e);
         }
 
         // TODO: there is a bug in Pygments that makes it always put a newline at the end of the content
@@ -188,13 +378,16 @@ public List<Block> highlight(String syntaxId, Reader source) throws ParseExcepti
     /**
      * Return a highlighted version of the provided content.
      * 
+     * @param interpreter the Python interpreter to use
      * @param syntaxId the identifier of the source syntax.
      * @param code the content to highlight.
+     * @param style the id of the Pygments style to use
      * @return the highlighted version of the provided source.
      * @throws ScriptException when failed to execute the script
      * @throws ParseException when failed to parse the content as plain text
      */
-    private List<Block> highlight(String syntaxId, String code) throws ScriptException, ParseException
+    private List<Block> highlight(PygmentsInterpreter interpreter, String syntaxId, String code, String style)
+        throws ScriptException, ParseException
     {
         BlocksGeneratorPygmentsListener listener = new BlocksGeneratorPygmentsListener(this.plainTextParser);
 
@@ -202,10 +395,14 @@ private List<Block> highlight(String syntaxId, String code) throws ScriptExcepti
 
         scriptContext.setAttribute(PY_LANGUAGE_VARNAME, syntaxId, ScriptContext.ENGINE_SCOPE);
         scriptContext.setAttribute(PY_CODE_VARNAME, code, ScriptContext.ENGINE_SCOPE);
-        scriptContext.setAttribute(PY_STYLE_VARNAME, this.configuration.getStyle(), ScriptContext.ENGINE_SCOPE);
+        scriptContext.setAttribute(PY_STYLE_VARNAME, style, ScriptContext.ENGINE_SCOPE);
         scriptContext.setAttribute(PY_LISTENER_VARNAME, listener, ScriptContext.ENGINE_SCOPE);
 
-        this.engine.eval(this.script, scriptContext);
+        if (interpreter.compiledScript != null) {
+            interpreter.compiledScript.eval(scriptContext);
+        } else {
+            interpreter.engine.eval(this.script, scriptContext);
+        }
 
         List<Block> blocks;
         if (scriptContext.getAttribute(PY_LEXER_VARNAME) != null) {
@@ -38,4 +38,16 @@
      * @return the id of the Pygments style to use.
      */
     String getStyle();
+
+    /**
+     * @return the maximum number of Python interpreters used to highlight code at the same time
+     * @since 9.11RC1
+     */
+    int getInterpreterPoolSize();
+
+    /**
+     * @return the maximum number of highlighted code snippets kept in memory
+     * @since 9.11RC1
+     */
+    int getCacheSize();
 }
@@ -19,14 +19,35 @@
  */
 package org.xwiki.rendering.internal.macro.rss;
 
-import javax.net.ssl.HttpsURLConnection;
+import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
+import java.net.URL;
 import java.net.URLConnection;
 import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.rendering.macro.MacroExecutionException;
 import org.xwiki.rendering.macro.rss.RssMacroParameters;
-import org.apache.commons.lang3.StringUtils;
 
 import com.sun.syndication.feed.synd.SyndFeed;
 import com.sun.syndication.io.SyndFeedInput;
@@ -34,12 +55,63 @@
 
 /**
  * Factory implementation using Rome to return the feed's data.
+ * <p>
+ * The feeds are kept in memory (by URL and encoding) for some time so that the remote server is not requested each
+ * time a page displaying a feed is rendered. A feed is refreshed in the background a bit before it expires, using
+ * conditional requests (ETag and Last-Modified) so that unmodified feeds are not downloaded and parsed again. When the
+ * remote server cannot be reached the expired feed is used.
  *
  * @version $Id$
  * @since 1.9
  */
-public class DefaultRomeFeedFactory implements RomeFeedFactory
+@Component
+@Singleton
+public class DefaultRomeFeedFactory implements RomeFeedFactory, Disposable
 {
+    /**
+     * A feed kept in memory.
+     */
+    private static final class CachedFeed
+    {
+        private final SyndFeed feed;
+
+        private final String etag;
+
+        private final String lastModified;
+
+        private final long date = System.currentTimeMillis();
+
+        private volatile boolean refreshing;
+
+        CachedFeed(SyndFeed feed, String etag, String lastModified)
+        {
+            this.feed = feed;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        long getAge()
+        {
+            return System.currentTimeMillis() - this.date;
+        }
+
+        synchronized boolean startRefresh()
+        {
+            if (this.refreshing) {
+                return false;
+            }
+
+            this.refreshing = true;
+
+            return true;
+        }
+
+        synchronized void cancelRefresh()
+        {
+            this.refreshing = false;
+        }
+    }
+
     /**
      * The maximum number of milliseconds to wait when inquiring the RSS feed provider.
      */
@@ -48,6 +120,46 @@ public class DefaultRomeFeedFactory implements RomeFeedFactory
     private static final String VERSION = DefaultRomeFeedFactory.class.getPackage().getImplementationVersion();
     private static final String USER_AGENT = "XWiki/" + VERSION;
 
+    /**
+     * The configuration property indicating how long (in seconds) a feed is kept in memory before requesting it again.
+     */
+    private static final String CACHE_TIME_PROPERTY = "rendering.macro.rss.cacheTime";
+
+    private static final int DEFAULT_CACHE_TIME = 600;
+
+    /**
+     * The maximum number of feeds kept in memory.
+     */
+    private static final int MAX_FEEDS = 500;
+
+    /**
+     * The maximum number of feeds requested at the same time, so that slow feed servers don't use all the threads.
+     */
+    private static final int MAX_CONCURRENT_REQUESTS = 10;
+
+    @Inject
+    private ConfigurationSource configuration;
+
+    @Inject
+    private Logger logger;
+
+    private final Map<String, CachedFeed> feeds = Collections.synchronizedMap(new LRUMap<>(MAX_FEEDS));
+
+    /**
+     * The feeds being requested, used to request only once a feed needed by several threads at the same time.
+     */
+    private final Map<String, FutureTask<CachedFeed>> requesting = new ConcurrentHashMap<>();
+
+    private final Semaphore requestPermits = new Semaphore(MAX_CONCURRENT_REQUESTS);
+
+    /**
+     * Refresh the feeds which are about to expire. The refresh is skipped when too many feeds are waiting.
+     */
+    private final ExecutorService refreshExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(MAX_FEEDS),
+        new BasicThreadFactory.Builder().namingPattern("RSS feed refresh").daemon(true).build(),
+        new ThreadPoolExecutor.DiscardPolicy());
+
     @Override
     public SyndFeed createFeed(RssMacroParameters parameters) throws MacroExecutionException
     {
@@ -55,35 +167,161 @@ public SyndFeed createFeed(RssMacroParameters parameters) throws MacroExecutionE
             throw new MacroExecutionException("The required 'feed' parameter is missing");
         }
 
+        URL feedURL = parameters.getFeedURL();
+        String encoding = parameters.getEncoding();
+        String key = feedURL + "\u0000" + encoding;
+        long cacheTime = TimeUnit.SECONDS.toMillis(this.configuration.getProperty(CACHE_TIME_PROPERTY,
+            DEFAULT_CACHE_TIME));
+
+        CachedFeed cachedFeed = this.feeds.get(key);
+        if (cachedFeed == null) {
+            cachedFeed = request(key, feedURL, encoding, null);
+        } else if (cachedFeed.getAge() >= cacheTime) {
+            try {
+                cachedFeed = request(key, feedURL, encoding, cachedFeed);
+            } catch (MacroExecutionException e) {
+                this.logger.warn("Failed to refresh the feed [{}], using the one retrieved [{}] seconds ago. "
+                    + "Root cause: [{}]", feedURL, TimeUnit.MILLISECONDS.toSeconds(cachedFeed.getAge()),
+                    e.getMessage());
+
+                // Don't try again before the cache time so that rendering is not slowed down by an unavailable server.
+                cachedFeed = new CachedFeed(cachedFeed.feed, cachedFeed.etag, cachedFeed.lastModified);
+                this.feeds.put(key, cachedFeed);
+            }
+        } else if (cachedFeed.getAge() >= cacheTime * 3 / 4 && cachedFeed.startRefresh()) {
+            // Refresh the feed before it expires so that it doesn't have to be requested while rendering.
+            refreshInBackground(key, feedURL, encoding, cachedFeed);
+        }
+
+        return cachedFeed.feed;
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.refreshExecutor.shutdownNow();
+    }
+
+    private void refreshInBackground(String key, URL feedURL, String encoding, CachedFeed cachedFeed)
+    {
+        this.refreshExecutor.execute(() -> {
+            try {
+                request(key, feedURL, encoding, cachedFeed);
+            } catch (MacroExecutionException e) {
+                cachedFeed.cancelRefresh();
+
+                this.logger.debug("Failed to refresh the feed [{}] in the background.", feedURL, e);
+            }
+        });
+    }
+
+    /**
+     * Request the feed and put it in the cache. If the same feed is already being requested by another thread then we
+     * wait for it instead.
+     */
+    private CachedFeed request(String key, URL feedURL, String encoding, CachedFeed cachedFeed)
+        throws MacroExecutionException
+    {
+        FutureTask<CachedFeed> task = new FutureTask<>(() -> {
+            CachedFeed result = request(feedURL, encoding, cachedFeed);
+            this.feeds.put(key, result);
+            return result;
+        });
+
+        FutureTask<CachedFeed> currentTask = this.requesting.putIfAbsent(key, task);
+        if (currentTask == null) {
+            currentTask = task;
+            try {
+                task.run();
+            } finally {
+                this.requesting.remove(key, task);
+            }
+        }
+
+        try {
+            return currentTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MacroExecutionException(
+                MessageFormat.format("Interrupted while waiting for the feed [{0}]", feedURL), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MacroExecutionException) {
+                throw (MacroExecutionException) e.getCause();
+            }
+            throw new MacroExecutionException(
+                MessageFormat.format("Error processing [{0}] : {1}", feedURL, e.getCause().getMessage()),
+                e.getCause());
+        }
+    }
+
+    private CachedFeed request(URL feedURL, String encoding, CachedFeed cachedFeed) throws MacroExecutionException
+    {
+        try {
+            if (!this.requestPermits.tryAcquire(TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                throw new MacroExecutionException(
+                    MessageFormat.format("Too many feeds are being requested to reach [{0}]", feedURL));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MacroExecutionException(
+                MessageFormat.format("Interrupted while waiting to reach [{0}]", feedURL), e);
+        }
+
+        try {
+            return requestFeed(feedURL, encoding, cachedFeed);
+        } finally {
+            this.requestPermits.release();
+        }
+    }
+
+    private CachedFeed requestFeed(URL feedURL, String encoding, CachedFeed cachedFeed)
+        throws MacroExecutionException
+    {
         SyndFeedInput syndFeedInput = new SyndFeedInput();
 
-        SyndFeed feed;
+        CachedFeed result;
         try {
-            if (StringUtils.startsWith(parameters.getFeed().toLowerCase(), "https")) {
-                HttpsURLConnection httpsURLConnection = (HttpsURLConnection) parameters.getFeedURL().openConnection();
-                httpsURLConnection.setConnectTimeout(TIMEOUT_MILLISECONDS);
-                httpsURLConnection.setRequestProperty(USER_AGENT_HEADER, USER_AGENT);
-                feed = syndFeedInput.build(new XmlReader(httpsURLConnection.getInputStream(), true,
-                    parameters.getEncoding()));
-            } else {
-                URLConnection httpURLConnection = parameters.getFeedURL().openConnection();
-                httpURLConnection.setConnectTimeout(TIMEOUT_MILLISECONDS);
-                httpURLConnection.setRequestProperty(USER_AGENT_HEADER, USER_AGENT);
-                feed = syndFeedInput.build(new XmlReader(httpURLConnection.getInputStream(), true,
-                    parameters.getEncoding()));
+            URLConnection connection = feedURL.openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLISECONDS);
+            connection.setReadTimeout(TIMEOUT_MILLISECONDS);
+            connection.setRequestProperty(USER_AGENT_HEADER, USER_AGENT);
+
+            if (connection instanceof HttpURLConnection && cachedFeed != null) {
+                // Ask the server to send the feed only if it has been modified.
+                if (cachedFeed.etag != null) {
+                    connection.setRequestProperty("If-None-Match", cachedFeed.etag);
+                }
+                if (cachedFeed.lastModified != null) {
+                    connection.setRequestProperty("If-Modified-Since", cachedFeed.lastModified);
+                }
+
+                if (((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    ((HttpURLConnection) connection).disconnect();
+
+                    return new CachedFeed(cachedFeed.feed, cachedFeed.etag, cachedFeed.lastModified);
+                }
             }
+
+            SyndFeed feed;
+            try (XmlReader reader = new XmlReader(connection.getInputStream(), true, encoding)) {
+                feed = syndFeedInput.build(reader);
+            }
+            if (feed == null) {
+                throw new MacroExecutionException(MessageFormat.format("No feed found at [{0}]", feedURL));
+            }
+
+            result = new CachedFeed(feed, connection.getHeaderField("ETag"),
+                connection.getHeaderField("Last-Modified"));
         } catch (SocketTimeoutException ex) {
             throw new MacroExecutionException(MessageFormat.format("Connection timeout when trying to reach [{0}]",
-                parameters.getFeedURL()));
+                feedURL));
+        } catch (MacroExecutionException ex) {
+            throw ex;
         } catch (Exception ex) {
             throw new MacroExecutionException(MessageFormat.format("Error processing [{0}] : {1}",
-                parameters.getFeedURL(), ex.getMessage()), ex);
-        }
-        if (feed == null) {
-            throw new MacroExecutionException(MessageFormat.format("No feed found at [{0}]",
-                parameters.getFeedURL()));
+                feedURL, ex.getMessage()), ex);
         }
 
-        return feed;
+        return result;
     }
 }
@@ -19,6 +19,7 @@
  */
 package org.xwiki.rendering.internal.macro.rss;
 
+import org.xwiki.component.annotation.Role;
 import org.xwiki.rendering.macro.rss.RssMacroParameters;
 import org.xwiki.rendering.macro.MacroExecutionException;
 import com.sun.syndication.feed.synd.SyndFeed;
@@ -29,6 +30,7 @@
  * @version $Id$
  * @since 2.0M2
  */
+@Role
 public interface RomeFeedFactory
 {
     /**
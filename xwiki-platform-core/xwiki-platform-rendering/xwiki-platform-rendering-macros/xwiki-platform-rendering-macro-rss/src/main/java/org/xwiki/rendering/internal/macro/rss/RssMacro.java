@@ -103,7 +103,8 @@ public class RssMacro extends AbstractMacro<RssMacroParameters>
     /**
      * Create a Feed object from a feed specified as a URL.
      */
-    private RomeFeedFactory romeFeedFactory = new DefaultRomeFeedFactory();
+    @Inject
+    private RomeFeedFactory romeFeedFactory;
 
     /**
      * Create and initialize the descriptor of the macro.
@@ -124,6 +125,10 @@ public boolean supportsInlineMode()
     public List<Block> execute(RssMacroParameters parameters, String content, MacroTransformationContext context)
         throws MacroExecutionException
     {
+        if (StringUtils.isEmpty(parameters.getFeed())) {
+            throw new MacroExecutionException("The required 'feed' parameter is missing");
+        }
+
         List<Block> result;
         SyndFeed feed = this.romeFeedFactory.createFeed(parameters);
 
@@ -0,0 +1,139 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.rss;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.rendering.macro.MacroExecutionException;
+import org.xwiki.rendering.macro.rss.RssMacroParameters;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.sun.syndication.feed.synd.SyndFeed;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultRomeFeedFactory}, using a local HTTP server to serve the feeds.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class DefaultRomeFeedFactoryTest
+{
+    private static final String FEED_PATH = "/feed.xml";
+
+    private static final String FEED = "<?xml version=\"1.0\"?><rss version=\"2.0\"><channel><title>Feed</title>"
+        + "<link>http://www.xwiki.org</link><description>Description</description><item><title>Item</title>"
+        + "<link>http://www.xwiki.org/item</link></item></channel></rss>";
+
+    private static final String ETAG = "\"v1\"";
+
+    private static final String LAST_MODIFIED = "Mon, 16 Oct 2017 10:00:00 GMT";
+
+    @Rule
+    public WireMockRule feedServer = new WireMockRule(8891);
+
+    @Rule
+    public MockitoComponentMockingRule<RomeFeedFactory> mocker =
+        new MockitoComponentMockingRule<RomeFeedFactory>(DefaultRomeFeedFactory.class);
+
+    private RssMacroParameters parameters = new RssMacroParameters();
+
+    private ConfigurationSource configuration;
+
+    @Before
+    public void configure() throws Exception
+    {
+        this.configuration = this.mocker.getInstance(ConfigurationSource.class);
+        when(this.configuration.getProperty("rendering.macro.rss.cacheTime", 600)).thenReturn(600);
+
+        this.parameters.setFeed("http://localhost:8891" + FEED_PATH);
+
+        stubFor(get(urlEqualTo(FEED_PATH)).willReturn(aResponse().withStatus(200).withHeader("ETag", ETAG)
+            .withHeader("Last-Modified", LAST_MODIFIED).withBody(FEED)));
+    }
+
+    @Test
+    public void createFeedIsCached() throws Exception
+    {
+        SyndFeed feed = this.mocker.getComponentUnderTest().createFeed(this.parameters);
+        assertEquals("Feed", feed.getTitle());
+
+        assertSame(feed, this.mocker.getComponentUnderTest().createFeed(this.parameters));
+
+        verify(1, getRequestedFor(urlEqualTo(FEED_PATH)));
+    }
+
+    @Test
+    public void createFeedRevalidatesExpiredFeed() throws Exception
+    {
+        when(this.configuration.getProperty("rendering.macro.rss.cacheTime", 600)).thenReturn(0);
+
+        SyndFeed feed = this.mocker.getComponentUnderTest().createFeed(this.parameters);
+
+        stubFor(get(urlEqualTo(FEED_PATH)).withHeader("If-None-Match", equalTo(ETAG))
+            .willReturn(aResponse().withStatus(304)));
+
+        assertSame(feed, this.mocker.getComponentUnderTest().createFeed(this.parameters));
+
+        verify(2, getRequestedFor(urlEqualTo(FEED_PATH)));
+        verify(1, getRequestedFor(urlEqualTo(FEED_PATH)).withHeader("If-None-Match", equalTo(ETAG))
+            .withHeader("If-Modified-Since", equalTo(LAST_MODIFIED)));
+    }
+
+    @Test
+    public void createFeedUsesExpiredFeedWhenServerFails() throws Exception
+    {
+        when(this.configuration.getProperty("rendering.macro.rss.cacheTime", 600)).thenReturn(0);
+
+        SyndFeed feed = this.mocker.getComponentUnderTest().createFeed(this.parameters);
+
+        stubFor(get(urlEqualTo(FEED_PATH)).willReturn(aResponse().withStatus(500)));
+
+        assertSame(feed, this.mocker.getComponentUnderTest().createFeed(this.parameters));
+    }
+
+    @Test
+    public void createFeedWhenServerFails() throws Exception
+    {
+        stubFor(get(urlEqualTo(FEED_PATH)).willReturn(aResponse().withStatus(500)));
+
+        try {
+            this.mocker.getComponentUnderTest().createFeed(this.parameters);
+            fail("Should have thrown an exception");
+        } catch (MacroExecutionException expected) {
+            assertEquals("Error processing [http://localhost:8891/feed.xml] : Server returned HTTP response code: "
+                + "500 for URL: http://localhost:8891/feed.xml", expected.getMessage());
+        }
+    }
+}
@@ -29,7 +29,6 @@
 
 import org.xwiki.rest.XWikiRestException;
 import org.xwiki.rest.model.jaxb.Object;
-import org.xwiki.rest.model.jaxb.Objects;
 
 /**
  * @version $Id$
@@ -37,7 +36,7 @@
 @Path("/wikis/{wikiName}/spaces/{spaceName: .+}/pages/{pageName}/objects")
 public interface ObjectsResource
 {
-    @GET Objects getObjects(
+    @GET Response getObjects(
             @PathParam("wikiName") String wikiName,
             @PathParam("spaceName") String spaceName,
             @PathParam("pageName") String pageName,
@@ -37,7 +37,7 @@
 @Path("/wikis/{wikiName}/spaces/{spaceName: .+}/pages/{pageName}")
 public interface PageResource
 {
-    @GET Page getPage(
+    @GET Response getPage(
             @PathParam("wikiName") String wikiName,
             @PathParam("spaceName") String spaceName,
             @PathParam("pageName") String pageName,
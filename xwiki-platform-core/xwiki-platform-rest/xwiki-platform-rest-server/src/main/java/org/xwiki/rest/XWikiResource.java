@@ -20,8 +20,11 @@
 package org.xwiki.rest;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.TreeMap;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -31,9 +34,16 @@
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.Variant;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
@@ -50,6 +60,7 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.api.Document;
+import com.xpn.xwiki.doc.XWikiDocument;
 
 /**
  * Base class for all XWiki-related JAX-RS resources. This class provides to subclasses a set of protected fields to
@@ -60,6 +71,13 @@
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 public class XWikiResource implements XWikiRestComponent, Initializable
 {
+    /**
+     * The media types the representations can be serialized to, in order of preference.
+     */
+    private static final List<Variant> REPRESENTATION_VARIANTS =
+        Arrays.asList(new Variant(MediaType.APPLICATION_XML_TYPE, (Locale) null, null),
+            new Variant(MediaType.APPLICATION_JSON_TYPE, (Locale) null, null));
+
     /**
      * The actual URI information about the JAX-RS resource being called. This variable is useful when generating links
      * to other resources in representations.
@@ -67,6 +85,22 @@ public class XWikiResource implements XWikiRestComponent, Initializable
     @Context
     protected UriInfo uriInfo;
 
+    /**
+     * The current request, used to evaluate the conditional headers (If-None-Match, If-Modified-Since, If-Match).
+     *
+     * @since 9.11RC1
+     */
+    @Context
+    protected Request request;
+
+    /**
+     * The headers of the current request, used to evaluate the If-Match header.
+     *
+     * @since 9.11RC1
+     */
+    @Context
+    protected HttpHeaders headers;
+
     /**
      * The logger to be used to output log messages.
      * 
@@ -283,6 +317,164 @@ public DocumentInfo getDocumentInfo(String wikiName, List<String> spaces, String
         return new DocumentInfo(doc, doc.isNew());
     }
 
+    /**
+     * Compute a strong entity tag for a representation of the passed document. The tag changes whenever the document
+     * is saved (its version changes), and is different for each locale, negotiated media type and set of options used
+     * to build the representation.
+     *
+     * @param doc the document the representation is built from
+     * @param options the parameters that have an impact on the representation (e.g. prettyNames, objects, etc.)
+     * @return the entity tag of the representation
+     * @since 9.11RC1
+     */
+    protected EntityTag getEntityTag(Document doc, Object... options)
+    {
+        StringBuilder variant = new StringBuilder();
+        variant.append(doc.getRealLocale());
+        for (Object option : options) {
+            variant.append('/').append(option);
+        }
+
+        // The same resource can be serialized in various formats (XML, JSON) so the format actually selected for the
+        // response (and not just the first acceptable media type, which can be a wildcard or an unsupported type) has
+        // to be part of a strong tag.
+        if (this.request != null) {
+            Variant selectedVariant = this.request.selectVariant(REPRESENTATION_VARIANTS);
+            if (selectedVariant != null) {
+                variant.append('/').append(selectedVariant.getMediaType());
+            }
+        }
+
+        return new EntityTag(doc.getVersion() + '-' + Integer.toHexString(variant.toString().hashCode()));
+    }
+
+    /**
+     * The classes of the objects of a document are defined in other documents so their modifications don't change
+     * the version of the document. This method returns their versions, to be passed as an option to
+     * {@link #getEntityTag(Document, Object...)} when the representation includes the class definitions.
+     *
+     * @param doc a document
+     * @return the versions of the classes of the objects of the passed document
+     * @throws XWikiException when failing to load the classes
+     * @since 9.11RC1
+     */
+    protected String getXClassVersions(Document doc) throws XWikiException
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+        XWikiDocument xwikiDocument = xcontext.getWiki().getDocument(doc.getDocumentReference(), xcontext);
+
+        TreeMap<String, String> versions = new TreeMap<>();
+        for (DocumentReference classReference : xwikiDocument.getXObjects().keySet()) {
+            versions.put(classReference.toString(),
+                xcontext.getWiki().getDocument(classReference, xcontext).getVersion());
+        }
+
+        return versions.toString();
+    }
+
+    /**
+     * Compute a strong entity tag for the content of the passed attachment. The tag changes whenever a new version of
+     * the attachment is uploaded.
+     *
+     * @param attachment the attachment
+     * @return the entity tag of the attachment content
+     * @since 9.11RC1
+     */
+    protected EntityTag getEntityTag(com.xpn.xwiki.api.Attachment attachment)
+    {
+        // The content of an attachment does not depend on the requested media type
+        return new EntityTag(attachment.getVersion() + '-' + attachment.getLongSize());
+    }
+
+    /**
+     * Evaluate the conditional headers (If-None-Match, If-Modified-Since) of the current request against the current
+     * state of the resource. When the client already has the current representation a 304 (Not Modified) response is
+     * thrown so that the caller does not have to compute the representation.
+     *
+     * @param entityTag the current entity tag of the resource
+     * @param lastModified the date of the last modification of the resource, {@code null} if unknown
+     * @throws WebApplicationException when the preconditions are not met
+     * @since 9.11RC1
+     */
+    protected void evaluatePreconditions(EntityTag entityTag, Date lastModified)
+    {
+        if (this.request == null) {
+            return;
+        }
+
+        ResponseBuilder builder;
+        if (lastModified != null) {
+            builder = this.request.evaluatePreconditions(lastModified, entityTag);
+        } else {
+            builder = this.request.evaluatePreconditions(entityTag);
+        }
+
+        if (builder != null) {
+            throw new WebApplicationException(builder.tag(entityTag).build());
+        }
+    }
+
+    /**
+     * Evaluate the If-Match header of the current request against the passed document to implement optimistic
+     * concurrency on updates. Since the entity tags returned by {@link #getEntityTag(Document, Object...)} are prefixed
+     * with the document version, any tag obtained from a representation of the current version of the document is
+     * accepted, whatever the options and media type used to retrieve it.
+     *
+     * @param doc the document about to be modified (possibly new)
+     * @throws WebApplicationException PRECONDITION_FAILED if the document changed since the client retrieved it
+     * @since 9.11RC1
+     */
+    protected void evaluateIfMatch(Document doc)
+    {
+        evaluateIfMatch(doc.isNew() ? null : doc.getVersion());
+    }
+
+    /**
+     * Evaluate the If-Match header of the current request against the passed attachment to implement optimistic
+     * concurrency on updates.
+     *
+     * @param attachment the attachment about to be modified, {@code null} if it does not exist yet
+     * @throws WebApplicationException PRECONDITION_FAILED if the attachment changed since the client retrieved it
+     * @since 9.11RC1
+     */
+    protected void evaluateIfMatch(com.xpn.xwiki.api.Attachment attachment)
+    {
+        evaluateIfMatch(attachment != null ? attachment.getVersion() : null);
+    }
+
+    private void evaluateIfMatch(String currentVersion)
+    {
+        List<String> values = this.headers != null ? this.headers.getRequestHeader(HttpHeaders.IF_MATCH) : null;
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+
+        // A resource which does not exist never matches
+        if (currentVersion != null) {
+            for (String value : values) {
+                for (String tag : value.split(",")) {
+                    if (matchVersion(StringUtils.trim(tag), currentVersion)) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        throw new WebApplicationException(Status.PRECONDITION_FAILED);
+    }
+
+    private boolean matchVersion(String tag, String version)
+    {
+        if ("*".equals(tag)) {
+            return true;
+        }
+
+        // Weak tags are not allowed in If-Match
+        String value = StringUtils.removeEnd(StringUtils.removeStart(tag, "\""), "\"");
+
+        return value.equals(version) || value.startsWith(version + '-');
+    }
+
     /**
      * A special GET method that produces the ad-hoc "uritemplate" media type used for retrieving the URI template
      * associated to a resource. This is an auxiliary method that is used for documenting the REST API.
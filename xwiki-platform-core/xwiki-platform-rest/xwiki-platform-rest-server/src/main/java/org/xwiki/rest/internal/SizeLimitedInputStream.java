@@ -0,0 +1,68 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal;
+
+import java.io.InputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.io.input.CountingInputStream;
+
+/**
+ * Fail as soon as more than the allowed number of bytes have been read, so that an oversized upload is rejected while
+ * streaming instead of after having been fully stored.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class SizeLimitedInputStream extends CountingInputStream
+{
+    /**
+     * The status of the response sent when the limit is exceeded.
+     */
+    public static final int REQUEST_ENTITY_TOO_LARGE = 413;
+
+    private final long maxSize;
+
+    /**
+     * @param in the stream to read from
+     * @param maxSize the maximum number of bytes that can be read, a negative value means no limit
+     */
+    public SizeLimitedInputStream(InputStream in, long maxSize)
+    {
+        super(in);
+
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    protected synchronized void afterRead(int n)
+    {
+        super.afterRead(n);
+
+        if (this.maxSize >= 0 && getByteCount() > this.maxSize) {
+            throw new WebApplicationException(Response.status(REQUEST_ENTITY_TOO_LARGE)
+                .entity(String.format("The attachment exceeds the maximum upload size (%d bytes).", this.maxSize))
+                .type(MediaType.TEXT_PLAIN).build());
+        }
+    }
+}
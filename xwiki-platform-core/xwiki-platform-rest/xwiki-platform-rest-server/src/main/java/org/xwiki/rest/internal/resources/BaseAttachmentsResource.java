@@ -21,6 +21,7 @@
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.util.Calendar;
@@ -31,6 +32,8 @@
 import java.util.Map;
 import java.util.Set;
 
+import javax.ws.rs.WebApplicationException;
+
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
 import org.xwiki.rest.Relations;
@@ -38,6 +41,7 @@
 import org.xwiki.rest.XWikiRestException;
 import org.xwiki.rest.internal.DomainObjectFactory;
 import org.xwiki.rest.internal.RangeIterable;
+import org.xwiki.rest.internal.SizeLimitedInputStream;
 import org.xwiki.rest.internal.Utils;
 import org.xwiki.rest.model.jaxb.Attachment;
 import org.xwiki.rest.model.jaxb.Attachments;
@@ -50,12 +54,19 @@
 import com.xpn.xwiki.api.Document;
 import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.plugin.fileupload.FileUploadPlugin;
 
 /**
  * @version $Id$
  */
 public class BaseAttachmentsResource extends XWikiResource
 {
+    /**
+     * The default maximum size for uploaded attachments (same as {@link FileUploadPlugin}). This limit can be changed
+     * using the {@code upload_maxsize} XWiki preference.
+     */
+    private static final long UPLOAD_DEFAULT_MAXSIZE = 33554432L;
+
     /**
      * Helper class that contains newly created attachment information to be returned to the client. It contains the
      * JAXB attachment object and a boolean variable that states if the attachment existed before. This class is used by
@@ -278,6 +289,26 @@ protected Attachments getAttachmentsForDocument(Document doc, int start, int num
     }
 
     protected AttachmentInfo storeAttachment(Document doc, String attachmentName, byte[] content) throws XWikiException
+    {
+        return storeAttachment(doc, attachmentName,
+            new ByteArrayInputStream(content != null ? content : new byte[0]));
+    }
+
+    /**
+     * Store the passed content as an attachment of the passed document. The content is streamed to the attachment
+     * store (which spools big contents to a temporary file) instead of being fully loaded in memory, and the upload
+     * size limit ({@value FileUploadPlugin#UPLOAD_MAXSIZE_PARAMETER} preference) is checked while reading it.
+     *
+     * @param doc the document to attach the content to
+     * @param attachmentName the name of the attachment
+     * @param content the content of the attachment, {@code null} for an empty attachment
+     * @return information about the stored attachment
+     * @throws XWikiException when failing to store the attachment
+     * @throws WebApplicationException REQUEST_ENTITY_TOO_LARGE (413) if the content exceeds the upload size limit
+     * @since 9.11RC1
+     */
+    protected AttachmentInfo storeAttachment(Document doc, String attachmentName, InputStream content)
+        throws XWikiException
     {
         XWikiContext xcontext = Utils.getXWikiContext(componentManager);
 
@@ -286,10 +317,14 @@ protected AttachmentInfo storeAttachment(Document doc, String attachmentName, by
 
         boolean alreadyExisting = xwikiDocument.getAttachment(attachmentName) != null;
 
+        long maxSize = xcontext.getWiki().getSpacePreferenceAsLong(FileUploadPlugin.UPLOAD_MAXSIZE_PARAMETER,
+            UPLOAD_DEFAULT_MAXSIZE, xcontext);
+
         XWikiAttachment xwikiAttachment;
         try {
             xwikiAttachment = xwikiDocument.setAttachment(attachmentName,
-                new ByteArrayInputStream(content != null ? content : new byte[0]), xcontext);
+                new SizeLimitedInputStream(content != null ? content : new ByteArrayInputStream(new byte[0]), maxSize),
+                xcontext);
         } catch (IOException e) {
             throw new XWikiException(XWikiException.MODULE_XWIKI_STORE, XWikiException.ERROR_XWIKI_STORE_MISC,
                 String.format("Failed to store the content of attachment [%s] in document [%s].", attachmentName,
@@ -19,8 +19,11 @@
  */
 package org.xwiki.rest.internal.resources.attachments;
 
+import java.io.InputStream;
+
 import javax.inject.Named;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
@@ -55,7 +58,12 @@ public Response getAttachment(String wikiName, String spaceName, String pageName
                 throw new WebApplicationException(Status.NOT_FOUND);
             }
 
-            return Response.ok().type(xwikiAttachment.getMimeType()).entity(xwikiAttachment.getContent()).build();
+            // Answer conditional requests before loading the attachment content
+            EntityTag entityTag = getEntityTag(xwikiAttachment);
+            evaluatePreconditions(entityTag, xwikiAttachment.getDate());
+
+            return Response.ok().type(xwikiAttachment.getMimeType()).entity(xwikiAttachment.getContent())
+                .tag(entityTag).lastModified(xwikiAttachment.getDate()).build();
         } catch (XWikiException e) {
             throw new XWikiRestException(e);
         }
@@ -63,7 +71,7 @@ public Response getAttachment(String wikiName, String spaceName, String pageName
 
     @Override
     public Response putAttachment(String wikiName, String spaceName, String pageName, String attachmentName,
-        byte[] content) throws XWikiRestException
+        InputStream content) throws XWikiRestException
     {
         try {
             DocumentInfo documentInfo = getDocumentInfo(wikiName, spaceName, pageName, null, null, true, true);
@@ -74,6 +82,8 @@ public Response putAttachment(String wikiName, String spaceName, String pageName
                 throw new WebApplicationException(Status.UNAUTHORIZED);
             }
 
+            evaluateIfMatch(doc.getAttachment(attachmentName));
+
             /* Attach the file */
             AttachmentInfo attachmentInfo = storeAttachment(doc, attachmentName, content);
 
@@ -19,7 +19,6 @@
  */
 package org.xwiki.rest.internal.resources.attachments;
 
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.List;
@@ -134,24 +133,8 @@ public Response addAttachment(String wikiName, String spaceName, String pageName
                 throw new WebApplicationException(Status.BAD_REQUEST);
             }
 
-            byte[] buffer = new byte[4096];
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            while (true) {
-                int read = inputStream.read(buffer);
-                if (read != 4096) {
-                    if (read != -1) {
-                        baos.write(buffer, 0, read);
-                    }
-
-                    break;
-                } else {
-                    baos.write(buffer);
-                }
-            }
-            baos.flush();
-
             /* Attach the file */
-            AttachmentInfo attachmentInfo = storeAttachment(doc, attachmentName, baos.toByteArray());
+            AttachmentInfo attachmentInfo = storeAttachment(doc, attachmentName, inputStream);
 
             if (attachmentInfo.isAlreadyExisting()) {
                 return Response.status(Status.ACCEPTED).entity(attachmentInfo.getAttachment()).build();
@@ -159,6 +142,8 @@ public Response addAttachment(String wikiName, String spaceName, String pageName
                 return Response.created(Utils.createURI(uriInfo.getBaseUri(), AttachmentResource.class, wikiName,
                     spaces, pageName, attachmentName)).entity(attachmentInfo.getAttachment()).build();
             }
+        } catch (WebApplicationException e) {
+            throw e;
         } catch (Exception e) {
             throw new XWikiRestException(e);
         }
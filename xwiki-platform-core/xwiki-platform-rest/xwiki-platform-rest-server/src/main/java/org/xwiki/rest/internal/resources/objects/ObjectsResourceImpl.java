@@ -23,6 +23,7 @@
 
 import javax.inject.Named;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
@@ -51,7 +52,7 @@
 public class ObjectsResourceImpl extends BaseObjectsResource implements ObjectsResource
 {
     @Override
-    public Objects getObjects(String wikiName, String spaceName, String pageName, Integer start, Integer number,
+    public Response getObjects(String wikiName, String spaceName, String pageName, Integer start, Integer number,
         Boolean withPrettyNames) throws XWikiRestException
     {
         try {
@@ -59,6 +60,10 @@ public Objects getObjects(String wikiName, String spaceName, String pageName, In
 
             Document doc = documentInfo.getDocument();
 
+            // Answer conditional requests before converting the objects
+            EntityTag entityTag = getEntityTag(doc, start, number, withPrettyNames);
+            evaluatePreconditions(entityTag, doc.getDate());
+
             Objects objects = objectFactory.createObjects();
 
             List<BaseObject> objectList = getBaseObjects(doc);
@@ -75,7 +80,7 @@ public Objects getObjects(String wikiName, String spaceName, String pageName, In
                 }
             }
 
-            return objects;
+            return Response.ok(objects).tag(entityTag).lastModified(doc.getDate()).build();
         } catch (XWikiException e) {
             throw new XWikiRestException(e);
         }
@@ -22,6 +22,7 @@
 import java.net.URI;
 
 import javax.inject.Named;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Response;
 
 import org.xwiki.component.annotation.Component;
@@ -40,7 +41,7 @@
 public class PageResourceImpl extends ModifiablePageResource implements PageResource
 {
     @Override
-    public Page getPage(String wikiName, String spaceName, String pageName, Boolean withPrettyNames,
+    public Response getPage(String wikiName, String spaceName, String pageName, Boolean withPrettyNames,
         Boolean withObjects, Boolean withXClass, Boolean withAttachments) throws XWikiRestException
     {
         try {
@@ -48,13 +49,19 @@ public Page getPage(String wikiName, String spaceName, String pageName, Boolean
 
             Document doc = documentInfo.getDocument();
 
+            // Answer conditional requests before converting the document. The definition of the classes used by
+            // the objects is part of the representation.
+            EntityTag entityTag = getEntityTag(doc, withPrettyNames, withObjects, withXClass, withAttachments,
+                withObjects || withXClass ? getXClassVersions(doc) : null);
+            evaluatePreconditions(entityTag, doc.getDate());
+
             URI baseUri = uriInfo.getBaseUri();
 
             Page page =
                 this.factory.toRestPage(baseUri, uriInfo.getAbsolutePath(), doc, false, withPrettyNames, withObjects,
                     withXClass, withAttachments);
 
-            return page;
+            return Response.ok(page).tag(entityTag).lastModified(doc.getDate()).build();
         } catch (XWikiException e) {
             throw new XWikiRestException(e);
         }
@@ -66,6 +73,8 @@ public Response putPage(String wikiName, String spaceName, String pageName, Page
         try {
             DocumentInfo documentInfo = getDocumentInfo(wikiName, spaceName, pageName, null, null, false, true);
 
+            evaluateIfMatch(documentInfo.getDocument());
+
             return putPage(documentInfo, page);
         } catch (XWikiException e) {
             throw new XWikiRestException(e);
@@ -0,0 +1,87 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal;
+
+import java.io.ByteArrayInputStream;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link SizeLimitedInputStream}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class SizeLimitedInputStreamTest
+{
+    @Test
+    public void readExactlyTheLimit() throws Exception
+    {
+        byte[] content = new byte[] { 1, 2, 3, 4 };
+
+        try (SizeLimitedInputStream stream = new SizeLimitedInputStream(new ByteArrayInputStream(content), 4)) {
+            assertEquals(4, IOUtils.toByteArray(stream).length);
+        }
+    }
+
+    @Test
+    public void readOneByteMoreThanTheLimit() throws Exception
+    {
+        byte[] content = new byte[] { 1, 2, 3, 4, 5 };
+
+        try (SizeLimitedInputStream stream = new SizeLimitedInputStream(new ByteArrayInputStream(content), 4)) {
+            IOUtils.toByteArray(stream);
+            fail();
+        } catch (WebApplicationException expected) {
+            assertEquals(SizeLimitedInputStream.REQUEST_ENTITY_TOO_LARGE, expected.getResponse().getStatus());
+        }
+    }
+
+    @Test
+    public void readOneByteAtATimeMoreThanTheLimit() throws Exception
+    {
+        byte[] content = new byte[] { 1, 2, 3 };
+
+        try (SizeLimitedInputStream stream = new SizeLimitedInputStream(new ByteArrayInputStream(content), 2)) {
+            assertEquals(1, stream.read());
+            assertEquals(2, stream.read());
+            stream.read();
+            fail();
+        } catch (WebApplicationException expected) {
+            assertEquals(SizeLimitedInputStream.REQUEST_ENTITY_TOO_LARGE, expected.getResponse().getStatus());
+        }
+    }
+
+    @Test
+    public void readWithoutLimit() throws Exception
+    {
+        byte[] content = new byte[] { 1, 2, 3 };
+
+        try (SizeLimitedInputStream stream = new SizeLimitedInputStream(new ByteArrayInputStream(content), -1)) {
+            assertEquals(3, IOUtils.toByteArray(stream).length);
+        }
+    }
+}
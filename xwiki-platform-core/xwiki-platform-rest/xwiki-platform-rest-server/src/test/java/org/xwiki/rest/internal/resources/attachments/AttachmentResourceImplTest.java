@@ -0,0 +1,127 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.resources.attachments;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import javax.inject.Provider;
+import javax.ws.rs.WebApplicationException;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rest.internal.SizeLimitedInputStream;
+import org.xwiki.rest.resources.attachments.AttachmentResource;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.api.Document;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.plugin.fileupload.FileUploadPlugin;
+import com.xpn.xwiki.user.api.XWikiRightService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link AttachmentResourceImpl}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class AttachmentResourceImplTest
+{
+    @Rule
+    public MockitoComponentMockingRule<AttachmentResource> mocker =
+        new MockitoComponentMockingRule<AttachmentResource>(AttachmentResourceImpl.class);
+
+    private DocumentReference documentReference = new DocumentReference("wiki", "Space", "Page");
+
+    private XWikiContext xcontext = mock(XWikiContext.class);
+
+    private XWiki xwiki = mock(XWiki.class);
+
+    private XWikiDocument document = mock(XWikiDocument.class);
+
+    @Before
+    public void configure() throws Exception
+    {
+        when(this.xcontext.getWiki()).thenReturn(this.xwiki);
+
+        ExecutionContext executionContext = new ExecutionContext();
+        executionContext.setProperty("xwikicontext", this.xcontext);
+        Execution execution = mock(Execution.class);
+        ComponentManager componentManager = this.mocker.getInstance(ComponentManager.class, "context");
+        when(componentManager.getInstance(Execution.class)).thenReturn(execution);
+        when(execution.getContext()).thenReturn(executionContext);
+
+        Provider<XWikiContext> xcontextProvider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(xcontextProvider.get()).thenReturn(this.xcontext);
+
+        XWikiRightService rightService = mock(XWikiRightService.class);
+        when(this.xwiki.getRightService()).thenReturn(rightService);
+        when(rightService.hasAccessLevel(eq("view"), any(), any(), eq(this.xcontext))).thenReturn(true);
+
+        Document apiDocument = mock(Document.class);
+        when(apiDocument.getDocumentReference()).thenReturn(this.documentReference);
+        when(apiDocument.hasAccessLevel(eq("edit"), anyString())).thenReturn(true);
+        when(this.document.newDocument(this.xcontext)).thenReturn(apiDocument);
+        when(this.xwiki.getDocument(this.documentReference, this.xcontext)).thenReturn(this.document);
+
+        // The attachment store reads the whole content.
+        doAnswer(invocation -> {
+            IOUtils.toByteArray((InputStream) invocation.getArgument(1));
+            return null;
+        }).when(this.document).setAttachment(eq("file.txt"), any(InputStream.class), eq(this.xcontext));
+    }
+
+    @Test
+    public void putAttachmentTooLarge() throws Exception
+    {
+        when(this.xwiki.getSpacePreferenceAsLong(eq(FileUploadPlugin.UPLOAD_MAXSIZE_PARAMETER), anyLong(),
+            eq(this.xcontext))).thenReturn(4L);
+
+        try {
+            this.mocker.getComponentUnderTest().putAttachment("wiki", "Space", "Page", "file.txt",
+                new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 }));
+            fail();
+        } catch (WebApplicationException expected) {
+            assertEquals(SizeLimitedInputStream.REQUEST_ENTITY_TOO_LARGE, expected.getResponse().getStatus());
+        }
+
+        verify(this.xwiki, never()).saveDocument(any(XWikiDocument.class), any(XWikiContext.class));
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.xwiki.test.rest;
 
+import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
@@ -26,12 +27,17 @@
 
 import javax.ws.rs.core.MediaType;
 
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.NameValuePair;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.methods.DeleteMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -587,4 +593,64 @@ public void testPUTPageSyntax() throws Exception
 
         Assert.assertEquals(newSyntax, modifiedPage.getSyntax());
     }
+
+    @Test
+    public void testConditionalGET() throws Exception
+    {
+        String pageURI = buildURI(PageResource.class, getWiki(), this.spaces, this.pageName);
+
+        GetMethod getMethod = executeGet(pageURI);
+        Assert.assertEquals(getHttpMethodInfo(getMethod), HttpStatus.SC_OK, getMethod.getStatusCode());
+        Header entityTag = getMethod.getResponseHeader("ETag");
+        Assert.assertNotNull(entityTag);
+
+        getMethod = new GetMethod(pageURI);
+        getMethod.addRequestHeader("Accept", MediaType.APPLICATION_XML.toString());
+        getMethod.addRequestHeader("If-None-Match", entityTag.getValue());
+        new HttpClient().executeMethod(getMethod);
+        Assert.assertEquals(getHttpMethodInfo(getMethod), HttpStatus.SC_NOT_MODIFIED, getMethod.getStatusCode());
+
+        // Modify the page: the previous tag should not match anymore
+        Assert.assertEquals(HttpStatus.SC_ACCEPTED,
+            setPageContent(this.wikiName, this.spaces, this.pageName, UUID.randomUUID().toString()));
+
+        getMethod = new GetMethod(pageURI);
+        getMethod.addRequestHeader("Accept", MediaType.APPLICATION_XML.toString());
+        getMethod.addRequestHeader("If-None-Match", entityTag.getValue());
+        new HttpClient().executeMethod(getMethod);
+        Assert.assertEquals(getHttpMethodInfo(getMethod), HttpStatus.SC_OK, getMethod.getStatusCode());
+    }
+
+    @Test
+    public void testPUTPageWithIfMatch() throws Exception
+    {
+        String pageURI = buildURI(PageResource.class, getWiki(), this.spaces, this.pageName);
+
+        GetMethod getMethod = executeGet(pageURI);
+        Assert.assertEquals(getHttpMethodInfo(getMethod), HttpStatus.SC_OK, getMethod.getStatusCode());
+        Header entityTag = getMethod.getResponseHeader("ETag");
+        Page page = (Page) this.unmarshaller.unmarshal(getMethod.getResponseBodyAsStream());
+
+        // Someone else modifies the page in the meantime
+        Assert.assertEquals(HttpStatus.SC_ACCEPTED,
+            setPageContent(this.wikiName, this.spaces, this.pageName, UUID.randomUUID().toString()));
+
+        HttpClient httpClient = new HttpClient();
+        httpClient.getState().setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(
+            TestUtils.SUPER_ADMIN_CREDENTIALS.getUserName(), TestUtils.SUPER_ADMIN_CREDENTIALS.getPassword()));
+        httpClient.getParams().setAuthenticationPreemptive(true);
+
+        page.setContent("stale content");
+        StringWriter writer = new StringWriter();
+        this.marshaller.marshal(page, writer);
+
+        PutMethod putMethod = new PutMethod(pageURI);
+        putMethod.addRequestHeader("Accept", MediaType.APPLICATION_XML.toString());
+        putMethod.addRequestHeader("If-Match", entityTag.getValue());
+        putMethod.setRequestEntity(
+            new StringRequestEntity(writer.toString(), MediaType.APPLICATION_XML.toString(), "UTF-8"));
+        httpClient.executeMethod(putMethod);
+        Assert.assertEquals(getHttpMethodInfo(putMethod), HttpStatus.SC_PRECONDITION_FAILED,
+            putMethod.getStatusCode());
+    }
 }
@@ -104,6 +104,21 @@ public class DefaultSolrConfiguration implements SolrConfiguration
      */
     public static final int SOLR_INDEXER_QUEUE_CAPACITY_DEFAULT = 100000;
 
+    /**
+     * The name of the configuration property containing the number of milliseconds an element waits in the queue
+     * before being indexed.
+     * 
+     * @since 9.11RC1
+     */
+    public static final String SOLR_INDEXER_QUEUE_DEBOUNCE_PROPERTY = "solr.indexer.queue.debounce";
+
+    /**
+     * The default number of milliseconds an element waits in the queue before being indexed.
+     * 
+     * @since 9.11RC1
+     */
+    public static final int SOLR_INDEXER_QUEUE_DEBOUNCE_DEFAULT = 500;
+
     /**
      * The name of the configuration property indicating if a synchronization should be run at startup.
      */
@@ -114,6 +129,50 @@ public class DefaultSolrConfiguration implements SolrConfiguration
      */
     public static final boolean SOLR_SYNCHRONIZE_AT_STARTUP_DEFAULT = true;
 
+    /**
+     * The name of the configuration property containing the maximum number of characters extracted from an attachment.
+     * 
+     * @since 9.11RC1
+     */
+    public static final String SOLR_INDEXER_ATTACHMENT_MAXLENGTH_PROPERTY = "solr.indexer.attachment.maxLength";
+
+    /**
+     * The default maximum number of characters extracted from an attachment.
+     * 
+     * @since 9.11RC1
+     */
+    public static final int SOLR_INDEXER_ATTACHMENT_MAXLENGTH_DEFAULT = 100000;
+
+    /**
+     * The name of the configuration property containing the maximum number of seconds spent extracting the text of an
+     * attachment.
+     * 
+     * @since 9.11RC1
+     */
+    public static final String SOLR_INDEXER_ATTACHMENT_TIMEOUT_PROPERTY = "solr.indexer.attachment.timeout";
+
+    /**
+     * The default maximum number of seconds spent extracting the text of an attachment.
+     * 
+     * @since 9.11RC1
+     */
+    public static final int SOLR_INDEXER_ATTACHMENT_TIMEOUT_DEFAULT = 60;
+
+    /**
+     * The name of the configuration property containing the maximum size in megabytes of the attachment text kept on
+     * the disk.
+     * 
+     * @since 9.11RC1
+     */
+    public static final String SOLR_INDEXER_ATTACHMENT_CACHESIZE_PROPERTY = "solr.indexer.attachment.cacheSize";
+
+    /**
+     * The default maximum size in megabytes of the attachment text kept on the disk.
+     * 
+     * @since 9.11RC1
+     */
+    public static final int SOLR_INDEXER_ATTACHMENT_CACHESIZE_DEFAULT = 100;
+
     /**
      * The Solr configuration source.
      */
@@ -160,9 +219,37 @@ public int getIndexerQueueCapacity()
             .getProperty(SOLR_INDEXER_QUEUE_CAPACITY_PROPERTY, SOLR_INDEXER_QUEUE_CAPACITY_DEFAULT);
     }
 
+    @Override
+    public int getIndexerQueueDebounceDelay()
+    {
+        return this.configuration
+            .getProperty(SOLR_INDEXER_QUEUE_DEBOUNCE_PROPERTY, SOLR_INDEXER_QUEUE_DEBOUNCE_DEFAULT);
+    }
+
     @Override
     public boolean synchronizeAtStartup()
     {
         return this.configuration.getProperty(SOLR_SYNCHRONIZE_AT_STARTUP, SOLR_SYNCHRONIZE_AT_STARTUP_DEFAULT);
     }
+
+    @Override
+    public int getAttachmentContentMaxLength()
+    {
+        return this.configuration
+            .getProperty(SOLR_INDEXER_ATTACHMENT_MAXLENGTH_PROPERTY, SOLR_INDEXER_ATTACHMENT_MAXLENGTH_DEFAULT);
+    }
+
+    @Override
+    public int getAttachmentContentTimeout()
+    {
+        return this.configuration
+            .getProperty(SOLR_INDEXER_ATTACHMENT_TIMEOUT_PROPERTY, SOLR_INDEXER_ATTACHMENT_TIMEOUT_DEFAULT);
+    }
+
+    @Override
+    public int getAttachmentContentCacheSize()
+    {
+        return this.configuration
+            .getProperty(SOLR_INDEXER_ATTACHMENT_CACHESIZE_PROPERTY, SOLR_INDEXER_ATTACHMENT_CACHESIZE_DEFAULT);
+    }
 }
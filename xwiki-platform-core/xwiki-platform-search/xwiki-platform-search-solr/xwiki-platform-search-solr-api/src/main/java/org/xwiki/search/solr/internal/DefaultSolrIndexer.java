@@ -20,8 +20,11 @@
 package org.xwiki.search.solr.internal;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -63,6 +66,11 @@
  * This implementation does not directly process the given leaf-references, but adds them to a processing queue, in the
  * order they were received. The {@link Runnable} part of this implementation is the one that sequentially reads and
  * processes the queue.
+ * <p>
+ * An operation on an entity which already has a pending operation in the queue is merged with it: only the last
+ * operation is kept since the entity is indexed in the state it has when the operation is processed. To give the
+ * operations on the same entity (e.g. a document saved several times by a script) the time to be merged, the entries
+ * wait in the queue for a short configurable delay before being processed.
  * 
  * @version $Id$
  * @since 5.1M2
@@ -93,10 +101,15 @@ public class DefaultSolrIndexer implements SolrIndexer, Initializable, Disposabl
         public String deleteQuery;
 
         /**
-         * The indexing operation to perform.
+         * The indexing operation to perform. It's modified when another operation is merged with this entry.
          */
         public IndexOperation operation;
 
+        /**
+         * The date when the entry was added to the queue.
+         */
+        public final long date = System.currentTimeMillis();
+
         /**
          * @param indexReference the reference of the entity to index.
          * @param operation the indexing operation to perform.
@@ -214,14 +227,14 @@ public void runInternal()
                         }
 
                         for (EntityReference reference : references) {
-                            indexQueue.put(new IndexQueueEntry(reference, queueEntry.operation));
+                            addToIndexQueue(new IndexQueueEntry(reference, queueEntry.operation));
                         }
                     } else {
                         if (queueEntry.recurse) {
-                            indexQueue.put(new IndexQueueEntry(solrRefereceResolver.getQuery(queueEntry.reference),
+                            addToIndexQueue(new IndexQueueEntry(solrRefereceResolver.getQuery(queueEntry.reference),
                                 queueEntry.operation));
                         } else if (queueEntry.reference != null) {
-                            indexQueue.put(new IndexQueueEntry(queueEntry.reference, queueEntry.operation));
+                            addToIndexQueue(new IndexQueueEntry(queueEntry.reference, queueEntry.operation));
                         }
                     }
                 } catch (Throwable e) {
@@ -290,6 +303,22 @@ public void runInternal()
      */
     private BlockingQueue<IndexQueueEntry> indexQueue;
 
+    /**
+     * The entries of the index queue targeting a single entity and not yet processed, used to merge the operations on
+     * the same entity.
+     */
+    private final Map<EntityReference, IndexQueueEntry> pendingEntries = new HashMap<>();
+
+    /**
+     * The number of operations merged with a pending entry.
+     */
+    private final AtomicLong mergedCount = new AtomicLong();
+
+    /**
+     * The number of milliseconds an entry waits in the index queue before being processed.
+     */
+    private long debounceDelay;
+
     /**
      * The queue of resolve references and add them to the index queue.
      */
@@ -321,6 +350,7 @@ public void initialize() throws InitializationException
         // Initialize the queues before starting the threads.
         this.resolveQueue = new LinkedBlockingQueue<>();
         this.indexQueue = new LinkedBlockingQueue<>(this.configuration.getIndexerQueueCapacity());
+        this.debounceDelay = this.configuration.getIndexerQueueDebounceDelay();
 
         // Launch the resolve thread
         this.resolveThread = new Thread(new Resolver());
@@ -366,6 +396,12 @@ public void run()
             IndexQueueEntry queueEntry = null;
             try {
                 queueEntry = this.indexQueue.take();
+
+                // Give the next operations on the same entity the time to be merged with this entry.
+                long delay = getRemainingDelay(queueEntry);
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
             } catch (InterruptedException e) {
                 this.logger.warn("The SOLR index thread has been interrupted", e);
 
@@ -395,13 +431,13 @@ private boolean processBatch(IndexQueueEntry queueEntry)
 
         int length = 0;
 
-        for (IndexQueueEntry batchEntry = queueEntry; batchEntry != null; batchEntry = this.indexQueue.poll()) {
+        for (IndexQueueEntry batchEntry = queueEntry; batchEntry != null; batchEntry = pollReadyEntry()) {
             if (batchEntry == INDEX_QUEUE_ENTRY_STOP) {
                 // Discard the current batch and stop the indexing thread.
                 return false;
             }
 
-            IndexOperation operation = batchEntry.operation;
+            IndexOperation operation = removePendingEntry(batchEntry);
 
             // For the current contiguous operations queue, group the changes
             try {
@@ -445,6 +481,77 @@ private boolean processBatch(IndexQueueEntry queueEntry)
         return true;
     }
 
+    /**
+     * @param entry an entry of the index queue
+     * @return the number of milliseconds the entry still has to wait before being processed
+     */
+    private long getRemainingDelay(IndexQueueEntry entry)
+    {
+        return entry.date + this.debounceDelay - System.currentTimeMillis();
+    }
+
+    /**
+     * @return the next entry of the index queue if it's ready to be processed, {@code null} otherwise
+     */
+    private IndexQueueEntry pollReadyEntry()
+    {
+        // The index thread is the only one taking entries from the queue (except when the component is disposed) so
+        // the polled entry is the one we checked. The next entries were added after this one and are not ready either.
+        IndexQueueEntry entry = this.indexQueue.peek();
+        if (entry != null && getRemainingDelay(entry) > 0) {
+            return null;
+        }
+
+        return this.indexQueue.poll();
+    }
+
+    /**
+     * Add an entry to the index queue or merge it with the pending entry targeting the same entity.
+     * 
+     * @param entry the entry to add
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    private void addToIndexQueue(IndexQueueEntry entry) throws InterruptedException
+    {
+        synchronized (this.pendingEntries) {
+            if (entry.reference != null) {
+                IndexQueueEntry pendingEntry = this.pendingEntries.get(entry.reference);
+                if (pendingEntry != null) {
+                    pendingEntry.operation = entry.operation;
+                    this.mergedCount.incrementAndGet();
+
+                    return;
+                }
+
+                this.pendingEntries.put(entry.reference, entry);
+            } else {
+                // The entries added after a delete query must not be merged with the entries added before it, as they
+                // would be processed before the query.
+                this.pendingEntries.clear();
+            }
+        }
+
+        // Don't block while holding the lock since the index thread needs it to process the queue.
+        this.indexQueue.put(entry);
+    }
+
+    /**
+     * Stop merging operations with the passed entry since it's about to be processed.
+     * 
+     * @param entry the entry to process
+     * @return the operation to perform
+     */
+    private IndexOperation removePendingEntry(IndexQueueEntry entry)
+    {
+        synchronized (this.pendingEntries) {
+            if (entry.reference != null) {
+                this.pendingEntries.remove(entry.reference, entry);
+            }
+
+            return entry.operation;
+        }
+    }
+
     /**
      * Commit.
      */
@@ -560,6 +667,12 @@ public int getQueueSize()
         return this.indexQueue.size() + this.resolveQueue.size() + this.batchSize;
     }
 
+    @Override
+    public long getQueueMergedCount()
+    {
+        return this.mergedCount.get();
+    }
+
     @Override
     public IndexerJob startIndex(IndexerRequest request) throws SolrIndexerException
     {
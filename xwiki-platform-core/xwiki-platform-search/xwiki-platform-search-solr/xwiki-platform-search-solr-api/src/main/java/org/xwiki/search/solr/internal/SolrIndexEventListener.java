@@ -19,9 +19,11 @@
  */
 package org.xwiki.search.solr.internal;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -34,10 +36,18 @@
 import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.bridge.event.WikiDeletedEvent;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.event.Event;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
 
 import com.xpn.xwiki.doc.XWikiAttachment;
@@ -53,6 +63,7 @@
 import com.xpn.xwiki.internal.event.XObjectPropertyDeletedEvent;
 import com.xpn.xwiki.internal.event.XObjectPropertyUpdatedEvent;
 import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.objects.BaseObjectReference;
 
 /**
  * Event listener that monitors changes in the wiki and updates the Solr index accordingly.
@@ -74,6 +85,19 @@ public class SolrIndexEventListener implements EventListener
         new XObjectUpdatedEvent(), new XObjectPropertyAddedEvent(), new XObjectPropertyDeletedEvent(),
         new XObjectPropertyUpdatedEvent(), new WikiDeletedEvent());
 
+    private static final String XWIKI_SPACE = "XWiki";
+
+    private static final String RIGHTS_CLASS = "XWikiRights";
+
+    private static final String GLOBAL_RIGHTS_CLASS = "XWikiGlobalRights";
+
+    private static final String SPACE_PREFERENCES = "WebPreferences";
+
+    /**
+     * The characters which have a special meaning in a LIKE clause.
+     */
+    private static final Pattern LIKE_SPECIAL_CHARS = Pattern.compile("([%_/])");
+
     /**
      * Logging framework.
      */
@@ -88,6 +112,17 @@ public class SolrIndexEventListener implements EventListener
     @Inject
     private Provider<SolrIndexer> solrIndexer;
 
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localEntityReferenceSerializer;
+
+    @Inject
+    @Named("explicit")
+    private EntityReferenceResolver<String> explicitEntityReferenceResolver;
+
     @Override
     public List<Event> getEvents()
     {
@@ -149,10 +184,12 @@ public void onEvent(Event event, Object source, Object data)
                 EntityEvent entityEvent = (EntityEvent) event;
 
                 this.solrIndexer.get().index(entityEvent.getReference(), false);
+                indexRightsTarget(entityEvent.getReference());
             } else if (event instanceof XObjectDeletedEvent) {
                 EntityEvent entityEvent = (EntityEvent) event;
 
                 this.solrIndexer.get().delete(entityEvent.getReference(), false);
+                indexRightsTarget(entityEvent.getReference());
             } else if (event instanceof XObjectPropertyUpdatedEvent || event instanceof XObjectPropertyAddedEvent) {
                 EntityEvent entityEvent = (EntityEvent) event;
 
@@ -171,4 +208,57 @@ public void onEvent(Event event, Object source, Object data)
             this.logger.error("Failed to handle event [{}] with source [{}]", event, source, e);
         }
     }
+
+    /**
+     * Index again the entities whose view rights might have been modified by the passed rights object, since the index
+     * contains the entity holding the rights which decide who can view each entity (see
+     * {@link ViewRightsEntityResolver}).
+     *
+     * @param objectReference the reference of the modified object
+     */
+    private void indexRightsTarget(EntityReference objectReference) throws QueryException
+    {
+        BaseObjectReference reference = new BaseObjectReference(objectReference);
+        DocumentReference classReference = reference.getXClassReference();
+        if (!XWIKI_SPACE.equals(classReference.getLastSpaceReference().getName())) {
+            return;
+        }
+
+        DocumentReference documentReference = reference.getDocumentReference();
+        if (RIGHTS_CLASS.equals(classReference.getName())) {
+            this.solrIndexer.get().index(new DocumentReference(documentReference, (Locale) null), true);
+        } else if (GLOBAL_RIGHTS_CLASS.equals(classReference.getName())
+            && SPACE_PREFERENCES.equals(documentReference.getName())) {
+            // The wiki rights (in XWiki.XWikiPreferences) don't need any reindexing since the wiki is used when the
+            // document and its spaces don't have any view rule. The nested spaces inherit the space rights.
+            for (EntityReference spaceReference : getSpaces(documentReference.getLastSpaceReference())) {
+                this.solrIndexer.get().index(spaceReference, true);
+            }
+        }
+    }
+
+    /**
+     * @param spaceReference the reference of a space
+     * @return the passed space and all its nested spaces, since indexing a space indexes only its direct documents
+     * @throws QueryException when failing to query the nested spaces
+     */
+    private List<EntityReference> getSpaces(SpaceReference spaceReference) throws QueryException
+    {
+        String statement = "select distinct(doc.space) from XWikiDocument as doc "
+            + "where doc.space = :space or doc.space like :spacePrefix escape '/'";
+        Query query = this.queryManager.createQuery(statement, Query.HQL);
+        query.setWiki(spaceReference.getWikiReference().getName());
+        String localSpaceReference = this.localEntityReferenceSerializer.serialize(spaceReference);
+        query.bindValue("space", localSpaceReference);
+        String spacePrefix = LIKE_SPECIAL_CHARS.matcher(localSpaceReference).replaceAll("/$1");
+        query.bindValue("spacePrefix", spacePrefix + ".%");
+
+        List<EntityReference> spaces = new ArrayList<>();
+        for (Object space : query.execute()) {
+            spaces.add(this.explicitEntityReferenceResolver.resolve((String) space, EntityType.SPACE,
+                spaceReference.getWikiReference()));
+        }
+
+        return spaces;
+    }
 }
@@ -0,0 +1,175 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.util.Locale;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.security.SecurityReferenceFactory;
+import org.xwiki.security.authorization.AuthorizationException;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.security.authorization.RightSet;
+import org.xwiki.security.authorization.RuleState;
+import org.xwiki.security.authorization.SecurityEntryReader;
+import org.xwiki.security.authorization.SecurityRule;
+import org.xwiki.security.authorization.SecurityRuleEntry;
+
+/**
+ * Find the entity holding the rights which decide who can view a document, i.e. the closest entity (the document
+ * itself, one of its spaces or its wiki) having security rules related to the view right. The entities between the
+ * document and this entity don't have any rule so checking if a user can view this entity gives the same result as
+ * checking it on the document. Since the number of such entities is small, the rights can be checked on them when
+ * querying the index instead of on each result.
+ * <p>
+ * The document rules which only allow their owner to edit the document (e.g. the rule given to each user on its
+ * profile) are ignored, otherwise each user profile would be a distinct entity to check. The only consequence is that
+ * such an owner, if not allowed to view the parent of the document, won't find the document when searching.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = ViewRightsEntityResolver.class)
+@Singleton
+public class ViewRightsEntityResolver
+{
+    /**
+     * The rights which give the view right.
+     */
+    private static final Set<Right> VIEW_RIGHTS = getViewRights();
+
+    private static final char TYPE_SEPARATOR = ':';
+
+    @Inject
+    private SecurityEntryReader securityEntryReader;
+
+    @Inject
+    private SecurityReferenceFactory securityReferenceFactory;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    private EntityReferenceResolver<String> resolver;
+
+    private static Set<Right> getViewRights()
+    {
+        Set<Right> rights = new RightSet(Right.VIEW);
+
+        boolean added;
+        do {
+            added = false;
+            for (Right right : Right.values()) {
+                Set<Right> impliedRights = right.getImpliedRights();
+                if (!rights.contains(right) && impliedRights != null
+                    && impliedRights.stream().anyMatch(rights::contains)) {
+                    added = rights.add(right);
+                }
+            }
+        } while (added);
+
+        return rights;
+    }
+
+    /**
+     * @param documentReference the reference of a document
+     * @return the serialized reference of the entity holding the rights which decide who can view the document
+     * @throws AuthorizationException when failing to read the security rules
+     */
+    public String getViewRightsEntity(DocumentReference documentReference) throws AuthorizationException
+    {
+        EntityReference entity = documentReference.getLocale() != null
+            ? new DocumentReference(documentReference, (Locale) null) : documentReference;
+
+        for (; entity.getType() != EntityType.WIKI; entity = entity.getParent()) {
+            if (hasViewRules(entity)) {
+                break;
+            }
+        }
+
+        return entity.getType().getLowerCase() + TYPE_SEPARATOR + this.serializer.serialize(entity);
+    }
+
+    /**
+     * @param viewRightsEntity a value returned by {@link #getViewRightsEntity(DocumentReference)}
+     * @return the reference of the entity
+     */
+    public EntityReference resolve(String viewRightsEntity)
+    {
+        int index = viewRightsEntity.indexOf(TYPE_SEPARATOR);
+        EntityType type = EntityType.valueOf(viewRightsEntity.substring(0, index).toUpperCase());
+
+        return this.resolver.resolve(viewRightsEntity.substring(index + 1), type);
+    }
+
+    private boolean hasViewRules(EntityReference entity) throws AuthorizationException
+    {
+        SecurityRuleEntry entry =
+            this.securityEntryReader.read(this.securityReferenceFactory.newEntityReference(entity));
+
+        if (entry != null) {
+            for (SecurityRule rule : entry.getRules()) {
+                if (isViewRule(rule) && !isOwnerEditRule(rule, entity)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isViewRule(SecurityRule rule)
+    {
+        for (Right right : VIEW_RIGHTS) {
+            if (rule.match(right)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return {@code true} if the passed rule only allows the owner of the passed document (i.e. the user whose profile
+     *         is the document) to edit it
+     */
+    private boolean isOwnerEditRule(SecurityRule rule, EntityReference entity)
+    {
+        if (entity.getType() != EntityType.DOCUMENT || rule.getState() != RuleState.ALLOW) {
+            return false;
+        }
+
+        for (Right right : VIEW_RIGHTS) {
+            if (right != Right.EDIT && rule.match(right)) {
+                return false;
+            }
+        }
+
+        return rule.match(this.securityReferenceFactory.newUserReference(new DocumentReference(entity)));
+    }
+}
@@ -227,6 +227,13 @@
      */
     public static final String HIDDEN = "hidden";
 
+    /**
+     * The serialized reference of the entity holding the rights which decide who can view the indexed entity.
+     *
+     * @since 9.11RC1
+     */
+    public static final String RIGHTS_ENTITY = "rights_entity";
+
     /**
      * Document score, not an actual field. It's only computed at query time.
      */
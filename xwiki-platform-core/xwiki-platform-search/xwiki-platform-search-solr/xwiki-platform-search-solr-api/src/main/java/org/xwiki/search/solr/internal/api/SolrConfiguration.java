@@ -73,9 +73,34 @@
      */
     int getIndexerQueueCapacity();
 
+    /**
+     * @return the number of milliseconds an element waits in the queue before being indexed, to merge the operations
+     *         made on this element in the meantime
+     * @since 9.11RC1
+     */
+    int getIndexerQueueDebounceDelay();
+
     /**
      * @return true if a full synchronization job between the database and SOLR index should be run when XWiki starts
      * @since 6.1M2
      */
     boolean synchronizeAtStartup();
+
+    /**
+     * @return the maximum number of characters extracted from an attachment
+     * @since 9.11RC1
+     */
+    int getAttachmentContentMaxLength();
+
+    /**
+     * @return the maximum number of seconds spent extracting the text of an attachment
+     * @since 9.11RC1
+     */
+    int getAttachmentContentTimeout();
+
+    /**
+     * @return the maximum size in megabytes of the attachment text kept on the disk, 0 to disable the cache
+     * @since 9.11RC1
+     */
+    int getAttachmentContentCacheSize();
 }
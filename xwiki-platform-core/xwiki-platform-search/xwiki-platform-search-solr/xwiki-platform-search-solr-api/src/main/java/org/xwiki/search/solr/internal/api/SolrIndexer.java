@@ -60,6 +60,13 @@
      */
     int getQueueSize();
 
+    /**
+     * @return the number of index/delete operations which have been merged with a pending operation on the same entity
+     *         since the indexer started
+     * @since 9.11RC1
+     */
+    long getQueueMergedCount();
+
     /**
      * Start an indexing with specific criteria.
      * 
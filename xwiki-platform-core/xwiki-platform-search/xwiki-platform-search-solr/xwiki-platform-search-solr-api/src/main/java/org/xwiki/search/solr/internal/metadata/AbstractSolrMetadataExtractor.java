@@ -19,7 +19,6 @@
  */
 package org.xwiki.search.solr.internal.metadata;
 
-import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
@@ -33,9 +32,6 @@
 import javax.inject.Provider;
 
 import org.apache.solr.common.SolrInputDocument;
-import org.apache.tika.Tika;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.metadata.TikaMetadataKeys;
 import org.slf4j.Logger;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
@@ -44,6 +40,7 @@
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.search.solr.internal.ViewRightsEntityResolver;
 import org.xwiki.search.solr.internal.api.FieldUtils;
 import org.xwiki.search.solr.internal.api.SolrIndexerException;
 import org.xwiki.search.solr.internal.reference.SolrReferenceResolver;
@@ -114,6 +111,18 @@ public abstract class AbstractSolrMetadataExtractor implements SolrMetadataExtra
     @Inject
     protected ComponentManager componentManager;
 
+    /**
+     * Used to index the entity deciding who can view the indexed entity.
+     */
+    @Inject
+    protected ViewRightsEntityResolver viewRightsEntityResolver;
+
+    /**
+     * Used to extract the text of the attachments.
+     */
+    @Inject
+    protected AttachmentTextExtractor attachmentTextExtractor;
+
     @Override
     public LengthSolrInputDocument getSolrDocument(EntityReference entityReference)
         throws SolrIndexerException, IllegalArgumentException
@@ -232,6 +241,8 @@ protected boolean setDocumentFields(DocumentReference documentReference, SolrInp
         }
 
         solrDocument.setField(FieldUtils.HIDDEN, document.isHidden());
+        solrDocument.setField(FieldUtils.RIGHTS_ENTITY,
+            this.viewRightsEntityResolver.getViewRightsEntity(documentReference));
 
         solrDocument.setField(FieldUtils.WIKI, documentReference.getWikiReference().getName());
         solrDocument.setField(FieldUtils.NAME, documentReference.getName());
@@ -497,23 +508,7 @@ protected void addFieldValueOnce(SolrInputDocument solrDocument, String fieldNam
      */
     protected String getContentAsText(XWikiAttachment attachment)
     {
-        try {
-            Tika tika = new Tika();
-
-            Metadata metadata = new Metadata();
-            metadata.set(TikaMetadataKeys.RESOURCE_NAME_KEY, attachment.getFilename());
-
-            InputStream in = attachment.getContentInputStream(this.xcontextProvider.get());
-
-            try {
-                return tika.parseToString(in, metadata);
-            } finally {
-                in.close();
-            }
-        } catch (Exception e) {
-            this.logger.error("Failed to retrieve the content of attachment [{}]", attachment.getReference(), e);
-            return null;
-        }
+        return this.attachmentTextExtractor.getText(attachment);
     }
 
     private void setHierarchyFields(SolrInputDocument solrDocument, EntityReference path)
@@ -0,0 +1,193 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
+import org.xwiki.search.solr.internal.api.SolrConfiguration;
+
+/**
+ * Keep the text extracted from the attachments on the disk, up to the configured size. When the cache is full, the
+ * least recently used texts are removed.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = AttachmentTextCache.class)
+@Singleton
+public class AttachmentTextCache implements Initializable
+{
+    private static final String EXTENSION = ".txt";
+
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    /**
+     * When the cache is full, the least recently used texts are removed until the cache uses this part of its size, so
+     * that they are not removed one by one.
+     */
+    private static final double CLEANUP_RATIO = 0.9;
+
+    @Inject
+    private SolrConfiguration configuration;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private Logger logger;
+
+    private File cacheDir;
+
+    private long maxSize;
+
+    private final AtomicLong size = new AtomicLong();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.maxSize = FileUtils.ONE_MB * this.configuration.getAttachmentContentCacheSize();
+        if (this.maxSize > 0) {
+            this.cacheDir = new File(this.environment.getPermanentDirectory(), "cache/solr/attachments");
+            this.cacheDir.mkdirs();
+
+            for (File file : listFiles()) {
+                if (file.getName().endsWith(TEMPORARY_EXTENSION)) {
+                    // Left by a crash.
+                    file.delete();
+                } else {
+                    this.size.addAndGet(file.length());
+                }
+            }
+        }
+    }
+
+    /**
+     * @param key the key identifying the attachment version
+     * @return the stored text or {@code null} if there is none
+     */
+    public String get(String key)
+    {
+        if (this.cacheDir == null) {
+            return null;
+        }
+
+        File file = getFile(key);
+        if (file.exists()) {
+            try {
+                String text = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+
+                // Mark the text as recently used.
+                file.setLastModified(System.currentTimeMillis());
+
+                return text;
+            } catch (IOException e) {
+                this.logger.debug("Failed to read the stored attachment text [{}].", file, e);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param key the key identifying the attachment version
+     * @param text the text extracted from the attachment
+     */
+    public void set(String key, String text)
+    {
+        if (this.cacheDir == null) {
+            return;
+        }
+
+        File file = getFile(key);
+        try {
+            // Write in a separate file first so that a partially written text is never read.
+            File tmpFile = File.createTempFile(key, TEMPORARY_EXTENSION, this.cacheDir);
+            try {
+                FileUtils.writeStringToFile(tmpFile, text, StandardCharsets.UTF_8);
+                long length = tmpFile.length();
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+                if (this.size.addAndGet(length) > this.maxSize) {
+                    cleanUp();
+                }
+            } finally {
+                Files.deleteIfExists(tmpFile.toPath());
+            }
+        } catch (IOException e) {
+            this.logger.debug("Failed to store the attachment text [{}].", file, e);
+        }
+    }
+
+    private File getFile(String key)
+    {
+        return new File(this.cacheDir, key + EXTENSION);
+    }
+
+    private synchronized void cleanUp()
+    {
+        if (this.size.get() <= this.maxSize) {
+            // Already done by another thread.
+            return;
+        }
+
+        File[] files = listFiles();
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+        long currentSize = 0;
+        for (File file : files) {
+            currentSize += file.length();
+        }
+
+        long limit = (long) (this.maxSize * CLEANUP_RATIO);
+        for (int i = 0; i < files.length && currentSize > limit; ++i) {
+            if (files[i].getName().endsWith(EXTENSION)) {
+                long length = files[i].length();
+                if (files[i].delete()) {
+                    currentSize -= length;
+                }
+            }
+        }
+
+        this.size.set(currentSize);
+    }
+
+    private File[] listFiles()
+    {
+        File[] files = this.cacheDir.listFiles();
+
+        return files != null ? files : new File[0];
+    }
+}
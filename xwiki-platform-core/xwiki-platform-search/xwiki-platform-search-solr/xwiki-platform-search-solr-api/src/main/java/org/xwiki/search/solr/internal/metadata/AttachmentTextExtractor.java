@@ -0,0 +1,274 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal.metadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.tika.Tika;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaMetadataKeys;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.search.solr.internal.api.SolrConfiguration;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
+
+/**
+ * Extract the text of the attachments to index. Parsing an attachment (PDF, office documents, etc.) is the slowest part
+ * of the indexing so the extracted text is stored (see {@link AttachmentTextCache}), identified by the attachment
+ * reference and version, and reused each time the attachment is indexed again (when its document is modified, for each
+ * locale of the document, during the synchronization at startup, etc.).
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = AttachmentTextExtractor.class)
+@Singleton
+public class AttachmentTextExtractor implements Initializable, Disposable
+{
+    /**
+     * The maximum number of parsing threads. Cancelling a parser which timed out doesn't stop it if it doesn't check
+     * the interrupted flag (e.g. when looping on a malformed file) so this also limits the number of such parsers
+     * wasting the CPU. When all the threads stay busy, the attachments are handled as if their parsing timed out.
+     */
+    private static final int MAX_THREADS = 4;
+
+    /**
+     * How long the attachments whose parsing timed out (or couldn't start) are indexed without their text before
+     * trying again.
+     */
+    private static final long TIMED_OUT_EXPIRATION = TimeUnit.DAYS.toMillis(1);
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    private SolrConfiguration configuration;
+
+    @Inject
+    private AttachmentTextCache cache;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Tika is thread safe so the same instance (and the parsers it loads) is used for all the attachments.
+     */
+    private Tika tika;
+
+    /**
+     * The parsing is done in separate threads so that the indexing thread can give up on the pathological files.
+     */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * The parsing threads available. A permit is released only when the parser actually stops, not when it's
+     * cancelled.
+     */
+    private final Semaphore availableThreads = new Semaphore(MAX_THREADS);
+
+    private long timeout;
+
+    /**
+     * The date when the parsing timed out, for each attachment key. These attachments are not parsed again until the
+     * date expires.
+     */
+    private final Map<String, Long> timedOut = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.tika = new Tika();
+        this.tika.setMaxStringLength(this.configuration.getAttachmentContentMaxLength());
+
+        this.timeout = TimeUnit.SECONDS.toMillis(this.configuration.getAttachmentContentTimeout());
+        // The number of submitted parsings is bounded by the available threads so the queue never grows.
+        this.executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new BasicThreadFactory.Builder().namingPattern("Solr attachment text extraction %d").daemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @param attachment the attachment
+     * @return the text content of the attachment or {@code null} if it can't be extracted
+     */
+    public String getText(XWikiAttachment attachment)
+    {
+        String key = getKey(attachment);
+
+        String text = this.cache.get(key);
+        if (text == null) {
+            if (isTimedOut(key)) {
+                return "";
+            }
+
+            try {
+                text = extract(attachment);
+            } catch (TimeoutException e) {
+                // Don't try again each time the attachment is indexed, but don't store the empty text either so that
+                // the attachment is parsed again later (e.g. after a parser upgrade or on a less loaded server). Same
+                // when the parsing couldn't start because all the threads stayed busy.
+                this.timedOut.put(key, System.currentTimeMillis());
+
+                return "";
+            }
+
+            if (text != null) {
+                this.cache.set(key, text);
+            }
+        }
+
+        return text;
+    }
+
+    private boolean isTimedOut(String key)
+    {
+        long now = System.currentTimeMillis();
+        this.timedOut.values().removeIf(date -> now - date > TIMED_OUT_EXPIRATION);
+
+        return this.timedOut.containsKey(key);
+    }
+
+    private String getKey(XWikiAttachment attachment)
+    {
+        // The version is reset when an attachment is deleted and uploaded again so the date and size are added.
+        return DigestUtils.sha256Hex(this.serializer.serialize(attachment.getReference()) + '\0'
+            + attachment.getVersion() + '\0' + (attachment.getDate() != null ? attachment.getDate().getTime() : 0)
+            + '\0' + attachment.getLongSize());
+    }
+
+    private String extract(XWikiAttachment attachment) throws TimeoutException
+    {
+        // Wait a bit for a parsing thread: the running parsers either finish or time out in the meantime, unless
+        // they don't check the interrupted flag.
+        try {
+            if (!this.availableThreads.tryAcquire(this.timeout, TimeUnit.MILLISECONDS)) {
+                this.logger.warn("Skipped the text extraction of attachment [{}] because [{}] attachments are still"
+                    + " being parsed after [{}] seconds.", attachment.getReference(), MAX_THREADS,
+                    TimeUnit.MILLISECONDS.toSeconds(this.timeout));
+
+                throw new TimeoutException();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        InputStream in;
+        try {
+            in = attachment.getContentInputStream(this.xcontextProvider.get());
+        } catch (Exception e) {
+            this.availableThreads.release();
+            this.logger.error("Failed to retrieve the content of attachment [{}]", attachment.getReference(), e);
+            return null;
+        }
+
+        Metadata metadata = new Metadata();
+        metadata.set(TikaMetadataKeys.RESOURCE_NAME_KEY, attachment.getFilename());
+
+        AtomicBoolean started = new AtomicBoolean();
+        Future<String> future;
+        try {
+            future = this.executor.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    // The extraction has been given up before the parsing started.
+                    return null;
+                }
+
+                try {
+                    return this.tika.parseToString(in, metadata);
+                } finally {
+                    this.availableThreads.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The component is being disposed.
+            this.availableThreads.release();
+            close(in, attachment);
+            return null;
+        }
+
+        try {
+            return future.get(this.timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            this.logger.warn("Gave up extracting the text of attachment [{}] after [{}] seconds. Its content won't be "
+                + "indexed.", attachment.getReference(), TimeUnit.MILLISECONDS.toSeconds(this.timeout));
+
+            throw e;
+        } catch (ExecutionException e) {
+            this.logger.error("Failed to retrieve the content of attachment [{}]", attachment.getReference(),
+                e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            future.cancel(true);
+            if (started.compareAndSet(false, true)) {
+                // The parsing never started so the thread it was waiting for is available again.
+                this.availableThreads.release();
+            }
+            close(in, attachment);
+        }
+    }
+
+    private void close(InputStream in, XWikiAttachment attachment)
+    {
+        try {
+            in.close();
+        } catch (IOException e) {
+            this.logger.debug("Failed to close the content of attachment [{}].", attachment.getReference(), e);
+        }
+    }
+}
@@ -190,6 +190,16 @@ public int getQueueSize()
         return this.solrIndexer.getQueueSize();
     }
 
+    /**
+     * @return the number of index/delete operations which have been merged with a pending operation on the same entity
+     *         since the indexer started
+     * @since 9.11RC1
+     */
+    public long getQueueMergedCount()
+    {
+        return this.solrIndexer.getQueueMergedCount();
+    }
+
     /**
      * Extract a {@link DocumentReference} from the given {@link SolrDocument} (e.g. search result).
      * 
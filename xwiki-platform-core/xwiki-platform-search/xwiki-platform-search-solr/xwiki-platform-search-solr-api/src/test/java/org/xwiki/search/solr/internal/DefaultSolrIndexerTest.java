@@ -21,12 +21,19 @@
 
 import java.net.URL;
 
+import javax.inject.Provider;
+
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.search.solr.internal.api.SolrConfiguration;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
+import org.xwiki.search.solr.internal.api.SolrInstance;
+import org.xwiki.search.solr.internal.metadata.LengthSolrInputDocument;
+import org.xwiki.search.solr.internal.metadata.SolrMetadataExtractor;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import com.xpn.xwiki.XWiki;
@@ -34,9 +41,12 @@
 import com.xpn.xwiki.test.reference.ReferenceComponentList;
 import com.xpn.xwiki.web.Utils;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -91,4 +101,34 @@ public void testIndexEmptyWiki() throws Exception
 
         // index.index(wikiReference);
     }
+
+    @Test
+    public void indexSameDocumentSeveralTimes() throws Exception
+    {
+        when(this.mockConfig.getIndexerQueueCapacity()).thenReturn(100);
+        when(this.mockConfig.getIndexerBatchSize()).thenReturn(50);
+        when(this.mockConfig.getIndexerBatchMaxLengh()).thenReturn(10000);
+        when(this.mockConfig.getIndexerQueueDebounceDelay()).thenReturn(500);
+
+        SolrInstance solrInstance = mock(SolrInstance.class);
+        Provider<SolrInstance> solrInstanceProvider =
+            this.mocker.registerMockComponent(new DefaultParameterizedType(null, Provider.class, SolrInstance.class));
+        when(solrInstanceProvider.get()).thenReturn(solrInstance);
+
+        DocumentReference documentReference = new DocumentReference("xwiki", "Space", "Page");
+        LengthSolrInputDocument solrDocument = new LengthSolrInputDocument();
+        SolrMetadataExtractor extractor = this.mocker.registerMockComponent(SolrMetadataExtractor.class, "document");
+        when(extractor.getSolrDocument(documentReference)).thenReturn(solrDocument);
+
+        for (int i = 0; i < 10; ++i) {
+            this.mocker.getComponentUnderTest().index(documentReference, false);
+        }
+
+        verify(solrInstance, timeout(10000)).commit();
+
+        // The operations made while the first one was waiting in the queue are merged with it.
+        verify(extractor).getSolrDocument(documentReference);
+        verify(solrInstance).add(solrDocument);
+        assertEquals(9, this.mocker.getComponentUnderTest().getQueueMergedCount());
+    }
 }
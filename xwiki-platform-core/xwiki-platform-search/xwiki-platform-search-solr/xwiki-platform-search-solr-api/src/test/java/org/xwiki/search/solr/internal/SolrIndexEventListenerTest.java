@@ -19,22 +19,36 @@
  */
 package org.xwiki.search.solr.internal;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.Locale;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.EventListener;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.objects.BaseObjectReference;
 
 /**
  * Unit tests for {@link SolrIndexEventListener}.
@@ -68,4 +82,41 @@ public void onDocumentDeleted() throws Exception
 
         verify(indexer).delete(new DocumentReference(documentReference, Locale.FRENCH), false);
     }
+
+    @Test
+    public void onSpaceRightsUpdated() throws Exception
+    {
+        WikiReference wikiReference = new WikiReference("aWiki");
+        SpaceReference spaceReference = new SpaceReference("aSpace", wikiReference);
+        SpaceReference nestedSpaceReference = new SpaceReference("aNestedSpace", spaceReference);
+        DocumentReference preferencesReference = new DocumentReference("WebPreferences", spaceReference);
+        BaseObjectReference objectReference = new BaseObjectReference(
+            new DocumentReference("aWiki", "XWiki", "XWikiGlobalRights"), 0, preferencesReference);
+
+        EntityReferenceSerializer<String> serializer =
+            mocker.getInstance(EntityReferenceSerializer.TYPE_STRING, "local");
+        when(serializer.serialize(spaceReference)).thenReturn("aSpace");
+
+        Query query = mock(Query.class);
+        QueryManager queryManager = mocker.getInstance(QueryManager.class);
+        when(queryManager.createQuery(any(String.class), any(String.class))).thenReturn(query);
+        when(query.execute()).thenReturn(Arrays.<Object>asList("aSpace", "aSpace.aNestedSpace"));
+
+        EntityReferenceResolver<String> resolver = mocker.getInstance(EntityReferenceResolver.TYPE_STRING, "explicit");
+        when(resolver.resolve("aSpace", EntityType.SPACE, wikiReference)).thenReturn(spaceReference);
+        when(resolver.resolve("aSpace.aNestedSpace", EntityType.SPACE, wikiReference))
+            .thenReturn(nestedSpaceReference);
+
+        mocker.getComponentUnderTest().onEvent(new XObjectUpdatedEvent(objectReference), null, null);
+
+        verify(query).setWiki("aWiki");
+        verify(query).bindValue("space", "aSpace");
+        verify(query).bindValue("spacePrefix", "aSpace.%");
+
+        // The whole space tree is indexed again since the nested spaces inherit the rights of the space.
+        verify(indexer).index(objectReference, false);
+        verify(indexer).index(spaceReference, true);
+        verify(indexer).index(nestedSpaceReference, true);
+        verify(indexer, times(3)).index(any(EntityReference.class), anyBoolean());
+    }
 }
@@ -0,0 +1,178 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.security.SecurityReference;
+import org.xwiki.security.SecurityReferenceFactory;
+import org.xwiki.security.UserSecurityReference;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.security.authorization.RuleState;
+import org.xwiki.security.authorization.SecurityEntryReader;
+import org.xwiki.security.authorization.SecurityRule;
+import org.xwiki.security.authorization.SecurityRuleEntry;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ViewRightsEntityResolver}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class ViewRightsEntityResolverTest
+{
+    @Rule
+    public MockitoComponentMockingRule<ViewRightsEntityResolver> mocker =
+        new MockitoComponentMockingRule<>(ViewRightsEntityResolver.class);
+
+    private DocumentReference documentReference =
+        new DocumentReference("wiki", Arrays.asList("Space", "Nested"), "Page");
+
+    private SecurityEntryReader securityEntryReader;
+
+    private SecurityReferenceFactory securityReferenceFactory;
+
+    @Before
+    public void configure() throws Exception
+    {
+        this.securityEntryReader = this.mocker.getInstance(SecurityEntryReader.class);
+        this.securityReferenceFactory = this.mocker.getInstance(SecurityReferenceFactory.class);
+
+        EntityReferenceSerializer<String> serializer = this.mocker.getInstance(EntityReferenceSerializer.TYPE_STRING);
+        when(serializer.serialize(any())).then(invocation -> {
+            EntityReference reference = invocation.getArgument(0);
+            return reference.getName();
+        });
+
+        // No rule by default.
+        setRules(this.documentReference);
+        setRules(this.documentReference.getParent());
+        setRules(this.documentReference.getParent().getParent());
+        setRules(this.documentReference.getWikiReference());
+    }
+
+    private void setRules(EntityReference entity, SecurityRule... rules) throws Exception
+    {
+        SecurityReference securityReference = mock(SecurityReference.class, entity.getName());
+        when(this.securityReferenceFactory.newEntityReference(entity)).thenReturn(securityReference);
+
+        SecurityRuleEntry entry = mock(SecurityRuleEntry.class);
+        when(entry.getRules()).thenReturn(Arrays.asList(rules));
+        when(this.securityEntryReader.read(securityReference)).thenReturn(entry);
+    }
+
+    private SecurityRule rule(Right right)
+    {
+        SecurityRule rule = mock(SecurityRule.class);
+        when(rule.match(right)).thenReturn(true);
+
+        return rule;
+    }
+
+    @Test
+    public void getViewRightsEntityWithoutRules() throws Exception
+    {
+        assertEquals("wiki:wiki", this.mocker.getComponentUnderTest().getViewRightsEntity(this.documentReference));
+    }
+
+    @Test
+    public void getViewRightsEntityWithSpaceRules() throws Exception
+    {
+        setRules(this.documentReference.getParent().getParent(), rule(Right.VIEW));
+
+        assertEquals("space:Space", this.mocker.getComponentUnderTest().getViewRightsEntity(this.documentReference));
+
+        // Edit and admin rights imply the view right.
+        setRules(this.documentReference.getParent(), rule(Right.EDIT));
+
+        assertEquals("space:Nested", this.mocker.getComponentUnderTest().getViewRightsEntity(this.documentReference));
+    }
+
+    @Test
+    public void getViewRightsEntityWithDocumentRules() throws Exception
+    {
+        setRules(this.documentReference, rule(Right.VIEW));
+        setRules(this.documentReference.getParent(), rule(Right.VIEW));
+
+        assertEquals("document:Page", this.mocker.getComponentUnderTest()
+            .getViewRightsEntity(new DocumentReference(this.documentReference, Locale.FRENCH)));
+    }
+
+    @Test
+    public void getViewRightsEntityIgnoresOtherRights() throws Exception
+    {
+        setRules(this.documentReference, rule(Right.COMMENT), rule(Right.CREATOR));
+
+        assertEquals("wiki:wiki", this.mocker.getComponentUnderTest().getViewRightsEntity(this.documentReference));
+    }
+
+    @Test
+    public void getViewRightsEntityIgnoresOwnerEditRule() throws Exception
+    {
+        UserSecurityReference owner = mock(UserSecurityReference.class);
+        when(this.securityReferenceFactory.newUserReference(this.documentReference)).thenReturn(owner);
+
+        SecurityRule ownerRule = rule(Right.EDIT);
+        when(ownerRule.getState()).thenReturn(RuleState.ALLOW);
+        when(ownerRule.match(owner)).thenReturn(true);
+        setRules(this.documentReference, ownerRule);
+
+        assertEquals("wiki:wiki", this.mocker.getComponentUnderTest().getViewRightsEntity(this.documentReference));
+
+        // The rule also gives the view right.
+        when(ownerRule.match(Right.VIEW)).thenReturn(true);
+
+        assertEquals("document:Page", this.mocker.getComponentUnderTest().getViewRightsEntity(this.documentReference));
+
+        // The rule is not given to the owner.
+        SecurityRule otherRule = rule(Right.EDIT);
+        when(otherRule.getState()).thenReturn(RuleState.ALLOW);
+        setRules(this.documentReference, otherRule);
+
+        assertEquals("document:Page", this.mocker.getComponentUnderTest().getViewRightsEntity(this.documentReference));
+    }
+
+    @Test
+    public void resolve() throws Exception
+    {
+        SpaceReference spaceReference = new SpaceReference("Space", this.documentReference.getWikiReference());
+        EntityReferenceResolver<String> resolver = this.mocker.getInstance(EntityReferenceResolver.TYPE_STRING);
+        when(resolver.resolve("wiki:Space", EntityType.SPACE)).thenReturn(spaceReference);
+
+        assertSame(spaceReference, this.mocker.getComponentUnderTest().resolve("space:wiki:Space"));
+    }
+}
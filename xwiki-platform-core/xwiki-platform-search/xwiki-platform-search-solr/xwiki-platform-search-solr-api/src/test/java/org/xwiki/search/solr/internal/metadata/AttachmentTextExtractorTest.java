@@ -0,0 +1,306 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal.metadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Provider;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.reference.AttachmentReference;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.search.solr.internal.api.SolrConfiguration;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link AttachmentTextExtractor}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@ComponentList(AttachmentTextCache.class)
+public class AttachmentTextExtractorTest
+{
+    @Rule
+    public MockitoComponentMockingRule<AttachmentTextExtractor> mocker =
+        new MockitoComponentMockingRule<>(AttachmentTextExtractor.class);
+
+    @Rule
+    public TemporaryFolder permanentDirectory = new TemporaryFolder();
+
+    private XWikiContext xcontext = mock(XWikiContext.class);
+
+    private SolrConfiguration configuration;
+
+    @Before
+    public void configure() throws Exception
+    {
+        Provider<XWikiContext> xcontextProvider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(xcontextProvider.get()).thenReturn(this.xcontext);
+
+        Environment environment = this.mocker.registerMockComponent(Environment.class);
+        when(environment.getPermanentDirectory()).thenReturn(this.permanentDirectory.getRoot());
+
+        EntityReferenceSerializer<String> serializer = this.mocker.getInstance(EntityReferenceSerializer.TYPE_STRING);
+        when(serializer.serialize(any())).then(invocation -> invocation.getArgument(0).toString());
+
+        this.configuration = this.mocker.getInstance(SolrConfiguration.class);
+        when(this.configuration.getAttachmentContentMaxLength()).thenReturn(100000);
+        when(this.configuration.getAttachmentContentTimeout()).thenReturn(60);
+        when(this.configuration.getAttachmentContentCacheSize()).thenReturn(1);
+    }
+
+    private XWikiAttachment createAttachment(String fileName, String version, String content) throws Exception
+    {
+        XWikiAttachment attachment = mock(XWikiAttachment.class, fileName + version);
+        when(attachment.getReference())
+            .thenReturn(new AttachmentReference(fileName, new DocumentReference("wiki", "Space", "Page")));
+        when(attachment.getFilename()).thenReturn(fileName);
+        when(attachment.getVersion()).thenReturn(version);
+        when(attachment.getDate()).thenReturn(new Date(123));
+        when(attachment.getLongSize()).thenReturn((long) content.length());
+        when(attachment.getContentInputStream(this.xcontext))
+            .then(invocation -> new ByteArrayInputStream(content.getBytes()));
+
+        return attachment;
+    }
+
+    private File getCacheDir()
+    {
+        return new File(this.permanentDirectory.getRoot(), "cache/solr/attachments");
+    }
+
+    @Test
+    public void getTextIsStored() throws Exception
+    {
+        XWikiAttachment attachment = createAttachment("todo.txt", "1.1", "foo");
+
+        assertEquals("foo\n", this.mocker.getComponentUnderTest().getText(attachment));
+        assertEquals("foo\n", this.mocker.getComponentUnderTest().getText(attachment));
+
+        verify(attachment, times(1)).getContentInputStream(this.xcontext);
+
+        XWikiAttachment newVersion = createAttachment("todo.txt", "1.2", "bar");
+        assertEquals("bar\n", this.mocker.getComponentUnderTest().getText(newVersion));
+    }
+
+    @Test
+    public void getTextWithMaxLength() throws Exception
+    {
+        when(this.configuration.getAttachmentContentMaxLength()).thenReturn(10);
+
+        assertEquals("0123456789", this.mocker.getComponentUnderTest()
+            .getText(createAttachment("numbers.txt", "1.1", "0123456789012345678901234567890123456789")));
+    }
+
+    @Test
+    public void getTextWithTimeout() throws Exception
+    {
+        when(this.configuration.getAttachmentContentTimeout()).thenReturn(1);
+
+        XWikiAttachment attachment = createAttachment("slow.txt", "1.1", "");
+        when(attachment.getContentInputStream(this.xcontext)).thenReturn(new InputStream()
+        {
+            @Override
+            public int read() throws IOException
+            {
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+
+                return -1;
+            }
+        });
+
+        long start = System.currentTimeMillis();
+        assertEquals("", this.mocker.getComponentUnderTest().getText(attachment));
+        assertTrue(System.currentTimeMillis() - start < 30000);
+
+        // The attachment is not parsed again.
+        assertEquals("", this.mocker.getComponentUnderTest().getText(attachment));
+        verify(attachment, times(1)).getContentInputStream(this.xcontext);
+
+        // But the empty text is not stored so that the attachment is parsed again later.
+        assertEquals(0, getCacheDir().listFiles().length);
+    }
+
+    @Test
+    public void getTextWhenAllThreadsAreBusy() throws Exception
+    {
+        when(this.configuration.getAttachmentContentTimeout()).thenReturn(1);
+
+        // Parsers which don't stop when cancelled.
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream loopingContent = new InputStream()
+        {
+            @Override
+            public int read() throws IOException
+            {
+                while (release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // Ignored.
+                    }
+                }
+
+                return -1;
+            }
+        };
+
+        try {
+            for (int i = 0; i < 4; i++) {
+                XWikiAttachment attachment = createAttachment("loop" + i + ".txt", "1.1", "");
+                when(attachment.getContentInputStream(this.xcontext)).thenReturn(loopingContent);
+                assertEquals("", this.mocker.getComponentUnderTest().getText(attachment));
+            }
+
+            // The extraction is skipped (after waiting for a thread) instead of starting yet another thread, and
+            // handled as if the parsing timed out.
+            long start = System.currentTimeMillis();
+            XWikiAttachment attachment = createAttachment("todo.txt", "1.1", "foo");
+            assertEquals("", this.mocker.getComponentUnderTest().getText(attachment));
+            assertTrue(System.currentTimeMillis() - start < 30000);
+            verify(attachment, never()).getContentInputStream(this.xcontext);
+            assertEquals(0, getCacheDir().listFiles().length);
+        } finally {
+            release.countDown();
+        }
+
+        // The threads are available again once the parsers stop.
+        XWikiAttachment attachment = createAttachment("other.txt", "1.1", "bar");
+        assertEquals("bar\n", this.mocker.getComponentUnderTest().getText(attachment));
+    }
+
+    @Test
+    public void getTextWaitsForAThread() throws Exception
+    {
+        when(this.configuration.getAttachmentContentTimeout()).thenReturn(10);
+
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream waitingContent = new InputStream()
+        {
+            @Override
+            public int read() throws IOException
+            {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+
+                return -1;
+            }
+        };
+
+        // Keep all the threads busy from other indexing threads.
+        ExecutorService indexers = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 4; i++) {
+                XWikiAttachment attachment = createAttachment("wait" + i + ".txt", "1.1", "");
+                when(attachment.getContentInputStream(this.xcontext)).thenReturn(waitingContent);
+                indexers.submit(() -> this.mocker.getComponentUnderTest().getText(attachment));
+            }
+            Thread.sleep(100);
+
+            // The parsers finish while the attachment waits for a thread.
+            new Thread(() -> {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    // Ignored.
+                }
+                release.countDown();
+            }).start();
+
+            XWikiAttachment attachment = createAttachment("todo.txt", "1.1", "foo");
+            assertEquals("foo\n", this.mocker.getComponentUnderTest().getText(attachment));
+        } finally {
+            release.countDown();
+            indexers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void getTextWhenContentIsNotAvailable() throws Exception
+    {
+        XWikiAttachment attachment = createAttachment("missing.txt", "1.1", "");
+        when(attachment.getContentInputStream(this.xcontext)).thenThrow(new RuntimeException("missing"));
+
+        assertNull(this.mocker.getComponentUnderTest().getText(attachment));
+    }
+
+    @Test
+    public void leastRecentlyUsedTextsAreRemoved() throws Exception
+    {
+        // The cache is limited to 1MB so storing 3 texts of 400KB removes the first one.
+        String content = StringUtils.repeat('a', 400000);
+        when(this.configuration.getAttachmentContentMaxLength()).thenReturn(500000);
+
+        XWikiAttachment first = createAttachment("first.txt", "1.1", content);
+        XWikiAttachment second = createAttachment("second.txt", "1.1", content);
+        XWikiAttachment third = createAttachment("third.txt", "1.1", content);
+
+        this.mocker.getComponentUnderTest().getText(first);
+        File firstFile = getCacheDir().listFiles()[0];
+        firstFile.setLastModified(System.currentTimeMillis() - 60000);
+
+        this.mocker.getComponentUnderTest().getText(second);
+        this.mocker.getComponentUnderTest().getText(third);
+
+        this.mocker.getComponentUnderTest().getText(second);
+        this.mocker.getComponentUnderTest().getText(third);
+        this.mocker.getComponentUnderTest().getText(first);
+
+        verify(first, times(2)).getContentInputStream(this.xcontext);
+        verify(second, times(1)).getContentInputStream(this.xcontext);
+        verify(third, times(1)).getContentInputStream(this.xcontext);
+    }
+}
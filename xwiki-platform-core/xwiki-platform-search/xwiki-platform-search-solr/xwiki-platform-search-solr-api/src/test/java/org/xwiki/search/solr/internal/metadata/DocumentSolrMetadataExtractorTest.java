@@ -53,9 +53,11 @@
 import org.xwiki.rendering.renderer.BlockRenderer;
 import org.xwiki.rendering.renderer.printer.WikiPrinter;
 import org.xwiki.search.solr.internal.api.FieldUtils;
+import org.xwiki.search.solr.internal.api.SolrConfiguration;
 import org.xwiki.search.solr.internal.api.SolrFieldNameEncoder;
 import org.xwiki.search.solr.internal.api.SolrIndexerException;
 import org.xwiki.search.solr.internal.reference.SolrReferenceResolver;
+import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import com.xpn.xwiki.XWiki;
@@ -90,6 +92,7 @@
  * 
  * @version $Id$
  */
+@ComponentList(AttachmentTextExtractor.class)
 public class DocumentSolrMetadataExtractorTest
 {
     @Rule
@@ -110,6 +113,12 @@
     public void setUp() throws Exception
     {
         this.mocker.registerMockComponent(SolrReferenceResolver.class, "document");
+
+        // Attachment text extraction, without keeping the extracted text.
+        this.mocker.registerMockComponent(AttachmentTextCache.class);
+        SolrConfiguration solrConfiguration = this.mocker.registerMockComponent(SolrConfiguration.class);
+        when(solrConfiguration.getAttachmentContentMaxLength()).thenReturn(100000);
+        when(solrConfiguration.getAttachmentContentTimeout()).thenReturn(60);
         this.xcontext = mock(XWikiContext.class);
 
         // XWikiContext Provider
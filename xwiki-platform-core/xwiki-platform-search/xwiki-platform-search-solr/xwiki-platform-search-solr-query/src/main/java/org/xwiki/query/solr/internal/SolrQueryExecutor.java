@@ -105,6 +105,9 @@ public class SolrQueryExecutor implements QueryExecutor
     @Inject
     private JobProgressManager progress;
 
+    @Inject
+    private ViewRightsFilter viewRightsFilter;
+
     @Override
     public <T> List<T> execute(Query query) throws QueryException
     {
@@ -117,31 +120,22 @@ public <T> List<T> execute(Query query) throws QueryException
             SolrInstance solrInstance = solrInstanceProvider.get();
             SolrQuery solrQuery = createSolrQuery(query);
 
+            List<DocumentReference> usersToCheck = getUsersToCheck(query);
+            if (!usersToCheck.isEmpty()) {
+                // Exclude the results the users are not allowed to view in the query itself so that the number of
+                // results, the pages and the facets are right.
+                this.viewRightsFilter.filter(solrQuery, usersToCheck);
+            }
+
             this.progress.startStep(query, "query.solr.progress.execute.execute", "Execute");
 
             QueryResponse response = solrInstance.query(solrQuery);
 
             this.progress.startStep(query, "query.solr.progress.execute.filter", "Filter");
 
-            // Check access rights need to be checked before returning the response.
-            // FIXME: this is not really the best way, mostly because at this point all grouping operations
-            // have already been performed and any change on the result will not ensure that the grouping
-            // information (facets, highlighting, maxScore, etc.) is still relevant.
-            // A better way would be using a PostFilter as described in this article:
-            // http://java.dzone.com/articles/custom-security-filtering-solr
-            // Basically, we would be asking
-            List<DocumentReference> usersToCheck = new ArrayList<>(2);
-            if (query instanceof SecureQuery) {
-                if (((SecureQuery) query).isCurrentUserChecked()) {
-                    usersToCheck.add(xcontextProvider.get().getUserReference());
-                }
-                if (((SecureQuery) query).isCurrentAuthorChecked()) {
-                    usersToCheck.add(xcontextProvider.get().getAuthorReference());
-                }
-            } else {
-                usersToCheck.add(xcontextProvider.get().getUserReference());
-                usersToCheck.add(xcontextProvider.get().getAuthorReference());
-            }
+            // Check access rights again on the returned results since the rights might have been modified since the
+            // entities were indexed (and the entities indexed before the rights are not filtered by the query). It
+            // shouldn't filter anything most of the time.
             if (!usersToCheck.isEmpty()) {
                 filterResponse(response, usersToCheck);
             }
@@ -155,6 +149,24 @@ public <T> List<T> execute(Query query) throws QueryException
         }
     }
 
+    private List<DocumentReference> getUsersToCheck(Query query)
+    {
+        List<DocumentReference> usersToCheck = new ArrayList<>(2);
+        if (query instanceof SecureQuery) {
+            if (((SecureQuery) query).isCurrentUserChecked()) {
+                usersToCheck.add(xcontextProvider.get().getUserReference());
+            }
+            if (((SecureQuery) query).isCurrentAuthorChecked()) {
+                usersToCheck.add(xcontextProvider.get().getAuthorReference());
+            }
+        } else {
+            usersToCheck.add(xcontextProvider.get().getUserReference());
+            usersToCheck.add(xcontextProvider.get().getAuthorReference());
+        }
+
+        return usersToCheck;
+    }
+
     private SolrQuery createSolrQuery(Query query)
     {
         SolrQuery solrQuery = new SolrQuery(query.getStatement());
@@ -0,0 +1,248 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.query.solr.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.FacetField;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.search.solr.internal.ViewRightsEntityResolver;
+import org.xwiki.search.solr.internal.api.FieldUtils;
+import org.xwiki.search.solr.internal.api.SolrInstance;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
+
+/**
+ * Add to a Solr query the filter excluding the results the users are not allowed to view, so that the number of
+ * results and the pages of results are right. The index contains for each entity the entity holding the rights which
+ * decide who can view it (see {@link ViewRightsEntityResolver}) so the rights are checked only on these entities.
+ * Only the entities of the wikis targeted by the query (through a filter query on the wiki field) are checked.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = ViewRightsFilter.class)
+@Singleton
+public class ViewRightsFilter
+{
+    /**
+     * The parameter containing the entities the users are allowed to view.
+     */
+    private static final String PARAM_ALLOWED_ENTITIES = "xwikiAllowedRightsEntities";
+
+    /**
+     * The parameter containing the separator of the allowed entities. Entity references can contain commas so we can't
+     * use the default separator. Note that the parameters referenced from the filter query can't contain dots.
+     */
+    private static final String PARAM_SEPARATOR = "xwikiAllowedRightsEntitiesSeparator";
+
+    private static final String SEPARATOR = "\n";
+
+    /**
+     * The entities indexed before the rights entity was indexed are not filtered by the query.
+     */
+    private static final String NOT_INDEXED_FILTER = "(*:* -" + FieldUtils.RIGHTS_ENTITY + ":[* TO *])";
+
+    private static final String ALLOWED_FILTER = String.format("_query_:\"{!terms f=%s separator=$%s v=$%s}\" OR %s",
+        FieldUtils.RIGHTS_ENTITY, PARAM_SEPARATOR, PARAM_ALLOWED_ENTITIES, NOT_INDEXED_FILTER);
+
+    /**
+     * How long the list of indexed rights entities is kept in memory. The entities which are not in the list are
+     * filtered so a new entity won't appear in the results for at most this amount of time.
+     */
+    private static final long ENTITIES_CACHE_TIME = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * Matches the filter queries on the wiki field, as generated by the search UI (e.g. "wiki:xwiki" or
+     * "{!tag=wiki}wiki:(xwiki OR dev)").
+     */
+    private static final Pattern WIKI_FILTER =
+        Pattern.compile("^(?:\\{![^}]*\\})?" + FieldUtils.WIKI + ":(?:\\((.*)\\)|(\\S+))$");
+
+    private static final Pattern WIKI_FILTER_SEPARATOR = Pattern.compile("\\s+OR\\s+");
+
+    /**
+     * The key of the entities of all the wikis, used when the query doesn't target specific wikis.
+     */
+    private static final String ALL_WIKIS = "";
+
+    @Inject
+    private Provider<SolrInstance> solrInstanceProvider;
+
+    @Inject
+    private AuthorizationManager authorization;
+
+    @Inject
+    private ViewRightsEntityResolver viewRightsEntityResolver;
+
+    private final Map<String, IndexedEntities> entities = new ConcurrentHashMap<>();
+
+    private static class IndexedEntities
+    {
+        private final List<String> entities;
+
+        private final long date = System.currentTimeMillis();
+
+        IndexedEntities(List<String> entities)
+        {
+            this.entities = entities;
+        }
+
+        boolean isExpired()
+        {
+            return System.currentTimeMillis() - this.date > ENTITIES_CACHE_TIME;
+        }
+    }
+
+    /**
+     * Add the filter to the passed query.
+     *
+     * @param solrQuery the query to filter
+     * @param users the users who need to be allowed to view the results
+     * @throws SolrServerException when failing to retrieve the indexed rights entities
+     * @throws IOException when failing to retrieve the indexed rights entities
+     */
+    public void filter(SolrQuery solrQuery, List<DocumentReference> users) throws SolrServerException, IOException
+    {
+        List<String> allowedEntities = new ArrayList<>();
+        for (String entity : getEntities(getWikis(solrQuery))) {
+            if (isAllowed(this.viewRightsEntityResolver.resolve(entity), users)) {
+                allowedEntities.add(entity);
+            }
+        }
+
+        if (allowedEntities.isEmpty()) {
+            solrQuery.addFilterQuery(NOT_INDEXED_FILTER);
+        } else {
+            solrQuery.addFilterQuery(ALLOWED_FILTER);
+            solrQuery.set(PARAM_SEPARATOR, SEPARATOR);
+            solrQuery.set(PARAM_ALLOWED_ENTITIES, StringUtils.join(allowedEntities, SEPARATOR));
+        }
+    }
+
+    private boolean isAllowed(EntityReference entity, List<DocumentReference> users)
+    {
+        for (DocumentReference user : users) {
+            if (!this.authorization.hasAccess(Right.VIEW, user, entity)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param solrQuery the query to filter
+     * @return the wikis targeted by the filter queries of the passed query, or {@link #ALL_WIKIS} when the query is
+     *         not restricted to specific wikis
+     */
+    private Collection<String> getWikis(SolrQuery solrQuery)
+    {
+        String[] filterQueries = solrQuery.getFilterQueries();
+        if (filterQueries != null) {
+            for (String filterQuery : filterQueries) {
+                Matcher matcher = WIKI_FILTER.matcher(filterQuery.trim());
+                if (matcher.matches()) {
+                    Set<String> wikis = new LinkedHashSet<>();
+                    String values = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+                    for (String value : WIKI_FILTER_SEPARATOR.split(values.trim())) {
+                        String wiki = StringUtils.strip(value, "\"").replaceAll("\\\\(.)", "$1");
+                        if (wiki.isEmpty() || wiki.contains("*") || wiki.contains("?")) {
+                            // Wildcard or unsupported syntax.
+                            return Collections.singletonList(ALL_WIKIS);
+                        }
+                        wikis.add(wiki);
+                    }
+                    // Several filter queries on the wiki field are intersected so any of them gives a superset of the
+                    // targeted wikis.
+                    return wikis;
+                }
+            }
+        }
+
+        return Collections.singletonList(ALL_WIKIS);
+    }
+
+    /**
+     * @param wikis the wikis targeted by the query
+     * @return the distinct rights entities of the indexed entities of the passed wikis
+     */
+    private Set<String> getEntities(Collection<String> wikis) throws SolrServerException, IOException
+    {
+        Set<String> wikisEntities = new LinkedHashSet<>();
+        for (String wiki : wikis) {
+            IndexedEntities wikiEntities = this.entities.get(wiki);
+            if (wikiEntities == null || wikiEntities.isExpired()) {
+                wikiEntities = new IndexedEntities(getIndexedEntities(wiki));
+                this.entities.put(wiki, wikiEntities);
+            }
+            wikisEntities.addAll(wikiEntities.entities);
+        }
+
+        return wikisEntities;
+    }
+
+    private List<String> getIndexedEntities(String wiki) throws SolrServerException, IOException
+    {
+        SolrQuery query = new SolrQuery("*:*");
+        if (!ALL_WIKIS.equals(wiki)) {
+            query.addFilterQuery(FieldUtils.WIKI + ':' + ClientUtils.escapeQueryChars(wiki));
+        }
+        query.setRows(0);
+        query.setFacet(true);
+        query.addFacetField(FieldUtils.RIGHTS_ENTITY);
+        query.setFacetLimit(-1);
+        query.setFacetMinCount(1);
+
+        QueryResponse response = this.solrInstanceProvider.get().query(query);
+
+        List<String> indexedEntities = new ArrayList<>();
+        FacetField facetField = response.getFacetField(FieldUtils.RIGHTS_ENTITY);
+        if (facetField != null) {
+            for (FacetField.Count count : facetField.getValues()) {
+                indexedEntities.add(count.getName());
+            }
+        }
+
+        return Collections.unmodifiableList(indexedEntities);
+    }
+}
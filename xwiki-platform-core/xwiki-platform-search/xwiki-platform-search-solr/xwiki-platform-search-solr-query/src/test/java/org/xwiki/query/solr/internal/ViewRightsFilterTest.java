@@ -0,0 +1,161 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.query.solr.internal;
+
+import java.lang.reflect.ParameterizedType;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.inject.Provider;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.FacetField;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.SolrParams;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.search.solr.internal.ViewRightsEntityResolver;
+import org.xwiki.search.solr.internal.api.SolrInstance;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ViewRightsFilter}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class ViewRightsFilterTest
+{
+    @Rule
+    public MockitoComponentMockingRule<ViewRightsFilter> mocker =
+        new MockitoComponentMockingRule<>(ViewRightsFilter.class);
+
+    private SolrInstance solr = mock(SolrInstance.class);
+
+    private DocumentReference user = new DocumentReference("wiki", "XWiki", "User");
+
+    private DocumentReference author = new DocumentReference("wiki", "XWiki", "Author");
+
+    private WikiReference wikiReference = new WikiReference("wiki");
+
+    private SpaceReference publicSpace = new SpaceReference("Public", this.wikiReference);
+
+    private SpaceReference privateSpace = new SpaceReference("Private, really", this.wikiReference);
+
+    private AuthorizationManager authorization;
+
+    @Before
+    public void configure() throws Exception
+    {
+        ParameterizedType solrProviderType = new DefaultParameterizedType(null, Provider.class, SolrInstance.class);
+        Provider<SolrInstance> provider = this.mocker.registerMockComponent(solrProviderType);
+        when(provider.get()).thenReturn(this.solr);
+
+        FacetField facetField = new FacetField("rights_entity");
+        facetField.add("wiki:wiki", 10);
+        facetField.add("space:wiki:Public", 2);
+        facetField.add("space:wiki:Private, really", 3);
+
+        QueryResponse response = mock(QueryResponse.class);
+        when(response.getFacetField("rights_entity")).thenReturn(facetField);
+        when(this.solr.query(any(SolrParams.class))).thenReturn(response);
+
+        ViewRightsEntityResolver resolver = this.mocker.getInstance(ViewRightsEntityResolver.class);
+        when(resolver.resolve("wiki:wiki")).thenReturn(this.wikiReference);
+        when(resolver.resolve("space:wiki:Public")).thenReturn(this.publicSpace);
+        when(resolver.resolve("space:wiki:Private, really")).thenReturn(this.privateSpace);
+
+        this.authorization = this.mocker.getInstance(AuthorizationManager.class);
+        when(this.authorization.hasAccess(Right.VIEW, this.user, this.wikiReference)).thenReturn(true);
+        when(this.authorization.hasAccess(Right.VIEW, this.user, this.publicSpace)).thenReturn(true);
+        when(this.authorization.hasAccess(Right.VIEW, this.author, this.wikiReference)).thenReturn(true);
+        when(this.authorization.hasAccess(Right.VIEW, this.author, this.publicSpace)).thenReturn(true);
+        when(this.authorization.hasAccess(Right.VIEW, this.author, this.privateSpace)).thenReturn(true);
+    }
+
+    @Test
+    public void filter() throws Exception
+    {
+        SolrQuery query = new SolrQuery("test");
+        this.mocker.getComponentUnderTest().filter(query, Arrays.asList(this.user, this.author));
+
+        assertArrayEquals(new String[] { "_query_:\"{!terms f=rights_entity"
+            + " separator=$xwikiAllowedRightsEntitiesSeparator v=$xwikiAllowedRightsEntities}\""
+            + " OR (*:* -rights_entity:[* TO *])" }, query.getFilterQueries());
+        assertEquals("\n", query.get("xwikiAllowedRightsEntitiesSeparator"));
+        assertEquals("wiki:wiki\nspace:wiki:Public", query.get("xwikiAllowedRightsEntities"));
+
+        query = new SolrQuery("test");
+        this.mocker.getComponentUnderTest().filter(query, Arrays.asList(this.author));
+
+        assertEquals("wiki:wiki\nspace:wiki:Public\nspace:wiki:Private, really",
+            query.get("xwikiAllowedRightsEntities"));
+
+        // The indexed entities are kept in memory.
+        verify(this.solr, times(1)).query(any(SolrParams.class));
+    }
+
+    @Test
+    public void filterWithWikiFilterQuery() throws Exception
+    {
+        SolrQuery query = new SolrQuery("test");
+        query.addFilterQuery("{!tag=wiki}wiki:(wiki OR other\\-wiki)");
+        this.mocker.getComponentUnderTest().filter(query, Arrays.asList(this.user));
+
+        assertEquals("wiki:wiki\nspace:wiki:Public", query.get("xwikiAllowedRightsEntities"));
+
+        // Only the entities of the targeted wikis are retrieved, and they are kept in memory per wiki.
+        query = new SolrQuery("test");
+        query.addFilterQuery("wiki:wiki");
+        this.mocker.getComponentUnderTest().filter(query, Arrays.asList(this.user));
+
+        verify(this.solr).query(argThat((SolrParams params) -> params.get("q").equals("*:*")
+            && Arrays.equals(new String[] { "wiki:wiki" }, params.getParams("fq"))));
+        verify(this.solr).query(argThat((SolrParams params) -> params.get("q").equals("*:*")
+            && Arrays.equals(new String[] { "wiki:other\\-wiki" }, params.getParams("fq"))));
+        verify(this.solr, times(2)).query(any(SolrParams.class));
+    }
+
+    @Test
+    public void filterWhenNothingIsAllowed() throws Exception
+    {
+        SolrQuery query = new SolrQuery("test");
+        this.mocker.getComponentUnderTest().filter(query,
+            Collections.singletonList(new DocumentReference("wiki", "XWiki", "Other")));
+
+        assertArrayEquals(new String[] { "(*:* -rights_entity:[* TO *])" }, query.getFilterQueries());
+    }
+}
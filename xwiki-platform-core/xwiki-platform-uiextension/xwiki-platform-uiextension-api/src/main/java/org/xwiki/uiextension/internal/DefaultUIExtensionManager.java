@@ -19,25 +19,27 @@
  */
 package org.xwiki.uiextension.internal;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.inject.Inject;
-import javax.inject.Named;
-import javax.inject.Provider;
+import javax.inject.Singleton;
 
 import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
-import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.uiextension.UIExtension;
 import org.xwiki.uiextension.UIExtensionManager;
 
 /**
- * Default UIExtensionManager, retrieves all the extensions for a given extension point.
+ * Default UIExtensionManager, retrieves all the extensions for a given extension point. The extensions are taken from
+ * the {@link UIExtensionRegistry} so the returned lists are sorted by id and can't be modified.
  *
  * @version $Id$
  * @since 4.3.1
  */
+@Component
+@Singleton
 public class DefaultUIExtensionManager implements UIExtensionManager
 {
     /**
@@ -47,30 +49,21 @@ public class DefaultUIExtensionManager implements UIExtensionManager
     private Logger logger;
 
     /**
-     * We use the Context Component Manager to lookup UI Extensions registered as components.
-     * The Context Component Manager allows Extensions to be registered for a specific user, for a specific wiki or for
-     * a whole farm.
+     * The UI Extensions registered as components, indexed by extension point. The registry uses the Context Component
+     * Manager which allows Extensions to be registered for a specific user, for a specific wiki or for a whole farm.
      */
     @Inject
-    @Named("context")
-    private Provider<ComponentManager> contextComponentManagerProvider;
+    private UIExtensionRegistry registry;
 
     @Override
     public List<UIExtension> get(String extensionPointId)
     {
-        List<UIExtension> extensions = new ArrayList<UIExtension>();
-
         try {
-            List<UIExtension> allExtensions = contextComponentManagerProvider.get().getInstanceList(UIExtension.class);
-            for (UIExtension extension : allExtensions) {
-                if (extension.getExtensionPointId().equals(extensionPointId)) {
-                    extensions.add(extension);
-                }
-            }
+            return this.registry.get(extensionPointId);
         } catch (ComponentLookupException e) {
             logger.error("Failed to lookup UIExtension instances, error: [{}]", e);
-        }
 
-        return extensions;
+            return Collections.emptyList();
+        }
     }
 }
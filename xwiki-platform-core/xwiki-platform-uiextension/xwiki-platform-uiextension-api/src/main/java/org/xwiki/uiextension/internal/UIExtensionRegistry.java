@@ -0,0 +1,205 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.uiextension.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.internal.multi.ComponentManagerManager;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.ModelContext;
+import org.xwiki.model.namespace.DocumentNamespace;
+import org.xwiki.model.namespace.SpaceNamespace;
+import org.xwiki.model.namespace.UserNamespace;
+import org.xwiki.model.namespace.WikiNamespace;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.uiextension.UIExtension;
+import org.xwiki.uiextension.internal.filter.SortByIdFilter;
+
+/**
+ * Keep in memory the {@link UIExtension}s indexed by extension point, so that all the UI extension components don't
+ * have to be looked up and filtered each time an extension point is displayed. Since the Context Component Manager
+ * merges the components of the root, wiki, space, document and user component managers, the index is computed for
+ * each combination of existing namespaced component managers. The lists are sorted by id and can't be modified.
+ * <p>
+ * The registry is cleaned by {@link UIExtensionRegistryListener} as soon as a UI extension component is registered or
+ * unregistered in any component manager (e.g. when an extension is installed or when a document defining a
+ * {@link WikiUIExtension} is saved).
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = UIExtensionRegistry.class)
+@Singleton
+public class UIExtensionRegistry
+{
+    /**
+     * The same order as {@link SortByIdFilter}, so that sorting the lists by id is cheap. The extensions without id are
+     * put at the end.
+     */
+    private static final Comparator<UIExtension> ID_COMPARATOR =
+        Comparator.comparing(UIExtension::getId, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+
+    /**
+     * We use the Context Component Manager to lookup UI Extensions registered as components.
+     */
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> contextComponentManagerProvider;
+
+    @Inject
+    private ComponentManagerManager componentManagerManager;
+
+    @Inject
+    private DocumentAccessBridge documentAccessBridge;
+
+    @Inject
+    private ModelContext modelContext;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    /**
+     * The {@link UIExtension}s indexed by extension point, for each combination of namespaces.
+     */
+    private final Map<String, Map<String, List<UIExtension>>> extensions = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented each time the registry is cleaned, to not store an index computed from outdated components.
+     */
+    private long version;
+
+    /**
+     * @param extensionPointId the id of the extension point
+     * @return the {@link UIExtension}s available in the current context for the passed extension point, sorted by id
+     * @throws ComponentLookupException when failing to lookup the UI extensions
+     */
+    public List<UIExtension> get(String extensionPointId) throws ComponentLookupException
+    {
+        String key = getNamespacesKey();
+
+        Map<String, List<UIExtension>> index = this.extensions.get(key);
+        if (index == null) {
+            long currentVersion = getVersion();
+
+            index = createIndex();
+
+            synchronized (this) {
+                // Don't cache something computed while the components were changing
+                if (this.version == currentVersion) {
+                    this.extensions.put(key, index);
+                }
+            }
+        }
+
+        List<UIExtension> result = index.get(extensionPointId);
+
+        return result != null ? result : Collections.<UIExtension>emptyList();
+    }
+
+    /**
+     * Remove all the indexed {@link UIExtension}s (e.g. because one has been added or removed).
+     */
+    public synchronized void removeAll()
+    {
+        this.version++;
+        this.extensions.clear();
+    }
+
+    private synchronized long getVersion()
+    {
+        return this.version;
+    }
+
+    private Map<String, List<UIExtension>> createIndex() throws ComponentLookupException
+    {
+        Map<String, List<UIExtension>> index = new HashMap<>();
+        for (UIExtension extension : this.contextComponentManagerProvider.get().getInstanceList(UIExtension.class)) {
+            List<UIExtension> extensionPointExtensions = index.get(extension.getExtensionPointId());
+            if (extensionPointExtensions == null) {
+                extensionPointExtensions = new ArrayList<>();
+                index.put(extension.getExtensionPointId(), extensionPointExtensions);
+            }
+            extensionPointExtensions.add(extension);
+        }
+
+        for (Map.Entry<String, List<UIExtension>> entry : index.entrySet()) {
+            Collections.sort(entry.getValue(), ID_COMPARATOR);
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+
+        return index;
+    }
+
+    /**
+     * @return the namespaces of the component managers the Context Component Manager is currently made of (only the
+     *         ones which exist, i.e. in which at least one component has been registered)
+     */
+    private String getNamespacesKey()
+    {
+        StringBuilder key = new StringBuilder();
+
+        DocumentReference userReference = this.documentAccessBridge.getCurrentUserReference();
+        if (userReference != null) {
+            appendNamespace(key, UserNamespace.TYPE, userReference);
+        }
+
+        DocumentReference documentReference = this.documentAccessBridge.getCurrentDocumentReference();
+        if (documentReference != null) {
+            appendNamespace(key, DocumentNamespace.TYPE, documentReference);
+            appendNamespace(key, SpaceNamespace.TYPE, documentReference.getLastSpaceReference());
+        }
+
+        // The wiki namespace is always part of the key since there is usually a component manager for each wiki.
+        EntityReference currentReference = this.modelContext.getCurrentEntityReference();
+        if (currentReference != null) {
+            EntityReference wikiReference = currentReference.extractReference(EntityType.WIKI);
+            if (wikiReference != null) {
+                key.append(WikiNamespace.TYPE).append(':').append(wikiReference.getName());
+            }
+        }
+
+        return key.toString();
+    }
+
+    private void appendNamespace(StringBuilder key, String type, EntityReference reference)
+    {
+        String namespace = type + ':' + this.serializer.serialize(reference);
+        if (this.componentManagerManager.getComponentManager(namespace, false) != null) {
+            key.append(namespace).append('\0');
+        }
+    }
+}
@@ -43,14 +43,16 @@
 public class SortByIdFilter implements UIExtensionFilter
 {
     /**
-     * Comparator comparing the IDs of two {@link UIExtension}s.
+     * Comparator comparing the IDs of two {@link UIExtension}s. The extensions without id are put at the end.
      */
     public class UIExtensionIdComparator implements Comparator<UIExtension>
     {
+        private final Comparator<String> idComparator = Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER);
+
         @Override
         public int compare(UIExtension source, UIExtension target)
         {
-            return source.getId().compareToIgnoreCase(target.getId());
+            return this.idComparator.compare(source.getId(), target.getId());
         }
     }
 
@@ -62,10 +64,28 @@ public int compare(UIExtension source, UIExtension target)
     @Override
     public List<UIExtension> filter(List<UIExtension> extensions, String... ignored)
     {
+        Comparator<UIExtension> comparator = new UIExtensionIdComparator();
+
+        // The lists returned by the default UI extension manager are already sorted by id.
+        if (isSorted(extensions, comparator)) {
+            return extensions;
+        }
+
         List<UIExtension> results = new ArrayList<UIExtension>();
         results.addAll(extensions);
-        Collections.sort(results, new UIExtensionIdComparator());
+        Collections.sort(results, comparator);
 
         return results;
     }
+
+    private boolean isSorted(List<UIExtension> extensions, Comparator<UIExtension> comparator)
+    {
+        for (int i = 1; i < extensions.size(); i++) {
+            if (comparator.compare(extensions.get(i - 1), extensions.get(i)) > 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
 }
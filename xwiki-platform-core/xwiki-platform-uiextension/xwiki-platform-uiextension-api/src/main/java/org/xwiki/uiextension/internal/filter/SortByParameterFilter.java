@@ -22,7 +22,9 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -69,29 +71,7 @@ public UIExtensionParameterComparator(String parameterKey)
         @Override
         public int compare(UIExtension source, UIExtension target)
         {
-            int result = 0;
-
-            String sourceValue = source.getParameters().get(parameterKey);
-            String targetValue = target.getParameters().get(parameterKey);
-            if (sourceValue == null) {
-                // If the source extensions doesn't have the parameter we want it to be put at the end of the collection
-                result = Integer.MAX_VALUE;
-            } else if (targetValue == null) {
-                // If the target extensions doesn't have the parameter we want it to be put at the end of the collection
-                result = Integer.MIN_VALUE;
-            } else {
-                try {
-                    // The parameter values might be integers.
-                    int sourceInt = Integer.parseInt(sourceValue);
-                    int targetInt = Integer.parseInt(targetValue);
-                    result = sourceInt - targetInt;
-                } catch (NumberFormatException e) {
-                    // They're not both integers so we compare the 2 string values instead.
-                    result = sourceValue.compareToIgnoreCase(targetValue);
-                }
-            }
-
-            return result;
+            return compareValues(source.getParameters().get(parameterKey), target.getParameters().get(parameterKey));
         }
     }
 
@@ -109,9 +89,41 @@ public List<UIExtension> filter(List<UIExtension> extensions, String... paramete
         results.addAll(extensions);
 
         if (parameterKey.length > 0 && !StringUtils.isBlank(parameterKey[0])) {
-            Collections.sort(results, new UIExtensionParameterComparator(parameterKey[0]));
+            // Get the parameter values once instead of at each comparison (the parameters of the wiki UI extensions
+            // are evaluated with Velocity).
+            Map<UIExtension, String> values = new IdentityHashMap<>();
+            for (UIExtension extension : extensions) {
+                values.put(extension, extension.getParameters().get(parameterKey[0]));
+            }
+
+            Collections.sort(results, (source, target) -> compareValues(values.get(source), values.get(target)));
         }
 
         return results;
     }
+
+    private static int compareValues(String sourceValue, String targetValue)
+    {
+        int result = 0;
+
+        if (sourceValue == null) {
+            // If the source extensions doesn't have the parameter we want it to be put at the end of the collection
+            result = Integer.MAX_VALUE;
+        } else if (targetValue == null) {
+            // If the target extensions doesn't have the parameter we want it to be put at the end of the collection
+            result = Integer.MIN_VALUE;
+        } else {
+            try {
+                // The parameter values might be integers.
+                int sourceInt = Integer.parseInt(sourceValue);
+                int targetInt = Integer.parseInt(targetValue);
+                result = sourceInt - targetInt;
+            } catch (NumberFormatException e) {
+                // They're not both integers so we compare the 2 string values instead.
+                result = sourceValue.compareToIgnoreCase(targetValue);
+            }
+        }
+
+        return result;
+    }
 }
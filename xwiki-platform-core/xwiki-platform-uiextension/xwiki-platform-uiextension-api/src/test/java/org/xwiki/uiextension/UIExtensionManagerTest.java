@@ -20,25 +20,42 @@
 package org.xwiki.uiextension;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.component.internal.ContextComponentManagerProvider;
+import org.xwiki.component.internal.multi.ComponentManagerManager;
+import org.xwiki.model.ModelContext;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 import org.xwiki.uiextension.internal.DefaultUIExtensionManager;
+import org.xwiki.uiextension.internal.UIExtensionRegistry;
 
-@ComponentList(ContextComponentManagerProvider.class)
+@ComponentList({ContextComponentManagerProvider.class, UIExtensionRegistry.class})
 public class UIExtensionManagerTest
 {
     @Rule
     public MockitoComponentMockingRule<UIExtensionManager> mocker =
         new MockitoComponentMockingRule<UIExtensionManager>(DefaultUIExtensionManager.class);
 
+    @Before
+    public void configure() throws Exception
+    {
+        this.mocker.registerMockComponent(ComponentManagerManager.class);
+        this.mocker.registerMockComponent(DocumentAccessBridge.class);
+        this.mocker.registerMockComponent(ModelContext.class);
+        this.mocker.registerMockComponent(EntityReferenceSerializer.TYPE_STRING);
+    }
+
     @Test
     public void testGet() throws Exception
     {
@@ -53,7 +70,52 @@ public void testGet() throws Exception
         UIExtension notuix = mocker.registerMockComponent(UIExtension.class, "notuix");
         when(notuix.getExtensionPointId()).thenReturn("notuix");
 
+        // The registry is cleaned by UIExtensionRegistryListener when the components are registered.
+        this.mocker.<UIExtensionRegistry>getInstance(UIExtensionRegistry.class).removeAll();
+
         assertEquals(new HashSet<UIExtension>(Arrays.asList(uix1, uix2)), new HashSet<UIExtension>(this.mocker
             .getComponentUnderTest().get("extensionpoint")));
     }
+
+    @Test
+    public void getSortedById() throws Exception
+    {
+        UIExtension uix1 = mocker.registerMockComponent(UIExtension.class, "uix1");
+        when(uix1.getExtensionPointId()).thenReturn("extensionpoint");
+        when(uix1.getId()).thenReturn("b");
+
+        UIExtension uix2 = mocker.registerMockComponent(UIExtension.class, "uix2");
+        when(uix2.getExtensionPointId()).thenReturn("extensionpoint");
+        when(uix2.getId()).thenReturn("a");
+
+        List<UIExtension> extensions = this.mocker.getComponentUnderTest().get("extensionpoint");
+        assertEquals(Arrays.asList(uix2, uix1), extensions);
+
+        // The index is reused until the registry is cleaned.
+        assertSame(extensions, this.mocker.getComponentUnderTest().get("extensionpoint"));
+    }
+
+    @Test
+    public void getSortedByIdWithoutId() throws Exception
+    {
+        UIExtension withoutId = mocker.registerMockComponent(UIExtension.class, "withoutId");
+        when(withoutId.getExtensionPointId()).thenReturn("extensionpoint");
+
+        UIExtension withId = mocker.registerMockComponent(UIExtension.class, "withId");
+        when(withId.getExtensionPointId()).thenReturn("extensionpoint");
+        when(withId.getId()).thenReturn("a");
+
+        // The extensions without id don't prevent the others from being displayed.
+        assertEquals(Arrays.asList(withId, withoutId), this.mocker.getComponentUnderTest().get("extensionpoint"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getReturnsUnmodifiableList() throws Exception
+    {
+        UIExtension uix = mocker.registerMockComponent(UIExtension.class, "uix");
+        when(uix.getExtensionPointId()).thenReturn("extensionpoint");
+        when(uix.getId()).thenReturn("uix");
+
+        this.mocker.getComponentUnderTest().get("extensionpoint").clear();
+    }
 }
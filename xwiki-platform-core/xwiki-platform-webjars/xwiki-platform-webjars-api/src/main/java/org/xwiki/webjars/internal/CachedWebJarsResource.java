@@ -0,0 +1,107 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.webjars.internal;
+
+import java.util.Date;
+
+/**
+ * The content of a static WebJar resource, kept in memory along with everything needed to serve it (content type,
+ * entity tag and, when it is worth it, a gzip compressed variant). Resources too big to be kept in memory are
+ * remembered with a {@code null} content so that they are directly streamed from the WebJar without being read twice.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class CachedWebJarsResource
+{
+    private final byte[] content;
+
+    private final byte[] gzipContent;
+
+    private final String contentType;
+
+    private final String entityTag;
+
+    private final Date lastModified;
+
+    /**
+     * @param content the raw content of the resource, {@code null} if the resource is too big to be kept in memory
+     * @param gzipContent the gzip compressed content of the resource or {@code null} if it should not be compressed
+     * @param contentType the content type of the resource
+     * @param entityTag the entity tag computed from the resource content
+     */
+    public CachedWebJarsResource(byte[] content, byte[] gzipContent, String contentType, String entityTag)
+    {
+        this.content = content;
+        this.gzipContent = gzipContent;
+        this.contentType = contentType;
+        this.entityTag = entityTag;
+        this.lastModified = new Date();
+    }
+
+    /**
+     * @return {@code true} if the content of the resource is available in memory, {@code false} if the resource has to
+     *         be streamed from the WebJar
+     */
+    public boolean isInMemory()
+    {
+        return this.content != null;
+    }
+
+    /**
+     * @return the raw content of the resource
+     */
+    public byte[] getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * @return the gzip compressed content of the resource or {@code null} if there is no compressed variant
+     */
+    public byte[] getGzipContent()
+    {
+        return this.gzipContent;
+    }
+
+    /**
+     * @return the content type of the resource
+     */
+    public String getContentType()
+    {
+        return this.contentType;
+    }
+
+    /**
+     * @return the (quoted) entity tag of the resource
+     */
+    public String getEntityTag()
+    {
+        return this.entityTag;
+    }
+
+    /**
+     * @return the date when the resource has been loaded
+     */
+    public Date getLastModified()
+    {
+        return this.lastModified;
+    }
+}
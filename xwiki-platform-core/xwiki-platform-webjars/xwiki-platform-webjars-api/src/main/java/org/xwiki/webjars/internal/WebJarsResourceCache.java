@@ -0,0 +1,202 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.webjars.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.tika.Tika;
+import org.xwiki.component.annotation.Component;
+
+/**
+ * Keep in memory the content of the static (i.e. not evaluated) WebJar resources which are small enough, so that they
+ * don't have to be read from the extension class loader and analyzed (content type, entity tag, compression) for each
+ * request. The cache is bounded by the total size of the kept content (raw and compressed), the least recently used
+ * resources being evicted first.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component(roles = WebJarsResourceCache.class)
+@Singleton
+public class WebJarsResourceCache
+{
+    /**
+     * The maximum number of bytes (raw and compressed content) to keep in the cache.
+     */
+    private static final long MAX_CACHE_SIZE = 16 * 1024 * 1024L;
+
+    /**
+     * The approximate memory used by a cache entry besides its content (key, metadata, etc.), so that the resources
+     * remembered without content also count.
+     */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    /**
+     * Resources bigger than this (in bytes) are not kept in memory.
+     */
+    private static final int MAX_RESOURCE_SIZE = 512 * 1024;
+
+    /**
+     * Resources smaller than this (in bytes) are not worth compressing.
+     */
+    private static final int MIN_COMPRESSED_SIZE = 1024;
+
+    /**
+     * Used to determine the Content Type of the cached resources.
+     */
+    private Tika tika = new Tika();
+
+    /**
+     * The cached resources, in access order (least recently used first). Guarded by itself.
+     */
+    private final Map<String, CachedWebJarsResource> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The total size (in bytes) of the cached resources. Guarded by {@link #cache}.
+     */
+    private long cacheSize;
+
+    /**
+     * @param namespace the namespace where the resource is looked for
+     * @param resourceName the name of the resource
+     * @return the cached resource or {@code null} if it's not (yet) cached
+     */
+    public CachedWebJarsResource get(String namespace, String resourceName)
+    {
+        synchronized (this.cache) {
+            return this.cache.get(getKey(namespace, resourceName));
+        }
+    }
+
+    /**
+     * Read the passed resource and put it in the cache.
+     *
+     * @param namespace the namespace where the resource is looked for
+     * @param resourceName the name of the resource
+     * @param resourceStream the stream to read the resource content from, closed by this method
+     * @return the cached resource
+     * @throws IOException when failing to read the resource
+     */
+    public CachedWebJarsResource load(String namespace, String resourceName, InputStream resourceStream)
+        throws IOException
+    {
+        CachedWebJarsResource resource;
+        try {
+            byte[] content = IOUtils.toByteArray(new BoundedInputStream(resourceStream, MAX_RESOURCE_SIZE + 1L));
+
+            if (content.length > MAX_RESOURCE_SIZE) {
+                // Too big to be kept in memory: remember it so that it's directly streamed next time
+                resource = new CachedWebJarsResource(null, null, null, null);
+            } else {
+                String contentType = this.tika.detect(content, resourceName);
+                String entityTag = '"' + DigestUtils.md5Hex(content) + '"';
+
+                resource =
+                    new CachedWebJarsResource(content, compress(content, contentType), contentType, entityTag);
+            }
+        } finally {
+            IOUtils.closeQuietly(resourceStream);
+        }
+
+        put(getKey(namespace, resourceName), resource);
+
+        return resource;
+    }
+
+    /**
+     * Remove all the cached resources (e.g. because the installed WebJars changed).
+     */
+    public void removeAll()
+    {
+        synchronized (this.cache) {
+            this.cache.clear();
+            this.cacheSize = 0;
+        }
+    }
+
+    private void put(String key, CachedWebJarsResource resource)
+    {
+        synchronized (this.cache) {
+            CachedWebJarsResource previous = this.cache.put(key, resource);
+            if (previous != null) {
+                this.cacheSize -= getSize(key, previous);
+            }
+            this.cacheSize += getSize(key, resource);
+
+            // Evict the least recently used resources until the cache fits again in its budget
+            Iterator<Map.Entry<String, CachedWebJarsResource>> iterator = this.cache.entrySet().iterator();
+            while (this.cacheSize > MAX_CACHE_SIZE && iterator.hasNext()) {
+                Map.Entry<String, CachedWebJarsResource> eldest = iterator.next();
+                this.cacheSize -= getSize(eldest.getKey(), eldest.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private long getSize(String key, CachedWebJarsResource resource)
+    {
+        long size = ENTRY_OVERHEAD + 2L * key.length();
+        if (resource.getContent() != null) {
+            size += resource.getContent().length;
+        }
+        if (resource.getGzipContent() != null) {
+            size += resource.getGzipContent().length;
+        }
+
+        return size;
+    }
+
+    private byte[] compress(byte[] content, String contentType) throws IOException
+    {
+        // Only text based resources are worth compressing (images, fonts, etc. are generally already compressed)
+        if (content.length < MIN_COMPRESSED_SIZE || !isCompressible(contentType)) {
+            return null;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content);
+        }
+
+        return compressed.size() < content.length ? compressed.toByteArray() : null;
+    }
+
+    private boolean isCompressible(String contentType)
+    {
+        return contentType != null && (contentType.startsWith("text/") || contentType.contains("javascript")
+            || contentType.contains("json") || contentType.contains("xml"));
+    }
+
+    private String getKey(String namespace, String resourceName)
+    {
+        return namespace + ':' + resourceName;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.webjars.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.extension.event.ExtensionInstalledEvent;
+import org.xwiki.extension.event.ExtensionUninstalledEvent;
+import org.xwiki.extension.event.ExtensionUpgradedEvent;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Clean the {@link WebJarsResourceCache} when the installed extensions change since the content of the class loader
+ * used to find the WebJar resources changes too.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+@Component
+@Named(WebJarsResourceCacheListener.NAME)
+@Singleton
+public class WebJarsResourceCacheListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "org.xwiki.webjars.internal.WebJarsResourceCacheListener";
+
+    /**
+     * Lazily loaded to avoid creating the cache before it's actually needed.
+     */
+    @Inject
+    private Provider<WebJarsResourceCache> cacheProvider;
+
+    /**
+     * Default constructor.
+     */
+    public WebJarsResourceCacheListener()
+    {
+        super(NAME, new ExtensionInstalledEvent(), new ExtensionUninstalledEvent(), new ExtensionUpgradedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        // Installing an extension in a namespace can change what is found in the namespaces below it (e.g. a wiki
+        // namespace inherits the root namespace) so we don't try to be smart.
+        this.cacheProvider.get().removeAll();
+    }
+}
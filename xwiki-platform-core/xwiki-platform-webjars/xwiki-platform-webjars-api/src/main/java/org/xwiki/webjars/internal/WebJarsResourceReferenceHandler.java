@@ -20,18 +20,31 @@
 package org.xwiki.webjars.internal;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
 import org.xwiki.classloader.ClassLoaderManager;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.container.Container;
+import org.xwiki.container.Request;
+import org.xwiki.container.Response;
+import org.xwiki.container.servlet.ServletRequest;
+import org.xwiki.container.servlet.ServletResponse;
+import org.xwiki.resource.ResourceReference;
+import org.xwiki.resource.ResourceReferenceHandlerChain;
 import org.xwiki.resource.ResourceReferenceHandlerException;
 import org.xwiki.resource.ResourceType;
 import org.xwiki.resource.servlet.AbstractServletResourceReferenceHandler;
@@ -59,6 +72,15 @@ public class WebJarsResourceReferenceHandler extends AbstractServletResourceRefe
      */
     private static final String UTF8 = "UTF-8";
 
+    /**
+     * One year duration can be considered as permanent caching.
+     */
+    private static final long CACHE_DURATION = 365 * 24 * 3600 * 1000L;
+
+    private static final String GZIP = "gzip";
+
+    private static final String X_GZIP = "x-gzip";
+
     /**
      * Used to evaluate the Velocity code from the WebJar resources.
      */
@@ -68,12 +90,155 @@ public class WebJarsResourceReferenceHandler extends AbstractServletResourceRefe
     @Inject
     private ClassLoaderManager classLoaderManager;
 
+    @Inject
+    private WebJarsResourceCache resourceCache;
+
+    @Inject
+    private Container container;
+
     @Override
     public List<ResourceType> getSupportedResourceReferences()
     {
         return Arrays.asList(WebJarsResourceReference.TYPE);
     }
 
+    @Override
+    public void handle(ResourceReference resourceReference, ResourceReferenceHandlerChain chain)
+        throws ResourceReferenceHandlerException
+    {
+        WebJarsResourceReference webJarsResourceReference = (WebJarsResourceReference) resourceReference;
+
+        if (isResourceCacheable(webJarsResourceReference) && serveCachedResource(webJarsResourceReference)) {
+            // Be a good citizen, continue the chain, in case some lower-priority handler has something to do for this
+            // resource reference.
+            chain.handleNext(resourceReference);
+        } else {
+            super.handle(resourceReference, chain);
+        }
+    }
+
+    /**
+     * Serve the requested static resource from memory.
+     *
+     * @param resourceReference the reference of the requested resource
+     * @return {@code true} if the resource has been served, {@code false} if it could not be kept in memory (not found,
+     *         too big, etc.) and should be served the standard way
+     * @throws ResourceReferenceHandlerException when failing to serve the resource
+     */
+    private boolean serveCachedResource(WebJarsResourceReference resourceReference)
+        throws ResourceReferenceHandlerException
+    {
+        Request request = this.container.getRequest();
+        Response response = this.container.getResponse();
+        if (!(request instanceof ServletRequest) || !(response instanceof ServletResponse)) {
+            return false;
+        }
+
+        String resourceName = getResourceName(resourceReference);
+        String namespace = resourceReference.getNamespace();
+
+        try {
+            CachedWebJarsResource resource = this.resourceCache.get(namespace, resourceName);
+            if (resource == null) {
+                InputStream resourceStream = getResourceStream(resourceReference);
+                if (resourceStream == null) {
+                    return false;
+                }
+                resource = this.resourceCache.load(namespace, resourceName, resourceStream);
+            }
+
+            if (!resource.isInMemory()) {
+                return false;
+            }
+
+            serveCachedResource(resource, ((ServletRequest) request).getHttpServletRequest(),
+                ((ServletResponse) response).getHttpServletResponse());
+        } catch (IOException e) {
+            throw new ResourceReferenceHandlerException(String.format("Failed to read resource [%s]", resourceName), e);
+        }
+
+        return true;
+    }
+
+    private void serveCachedResource(CachedWebJarsResource resource, HttpServletRequest httpRequest,
+        HttpServletResponse httpResponse) throws IOException
+    {
+        httpResponse.setHeader(HttpHeaders.CACHE_CONTROL, "public");
+        httpResponse.setDateHeader(HttpHeaders.EXPIRES, new Date().getTime() + CACHE_DURATION);
+        httpResponse.setDateHeader(HttpHeaders.LAST_MODIFIED, resource.getLastModified().getTime());
+        httpResponse.setHeader(HttpHeaders.ETAG, resource.getEntityTag());
+        httpResponse.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        // Static WebJar resources never change for a given version so the browser can use its cached version if it
+        // has one (same behavior as AbstractServletResourceReferenceHandler for If-Modified-Since).
+        String ifNoneMatch = httpRequest.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null ? ifNoneMatch.contains(resource.getEntityTag())
+            : httpRequest.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        httpResponse.setContentType(resource.getContentType());
+
+        byte[] content;
+        if (resource.getGzipContent() != null && acceptsGzip(httpRequest.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            httpResponse.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            content = resource.getGzipContent();
+        } else {
+            content = resource.getContent();
+        }
+
+        // Write the cached bytes directly, without any intermediate copy
+        httpResponse.setContentLength(content.length);
+        httpResponse.getOutputStream().write(content);
+    }
+
+    /**
+     * @param acceptEncoding the value of the {@code Accept-Encoding} request header
+     * @return {@code true} if the client accepts a gzip compressed content, taking into account the quality values
+     *         (e.g. {@code gzip;q=0} means that gzip is not acceptable)
+     */
+    private boolean acceptsGzip(String acceptEncoding)
+    {
+        if (StringUtils.isBlank(acceptEncoding)) {
+            return false;
+        }
+
+        Float gzipQuality = null;
+        Float anyQuality = null;
+        for (String coding : StringUtils.split(acceptEncoding, ',')) {
+            String name = StringUtils.substringBefore(coding, ";").trim();
+            if (GZIP.equalsIgnoreCase(name) || X_GZIP.equalsIgnoreCase(name)) {
+                gzipQuality = Math.max(gzipQuality != null ? gzipQuality : 0, getQuality(coding));
+            } else if ("*".equals(name)) {
+                anyQuality = getQuality(coding);
+            }
+        }
+
+        // The wildcard only applies to the codings not explicitly listed
+        Float quality = gzipQuality != null ? gzipQuality : anyQuality;
+
+        return quality != null && quality > 0;
+    }
+
+    private float getQuality(String coding)
+    {
+        for (String parameter : StringUtils.split(StringUtils.substringAfter(coding, ";"), ';')) {
+            String[] pair = StringUtils.split(parameter, "=", 2);
+            if (pair.length == 2 && "q".equalsIgnoreCase(pair[0].trim())) {
+                try {
+                    return Float.parseFloat(pair[1].trim());
+                } catch (NumberFormatException e) {
+                    // Don't risk sending a coding the client may not support
+                    return 0;
+                }
+            }
+        }
+
+        // No quality value means the coding is fully acceptable
+        return 1;
+    }
+
     @Override
     protected InputStream getResourceStream(WebJarsResourceReference resourceReference)
     {
@@ -0,0 +1,130 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.webjars.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link WebJarsResourceCache}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class WebJarsResourceCacheTest
+{
+    @Rule
+    public MockitoComponentMockingRule<WebJarsResourceCache> mocker =
+        new MockitoComponentMockingRule<>(WebJarsResourceCache.class);
+
+    @Test
+    public void loadSmallResource() throws Exception
+    {
+        byte[] content = "alert('hello');".getBytes("UTF-8");
+
+        CachedWebJarsResource resource = this.mocker.getComponentUnderTest().load("wiki:xwiki",
+            "test/1.0/test.js", new ByteArrayInputStream(content));
+
+        assertTrue(resource.isInMemory());
+        assertArrayEquals(content, resource.getContent());
+        // Not worth compressing
+        assertNull(resource.getGzipContent());
+        assertEquals("application/javascript", resource.getContentType());
+        assertEquals('"' + DigestUtils.md5Hex(content) + '"', resource.getEntityTag());
+
+        assertSame(resource, this.mocker.getComponentUnderTest().get("wiki:xwiki", "test/1.0/test.js"));
+    }
+
+    @Test
+    public void loadCompressibleResource() throws Exception
+    {
+        byte[] content = StringUtils.repeat("body { color: red; }\n", 1000).getBytes("UTF-8");
+
+        CachedWebJarsResource resource = this.mocker.getComponentUnderTest().load("wiki:xwiki",
+            "test/1.0/test.css", new ByteArrayInputStream(content));
+
+        assertTrue(resource.getGzipContent().length < content.length);
+
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        IOUtils.copy(new GZIPInputStream(new ByteArrayInputStream(resource.getGzipContent())), uncompressed);
+        assertArrayEquals(content, uncompressed.toByteArray());
+    }
+
+    @Test
+    public void loadTooBigResource() throws Exception
+    {
+        byte[] content = new byte[1024 * 1024];
+
+        CachedWebJarsResource resource = this.mocker.getComponentUnderTest().load("wiki:xwiki",
+            "test/1.0/test.bin", new ByteArrayInputStream(content));
+
+        assertFalse(resource.isInMemory());
+        assertSame(resource, this.mocker.getComponentUnderTest().get("wiki:xwiki", "test/1.0/test.bin"));
+    }
+
+    @Test
+    public void loadIsBoundedBySize() throws Exception
+    {
+        WebJarsResourceCache resourceCache = this.mocker.getComponentUnderTest();
+
+        // 40 resources of 512KB don't fit in the 16MB of the cache
+        byte[] content = new byte[512 * 1024];
+        for (int i = 0; i < 40; i++) {
+            resourceCache.load("wiki:xwiki", "test/1.0/test" + i + ".bin", new ByteArrayInputStream(content));
+            // Keep the first resource recently used
+            resourceCache.get("wiki:xwiki", "test/1.0/test0.bin");
+        }
+
+        assertNotNull(resourceCache.get("wiki:xwiki", "test/1.0/test0.bin"));
+        assertNull(resourceCache.get("wiki:xwiki", "test/1.0/test1.bin"));
+        assertNotNull(resourceCache.get("wiki:xwiki", "test/1.0/test39.bin"));
+    }
+
+    @Test
+    public void get() throws Exception
+    {
+        WebJarsResourceCache resourceCache = this.mocker.getComponentUnderTest();
+        CachedWebJarsResource resource =
+            resourceCache.load("wiki:xwiki", "test/1.0/test.txt", new ByteArrayInputStream(new byte[0]));
+
+        assertSame(resource, resourceCache.get("wiki:xwiki", "test/1.0/test.txt"));
+        assertNull(resourceCache.get("wiki:xwiki", "test/1.0/other.txt"));
+
+        resourceCache.removeAll();
+
+        assertNull(resourceCache.get("wiki:xwiki", "test/1.0/test.txt"));
+    }
+}
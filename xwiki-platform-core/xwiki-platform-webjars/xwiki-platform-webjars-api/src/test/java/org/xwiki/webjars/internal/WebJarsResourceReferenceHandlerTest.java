@@ -0,0 +1,179 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.webjars.internal;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.classloader.ClassLoaderManager;
+import org.xwiki.classloader.NamespaceURLClassLoader;
+import org.xwiki.container.Container;
+import org.xwiki.container.servlet.ServletRequest;
+import org.xwiki.container.servlet.ServletResponse;
+import org.xwiki.resource.ResourceReferenceHandlerChain;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link WebJarsResourceReferenceHandler}.
+ *
+ * @version $Id$
+ * @since 9.11RC1
+ */
+public class WebJarsResourceReferenceHandlerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<WebJarsResourceReferenceHandler> mocker =
+        new MockitoComponentMockingRule<>(WebJarsResourceReferenceHandler.class);
+
+    private WebJarsResourceReference reference =
+        new WebJarsResourceReference("wiki:xwiki", Arrays.asList("test", "1.0", "test.css"));
+
+    private ResourceReferenceHandlerChain chain = mock(ResourceReferenceHandlerChain.class);
+
+    private HttpServletRequest httpRequest = mock(HttpServletRequest.class);
+
+    private HttpServletResponse httpResponse = mock(HttpServletResponse.class);
+
+    private ServletOutputStream output = mock(ServletOutputStream.class);
+
+    private WebJarsResourceCache cache;
+
+    @Before
+    public void configure() throws Exception
+    {
+        ServletRequest request = mock(ServletRequest.class);
+        when(request.getHttpServletRequest()).thenReturn(this.httpRequest);
+        ServletResponse response = mock(ServletResponse.class);
+        when(response.getHttpServletResponse()).thenReturn(this.httpResponse);
+
+        Container container = this.mocker.getInstance(Container.class);
+        when(container.getRequest()).thenReturn(request);
+        when(container.getResponse()).thenReturn(response);
+
+        when(this.httpResponse.getOutputStream()).thenReturn(this.output);
+
+        this.cache = this.mocker.getInstance(WebJarsResourceCache.class);
+    }
+
+    @Test
+    public void handleCachedResource() throws Exception
+    {
+        byte[] content = "body {}".getBytes("UTF-8");
+        when(this.cache.get("wiki:xwiki", "test/1.0/test.css"))
+            .thenReturn(new CachedWebJarsResource(content, null, "text/css", "\"tag\""));
+
+        this.mocker.getComponentUnderTest().handle(this.reference, this.chain);
+
+        verify(this.httpResponse).setHeader("ETag", "\"tag\"");
+        verify(this.httpResponse).setContentType("text/css");
+        verify(this.httpResponse).setContentLength(content.length);
+        verify(this.output).write(content);
+        verify(this.chain).handleNext(this.reference);
+    }
+
+    @Test
+    public void handleCachedResourceWithGzip() throws Exception
+    {
+        byte[] gzipContent = new byte[] {1, 2, 3};
+        when(this.cache.get("wiki:xwiki", "test/1.0/test.css"))
+            .thenReturn(new CachedWebJarsResource(new byte[10], gzipContent, "text/css", "\"tag\""));
+        when(this.httpRequest.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+
+        this.mocker.getComponentUnderTest().handle(this.reference, this.chain);
+
+        verify(this.httpResponse).setHeader("Content-Encoding", "gzip");
+        verify(this.output).write(gzipContent);
+    }
+
+    @Test
+    public void handleCachedResourceWithGzipRefused() throws Exception
+    {
+        byte[] content = new byte[10];
+        when(this.cache.get("wiki:xwiki", "test/1.0/test.css"))
+            .thenReturn(new CachedWebJarsResource(content, new byte[] {1, 2, 3}, "text/css", "\"tag\""));
+        when(this.httpRequest.getHeader("Accept-Encoding")).thenReturn("gzip;q=0, deflate");
+
+        this.mocker.getComponentUnderTest().handle(this.reference, this.chain);
+
+        verify(this.httpResponse, never()).setHeader(eq("Content-Encoding"), any());
+        verify(this.output).write(content);
+    }
+
+    @Test
+    public void handleCachedResourceWithAnyEncoding() throws Exception
+    {
+        byte[] gzipContent = new byte[] {1, 2, 3};
+        when(this.cache.get("wiki:xwiki", "test/1.0/test.css"))
+            .thenReturn(new CachedWebJarsResource(new byte[10], gzipContent, "text/css", "\"tag\""));
+        when(this.httpRequest.getHeader("Accept-Encoding")).thenReturn("identity;q=0.5, *;q=0.1");
+
+        this.mocker.getComponentUnderTest().handle(this.reference, this.chain);
+
+        verify(this.httpResponse).setHeader("Content-Encoding", "gzip");
+        verify(this.output).write(gzipContent);
+    }
+
+    @Test
+    public void handleCachedResourceNotModified() throws Exception
+    {
+        when(this.cache.get("wiki:xwiki", "test/1.0/test.css"))
+            .thenReturn(new CachedWebJarsResource(new byte[10], null, "text/css", "\"tag\""));
+        when(this.httpRequest.getHeader("If-None-Match")).thenReturn("\"tag\"");
+
+        this.mocker.getComponentUnderTest().handle(this.reference, this.chain);
+
+        verify(this.httpResponse).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(this.httpResponse, never()).getOutputStream();
+    }
+
+    @Test
+    public void handleResourceNotYetCached() throws Exception
+    {
+        ByteArrayInputStream resourceStream = new ByteArrayInputStream(new byte[0]);
+        NamespaceURLClassLoader classLoader = mock(NamespaceURLClassLoader.class);
+        when(classLoader.getResourceAsStream("META-INF/resources/webjars/test/1.0/test.css"))
+            .thenReturn(resourceStream);
+        ClassLoaderManager classLoaderManager = this.mocker.getInstance(ClassLoaderManager.class);
+        when(classLoaderManager.getURLClassLoader("wiki:xwiki", true)).thenReturn(classLoader);
+
+        byte[] content = "body {}".getBytes("UTF-8");
+        when(this.cache.load("wiki:xwiki", "test/1.0/test.css", resourceStream))
+            .thenReturn(new CachedWebJarsResource(content, null, "text/css", "\"tag\""));
+
+        this.mocker.getComponentUnderTest().handle(this.reference, this.chain);
+
+        verify(this.output).write(content);
+        verify(this.chain).handleNext(this.reference);
+    }
+}